@@ -0,0 +1,145 @@
+package com.unister.semweb.biodrums.aggregate;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import com.unister.semweb.biodrums.bulk.BulkLoader;
+import com.unister.semweb.biodrums.scan.BucketFunction;
+import com.unister.semweb.biodrums.scan.BucketScanner;
+import com.unister.semweb.biodrums.scan.ParallelBucketScan;
+import com.unister.semweb.biodrums.scan.RecordVisitor;
+import com.unister.semweb.biodrums.weigel.AlleleFrequency;
+import com.unister.semweb.biodrums.weigel.SNP;
+
+/**
+ * Computes for every SNP position the number of ecotypes carrying each base in one streaming pass. The ecotype is the
+ * last component of the {@link SNP}-key, so all ecotypes of a position are adjacent and, since the bucket boundaries
+ * of {@link SNP#createHashFunction()} end with the largest ecotype, stored in the same bucket. Each bucket is scanned
+ * in parallel and counted with a primitive array. The resulting {@link AlleleFrequency}s are written in chunks to a
+ * {@link BulkLoader}, which builds the derived table.
+ * 
+ * <pre>
+ * BulkLoader&lt;AlleleFrequency&gt; loader = new BulkLoader&lt;AlleleFrequency&gt;(
+ *         AlleleFrequency.createHashFunction(), frequencyParameters, new AlleleFrequency(), 256 * 1024 * 1024,
+ *         new File(&quot;/tmp&quot;));
+ * AlleleFrequencies.compute(snpScan, null, null, loader);
+ * loader.load();
+ * </pre>
+ * 
+ * @author Martin Nettling
+ */
+public class AlleleFrequencies {
+
+    /** the number of allele frequencies, which are collected before they are added to the loader */
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private AlleleFrequencies() {
+    }
+
+    /**
+     * Computes the allele frequencies of all SNPs between the given keys and adds them to the loader.
+     * 
+     * @param scan
+     *            the parallel scan over the SNP-table
+     * @param lowerKey
+     *            the smallest key, <code>null</code> to start at the first SNP
+     * @param upperKey
+     *            the largest key, <code>null</code> to end at the last SNP
+     * @param loader
+     *            the loader of the derived table
+     * @return the number of positions
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public static long compute(ParallelBucketScan<SNP> scan, byte[] lowerKey, byte[] upperKey,
+            final BulkLoader<AlleleFrequency> loader) throws IOException, InterruptedException {
+        List<Long> positions = scan.map(lowerKey, upperKey, new BucketFunction<SNP, Long>() {
+            @Override
+            public Long apply(BucketScanner<SNP> scanner, int bucketId, byte[] lowerKey, byte[] upperKey)
+                    throws Exception {
+                PositionCounter counter = new PositionCounter(loader);
+                scanner.scanBucket(bucketId, lowerKey, upperKey, counter);
+                counter.flush();
+                if (counter.exception != null) {
+                    throw counter.exception;
+                }
+                return counter.positions;
+            }
+        });
+        long result = 0;
+        for (Long bucketPositions : positions) {
+            result += bucketPositions;
+        }
+        return result;
+    }
+
+    /** counts the bases of consecutive SNPs at the same position */
+    private static class PositionCounter implements RecordVisitor {
+        private final BulkLoader<AlleleFrequency> loader;
+        private final ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE * AlleleFrequency.ELEMENT_SIZE);
+        private final int[] counts = new int[AlleleFrequency.NUMBER_OF_BASES];
+
+        private byte sequenceId;
+        private int position = -1;
+        private byte from;
+        private long positions;
+        private IOException exception;
+
+        PositionCounter(BulkLoader<AlleleFrequency> loader) {
+            this.loader = loader;
+        }
+
+        @Override
+        public boolean visit(ByteBuffer records, int offset) {
+            byte recordSequenceId = SNP.getSequenceId(records, offset);
+            int recordPosition = SNP.getBasePosition(records, offset);
+            if (recordPosition != position || recordSequenceId != sequenceId) {
+                if (!emit()) {
+                    return false;
+                }
+                sequenceId = recordSequenceId;
+                position = recordPosition;
+                from = SNP.getFrom(records, offset);
+            }
+            counts[AlleleFrequency.baseIndex(SNP.getTo(records, offset))]++;
+            return true;
+        }
+
+        /** writes the counts of the current position into the chunk */
+        private boolean emit() {
+            if (position < 0) {
+                return true;
+            }
+            AlleleFrequency.put(chunk, sequenceId, position, from, counts);
+            Arrays.fill(counts, 0);
+            positions++;
+            if (!chunk.hasRemaining()) {
+                try {
+                    addChunk();
+                } catch (IOException ex) {
+                    exception = ex;
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void addChunk() throws IOException {
+            chunk.flip();
+            // the loader is shared by all buckets
+            synchronized (loader) {
+                loader.add(chunk);
+            }
+            chunk.clear();
+        }
+
+        void flush() throws IOException {
+            if (exception == null && emit()) {
+                position = -1;
+                addChunk();
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.unister.semweb.biodrums.aggregate;
+
+import java.util.Arrays;
+
+import com.unister.semweb.biodrums.herv.HERV;
+
+/**
+ * Statistics of {@link HERV}-hits in consecutive windows of equal size on one chromosome. A hit belongs to the window
+ * containing its start position on the chromosome. All statistics are stored in primitive arrays, indexed by the
+ * window.
+ * 
+ * @author Martin Nettling
+ */
+public class HERVWindowStatistics {
+    private final byte chromosome;
+    private final int start;
+    private final int windowSize;
+
+    private final long[] counts;
+    private final double[] minEValues;
+    private final long[] plusStrandCounts;
+
+    /**
+     * Creates empty statistics.
+     * 
+     * @param chromosome
+     *            the chromosome
+     * @param start
+     *            the first position of the first window
+     * @param windowSize
+     *            the number of positions per window
+     * @param numberOfWindows
+     *            the number of windows
+     */
+    public HERVWindowStatistics(byte chromosome, int start, int windowSize, int numberOfWindows) {
+        this.chromosome = chromosome;
+        this.start = start;
+        this.windowSize = windowSize;
+        this.counts = new long[numberOfWindows];
+        this.minEValues = new double[numberOfWindows];
+        this.plusStrandCounts = new long[numberOfWindows];
+        Arrays.fill(minEValues, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Adds one hit.
+     * 
+     * @param window
+     *            the window of the hit
+     * @param eValue
+     *            the e-value of the hit
+     * @param plusStrand
+     *            <code>true</code> if the hit is on the plus strand
+     */
+    void add(int window, double eValue, boolean plusStrand) {
+        counts[window]++;
+        if (eValue < minEValues[window]) {
+            minEValues[window] = eValue;
+        }
+        if (plusStrand) {
+            plusStrandCounts[window]++;
+        }
+    }
+
+    /**
+     * Adds the statistics of the given instance, which must have the same windows.
+     * 
+     * @param other
+     *            the statistics to add
+     */
+    void merge(HERVWindowStatistics other) {
+        for (int window = 0; window < counts.length; window++) {
+            counts[window] += other.counts[window];
+            minEValues[window] = Math.min(minEValues[window], other.minEValues[window]);
+            plusStrandCounts[window] += other.plusStrandCounts[window];
+        }
+    }
+
+    /** @return the chromosome */
+    public byte getChromosome() {
+        return chromosome;
+    }
+
+    /** @return the first position of the first window */
+    public int getStart() {
+        return start;
+    }
+
+    /** @return the number of positions per window */
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    /** @return the number of windows */
+    public int getNumberOfWindows() {
+        return counts.length;
+    }
+
+    /** @return the number of hits per window */
+    public long[] getCounts() {
+        return counts;
+    }
+
+    /** @return the minimal e-value per window, {@link Double#POSITIVE_INFINITY} for empty windows */
+    public double[] getMinEValues() {
+        return minEValues;
+    }
+
+    /** @return the number of hits on the plus strand per window */
+    public long[] getPlusStrandCounts() {
+        return plusStrandCounts;
+    }
+
+    /**
+     * @param window
+     *            the index of the window
+     * @return the fraction of hits on the plus strand, {@link Double#NaN} for empty windows
+     */
+    public double getStrandBalance(int window) {
+        return counts[window] == 0 ? Double.NaN : (double) plusStrandCounts[window] / counts[window];
+    }
+}
@@ -0,0 +1,189 @@
+package com.unister.semweb.biodrums.aggregate;
+
+import java.util.Arrays;
+
+import com.unister.semweb.biodrums.weigel.SNP;
+
+/**
+ * Statistics of {@link SNP}s in consecutive windows of equal size on one sequence: the number of SNPs, transitions and
+ * transversions per window and the number of SNPs per ecotype over all windows. All statistics are stored in
+ * primitive arrays.
+ * 
+ * @author Martin Nettling
+ */
+public class SNPWindowStatistics {
+    /* classes of mutations */
+    static final int OTHER = 0;
+    static final int TRANSITION = 1;
+    static final int TRANSVERSION = 2;
+
+    private final byte sequenceId;
+    private final int start;
+    private final int windowSize;
+
+    private final long[] counts;
+    private final long[] transitions;
+    private final long[] transversions;
+
+    /** indexed by the ecotype id, grows with the largest seen id */
+    private long[] ecotypeCounts = new long[0];
+
+    /**
+     * Creates empty statistics.
+     * 
+     * @param sequenceId
+     *            the sequence
+     * @param start
+     *            the first position of the first window
+     * @param windowSize
+     *            the number of positions per window
+     * @param numberOfWindows
+     *            the number of windows
+     */
+    public SNPWindowStatistics(byte sequenceId, int start, int windowSize, int numberOfWindows) {
+        this.sequenceId = sequenceId;
+        this.start = start;
+        this.windowSize = windowSize;
+        this.counts = new long[numberOfWindows];
+        this.transitions = new long[numberOfWindows];
+        this.transversions = new long[numberOfWindows];
+    }
+
+    /**
+     * Adds one SNP.
+     * 
+     * @param window
+     *            the window of the SNP
+     * @param ecotype
+     *            the ecotype of the SNP
+     * @param from
+     *            the base in the reference genome
+     * @param to
+     *            the base in the mapped genome
+     */
+    void add(int window, char ecotype, byte from, byte to) {
+        counts[window]++;
+        int mutation = classify(from, to);
+        if (mutation == TRANSITION) {
+            transitions[window]++;
+        } else if (mutation == TRANSVERSION) {
+            transversions[window]++;
+        }
+        if (ecotype >= ecotypeCounts.length) {
+            ecotypeCounts = Arrays.copyOf(ecotypeCounts, Math.max(ecotype + 1, 2 * ecotypeCounts.length));
+        }
+        ecotypeCounts[ecotype]++;
+    }
+
+    /**
+     * Adds the statistics of the given instance, which must have the same windows.
+     * 
+     * @param other
+     *            the statistics to add
+     */
+    void merge(SNPWindowStatistics other) {
+        for (int window = 0; window < counts.length; window++) {
+            counts[window] += other.counts[window];
+            transitions[window] += other.transitions[window];
+            transversions[window] += other.transversions[window];
+        }
+        if (other.ecotypeCounts.length > ecotypeCounts.length) {
+            ecotypeCounts = Arrays.copyOf(ecotypeCounts, other.ecotypeCounts.length);
+        }
+        for (int ecotype = 0; ecotype < other.ecotypeCounts.length; ecotype++) {
+            ecotypeCounts[ecotype] += other.ecotypeCounts[ecotype];
+        }
+    }
+
+    /**
+     * Classifies a mutation. Transitions exchange two purines (A, G) or two pyrimidines (C, T), transversions exchange
+     * a purine and a pyrimidine.
+     * 
+     * @return {@link #TRANSITION}, {@link #TRANSVERSION} or {@link #OTHER} for unknown bases
+     */
+    static int classify(byte from, byte to) {
+        int fromClass = baseClass(from);
+        int toClass = baseClass(to);
+        if (fromClass == 0 || toClass == 0 || Character.toUpperCase(from) == Character.toUpperCase(to)) {
+            return OTHER;
+        }
+        return fromClass == toClass ? TRANSITION : TRANSVERSION;
+    }
+
+    /** @return 1 for purines, 2 for pyrimidines, 0 otherwise */
+    private static int baseClass(byte base) {
+        switch (base) {
+        case 'A':
+        case 'a':
+        case 'G':
+        case 'g':
+            return 1;
+        case 'C':
+        case 'c':
+        case 'T':
+        case 't':
+            return 2;
+        default:
+            return 0;
+        }
+    }
+
+    /** @return the sequence */
+    public byte getSequenceId() {
+        return sequenceId;
+    }
+
+    /** @return the first position of the first window */
+    public int getStart() {
+        return start;
+    }
+
+    /** @return the number of positions per window */
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    /** @return the number of windows */
+    public int getNumberOfWindows() {
+        return counts.length;
+    }
+
+    /** @return the number of SNPs per window */
+    public long[] getCounts() {
+        return counts;
+    }
+
+    /** @return the number of transitions per window */
+    public long[] getTransitions() {
+        return transitions;
+    }
+
+    /** @return the number of transversions per window */
+    public long[] getTransversions() {
+        return transversions;
+    }
+
+    /** @return the number of SNPs per ecotype, the index of the array is the ecotype id */
+    public long[] getEcotypeCounts() {
+        return ecotypeCounts;
+    }
+
+    /**
+     * @param window
+     *            the index of the window
+     * @return the transition/transversion ratio of the window, {@link Double#NaN} if there is no transversion
+     */
+    public double getTransitionTransversionRatio(int window) {
+        return transversions[window] == 0 ? Double.NaN : (double) transitions[window] / transversions[window];
+    }
+
+    /** @return the transition/transversion ratio of all windows, {@link Double#NaN} if there is no transversion */
+    public double getTransitionTransversionRatio() {
+        long sumTransitions = 0, sumTransversions = 0;
+        for (int window = 0; window < counts.length; window++) {
+            sumTransitions += transitions[window];
+            sumTransversions += transversions[window];
+        }
+        return sumTransversions == 0 ? Double.NaN : (double) sumTransitions / sumTransversions;
+    }
+}
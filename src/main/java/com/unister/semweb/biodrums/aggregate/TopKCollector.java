@@ -0,0 +1,155 @@
+package com.unister.semweb.biodrums.aggregate;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Keeps the <code>k</code> serialized records with the lowest scores, e.g. the best HERV hits by e-value. The
+ * records are copied into one preallocated array and organized in a bounded max-heap, so a record, which is worse
+ * than the k-th best record, is rejected after one comparison and memory stays O(k).
+ * 
+ * @author Martin Nettling
+ */
+public class TopKCollector {
+    private final int k;
+    private final int elementSize;
+
+    /** the records, slot i occupies the bytes <code>[i * elementSize, (i + 1) * elementSize)</code> */
+    private final byte[] records;
+
+    /** the score of each slot */
+    private final double[] scores;
+
+    /** the slots as max-heap on their scores, the worst kept record is the root */
+    private final int[] heap;
+
+    private int size;
+
+    /**
+     * @param k
+     *            the number of records to keep
+     * @param elementSize
+     *            the size of one record
+     */
+    public TopKCollector(int k, int elementSize) {
+        this.k = k;
+        this.elementSize = elementSize;
+        this.records = new byte[k * elementSize];
+        this.scores = new double[k];
+        this.heap = new int[k];
+    }
+
+    /**
+     * Offers a record. It is kept, if less than k records are kept or its score is lower than the worst kept score.
+     * 
+     * @param score
+     *            the score of the record
+     * @param source
+     *            the buffer containing the record
+     * @param offset
+     *            the absolute offset of the record
+     * @return <code>true</code> if the record was kept
+     */
+    public boolean offer(double score, ByteBuffer source, int offset) {
+        int slot;
+        if (size < k) {
+            slot = size;
+            heap[size] = slot;
+            scores[slot] = score;
+            siftUp(size++);
+        } else if (k > 0 && score < scores[heap[0]]) {
+            slot = heap[0];
+            scores[slot] = score;
+            siftDown(0);
+        } else {
+            return false;
+        }
+        int base = slot * elementSize;
+        for (int i = 0; i < elementSize; i++) {
+            records[base + i] = source.get(offset + i);
+        }
+        return true;
+    }
+
+    /**
+     * Offers all records kept by another collector.
+     * 
+     * @param other
+     *            the collector to merge, must have the same element size
+     */
+    public void merge(TopKCollector other) {
+        ByteBuffer otherRecords = ByteBuffer.wrap(other.records);
+        for (int i = 0; i < other.size; i++) {
+            int slot = other.heap[i];
+            offer(other.scores[slot], otherRecords, slot * elementSize);
+        }
+    }
+
+    /** @return the number of kept records */
+    public int size() {
+        return size;
+    }
+
+    /** @return the worst kept score, {@link Double#POSITIVE_INFINITY} if less than k records are kept */
+    public double getThreshold() {
+        return size < k ? Double.POSITIVE_INFINITY : scores[heap[0]];
+    }
+
+    /**
+     * Returns the kept records, ordered by ascending score. The n-th record starts at the absolute offset
+     * <code>n * elementSize</code>.
+     * 
+     * @return the kept records
+     */
+    public ByteBuffer getSortedRecords() {
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = heap[i];
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Double.compare(scores[a], scores[b]);
+            }
+        });
+        ByteBuffer sorted = ByteBuffer.allocate(size * elementSize);
+        for (int slot : order) {
+            sorted.put(records, slot * elementSize, elementSize);
+        }
+        sorted.flip();
+        return sorted;
+    }
+
+    private void siftUp(int position) {
+        int slot = heap[position];
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (scores[heap[parent]] >= scores[slot]) {
+                break;
+            }
+            heap[position] = heap[parent];
+            position = parent;
+        }
+        heap[position] = slot;
+    }
+
+    private void siftDown(int position) {
+        int slot = heap[position];
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && scores[heap[child + 1]] > scores[heap[child]]) {
+                child++;
+            }
+            if (scores[heap[child]] <= scores[slot]) {
+                break;
+            }
+            heap[position] = heap[child];
+            position = child;
+        }
+        heap[position] = slot;
+    }
+}
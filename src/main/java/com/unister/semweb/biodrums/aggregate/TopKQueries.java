@@ -0,0 +1,147 @@
+package com.unister.semweb.biodrums.aggregate;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.unister.semweb.biodrums.herv.HERV;
+import com.unister.semweb.biodrums.scan.BucketFunction;
+import com.unister.semweb.biodrums.scan.BucketScanner;
+import com.unister.semweb.biodrums.scan.ParallelBucketScan;
+import com.unister.semweb.biodrums.scan.RecordVisitor;
+
+/**
+ * Finds the best {@link HERV} hits, i.e. the hits with the lowest e-values, in a range of a chromosome without
+ * materializing the range. Each bucket is scanned in parallel into bounded {@link TopKCollector}s, whose partial
+ * results are merged afterwards. The e-values are compared directly on the serialized records, so memory stays
+ * O(k * groups).
+ * 
+ * <pre>
+ * // the 100 best hits in the first 10 Mb of chromosome 1
+ * List&lt;HERV&gt; best = TopKQueries.bestHERVs(scan, (byte) 1, 0, 10000000, 100);
+ * </pre>
+ * 
+ * @author Martin Nettling
+ */
+public class TopKQueries {
+
+    private TopKQueries() {
+    }
+
+    /**
+     * Finds the <code>k</code> HERVs with the lowest e-values starting in <code>[start, end]</code>.
+     * 
+     * @param scan
+     *            the parallel scan over the HERV-table
+     * @param chromosome
+     *            the chromosome
+     * @param start
+     *            the first position of the range
+     * @param end
+     *            the last position of the range
+     * @param k
+     *            the number of hits
+     * @return the hits, ordered by ascending e-value
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public static List<HERV> bestHERVs(ParallelBucketScan<HERV> scan, byte chromosome, int start, int end,
+            final int k) throws IOException, InterruptedException {
+        List<TopKCollector> partials = scan.map(HERV.lowerKey(chromosome, start), HERV.upperKey(chromosome, end),
+                new BucketFunction<HERV, TopKCollector>() {
+                    @Override
+                    public TopKCollector apply(BucketScanner<HERV> scanner, int bucketId, byte[] lowerKey,
+                            byte[] upperKey) throws Exception {
+                        final TopKCollector collector = new TopKCollector(k, HERV.ELEMENT_SIZE);
+                        scanner.scanBucket(bucketId, lowerKey, upperKey, new RecordVisitor() {
+                            @Override
+                            public boolean visit(ByteBuffer records, int offset) {
+                                collector.offer(HERV.getEValue(records, offset), records, offset);
+                                return true;
+                            }
+                        });
+                        return collector;
+                    }
+                });
+        TopKCollector result = new TopKCollector(k, HERV.ELEMENT_SIZE);
+        for (TopKCollector partial : partials) {
+            result.merge(partial);
+        }
+        return decode(result);
+    }
+
+    /**
+     * Finds for each HERV id the <code>k</code> HERVs with the lowest e-values starting in <code>[start, end]</code>.
+     * 
+     * @param scan
+     *            the parallel scan over the HERV-table
+     * @param chromosome
+     *            the chromosome
+     * @param start
+     *            the first position of the range
+     * @param end
+     *            the last position of the range
+     * @param k
+     *            the number of hits per HERV id
+     * @return the hits of each HERV id, ordered by ascending e-value
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public static Map<Character, List<HERV>> bestHERVsPerId(ParallelBucketScan<HERV> scan, byte chromosome,
+            int start, int end, final int k) throws IOException, InterruptedException {
+        List<Map<Character, TopKCollector>> partials = scan.map(HERV.lowerKey(chromosome, start),
+                HERV.upperKey(chromosome, end), new BucketFunction<HERV, Map<Character, TopKCollector>>() {
+                    @Override
+                    public Map<Character, TopKCollector> apply(BucketScanner<HERV> scanner, int bucketId,
+                            byte[] lowerKey, byte[] upperKey) throws Exception {
+                        // only the ids occurring in the bucket get a collector
+                        final Map<Character, TopKCollector> collectors = new HashMap<Character, TopKCollector>();
+                        scanner.scanBucket(bucketId, lowerKey, upperKey, new RecordVisitor() {
+                            @Override
+                            public boolean visit(ByteBuffer records, int offset) {
+                                Character id = HERV.getIdHERV(records, offset);
+                                TopKCollector collector = collectors.get(id);
+                                if (collector == null) {
+                                    collector = new TopKCollector(k, HERV.ELEMENT_SIZE);
+                                    collectors.put(id, collector);
+                                }
+                                collector.offer(HERV.getEValue(records, offset), records, offset);
+                                return true;
+                            }
+                        });
+                        return collectors;
+                    }
+                });
+        Map<Character, TopKCollector> merged = new TreeMap<Character, TopKCollector>();
+        for (Map<Character, TopKCollector> partial : partials) {
+            for (Map.Entry<Character, TopKCollector> entry : partial.entrySet()) {
+                TopKCollector collector = merged.get(entry.getKey());
+                if (collector == null) {
+                    merged.put(entry.getKey(), entry.getValue());
+                } else {
+                    collector.merge(entry.getValue());
+                }
+            }
+        }
+        Map<Character, List<HERV>> result = new TreeMap<Character, List<HERV>>();
+        for (Map.Entry<Character, TopKCollector> entry : merged.entrySet()) {
+            result.put(entry.getKey(), decode(entry.getValue()));
+        }
+        return result;
+    }
+
+    private static List<HERV> decode(TopKCollector collector) {
+        ByteBuffer records = collector.getSortedRecords();
+        List<HERV> result = new ArrayList<HERV>(collector.size());
+        byte[] record = new byte[HERV.ELEMENT_SIZE];
+        while (records.hasRemaining()) {
+            records.get(record);
+            result.add(new HERV().fromByteBuffer(ByteBuffer.wrap(record)));
+        }
+        return result;
+    }
+}
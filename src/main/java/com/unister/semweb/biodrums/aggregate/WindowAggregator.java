@@ -0,0 +1,132 @@
+package com.unister.semweb.biodrums.aggregate;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import com.unister.semweb.biodrums.herv.HERV;
+import com.unister.semweb.biodrums.scan.BucketFunction;
+import com.unister.semweb.biodrums.scan.BucketScanner;
+import com.unister.semweb.biodrums.scan.ParallelBucketScan;
+import com.unister.semweb.biodrums.scan.RecordVisitor;
+import com.unister.semweb.biodrums.weigel.SNP;
+
+/**
+ * Computes windowed statistics over a range of a chromosome while the buckets are scanned. The fields are read directly
+ * from the serialized records, no objects are created per record. The buckets of the range are aggregated in parallel
+ * by a {@link ParallelBucketScan}, the partial statistics of the buckets are merged afterwards.
+ * 
+ * <pre>
+ * // HERV hit counts per 100 kb on chromosome 1
+ * HERVWindowStatistics stats = WindowAggregator.aggregateHERVs(scan, (byte) 1, 0, HERV.HUMAN_CHROMOSOME_LENGTHS[0],
+ *         100000);
+ * long[] counts = stats.getCounts();
+ * </pre>
+ * 
+ * @author Martin Nettling
+ */
+public class WindowAggregator {
+
+    private WindowAggregator() {
+    }
+
+    /**
+     * Aggregates all {@link HERV}s starting in <code>[start, end]</code> on the given chromosome.
+     * 
+     * @param scan
+     *            the parallel scan over the HERV-table
+     * @param chromosome
+     *            the chromosome
+     * @param start
+     *            the first position of the range
+     * @param end
+     *            the last position of the range
+     * @param windowSize
+     *            the number of positions per window
+     * @return the statistics per window
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public static HERVWindowStatistics aggregateHERVs(ParallelBucketScan<HERV> scan, final byte chromosome,
+            final int start, int end, final int windowSize) throws IOException, InterruptedException {
+        final int numberOfWindows = numberOfWindows(start, end, windowSize);
+        List<HERVWindowStatistics> partials = scan.map(HERV.lowerKey(chromosome, start),
+                HERV.upperKey(chromosome, end), new BucketFunction<HERV, HERVWindowStatistics>() {
+                    @Override
+                    public HERVWindowStatistics apply(BucketScanner<HERV> scanner, int bucketId, byte[] lowerKey,
+                            byte[] upperKey) throws Exception {
+                        final HERVWindowStatistics statistics = new HERVWindowStatistics(chromosome, start,
+                                windowSize, numberOfWindows);
+                        scanner.scanBucket(bucketId, lowerKey, upperKey, new RecordVisitor() {
+                            @Override
+                            public boolean visit(ByteBuffer records, int offset) {
+                                int window = (HERV.getStartPositionChromosome(records, offset) - start) / windowSize;
+                                statistics.add(window, HERV.getEValue(records, offset),
+                                        HERV.getStrandOnChromosome(records, offset) != 0);
+                                return true;
+                            }
+                        });
+                        return statistics;
+                    }
+                });
+        HERVWindowStatistics result = new HERVWindowStatistics(chromosome, start, windowSize, numberOfWindows);
+        for (HERVWindowStatistics partial : partials) {
+            result.merge(partial);
+        }
+        return result;
+    }
+
+    /**
+     * Aggregates all {@link SNP}s in <code>[start, end]</code> on the given sequence.
+     * 
+     * @param scan
+     *            the parallel scan over the SNP-table
+     * @param sequenceId
+     *            the sequence
+     * @param start
+     *            the first position of the range
+     * @param end
+     *            the last position of the range
+     * @param windowSize
+     *            the number of positions per window
+     * @return the statistics per window
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public static SNPWindowStatistics aggregateSNPs(ParallelBucketScan<SNP> scan, final byte sequenceId,
+            final int start, int end, final int windowSize) throws IOException, InterruptedException {
+        final int numberOfWindows = numberOfWindows(start, end, windowSize);
+        List<SNPWindowStatistics> partials = scan.map(SNP.lowerKey(sequenceId, start), SNP.upperKey(sequenceId, end),
+                new BucketFunction<SNP, SNPWindowStatistics>() {
+                    @Override
+                    public SNPWindowStatistics apply(BucketScanner<SNP> scanner, int bucketId, byte[] lowerKey,
+                            byte[] upperKey) throws Exception {
+                        final SNPWindowStatistics statistics = new SNPWindowStatistics(sequenceId, start, windowSize,
+                                numberOfWindows);
+                        scanner.scanBucket(bucketId, lowerKey, upperKey, new RecordVisitor() {
+                            @Override
+                            public boolean visit(ByteBuffer records, int offset) {
+                                int window = (SNP.getBasePosition(records, offset) - start) / windowSize;
+                                statistics.add(window, SNP.getEcotypeId(records, offset),
+                                        SNP.getFrom(records, offset), SNP.getTo(records, offset));
+                                return true;
+                            }
+                        });
+                        return statistics;
+                    }
+                });
+        SNPWindowStatistics result = new SNPWindowStatistics(sequenceId, start, windowSize, numberOfWindows);
+        for (SNPWindowStatistics partial : partials) {
+            result.merge(partial);
+        }
+        return result;
+    }
+
+    private static int numberOfWindows(int start, int end, int windowSize) {
+        if (end < start || windowSize <= 0) {
+            throw new IllegalArgumentException("Invalid windows: start=" + start + ", end=" + end + ", windowSize="
+                    + windowSize);
+        }
+        return (int) (((long) end - start) / windowSize + 1);
+    }
+}
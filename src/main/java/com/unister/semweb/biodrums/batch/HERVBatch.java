@@ -0,0 +1,181 @@
+package com.unister.semweb.biodrums.batch;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import com.unister.semweb.biodrums.herv.HERV;
+import com.unister.semweb.biodrums.scan.RecordVisitor;
+
+/**
+ * A columnar batch of {@link HERV}s. Each field is stored in its own primitive array, so a HERV needs 25 bytes of
+ * heap instead of more than 100 bytes for an object with separate key- and value-arrays, and loops over one field run
+ * over contiguous memory. As {@link RecordVisitor} the batch is filled directly by range scans, e.g.
+ * 
+ * <pre>
+ * HERVBatch batch = new HERVBatch(1024);
+ * mappedTable.scan(HERV.lowerKey(chr, start), HERV.upperKey(chr, end), batch);
+ * double[] eValues = batch.getEValues();
+ * for (int i = 0; i &lt; batch.size(); i++) {
+ *     ...
+ * }
+ * </pre>
+ * 
+ * The arrays returned by the getters are shared with the batch and may be longer than {@link #size()}.
+ * 
+ * @author Martin Nettling
+ */
+public class HERVBatch implements RecordVisitor {
+    private byte[] chromosomes;
+    private int[] starts;
+    private int[] ends;
+    private char[] startsHERV;
+    private char[] endsHERV;
+    private char[] ids;
+    private byte[] strands;
+    private double[] eValues;
+    private int size;
+
+    /**
+     * Creates an empty batch.
+     * 
+     * @param initialCapacity
+     *            the number of HERVs the batch can hold before it grows
+     */
+    public HERVBatch(int initialCapacity) {
+        resize(Math.max(1, initialCapacity));
+    }
+
+    private void resize(int capacity) {
+        chromosomes = chromosomes == null ? new byte[capacity] : Arrays.copyOf(chromosomes, capacity);
+        starts = starts == null ? new int[capacity] : Arrays.copyOf(starts, capacity);
+        ends = ends == null ? new int[capacity] : Arrays.copyOf(ends, capacity);
+        startsHERV = startsHERV == null ? new char[capacity] : Arrays.copyOf(startsHERV, capacity);
+        endsHERV = endsHERV == null ? new char[capacity] : Arrays.copyOf(endsHERV, capacity);
+        ids = ids == null ? new char[capacity] : Arrays.copyOf(ids, capacity);
+        strands = strands == null ? new byte[capacity] : Arrays.copyOf(strands, capacity);
+        eValues = eValues == null ? new double[capacity] : Arrays.copyOf(eValues, capacity);
+    }
+
+    private int next() {
+        if (size == starts.length) {
+            resize((int) Math.min(Integer.MAX_VALUE - 8, 2L * size));
+        }
+        return size++;
+    }
+
+    @Override
+    public boolean visit(ByteBuffer records, int offset) {
+        int i = next();
+        chromosomes[i] = HERV.getChromosome(records, offset);
+        starts[i] = HERV.getStartPositionChromosome(records, offset);
+        ends[i] = HERV.getEndPositionChromosome(records, offset);
+        startsHERV[i] = HERV.getStartHERV(records, offset);
+        endsHERV[i] = HERV.getEndHERV(records, offset);
+        ids[i] = HERV.getIdHERV(records, offset);
+        strands[i] = HERV.getStrandOnChromosome(records, offset);
+        eValues[i] = HERV.getEValue(records, offset);
+        return true;
+    }
+
+    /**
+     * Appends a HERV.
+     * 
+     * @param herv
+     *            the HERV to append
+     */
+    public void add(HERV herv) {
+        int i = next();
+        chromosomes[i] = herv.getChromosome();
+        starts[i] = herv.getStartPositionChromosome();
+        ends[i] = herv.getEndPositionChromosome();
+        startsHERV[i] = herv.getStartHERV();
+        endsHERV[i] = herv.getEndHERV();
+        ids[i] = herv.getIdHERV();
+        strands[i] = herv.getStrandOnChromosome();
+        eValues[i] = herv.getEValue();
+    }
+
+    /**
+     * Appends all HERVs, e.g. the result of a select or the elements of an iterator.
+     * 
+     * @param hervs
+     *            the HERVs to append
+     */
+    public void addAll(Iterable<HERV> hervs) {
+        for (HERV herv : hervs) {
+            add(herv);
+        }
+    }
+
+    /**
+     * Instantiates the HERV at the given index.
+     * 
+     * @param index
+     *            the index in this batch
+     * @return the HERV
+     */
+    public HERV get(int index) {
+        HERV herv = new HERV(chromosomes[index], starts[index], ends[index], startsHERV[index], endsHERV[index],
+                ids[index]);
+        herv.setStrandOnChromosome(strands[index]);
+        herv.setEValue(eValues[index]);
+        return herv;
+    }
+
+    /** @return the number of HERVs in this batch */
+    public int size() {
+        return size;
+    }
+
+    /** Removes all HERVs, the arrays are reused. */
+    public void clear() {
+        size = 0;
+    }
+
+    /** Shrinks the arrays to the number of HERVs. */
+    public void trim() {
+        if (starts.length != size) {
+            resize(Math.max(1, size));
+        }
+    }
+
+    /** @return the chromosomes */
+    public byte[] getChromosomes() {
+        return chromosomes;
+    }
+
+    /** @return the start positions on the chromosomes */
+    public int[] getStarts() {
+        return starts;
+    }
+
+    /** @return the end positions on the chromosomes */
+    public int[] getEnds() {
+        return ends;
+    }
+
+    /** @return the start positions of the mappings in the HERVs */
+    public char[] getStartsHERV() {
+        return startsHERV;
+    }
+
+    /** @return the end positions of the mappings in the HERVs */
+    public char[] getEndsHERV() {
+        return endsHERV;
+    }
+
+    /** @return the ids of the HERVs */
+    public char[] getIds() {
+        return ids;
+    }
+
+    /** @return the strands on the chromosomes, 1 for the plus strand */
+    public byte[] getStrands() {
+        return strands;
+    }
+
+    /** @return the e-values */
+    public double[] getEValues() {
+        return eValues;
+    }
+}
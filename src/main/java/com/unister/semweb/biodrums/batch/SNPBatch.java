@@ -0,0 +1,143 @@
+package com.unister.semweb.biodrums.batch;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import com.unister.semweb.biodrums.scan.RecordVisitor;
+import com.unister.semweb.biodrums.weigel.SNP;
+
+/**
+ * A columnar batch of {@link SNP}s. Each field is stored in its own primitive array, so a SNP needs 9 bytes of heap
+ * instead of about 80 bytes for an object with a separate key-array. As {@link RecordVisitor} the batch is filled
+ * directly by range scans. The arrays returned by the getters are shared with the batch and may be longer than
+ * {@link #size()}.
+ * 
+ * @author Martin Nettling
+ */
+public class SNPBatch implements RecordVisitor {
+    private byte[] sequenceIds;
+    private int[] positions;
+    private char[] ecotypes;
+    private byte[] from;
+    private byte[] to;
+    private int size;
+
+    /**
+     * Creates an empty batch.
+     * 
+     * @param initialCapacity
+     *            the number of SNPs the batch can hold before it grows
+     */
+    public SNPBatch(int initialCapacity) {
+        resize(Math.max(1, initialCapacity));
+    }
+
+    private void resize(int capacity) {
+        sequenceIds = sequenceIds == null ? new byte[capacity] : Arrays.copyOf(sequenceIds, capacity);
+        positions = positions == null ? new int[capacity] : Arrays.copyOf(positions, capacity);
+        ecotypes = ecotypes == null ? new char[capacity] : Arrays.copyOf(ecotypes, capacity);
+        from = from == null ? new byte[capacity] : Arrays.copyOf(from, capacity);
+        to = to == null ? new byte[capacity] : Arrays.copyOf(to, capacity);
+    }
+
+    private int next() {
+        if (size == positions.length) {
+            resize((int) Math.min(Integer.MAX_VALUE - 8, 2L * size));
+        }
+        return size++;
+    }
+
+    @Override
+    public boolean visit(ByteBuffer records, int offset) {
+        int i = next();
+        sequenceIds[i] = SNP.getSequenceId(records, offset);
+        positions[i] = SNP.getBasePosition(records, offset);
+        ecotypes[i] = SNP.getEcotypeId(records, offset);
+        from[i] = SNP.getFrom(records, offset);
+        to[i] = SNP.getTo(records, offset);
+        return true;
+    }
+
+    /**
+     * Appends a SNP.
+     * 
+     * @param snp
+     *            the SNP to append
+     */
+    public void add(SNP snp) {
+        int i = next();
+        sequenceIds[i] = snp.getSequenceId();
+        positions[i] = snp.getBasePosition();
+        ecotypes[i] = snp.getEcotypeId();
+        from[i] = snp.getFrom();
+        to[i] = snp.getTo();
+    }
+
+    /**
+     * Appends all SNPs, e.g. the result of a select or the elements of an iterator.
+     * 
+     * @param snps
+     *            the SNPs to append
+     */
+    public void addAll(Iterable<SNP> snps) {
+        for (SNP snp : snps) {
+            add(snp);
+        }
+    }
+
+    /**
+     * Instantiates the SNP at the given index.
+     * 
+     * @param index
+     *            the index in this batch
+     * @return the SNP
+     */
+    public SNP get(int index) {
+        SNP snp = new SNP(sequenceIds[index], positions[index], ecotypes[index]);
+        snp.setFrom(from[index]);
+        snp.setTo(to[index]);
+        return snp;
+    }
+
+    /** @return the number of SNPs in this batch */
+    public int size() {
+        return size;
+    }
+
+    /** Removes all SNPs, the arrays are reused. */
+    public void clear() {
+        size = 0;
+    }
+
+    /** Shrinks the arrays to the number of SNPs. */
+    public void trim() {
+        if (positions.length != size) {
+            resize(Math.max(1, size));
+        }
+    }
+
+    /** @return the sequence ids */
+    public byte[] getSequenceIds() {
+        return sequenceIds;
+    }
+
+    /** @return the positions on the sequences */
+    public int[] getPositions() {
+        return positions;
+    }
+
+    /** @return the ids of the ecotypes */
+    public char[] getEcotypes() {
+        return ecotypes;
+    }
+
+    /** @return the bases in the reference genome */
+    public byte[] getFrom() {
+        return from;
+    }
+
+    /** @return the bases in the mapped genome */
+    public byte[] getTo() {
+        return to;
+    }
+}
@@ -0,0 +1,185 @@
+package com.unister.semweb.biodrums.bulk;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.unister.semweb.biodrums.storage.BucketFiles;
+import com.unister.semweb.drums.DRUMSParameterSet;
+import com.unister.semweb.drums.api.DRUMS;
+import com.unister.semweb.drums.api.DRUMSException;
+import com.unister.semweb.drums.api.DRUMSInstantiator;
+import com.unister.semweb.drums.bucket.hashfunction.RangeHashFunction;
+import com.unister.semweb.drums.file.AbstractHeaderFile.AccessMode;
+import com.unister.semweb.drums.file.FileLockException;
+import com.unister.semweb.drums.file.HeaderIndexFile;
+import com.unister.semweb.drums.storable.AbstractKVStorable;
+
+/**
+ * Loads records into a new DRUMS-table without using the bucket container and the synchronizers of {@link DRUMS}. All
+ * records are sorted by an {@link ExternalSorter} under a given memory budget. Afterwards each record is routed to its
+ * bucket with the {@link RangeHashFunction} of the table and the bucket files are written sequentially. Because the
+ * {@link RangeHashFunction} preserves the order of the keys, the sorted stream fills one bucket after another.<br>
+ * <br>
+ * The resulting table can be opened with {@link DRUMSInstantiator#openTable(DRUMS.AccessMode, DRUMSParameterSet)}. The
+ * loader is meant for the initial load of write-once data, the table must not be opened while loading.
+ * 
+ * <pre>
+ * BulkLoader&lt;HERV&gt; loader = new BulkLoader&lt;HERV&gt;(HERV.createHashFunction(), globalParameters, new HERV(),
+ *         512 * 1024 * 1024, new File(&quot;/tmp&quot;));
+ * HERV herv;
+ * while ((herv = parser.readNext()) != null) {
+ *     loader.add(herv);
+ * }
+ * loader.load();
+ * </pre>
+ * 
+ * @author Martin Nettling
+ * 
+ * @param <Data>
+ *            the type of the records to load
+ */
+public class BulkLoader<Data extends AbstractKVStorable> {
+    private static final Logger log = LoggerFactory.getLogger(BulkLoader.class);
+
+    /** the size of the buffer used to write the bucket files */
+    private static final int WRITE_BUFFER_SIZE = 4 * 1024 * 1024;
+
+    private final RangeHashFunction hashFunction;
+
+    private final DRUMSParameterSet<Data> gp;
+
+    private final int elementSize;
+
+    private final int keySize;
+
+    private final ExternalSorter sorter;
+
+    /** used to serialize single records */
+    private final byte[] record;
+
+    /**
+     * Creates a new loader.
+     * 
+     * @param hashFunction
+     *            the hash function of the new table
+     * @param gp
+     *            the parameters of the new table, {@link DRUMSParameterSet#DATABASE_DIRECTORY} must not contain a table
+     * @param prototype
+     *            a prototype of the records to load
+     * @param memoryBudget
+     *            the number of bytes to use for sorting
+     * @param tmpDirectory
+     *            the directory for temporary files, should be on another disk than the table
+     */
+    public BulkLoader(RangeHashFunction hashFunction, DRUMSParameterSet<Data> gp, Data prototype, long memoryBudget,
+            File tmpDirectory) {
+        this.hashFunction = hashFunction;
+        this.gp = gp;
+        this.elementSize = prototype.getSize();
+        this.keySize = prototype.getKey().length;
+        this.record = new byte[elementSize];
+        this.sorter = new ExternalSorter(elementSize, keySize, memoryBudget, tmpDirectory);
+    }
+
+    /**
+     * Adds the given records to the load.
+     * 
+     * @param toAdd
+     *            the records to add
+     * @throws IOException
+     */
+    public void add(Data... toAdd) throws IOException {
+        for (Data data : toAdd) {
+            ByteBuffer serialized = data.toByteBuffer();
+            serialized.rewind();
+            serialized.get(record);
+            sorter.add(record, 0);
+        }
+    }
+
+    /**
+     * Adds all serialized records between the position and the limit of the given buffer to the load.
+     * 
+     * @param records
+     *            a buffer containing whole records
+     * @throws IOException
+     */
+    public void add(ByteBuffer records) throws IOException {
+        sorter.add(records);
+    }
+
+    /**
+     * Creates the table and writes all added records to their bucket files. The loader can't be used afterwards.
+     * 
+     * @return the number of written records, each key is written only once
+     * @throws IOException
+     * @throws FileLockException
+     * @throws DRUMSException
+     * @throws InterruptedException
+     */
+    public long load() throws IOException, FileLockException, DRUMSException, InterruptedException {
+        long start = System.currentTimeMillis();
+        // creates the directory and stores the hash function
+        DRUMSInstantiator.createTable(hashFunction, gp).close();
+
+        SortedRecordIterator records = sorter.sort();
+        ByteBuffer writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE - WRITE_BUFFER_SIZE % elementSize);
+        byte[] key = new byte[keySize];
+        long written = 0;
+        int currentBucket = -1;
+        HeaderIndexFile<Data> file = null;
+        long offset = 0;
+        try {
+            while (records.next(record)) {
+                System.arraycopy(record, 0, key, 0, keySize);
+                int bucketId = hashFunction.getBucketId(key);
+                if (bucketId != currentBucket) {
+                    if (file != null) {
+                        offset = flush(file, writeBuffer, offset);
+                        finishBucket(file, currentBucket, offset);
+                    }
+                    file = BucketFiles.open(gp, hashFunction, bucketId, AccessMode.READ_WRITE);
+                    currentBucket = bucketId;
+                    offset = 0;
+                }
+                if (!writeBuffer.hasRemaining()) {
+                    offset = flush(file, writeBuffer, offset);
+                }
+                writeBuffer.put(record);
+                written++;
+            }
+            if (file != null) {
+                offset = flush(file, writeBuffer, offset);
+                finishBucket(file, currentBucket, offset);
+                file = null;
+            }
+        } finally {
+            if (file != null) {
+                file.close();
+            }
+            records.close();
+            sorter.close();
+        }
+        log.info("Loaded {} of {} records in {} ms", new Object[] { written, sorter.getNumberOfRecords(),
+                System.currentTimeMillis() - start });
+        return written;
+    }
+
+    /** writes the content of the buffer at the given offset and returns the new offset */
+    private long flush(HeaderIndexFile<Data> file, ByteBuffer writeBuffer, long offset) throws IOException {
+        writeBuffer.flip();
+        int bytes = writeBuffer.remaining();
+        file.write(offset, writeBuffer);
+        writeBuffer.clear();
+        return offset + bytes;
+    }
+
+    private void finishBucket(HeaderIndexFile<Data> file, int bucketId, long bytes) {
+        file.close();
+        log.debug("Wrote {} records to bucket {}", bytes / elementSize, bucketId);
+    }
+}
@@ -0,0 +1,206 @@
+package com.unister.semweb.biodrums.bulk;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.unister.semweb.biodrums.herv.HERV;
+import com.unister.semweb.biodrums.storage.RecordBuffers;
+import com.unister.semweb.biodrums.weigel.SNP;
+
+/**
+ * Sorts an arbitrary number of serialized fixed-size records by their keys under a given memory budget. Records are
+ * collected in one byte-array. If the array is full, its records are sorted and written to a temporary run file. When
+ * all records were added, {@link #sort()} merges all runs.<br>
+ * <br>
+ * The sort is stable. If a key was added several times, only the record added last is returned. This corresponds to
+ * the <code>merge</code>-implementations of {@link HERV} and {@link SNP}, where the newer record wins.
+ * 
+ * @author Martin Nettling
+ */
+public class ExternalSorter {
+    private static final Logger log = LoggerFactory.getLogger(ExternalSorter.class);
+
+    /** the size of the buffers used to write and read run files */
+    static final int RUN_BUFFER_SIZE = 1 << 20;
+
+    private final int elementSize;
+
+    private final int keySize;
+
+    private final File tmpDirectory;
+
+    /** contains the records of the current run */
+    private final byte[] buffer;
+
+    /** the maximal number of records in {@link #buffer} */
+    private final int capacity;
+
+    /** the number of records in {@link #buffer} */
+    private int size;
+
+    private final List<File> runs = new ArrayList<File>();
+
+    private long numberOfRecords;
+
+    /**
+     * Creates a new sorter.
+     * 
+     * @param elementSize
+     *            the size of one record in bytes
+     * @param keySize
+     *            the size of the key, which is the prefix of each record, in bytes
+     * @param memoryBudget
+     *            the number of bytes the sorter may use for one run
+     * @param tmpDirectory
+     *            the directory, where the run files are stored
+     */
+    public ExternalSorter(int elementSize, int keySize, long memoryBudget, File tmpDirectory) {
+        this.elementSize = elementSize;
+        this.keySize = keySize;
+        this.tmpDirectory = tmpDirectory;
+        // each record needs its bytes and two ints while the run is sorted
+        long records = memoryBudget / (elementSize + 8);
+        this.capacity = (int) Math.max(1, Math.min(records, Integer.MAX_VALUE / elementSize));
+        this.buffer = new byte[capacity * elementSize];
+    }
+
+    /**
+     * Adds one record.
+     * 
+     * @param record
+     *            the array containing the record
+     * @param offset
+     *            the offset of the record in the array
+     * @throws IOException
+     *             if the current run could not be written
+     */
+    public void add(byte[] record, int offset) throws IOException {
+        if (size == capacity) {
+            spill();
+        }
+        System.arraycopy(record, offset, buffer, size * elementSize, elementSize);
+        size++;
+        numberOfRecords++;
+    }
+
+    /**
+     * Adds all records between the position and the limit of the given buffer. Afterwards the position of the buffer
+     * equals its limit.
+     * 
+     * @param records
+     *            the buffer containing whole records
+     * @throws IOException
+     *             if the current run could not be written
+     */
+    public void add(ByteBuffer records) throws IOException {
+        if (records.remaining() % elementSize != 0) {
+            throw new IllegalArgumentException("The buffer does not contain whole records of " + elementSize
+                    + " bytes: " + records.remaining());
+        }
+        while (records.hasRemaining()) {
+            if (size == capacity) {
+                spill();
+            }
+            int count = Math.min(capacity - size, records.remaining() / elementSize);
+            records.get(buffer, size * elementSize, count * elementSize);
+            size += count;
+            numberOfRecords += count;
+        }
+    }
+
+    /** @return the number of added records, including duplicates */
+    public long getNumberOfRecords() {
+        return numberOfRecords;
+    }
+
+    /**
+     * Sorts all added records. No further records may be added afterwards.
+     * 
+     * @return an iterator over all records in key order, each key occurs only once
+     * @throws IOException
+     */
+    public SortedRecordIterator sort() throws IOException {
+        if (runs.isEmpty()) {
+            int[] order = sortBuffer();
+            return new SortedRecordIterator(buffer, order, size, elementSize, keySize);
+        }
+        if (size > 0) {
+            spill();
+        }
+        log.info("Merging {} runs with {} records", runs.size(), numberOfRecords);
+        return new SortedRecordIterator(runs, elementSize, keySize);
+    }
+
+    /** Sorts the current run and writes it to a new temporary file. */
+    private void spill() throws IOException {
+        int[] order = sortBuffer();
+        File run = File.createTempFile("biodrums-run-", ".tmp", tmpDirectory);
+        run.deleteOnExit();
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(run), RUN_BUFFER_SIZE);
+        try {
+            for (int i = 0; i < size; i++) {
+                out.write(buffer, order[i] * elementSize, elementSize);
+            }
+        } finally {
+            out.close();
+        }
+        runs.add(run);
+        log.debug("Wrote run {} with {} records to {}", new Object[] { runs.size(), size, run });
+        size = 0;
+    }
+
+    /** @return the indices of the records in {@link #buffer} in key order */
+    private int[] sortBuffer() {
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        mergeSort(order, new int[size], 0, size);
+        return order;
+    }
+
+    /** stable sort of the indices in <code>order[from, to)</code> by the keys of the referenced records */
+    private void mergeSort(int[] order, int[] tmp, int from, int to) {
+        if (to - from < 2) {
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        mergeSort(order, tmp, from, middle);
+        mergeSort(order, tmp, middle, to);
+        if (compare(order[middle - 1], order[middle]) <= 0) {
+            return;
+        }
+        System.arraycopy(order, from, tmp, from, to - from);
+        int left = from, right = middle;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < middle && compare(tmp[left], tmp[right]) <= 0)) {
+                order[i] = tmp[left++];
+            } else {
+                order[i] = tmp[right++];
+            }
+        }
+    }
+
+    private int compare(int a, int b) {
+        return RecordBuffers.compareKeys(buffer, a * elementSize, buffer, b * elementSize, keySize);
+    }
+
+    /** Deletes all temporary run files. */
+    public void close() {
+        for (File run : runs) {
+            if (!run.delete()) {
+                log.warn("Could not delete temporary file {}", run);
+            }
+        }
+        runs.clear();
+    }
+}
@@ -0,0 +1,201 @@
+package com.unister.semweb.biodrums.bulk;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.List;
+
+import com.unister.semweb.biodrums.storage.RecordBuffers;
+
+/**
+ * Iterates over the records sorted by an {@link ExternalSorter}. The records are either taken from the in-memory
+ * buffer of the sorter or merged from its run files. If a key occurs several times, only the last added record is
+ * returned.
+ * 
+ * @author Martin Nettling
+ */
+public class SortedRecordIterator {
+
+    private final int elementSize;
+
+    private final int keySize;
+
+    /* in-memory mode */
+    private byte[] buffer;
+    private int[] order;
+    private int size;
+    private int index;
+
+    /* merge mode */
+    private DataInputStream[] runs;
+    /** the current record of each run */
+    private byte[][] heads;
+    /** min-heap of run indices, ordered by the key of their head and by the run index */
+    private int[] heap;
+    private int heapSize;
+
+    /** the record which will be returned next, if no newer record with the same key follows */
+    private byte[] pending;
+    private boolean hasPending;
+    private byte[] lookahead;
+
+    /** creates an iterator over the records of an in-memory buffer */
+    SortedRecordIterator(byte[] buffer, int[] order, int size, int elementSize, int keySize) {
+        this.elementSize = elementSize;
+        this.keySize = keySize;
+        this.buffer = buffer;
+        this.order = order;
+        this.size = size;
+        init();
+    }
+
+    /** creates an iterator merging the given run files */
+    SortedRecordIterator(List<File> runFiles, int elementSize, int keySize) throws IOException {
+        this.elementSize = elementSize;
+        this.keySize = keySize;
+        int numberOfRuns = runFiles.size();
+        int bufferSize = Math.max(64 * 1024, ExternalSorter.RUN_BUFFER_SIZE / numberOfRuns);
+        this.runs = new DataInputStream[numberOfRuns];
+        this.heads = new byte[numberOfRuns][elementSize];
+        this.heap = new int[numberOfRuns];
+        for (int run = 0; run < numberOfRuns; run++) {
+            runs[run] = new DataInputStream(new BufferedInputStream(new FileInputStream(runFiles.get(run)),
+                    bufferSize));
+            if (readHead(run)) {
+                heap[heapSize++] = run;
+                siftUp(heapSize - 1);
+            }
+        }
+        init();
+    }
+
+    private void init() {
+        pending = new byte[elementSize];
+        lookahead = new byte[elementSize];
+    }
+
+    /**
+     * Copies the next record into the given array.
+     * 
+     * @param record
+     *            the array to fill, must have at least the size of one record
+     * @return <code>false</code> if there is no further record
+     * @throws IOException
+     */
+    public boolean next(byte[] record) throws IOException {
+        if (!hasPending) {
+            if (!nextWithDuplicates(pending)) {
+                return false;
+            }
+            hasPending = true;
+        }
+        while (true) {
+            if (!nextWithDuplicates(lookahead)) {
+                System.arraycopy(pending, 0, record, 0, elementSize);
+                hasPending = false;
+                return true;
+            }
+            boolean sameKey = RecordBuffers.compareKeys(pending, 0, lookahead, 0, keySize) == 0;
+            byte[] tmp = pending;
+            pending = lookahead;
+            lookahead = tmp;
+            if (!sameKey) {
+                // lookahead now holds the previous record, pending the first record of the next key
+                System.arraycopy(lookahead, 0, record, 0, elementSize);
+                return true;
+            }
+        }
+    }
+
+    /** reads the next record of the sorted stream, which may contain the same key several times */
+    private boolean nextWithDuplicates(byte[] record) throws IOException {
+        if (runs == null) {
+            if (index == size) {
+                return false;
+            }
+            System.arraycopy(buffer, order[index++] * elementSize, record, 0, elementSize);
+            return true;
+        }
+        if (heapSize == 0) {
+            return false;
+        }
+        int run = heap[0];
+        System.arraycopy(heads[run], 0, record, 0, elementSize);
+        if (readHead(run)) {
+            siftDown(0);
+        } else {
+            heap[0] = heap[--heapSize];
+            if (heapSize > 0) {
+                siftDown(0);
+            }
+        }
+        return true;
+    }
+
+    private boolean readHead(int run) throws IOException {
+        try {
+            runs[run].readFully(heads[run]);
+            return true;
+        } catch (EOFException ex) {
+            return false;
+        }
+    }
+
+    /** compares the heads of two runs, equal keys are ordered by the run, so older records come first */
+    private boolean less(int runA, int runB) {
+        int cmp = RecordBuffers.compareKeys(heads[runA], 0, heads[runB], 0, keySize);
+        return cmp < 0 || (cmp == 0 && runA < runB);
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (!less(heap[i], heap[parent])) {
+                break;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int smallest = i;
+            int left = 2 * i + 1, right = left + 1;
+            if (left < heapSize && less(heap[left], heap[smallest])) {
+                smallest = left;
+            }
+            if (right < heapSize && less(heap[right], heap[smallest])) {
+                smallest = right;
+            }
+            if (smallest == i) {
+                return;
+            }
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int tmp = heap[i];
+        heap[i] = heap[j];
+        heap[j] = tmp;
+    }
+
+    /**
+     * Closes all run files.
+     * 
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        if (runs != null) {
+            for (DataInputStream run : runs) {
+                run.close();
+            }
+        }
+        buffer = null;
+    }
+}
@@ -0,0 +1,261 @@
+package com.unister.semweb.biodrums.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.unister.semweb.biodrums.scan.BucketScanner;
+import com.unister.semweb.biodrums.scan.RecordBlock;
+import com.unister.semweb.biodrums.storage.BucketFiles;
+import com.unister.semweb.drums.DRUMSParameterSet;
+import com.unister.semweb.drums.api.DRUMS;
+import com.unister.semweb.drums.api.DRUMSException;
+import com.unister.semweb.drums.bucket.hashfunction.RangeHashFunction;
+import com.unister.semweb.drums.file.FileLockException;
+import com.unister.semweb.drums.storable.AbstractKVStorable;
+
+/**
+ * Answers range selects on a DRUMS-table from a {@link RangeQueryCache}. A miss is answered by a
+ * {@link BucketScanner} and its result is cached. Inserts through {@link #insertOrMerge(AbstractKVStorable...)}
+ * invalidate the entries overlapping the buckets of the inserted records, as determined by the
+ * {@link RangeHashFunction}. Because DRUMS writes the inserted records asynchronously, each entry additionally
+ * remembers the {@link BucketFiles#getStamp(File) stamps} of its bucket files and is discarded, when one of them
+ * changed. So also writes of other processes, e.g. a bulk load, are detected.<br>
+ * <br>
+ * The stamp of a bucket reads its header and index, so it is computed once per bucket and reused, as long as the
+ * length and the modification time of the file are unchanged. Only after the
+ * {@link #setVerifyInterval(long) verify interval} it is computed again, which detects rewrites of the same length
+ * within the resolution of the file system clock. A hit therefore only costs a <code>stat</code> per bucket.<br>
+ * <br>
+ * An instance is thread-safe, but the scans of cache misses are serialized.
+ * 
+ * @author Martin Nettling
+ * 
+ * @param <Data>
+ *            the type of the records stored in the table
+ */
+public class CachedTable<Data extends AbstractKVStorable> {
+    /** the default time in milliseconds, after which the stamp of an unchanged bucket file is computed again */
+    public static final long DEFAULT_VERIFY_INTERVAL = 10000;
+
+    private final String name;
+
+    private final DRUMSParameterSet<Data> gp;
+
+    private final DRUMS<Data> drums;
+
+    private final BucketScanner<Data> scanner;
+
+    private final RangeHashFunction hashFunction;
+
+    private final RangeQueryCache cache;
+
+    private final Data prototype;
+
+    private volatile long verifyInterval = DEFAULT_VERIFY_INTERVAL;
+
+    /** the last computed stamp of each bucket; guarded by itself */
+    private final Map<Integer, BucketStamp> bucketStamps = new HashMap<Integer, BucketStamp>();
+
+    /**
+     * Creates a cached view on the given table.
+     * 
+     * @param name
+     *            the name of the table, distinguishes the tables sharing one cache
+     * @param gp
+     *            the parameters of the table
+     * @param drums
+     *            the table to insert into, may be <code>null</code> for a read-only table
+     * @param hashFunction
+     *            the {@link RangeHashFunction} of the table
+     * @param prototype
+     *            a prototype of the stored records
+     * @param cache
+     *            the cache to use
+     */
+    public CachedTable(String name, DRUMSParameterSet<Data> gp, DRUMS<Data> drums, RangeHashFunction hashFunction,
+            Data prototype, RangeQueryCache cache) {
+        this.name = name;
+        this.gp = gp;
+        this.drums = drums;
+        this.hashFunction = hashFunction;
+        this.prototype = prototype;
+        this.cache = cache;
+        this.scanner = new BucketScanner<Data>(gp, hashFunction, prototype, BucketScanner.DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Sets the time, after which the stamp of a bucket file is computed again, even if its length and modification
+     * time are unchanged.
+     * 
+     * @param verifyInterval
+     *            the interval in milliseconds, {@link #DEFAULT_VERIFY_INTERVAL} by default, 0 to compute the stamps
+     *            on every lookup
+     */
+    public void setVerifyInterval(long verifyInterval) {
+        if (verifyInterval < 0) {
+            throw new IllegalArgumentException("The verify interval must not be negative: " + verifyInterval);
+        }
+        this.verifyInterval = verifyInterval;
+    }
+
+    /**
+     * Returns all records between the given keys in serialized form. The n-th record starts at
+     * <code>n * elementSize</code>.
+     * 
+     * @param lowerKey
+     *            the smallest key of the range, may be <code>null</code>
+     * @param upperKey
+     *            the largest key of the range, may be <code>null</code>
+     * @return a read-only buffer containing the records
+     * @throws IOException
+     * @throws FileLockException
+     */
+    public ByteBuffer getRange(byte[] lowerKey, byte[] upperKey) throws IOException, FileLockException {
+        int firstBucket = scanner.getFirstBucket(lowerKey);
+        int lastBucket = scanner.getLastBucket(upperKey);
+        ByteBuffer cached = getCurrent(cache.get(name, lowerKey, upperKey), firstBucket, lastBucket);
+        if (cached != null) {
+            return cached;
+        }
+        synchronized (scanner) {
+            // another thread may have cached the range, while this one waited for the scanner
+            cached = getCurrent(cache.peek(name, lowerKey, upperKey), firstBucket, lastBucket);
+            if (cached != null) {
+                return cached;
+            }
+            long generation = cache.getGeneration(name);
+            long[] stamps = getStamps(firstBucket, lastBucket);
+            RecordBlock block = new RecordBlock(scanner.getElementSize(), 1024);
+            scanner.scan(lowerKey, upperKey, block);
+            cache.put(name, lowerKey, upperKey, firstBucket, lastBucket, stamps, block, generation);
+            return block.asBuffer().asReadOnlyBuffer();
+        }
+    }
+
+    /** returns the records of the entry, if its bucket files were not modified; otherwise the entry is removed */
+    private ByteBuffer getCurrent(RangeQueryCache.Entry entry, int firstBucket, int lastBucket) throws IOException {
+        if (entry == null) {
+            return null;
+        }
+        if (entry.isCurrent(getStamps(firstBucket, lastBucket))) {
+            return entry.getRecords();
+        }
+        cache.remove(entry);
+        return null;
+    }
+
+    /**
+     * Returns all records between the given keys as objects.
+     * 
+     * @param lowerKey
+     *            the smallest key of the range
+     * @param upperKey
+     *            the largest key of the range
+     * @return the records of the range
+     * @throws IOException
+     * @throws FileLockException
+     */
+    @SuppressWarnings("unchecked")
+    public List<Data> select(byte[] lowerKey, byte[] upperKey) throws IOException, FileLockException {
+        ByteBuffer records = getRange(lowerKey, upperKey);
+        int elementSize = scanner.getElementSize();
+        List<Data> result = new ArrayList<Data>(records.remaining() / elementSize);
+        while (records.remaining() >= elementSize) {
+            ByteBuffer record = records.slice();
+            record.limit(elementSize);
+            result.add((Data) prototype.fromByteBuffer(record));
+            records.position(records.position() + elementSize);
+        }
+        return result;
+    }
+
+    /**
+     * Inserts or merges the given records, see {@link DRUMS#insertOrMerge(AbstractKVStorable...)}, and invalidates
+     * the cached ranges overlapping the buckets of the records.
+     * 
+     * @param toPersist
+     *            the records to insert
+     * @throws DRUMSException
+     * @throws InterruptedException
+     */
+    public void insertOrMerge(Data... toPersist) throws DRUMSException, InterruptedException {
+        if (drums == null) {
+            throw new IllegalStateException("The table " + name + " is read-only");
+        }
+        drums.insertOrMerge(toPersist);
+        BitSet buckets = new BitSet(hashFunction.getNumberOfBuckets());
+        for (Data data : toPersist) {
+            buckets.set(hashFunction.getBucketId(data.getKey()));
+        }
+        for (int bucketId = buckets.nextSetBit(0); bucketId >= 0; bucketId = buckets.nextSetBit(bucketId + 1)) {
+            cache.invalidateBucket(name, bucketId);
+            synchronized (bucketStamps) {
+                bucketStamps.remove(bucketId);
+            }
+        }
+    }
+
+    /** Removes all cached ranges of this table, e.g. after the hash function changed. */
+    public void invalidate() {
+        cache.invalidate(name);
+        synchronized (bucketStamps) {
+            bucketStamps.clear();
+        }
+    }
+
+    /** @return the name of the table */
+    public String getName() {
+        return name;
+    }
+
+    /** @return the stamp of each bucket file between the given buckets, see {@link BucketFiles#getStamp(File)} */
+    private long[] getStamps(int firstBucket, int lastBucket) throws IOException {
+        long[] stamps = new long[lastBucket - firstBucket + 1];
+        for (int bucketId = firstBucket; bucketId <= lastBucket; bucketId++) {
+            stamps[bucketId - firstBucket] = getStamp(bucketId);
+        }
+        return stamps;
+    }
+
+    /** returns the last computed stamp of the bucket, if the file is unchanged and the stamp is not too old */
+    private long getStamp(int bucketId) throws IOException {
+        File file = BucketFiles.getFile(gp, hashFunction, bucketId);
+        // read before the stamp, so a concurrent write leads to a mismatch on the next lookup
+        long length = file.length();
+        long lastModified = file.lastModified();
+        long now = System.currentTimeMillis();
+        synchronized (bucketStamps) {
+            BucketStamp known = bucketStamps.get(bucketId);
+            if (known != null && known.length == length && known.lastModified == lastModified
+                    && now - known.computed < verifyInterval) {
+                return known.stamp;
+            }
+        }
+        long stamp = BucketFiles.getStamp(file);
+        synchronized (bucketStamps) {
+            bucketStamps.put(bucketId, new BucketStamp(length, lastModified, stamp, now));
+        }
+        return stamp;
+    }
+
+    /** a computed stamp with the length and the modification time of the file it was computed for */
+    private static class BucketStamp {
+        private final long length;
+        private final long lastModified;
+        private final long stamp;
+        private final long computed;
+
+        BucketStamp(long length, long lastModified, long stamp, long computed) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.stamp = stamp;
+            this.computed = computed;
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package com.unister.semweb.biodrums.cache;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.unister.semweb.biodrums.scan.RecordBlock;
+
+/**
+ * A cache for the results of range queries, keyed by table and key range. The results are stored as serialized
+ * records in {@link RecordBlock}s, not as object lists. The cache holds at most <code>memoryBudget</code> bytes and
+ * evicts the least recently used entries first. Each entry knows the buckets its range touches, so an insert into a
+ * bucket only invalidates the entries overlapping the bucket, see {@link #invalidateBucket(String, int)}. An instance
+ * is thread-safe and may be shared by several tables.
+ * 
+ * @author Martin Nettling
+ */
+public class RangeQueryCache {
+    /** the estimated number of bytes used by an entry in addition to its records and keys */
+    private static final int ENTRY_OVERHEAD = 160;
+
+    private final long memoryBudget;
+
+    /** all entries in access order, the eldest entry is evicted first; guarded by this */
+    private final LinkedHashMap<RangeKey, Entry> entries = new LinkedHashMap<RangeKey, Entry>(16, 0.75f, true);
+
+    /** the number of invalidations per table, used to discard results computed before an invalidation */
+    private final Map<String, Long> generations = new HashMap<String, Long>();
+
+    private long sizeInBytes;
+    private long hits;
+    private long misses;
+
+    /**
+     * @param memoryBudget
+     *            the maximal number of bytes of all entries
+     */
+    public RangeQueryCache(long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Looks up the result of a range query.
+     * 
+     * @param table
+     *            the name of the table
+     * @param lowerKey
+     *            the smallest key of the range, may be <code>null</code>
+     * @param upperKey
+     *            the largest key of the range, may be <code>null</code>
+     * @return the cached entry, <code>null</code> if the range is not cached
+     */
+    public synchronized Entry get(String table, byte[] lowerKey, byte[] upperKey) {
+        Entry entry = entries.get(new RangeKey(table, lowerKey, upperKey));
+        if (entry == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return entry;
+    }
+
+    /**
+     * Looks up the result of a range query without counting a hit or a miss, e.g. to check again after waiting for a
+     * scan.
+     * 
+     * @param table
+     *            the name of the table
+     * @param lowerKey
+     *            the smallest key of the range, may be <code>null</code>
+     * @param upperKey
+     *            the largest key of the range, may be <code>null</code>
+     * @return the cached entry, <code>null</code> if the range is not cached
+     */
+    synchronized Entry peek(String table, byte[] lowerKey, byte[] upperKey) {
+        return entries.get(new RangeKey(table, lowerKey, upperKey));
+    }
+
+    /**
+     * Returns the generation of the given table, which must be passed to
+     * {@link #put(String, byte[], byte[], int, int, long[], RecordBlock, long)}. It has to be requested before the
+     * query is executed.
+     * 
+     * @param table
+     *            the name of the table
+     * @return the number of invalidations of the table
+     */
+    public synchronized long getGeneration(String table) {
+        Long generation = generations.get(table);
+        return generation == null ? 0 : generation;
+    }
+
+    /**
+     * Caches the result of a range query. The result is discarded, if it is larger than the memory budget or if the
+     * table was invalidated since <code>generation</code> was requested.
+     * 
+     * @param table
+     *            the name of the table
+     * @param lowerKey
+     *            the smallest key of the range, may be <code>null</code>
+     * @param upperKey
+     *            the largest key of the range, may be <code>null</code>
+     * @param firstBucket
+     *            the first bucket touched by the range
+     * @param lastBucket
+     *            the last bucket touched by the range
+     * @param stamps
+     *            the stamps of the touched bucket files when the query was executed, may be
+     *            <code>null</code>
+     * @param records
+     *            the records of the range, must not be changed afterwards
+     * @param generation
+     *            the generation of the table before the query was executed
+     * @return <code>true</code> if the result was cached
+     */
+    public synchronized boolean put(String table, byte[] lowerKey, byte[] upperKey, int firstBucket, int lastBucket,
+            long[] stamps, RecordBlock records, long generation) {
+        if (generation != getGeneration(table)) {
+            return false;
+        }
+        records.trim();
+        RangeKey key = new RangeKey(table, copy(lowerKey), copy(upperKey));
+        Entry entry = new Entry(key, firstBucket, lastBucket, stamps, records);
+        if (entry.getSizeInBytes() > memoryBudget) {
+            return false;
+        }
+        Entry replaced = entries.remove(key);
+        if (replaced != null) {
+            sizeInBytes -= replaced.getSizeInBytes();
+        }
+        entries.put(key, entry);
+        sizeInBytes += entry.getSizeInBytes();
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (sizeInBytes > memoryBudget) {
+            Entry evicted = eldest.next();
+            eldest.remove();
+            sizeInBytes -= evicted.getSizeInBytes();
+        }
+        return true;
+    }
+
+    /**
+     * Removes the given entry, if it is still cached.
+     * 
+     * @param entry
+     *            an entry returned by {@link #get(String, byte[], byte[])}
+     */
+    public synchronized void remove(Entry entry) {
+        if (entry != null && entries.get(entry.key) == entry) {
+            entries.remove(entry.key);
+            sizeInBytes -= entry.getSizeInBytes();
+        }
+    }
+
+    /**
+     * Removes all entries of the table, whose range overlaps the given bucket.
+     * 
+     * @param table
+     *            the name of the table
+     * @param bucketId
+     *            the id of the changed bucket
+     * @return the number of removed entries
+     */
+    public synchronized int invalidateBucket(String table, int bucketId) {
+        generations.put(table, getGeneration(table) + 1);
+        int removed = 0;
+        for (Iterator<Entry> it = entries.values().iterator(); it.hasNext();) {
+            Entry entry = it.next();
+            if (entry.key.table.equals(table) && entry.firstBucket <= bucketId && bucketId <= entry.lastBucket) {
+                it.remove();
+                sizeInBytes -= entry.getSizeInBytes();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Removes all entries of the table.
+     * 
+     * @param table
+     *            the name of the table
+     * @return the number of removed entries
+     */
+    public synchronized int invalidate(String table) {
+        generations.put(table, getGeneration(table) + 1);
+        int removed = 0;
+        for (Iterator<Entry> it = entries.values().iterator(); it.hasNext();) {
+            Entry entry = it.next();
+            if (entry.key.table.equals(table)) {
+                it.remove();
+                sizeInBytes -= entry.getSizeInBytes();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    private static byte[] copy(byte[] key) {
+        return key == null ? null : key.clone();
+    }
+
+    /** @return the number of cached entries */
+    public synchronized int getNumberOfEntries() {
+        return entries.size();
+    }
+
+    /** @return the number of bytes used by all entries */
+    public synchronized long getSizeInBytes() {
+        return sizeInBytes;
+    }
+
+    /** @return the number of lookups, which found an entry */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /** @return the number of lookups, which found no entry */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * A cached result of a range query.
+     * 
+     * @author Martin Nettling
+     */
+    public static class Entry {
+        private final RangeKey key;
+        private final int firstBucket;
+        private final int lastBucket;
+        private final long[] stamps;
+        private final RecordBlock records;
+
+        Entry(RangeKey key, int firstBucket, int lastBucket, long[] stamps, RecordBlock records) {
+            this.key = key;
+            this.firstBucket = firstBucket;
+            this.lastBucket = lastBucket;
+            this.stamps = stamps;
+            this.records = records;
+        }
+
+        /** @return the first bucket touched by the range */
+        public int getFirstBucket() {
+            return firstBucket;
+        }
+
+        /** @return the last bucket touched by the range */
+        public int getLastBucket() {
+            return lastBucket;
+        }
+
+        /**
+         * @param currentStamps
+         *            the current stamps of the touched bucket files
+         * @return <code>true</code> if the bucket files were not modified since the query was executed
+         */
+        public boolean isCurrent(long[] currentStamps) {
+            return stamps == null || Arrays.equals(stamps, currentStamps);
+        }
+
+        /** @return the number of records */
+        public int getNumberOfRecords() {
+            return records.getNumberOfRecords();
+        }
+
+        /** @return a read-only buffer containing the records, the n-th record starts at <code>n * elementSize</code> */
+        public ByteBuffer getRecords() {
+            return records.asBuffer().asReadOnlyBuffer();
+        }
+
+        /** @return the estimated number of bytes used by this entry */
+        long getSizeInBytes() {
+            return records.getSizeInBytes() + length(key.lowerKey) + length(key.upperKey) + length(stamps)
+                    + ENTRY_OVERHEAD;
+        }
+    }
+
+    private static int length(byte[] array) {
+        return array == null ? 0 : array.length;
+    }
+
+    private static int length(long[] array) {
+        return array == null ? 0 : 8 * array.length;
+    }
+
+    /** the key of an entry: table and key range, an unbounded side is <code>null</code> */
+    private static class RangeKey {
+        private final String table;
+        private final byte[] lowerKey;
+        private final byte[] upperKey;
+        private final int hash;
+
+        RangeKey(String table, byte[] lowerKey, byte[] upperKey) {
+            this.table = table;
+            this.lowerKey = lowerKey;
+            this.upperKey = upperKey;
+            this.hash = (table.hashCode() * 31 + Arrays.hashCode(lowerKey)) * 31 + Arrays.hashCode(upperKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof RangeKey)) {
+                return false;
+            }
+            RangeKey other = (RangeKey) obj;
+            return table.equals(other.table) && Arrays.equals(lowerKey, other.lowerKey)
+                    && Arrays.equals(upperKey, other.upperKey);
+        }
+    }
+}
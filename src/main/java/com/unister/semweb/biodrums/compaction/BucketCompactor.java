@@ -0,0 +1,249 @@
+package com.unister.semweb.biodrums.compaction;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.unister.semweb.biodrums.herv.HERV;
+import com.unister.semweb.biodrums.storage.BucketFiles;
+import com.unister.semweb.biodrums.storage.RecordBuffers;
+import com.unister.semweb.biodrums.weigel.SNP;
+import com.unister.semweb.drums.DRUMSParameterSet;
+import com.unister.semweb.drums.bucket.hashfunction.RangeHashFunction;
+import com.unister.semweb.drums.file.AbstractHeaderFile.AccessMode;
+import com.unister.semweb.drums.file.FileLockException;
+import com.unister.semweb.drums.file.HeaderIndexFile;
+import com.unister.semweb.drums.storable.AbstractKVStorable;
+
+/**
+ * Rewrites bucket files tightly. Bucket files start with {@link DRUMSParameterSet#INITIAL_FILE_SIZE} bytes and grow by
+ * {@link DRUMSParameterSet#INITIAL_INCREMENT_SIZE} bytes, so after many synchronizations a file may carry a lot of
+ * unused space. The compactor copies the records of a bucket in key order into a new file, which gets a new header
+ * index and is truncated behind the last record, and renames it over the old file. Reads and writes are throttled by
+ * an {@link IORateLimiter}.<br>
+ * <br>
+ * The old file is opened for writing and so stays locked, until the synced compacted file has replaced it. Still, the
+ * table must not be open in a {@link com.unister.semweb.drums.api.DRUMS}-instance during a compaction: an instance,
+ * which opened the old file before, would keep writing to the replaced file and its records would be lost. Readers of
+ * mapped bucket files keep reading the replaced files until they are reopened.
+ * 
+ * @author Martin Nettling
+ * 
+ * @param <Data>
+ *            the type of the records
+ */
+public class BucketCompactor<Data extends AbstractKVStorable> {
+    private static final Logger log = LoggerFactory.getLogger(BucketCompactor.class);
+
+    /** the extension of the new file of a bucket during its compaction */
+    public static final String COMPACT_EXTENSION = ".compact";
+
+    /** the default size of the buffer used for copying */
+    public static final int DEFAULT_BUFFER_SIZE = 4 * 1024 * 1024;
+
+    private final DRUMSParameterSet<Data> gp;
+    private final RangeHashFunction hashFunction;
+    private final IORateLimiter limiter;
+    private final int elementSize;
+    private final int keySize;
+    private final ByteBuffer buffer;
+
+    /**
+     * @param gp
+     *            the parameters of the table
+     * @param hashFunction
+     *            the hash function of the table
+     * @param prototype
+     *            a prototype of the stored records
+     * @param limiter
+     *            the limit of the throughput
+     */
+    public BucketCompactor(DRUMSParameterSet<Data> gp, RangeHashFunction hashFunction, Data prototype,
+            IORateLimiter limiter) {
+        this.gp = gp;
+        this.hashFunction = hashFunction;
+        this.limiter = limiter;
+        this.elementSize = prototype.getSize();
+        this.keySize = prototype.getKey().length;
+        this.buffer = ByteBuffer.allocate(DEFAULT_BUFFER_SIZE - DEFAULT_BUFFER_SIZE % elementSize);
+    }
+
+    /**
+     * Starts a compaction of all buckets of the HERV- or SNP-table described by the given property file.
+     * 
+     * @param args
+     *            <code>herv|snp propertyFile [MB/s [minSlack]]</code>
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: BucketCompactor herv|snp propertyFile [MB/s [minSlack]]");
+            return;
+        }
+        long bytesPerSecond = args.length > 2 ? Long.parseLong(args[2]) * 1024 * 1024 : 0;
+        double minSlack = args.length > 3 ? Double.parseDouble(args[3]) : 0;
+        CompactionReport report;
+        if (args[0].equalsIgnoreCase("herv")) {
+            report = new BucketCompactor<HERV>(new DRUMSParameterSet<HERV>(args[1], new HERV()),
+                    HERV.createHashFunction(), new HERV(), new IORateLimiter(bytesPerSecond)).compactAll(minSlack);
+        } else {
+            report = new BucketCompactor<SNP>(new DRUMSParameterSet<SNP>(args[1], new SNP()),
+                    SNP.createHashFunction(), new SNP(), new IORateLimiter(bytesPerSecond)).compactAll(minSlack);
+        }
+        System.out.println(report);
+    }
+
+    /**
+     * Determines the share of unused bytes of a bucket file.
+     * 
+     * @param bucketId
+     *            the id of the bucket
+     * @return the number of unused bytes divided by the file size, 0 if the file doesn't exist
+     * @throws IOException
+     * @throws FileLockException
+     */
+    public double getSlack(int bucketId) throws IOException, FileLockException {
+        File file = BucketFiles.getFile(gp, hashFunction, bucketId);
+        if (!file.exists() || file.length() == 0) {
+            return 0;
+        }
+        long used = BucketFiles.CONTENT_OFFSET + countRecords(file) * elementSize;
+        return Math.max(0, (double) (file.length() - used) / file.length());
+    }
+
+    /**
+     * Compacts all buckets, whose share of unused bytes is larger than <code>minSlack</code>, one after another.
+     * 
+     * @param minSlack
+     *            the share of unused bytes, above which a bucket is compacted, e.g. 0.25
+     * @return the report of all compacted buckets
+     * @throws IOException
+     * @throws FileLockException
+     * @throws InterruptedException
+     */
+    public CompactionReport compactAll(double minSlack) throws IOException, FileLockException,
+            InterruptedException {
+        CompactionReport report = new CompactionReport();
+        for (int bucketId = 0; bucketId < hashFunction.getNumberOfBuckets(); bucketId++) {
+            if (getSlack(bucketId) > minSlack) {
+                report.add(compact(bucketId));
+            }
+        }
+        log.info("Compaction finished: {}", report);
+        return report;
+    }
+
+    /**
+     * Compacts one bucket.
+     * 
+     * @param bucketId
+     *            the id of the bucket
+     * @return the report of the bucket
+     * @throws IOException
+     *             if the records of the bucket are not sorted or a file could not be written
+     * @throws FileLockException
+     * @throws InterruptedException
+     */
+    public CompactionReport compact(int bucketId) throws IOException, FileLockException, InterruptedException {
+        CompactionReport report = new CompactionReport();
+        // a striped bucket is compacted in its data directory
+        File file = BucketFiles.resolve(BucketFiles.getFile(gp, hashFunction, bucketId));
+        if (!file.exists()) {
+            return report;
+        }
+        File compacted = new File(file.getPath() + COMPACT_EXTENSION);
+        if (compacted.exists() && !compacted.delete()) {
+            throw new IOException("Could not delete " + compacted);
+        }
+        long bytesBefore = file.length();
+
+        long bytes = 0;
+        // the source is opened for writing to hold its lock, until it is replaced by the compacted file
+        HeaderIndexFile<Data> source = BucketFiles.open(gp, file, AccessMode.READ_WRITE);
+        try {
+            HeaderIndexFile<Data> target = BucketFiles.open(gp, compacted, AccessMode.READ_WRITE);
+            try {
+                long filled = BucketFiles.getNumberOfRecords(source, elementSize) * elementSize;
+                byte[] lastKey = null;
+                while (bytes < filled) {
+                    buffer.clear();
+                    buffer.limit((int) Math.min(buffer.capacity(), filled - bytes));
+                    limiter.acquire(buffer.limit());
+                    BucketFiles.readFully(source, bytes, buffer);
+                    lastKey = checkOrder(file, buffer, lastKey);
+
+                    limiter.acquire(buffer.limit());
+                    target.write(bytes, buffer);
+                    bytes += buffer.limit();
+                }
+            } finally {
+                target.close();
+            }
+            truncate(compacted, BucketFiles.CONTENT_OFFSET + bytes);
+            verify(compacted, bytes);
+            BucketFiles.replace(compacted, file);
+        } finally {
+            source.close();
+        }
+        report.add(bytes / elementSize, bytesBefore, file.length());
+        log.debug("Compacted bucket {}: {}", bucketId, report);
+        return report;
+    }
+
+    /** checks that the keys in the buffer are sorted and returns the last key */
+    private byte[] checkOrder(File file, ByteBuffer records, byte[] lastKey) throws IOException {
+        int bytes = records.limit();
+        if (bytes == 0) {
+            return lastKey;
+        }
+        if (lastKey != null && RecordBuffers.compareKey(records, 0, lastKey) <= 0) {
+            throw new IOException("The records of " + file + " are not sorted, it is not compacted");
+        }
+        for (int offset = elementSize; offset < bytes; offset += elementSize) {
+            if (RecordBuffers.compareKeys(records, offset - elementSize, offset, keySize) >= 0) {
+                throw new IOException("The records of " + file + " are not sorted, it is not compacted");
+            }
+        }
+        return RecordBuffers.getKey(records, bytes - elementSize, keySize);
+    }
+
+    /** checks that the compacted file contains as many records as the original one */
+    private void verify(File file, long expectedBytes) throws IOException, FileLockException {
+        HeaderIndexFile<Data> compacted = BucketFiles.open(gp, file, AccessMode.READ_ONLY);
+        try {
+            long filled = BucketFiles.getNumberOfRecords(compacted, elementSize) * elementSize;
+            if (filled != expectedBytes) {
+                throw new IOException("The compacted file " + file + " contains " + filled + " instead of "
+                        + expectedBytes + " bytes");
+            }
+        } finally {
+            compacted.close();
+        }
+    }
+
+    /** cuts off the unused space, which the file preallocated while it was written */
+    private static void truncate(File file, long length) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            if (raf.length() > length) {
+                raf.getChannel().truncate(length);
+            }
+            raf.getFD().sync();
+        } finally {
+            raf.close();
+        }
+    }
+
+    private long countRecords(File file) throws IOException, FileLockException {
+        HeaderIndexFile<Data> bucket = BucketFiles.open(gp, file, AccessMode.READ_ONLY);
+        try {
+            return BucketFiles.getNumberOfRecords(bucket, elementSize);
+        } finally {
+            bucket.close();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.unister.semweb.biodrums.compaction;
+
+/**
+ * The result of compacting one or more buckets: the number of records and the sizes of the bucket files before and
+ * after the compaction.
+ * 
+ * @author Martin Nettling
+ */
+public class CompactionReport {
+    private int buckets;
+    private long records;
+    private long bytesBefore;
+    private long bytesAfter;
+
+    /**
+     * Adds the result of one bucket.
+     * 
+     * @param bucketRecords
+     *            the number of records of the bucket
+     * @param fileBytesBefore
+     *            the size of the bucket file before the compaction
+     * @param fileBytesAfter
+     *            the size of the bucket file after the compaction
+     */
+    public synchronized void add(long bucketRecords, long fileBytesBefore, long fileBytesAfter) {
+        buckets++;
+        records += bucketRecords;
+        bytesBefore += fileBytesBefore;
+        bytesAfter += fileBytesAfter;
+    }
+
+    /**
+     * Adds all results of another report.
+     * 
+     * @param other
+     *            the report to add
+     */
+    public void add(CompactionReport other) {
+        int otherBuckets;
+        long otherRecords, otherBytesBefore, otherBytesAfter;
+        synchronized (other) {
+            otherBuckets = other.buckets;
+            otherRecords = other.records;
+            otherBytesBefore = other.bytesBefore;
+            otherBytesAfter = other.bytesAfter;
+        }
+        synchronized (this) {
+            buckets += otherBuckets;
+            records += otherRecords;
+            bytesBefore += otherBytesBefore;
+            bytesAfter += otherBytesAfter;
+        }
+    }
+
+    /** @return the number of compacted buckets */
+    public synchronized int getBuckets() {
+        return buckets;
+    }
+
+    /** @return the number of records in the compacted buckets */
+    public synchronized long getRecords() {
+        return records;
+    }
+
+    /** @return the size of the bucket files before the compaction */
+    public synchronized long getBytesBefore() {
+        return bytesBefore;
+    }
+
+    /** @return the size of the bucket files after the compaction */
+    public synchronized long getBytesAfter() {
+        return bytesAfter;
+    }
+
+    /** @return the number of bytes freed on disk */
+    public synchronized long getReclaimedBytes() {
+        return bytesBefore - bytesAfter;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return buckets + " buckets with " + records + " records compacted, " + bytesBefore / 1024 + " KB -> "
+                + bytesAfter / 1024 + " KB, reclaimed " + getReclaimedBytes() / 1024 + " KB";
+    }
+}
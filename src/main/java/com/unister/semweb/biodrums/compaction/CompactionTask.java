@@ -0,0 +1,74 @@
+package com.unister.semweb.biodrums.compaction;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.unister.semweb.drums.storable.AbstractKVStorable;
+
+/**
+ * Compacts the buckets of a table periodically in the background. Each run compacts all buckets, whose share of
+ * unused bytes exceeds <code>minSlack</code>, and adds its result to the overall report. The table must not be open
+ * for writing while a run is in progress, see {@link BucketCompactor}; a failed run is logged and retried in the next
+ * period.
+ * 
+ * <pre>
+ * CompactionTask task = new CompactionTask(new BucketCompactor&lt;SNP&gt;(gp, SNP.createHashFunction(), new SNP(),
+ *         new IORateLimiter(20 * 1024 * 1024)), 0.25);
+ * task.schedule(executor, 1, TimeUnit.DAYS);
+ * </pre>
+ * 
+ * @author Martin Nettling
+ */
+public class CompactionTask implements Runnable {
+    private static final Logger log = LoggerFactory.getLogger(CompactionTask.class);
+
+    private final BucketCompactor<? extends AbstractKVStorable> compactor;
+    private final double minSlack;
+    private final CompactionReport report = new CompactionReport();
+
+    /**
+     * @param compactor
+     *            the compactor of the table
+     * @param minSlack
+     *            the share of unused bytes, above which a bucket is compacted
+     */
+    public CompactionTask(BucketCompactor<? extends AbstractKVStorable> compactor, double minSlack) {
+        this.compactor = compactor;
+        this.minSlack = minSlack;
+    }
+
+    /**
+     * Runs this task periodically, the first run starts after one period.
+     * 
+     * @param executor
+     *            the executor to run in
+     * @param period
+     *            the time between the end of a run and the start of the next run
+     * @param unit
+     *            the unit of the period
+     * @return the future to cancel the task with
+     */
+    public ScheduledFuture<?> schedule(ScheduledExecutorService executor, long period, TimeUnit unit) {
+        return executor.scheduleWithFixedDelay(this, period, period, unit);
+    }
+
+    @Override
+    public void run() {
+        try {
+            report.add(compactor.compactAll(minSlack));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (Exception ex) {
+            log.error("Compaction failed", ex);
+        }
+    }
+
+    /** @return the results of all runs so far */
+    public CompactionReport getReport() {
+        return report;
+    }
+}
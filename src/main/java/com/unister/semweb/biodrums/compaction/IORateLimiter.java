@@ -0,0 +1,56 @@
+package com.unister.semweb.biodrums.compaction;
+
+/**
+ * Limits the throughput of reads and writes to a number of bytes per second. Callers announce each transfer with
+ * {@link #acquire(long)} and are delayed, if they are ahead of the allowed rate. Unused throughput is saved for at most
+ * one second, so bursts stay bounded. An instance is thread-safe and may be shared by several tasks, which then share
+ * the limit.
+ * 
+ * @author Martin Nettling
+ */
+public class IORateLimiter {
+    private final long bytesPerSecond;
+
+    /** the time, at which the next transfer may start without waiting */
+    private long nextFreeNanos = System.nanoTime();
+
+    /**
+     * @param bytesPerSecond
+     *            the allowed number of bytes per second, 0 or less for no limit
+     */
+    public IORateLimiter(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    /** @return the allowed number of bytes per second, 0 or less for no limit */
+    public long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    /**
+     * Waits until the given number of bytes may be transferred.
+     * 
+     * @param bytes
+     *            the number of bytes to transfer
+     * @return the time waited in nanoseconds
+     * @throws InterruptedException
+     */
+    public long acquire(long bytes) throws InterruptedException {
+        if (bytesPerSecond <= 0) {
+            return 0;
+        }
+        long wait;
+        synchronized (this) {
+            long now = System.nanoTime();
+            // at most one second of unused throughput is saved
+            long start = Math.max(nextFreeNanos, now - 1000000000L);
+            nextFreeNanos = start + (long) (bytes * 1e9 / bytesPerSecond);
+            wait = start - now;
+        }
+        if (wait > 0) {
+            Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+            return wait;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,160 @@
+package com.unister.semweb.biodrums.config;
+
+import java.io.IOException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.unister.semweb.drums.DRUMSParameterSet;
+import com.unister.semweb.drums.api.DRUMS;
+import com.unister.semweb.drums.api.DRUMSInstantiator;
+import com.unister.semweb.drums.bucket.hashfunction.RangeHashFunction;
+import com.unister.semweb.drums.storable.AbstractKVStorable;
+
+/**
+ * Derives the memory parameters of a DRUMS-table from the available heap, the number of buckets of the
+ * {@link RangeHashFunction}, the size of the records and the expected number of records. Fixed values in a property
+ * file either overcommit the heap or starve the buckets, e.g. <code>BUCKET_MEMORY = 1536M</code> with
+ * <code>MAX_MEMORY_PER_BUCKET = 10M</code> allows only 2.5G for 256 buckets, but starves 128 buckets.<br>
+ * <br>
+ * The advisor reserves a fraction of the heap for the bucket container, but not more than the expected input needs.
+ * Each bucket may grow to four times its fair share to absorb skewed inserts. A bucket is only synchronized, if it
+ * holds at least half of its fair share, so each synchronization writes a large sorted batch instead of single
+ * records.
+ * 
+ * <pre>
+ * DRUMS&lt;HERV&gt; drums = new DRUMSConfigurationAdvisor(HERV.ELEMENT_SIZE, 50000000).createTable(hashFunction,
+ *         globalParameters);
+ * </pre>
+ * 
+ * @author Martin Nettling
+ */
+public class DRUMSConfigurationAdvisor {
+    private static final Logger log = LoggerFactory.getLogger(DRUMSConfigurationAdvisor.class);
+
+    /** the default fraction of the heap used by the bucket container */
+    public static final double DEFAULT_HEAP_FRACTION = 0.5;
+
+    /** the factor, by which a bucket may exceed its fair share of the bucket memory */
+    public static final int SKEW_FACTOR = 4;
+
+    /** the overhead of the data structures of the bucket container per record */
+    private static final double MEMORY_OVERHEAD = 1.25;
+
+    private final int elementSize;
+    private final long expectedRecords;
+    private long maxHeap = Runtime.getRuntime().maxMemory();
+    private double heapFraction = DEFAULT_HEAP_FRACTION;
+
+    private long bucketMemory;
+    private long maxMemoryPerBucket;
+    private int minElementsBeforeSync;
+    private long memoryChunk;
+
+    /**
+     * @param elementSize
+     *            the size of one record, e.g. {@link com.unister.semweb.biodrums.herv.HERV#ELEMENT_SIZE}
+     * @param expectedRecords
+     *            the expected number of inserted records, 0 if unknown
+     */
+    public DRUMSConfigurationAdvisor(int elementSize, long expectedRecords) {
+        this.elementSize = elementSize;
+        this.expectedRecords = expectedRecords;
+    }
+
+    /**
+     * Sets the heap, from which the memory is taken. The default is the maximal heap of this JVM.
+     * 
+     * @param maxHeap
+     *            the size of the heap in bytes
+     * @param heapFraction
+     *            the fraction of the heap used by the bucket container
+     * @return this advisor
+     */
+    public DRUMSConfigurationAdvisor setHeap(long maxHeap, double heapFraction) {
+        this.maxHeap = maxHeap;
+        this.heapFraction = heapFraction;
+        return this;
+    }
+
+    /**
+     * Computes the parameters for a table with the given number of buckets.
+     * 
+     * @param numberOfBuckets
+     *            the number of buckets of the table
+     * @param gp
+     *            the parameters to change, {@link DRUMSParameterSet#MEMORY_CHUNK} is used as allocation unit
+     */
+    public void apply(int numberOfBuckets, DRUMSParameterSet<?> gp) {
+        memoryChunk = Math.max(elementSize, gp.MEMORY_CHUNK);
+        bucketMemory = (long) (maxHeap * heapFraction);
+        if (expectedRecords > 0) {
+            bucketMemory = Math.min(bucketMemory, (long) (expectedRecords * elementSize * MEMORY_OVERHEAD));
+        }
+        // every bucket needs at least one chunk
+        bucketMemory = roundUp(Math.max(bucketMemory, numberOfBuckets * memoryChunk));
+
+        long fairShare = bucketMemory / numberOfBuckets;
+        maxMemoryPerBucket = roundUp(Math.min(bucketMemory, Math.max(memoryChunk, SKEW_FACTOR * fairShare)));
+
+        long fairElements = fairShare / elementSize;
+        long minElements = fairElements / 2;
+        if (expectedRecords > 0) {
+            // buckets, which will never receive half of their share, must still be synchronized before closing
+            minElements = Math.min(minElements, expectedRecords / numberOfBuckets / 4);
+        }
+        minElementsBeforeSync = (int) Math.max(1, Math.min(Integer.MAX_VALUE, minElements));
+
+        gp.BUCKET_MEMORY = bucketMemory;
+        gp.MAX_MEMORY_PER_BUCKET = maxMemoryPerBucket;
+        gp.MIN_ELEMENT_IN_BUCKET_BEFORE_SYNC = minElementsBeforeSync;
+
+        long batchRecords = Math.max(minElementsBeforeSync, fairElements);
+        log.info("Configured {} buckets: BUCKET_MEMORY = {}K, MAX_MEMORY_PER_BUCKET = {}K, "
+                + "MIN_ELEMENT_IN_BUCKET_BEFORE_SYNC = {}", new Object[] { numberOfBuckets, bucketMemory / 1024,
+                maxMemoryPerBucket / 1024, minElementsBeforeSync });
+        if (expectedRecords > 0) {
+            log.info("Expecting sync batches of about {} records ({}K) per bucket and {} syncs per bucket",
+                    new Object[] { batchRecords, batchRecords * elementSize / 1024,
+                            Math.max(1, expectedRecords / numberOfBuckets / batchRecords) });
+        } else {
+            log.info("Expecting sync batches of about {} records ({}K) per bucket", batchRecords, batchRecords
+                    * elementSize / 1024);
+        }
+    }
+
+    /**
+     * Applies the parameters and creates the table.
+     * 
+     * @param hashFunction
+     *            the hash function of the new table
+     * @param gp
+     *            the parameters of the new table
+     * @return the new table
+     * @throws IOException
+     */
+    public <Data extends AbstractKVStorable> DRUMS<Data> createTable(RangeHashFunction hashFunction,
+            DRUMSParameterSet<Data> gp) throws IOException {
+        apply(hashFunction.getNumberOfBuckets(), gp);
+        return DRUMSInstantiator.createTable(hashFunction, gp);
+    }
+
+    private long roundUp(long bytes) {
+        return (bytes + memoryChunk - 1) / memoryChunk * memoryChunk;
+    }
+
+    /** @return the computed {@link DRUMSParameterSet#BUCKET_MEMORY} */
+    public long getBucketMemory() {
+        return bucketMemory;
+    }
+
+    /** @return the computed {@link DRUMSParameterSet#MAX_MEMORY_PER_BUCKET} */
+    public long getMaxMemoryPerBucket() {
+        return maxMemoryPerBucket;
+    }
+
+    /** @return the computed {@link DRUMSParameterSet#MIN_ELEMENT_IN_BUCKET_BEFORE_SYNC} */
+    public int getMinElementsBeforeSync() {
+        return minElementsBeforeSync;
+    }
+}
@@ -0,0 +1,134 @@
+package com.unister.semweb.biodrums.export;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Helper methods to write numbers and strings as ASCII-text into a {@link ByteBuffer}, without creating temporary
+ * objects.
+ * 
+ * @author Martin Nettling
+ */
+public class Ascii {
+    /** the maximal number of bytes {@link #putLong(ByteBuffer, long)} writes */
+    public static final int MAX_LONG_LENGTH = 20;
+
+    /** the maximal number of bytes {@link #putScientific(ByteBuffer, double, int)} writes for up to 17 digits */
+    public static final int MAX_DOUBLE_LENGTH = 25;
+
+    private Ascii() {
+    }
+
+    /**
+     * Writes the given string, which must only contain ASCII-characters.
+     * 
+     * @param out
+     *            the buffer to write to
+     * @param s
+     *            the string to write
+     */
+    public static void putString(ByteBuffer out, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            out.put((byte) s.charAt(i));
+        }
+    }
+
+    /**
+     * Writes the decimal representation of the given number.
+     * 
+     * @param out
+     *            the buffer to write to
+     * @param value
+     *            the number to write
+     */
+    public static void putLong(ByteBuffer out, long value) {
+        if (value == Long.MIN_VALUE) {
+            putString(out, "-9223372036854775808");
+            return;
+        }
+        if (value < 0) {
+            out.put((byte) '-');
+            value = -value;
+        }
+        if (value < 10) {
+            out.put((byte) ('0' + value));
+            return;
+        }
+        int digits = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        int end = out.position() + digits;
+        for (int i = end - 1; i >= end - digits; i--) {
+            out.put(i, (byte) ('0' + value % 10));
+            value /= 10;
+        }
+        out.position(end);
+    }
+
+    /**
+     * Writes the given number in scientific notation like <code>2.5e-50</code>. Trailing zeros of the mantissa are
+     * omitted, <code>0</code>, <code>NaN</code> and infinite values are written as <code>0</code>, <code>NaN</code>
+     * and <code>Infinity</code>.
+     * 
+     * @param out
+     *            the buffer to write to
+     * @param value
+     *            the number to write
+     * @param significantDigits
+     *            the number of significant digits, between 1 and 17
+     */
+    public static void putScientific(ByteBuffer out, double value, int significantDigits) {
+        if (Double.isNaN(value)) {
+            putString(out, "NaN");
+            return;
+        }
+        if (value < 0) {
+            out.put((byte) '-');
+            value = -value;
+        }
+        if (Double.isInfinite(value)) {
+            putString(out, "Infinity");
+            return;
+        }
+        if (value == 0) {
+            out.put((byte) '0');
+            return;
+        }
+        int exponent = (int) Math.floor(Math.log10(value));
+        // avoid underflows of the power for subnormal numbers
+        double mantissa = exponent < -300 ? value * 1e300 / Math.pow(10, exponent + 300) : value
+                / Math.pow(10, exponent);
+        long scale = pow10(significantDigits - 1);
+        long digits = Math.round(mantissa * scale);
+        if (digits >= scale * 10) {
+            digits /= 10;
+            exponent++;
+        } else if (digits < scale) {
+            digits *= 10;
+            exponent--;
+        }
+        while (scale > 1 && digits % 10 == 0) {
+            digits /= 10;
+            scale /= 10;
+        }
+        out.put((byte) ('0' + digits / scale));
+        if (scale > 1) {
+            out.put((byte) '.');
+            for (scale /= 10; scale > 0; scale /= 10) {
+                out.put((byte) ('0' + (digits / scale) % 10));
+            }
+        }
+        if (exponent != 0) {
+            out.put((byte) 'e');
+            putLong(out, exponent);
+        }
+    }
+
+    private static long pow10(int exponent) {
+        long result = 1;
+        for (int i = 0; i < exponent; i++) {
+            result *= 10;
+        }
+        return result;
+    }
+}
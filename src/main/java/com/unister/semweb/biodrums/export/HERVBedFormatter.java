@@ -0,0 +1,74 @@
+package com.unister.semweb.biodrums.export;
+
+import java.nio.ByteBuffer;
+
+import com.unister.semweb.biodrums.herv.HERV;
+
+/**
+ * Formats serialized {@link HERV}s as BED6-lines: <code>chrom, chromStart, chromEnd, name, score, strand</code>. The
+ * positions are converted from the 1-based inclusive coordinates of BLAST to the 0-based half-open coordinates of BED,
+ * regardless of the strand. The name is the id of the HERV, the score is <code>-log10(e-value)</code>, bounded to
+ * [0,1000].
+ * 
+ * @author Martin Nettling
+ */
+public class HERVBedFormatter implements RecordFormatter {
+
+    @Override
+    public int getMaxLineLength() {
+        return 6 + 1 + 11 + 1 + 11 + 1 + 5 + 1 + 4 + 1 + 1 + 1;
+    }
+
+    @Override
+    public void writeHeader(ByteBuffer out) {
+    }
+
+    @Override
+    public void format(ByteBuffer records, int offset, ByteBuffer out) {
+        int start = HERV.getStartPositionChromosome(records, offset);
+        int end = HERV.getEndPositionChromosome(records, offset);
+        putChromosome(out, HERV.getChromosome(records, offset));
+        out.put((byte) '\t');
+        Ascii.putLong(out, Math.min(start, end) - 1);
+        out.put((byte) '\t');
+        Ascii.putLong(out, Math.max(start, end));
+        out.put((byte) '\t');
+        Ascii.putLong(out, HERV.getIdHERV(records, offset));
+        out.put((byte) '\t');
+        Ascii.putLong(out, score(HERV.getEValue(records, offset)));
+        out.put((byte) '\t');
+        out.put((byte) (HERV.getStrandOnChromosome(records, offset) == 0 ? '-' : '+'));
+        out.put((byte) '\n');
+    }
+
+    @Override
+    public String getFileExtension() {
+        return "bed";
+    }
+
+    /**
+     * Writes the UCSC-name of the given chromosome, e.g. <code>chr7</code> or <code>chrX</code>.
+     * 
+     * @param out
+     *            the buffer to write to
+     * @param chromosome
+     *            the chromosome number as used in {@link HERV}
+     */
+    static void putChromosome(ByteBuffer out, byte chromosome) {
+        Ascii.putString(out, "chr");
+        if (chromosome == 23) {
+            out.put((byte) 'X');
+        } else if (chromosome == 24) {
+            out.put((byte) 'Y');
+        } else {
+            Ascii.putLong(out, chromosome);
+        }
+    }
+
+    private static long score(double eValue) {
+        if (eValue <= 0) {
+            return 1000;
+        }
+        return Math.max(0, Math.min(1000, Math.round(-Math.log10(eValue))));
+    }
+}
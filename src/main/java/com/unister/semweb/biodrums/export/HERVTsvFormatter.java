@@ -0,0 +1,49 @@
+package com.unister.semweb.biodrums.export;
+
+import java.nio.ByteBuffer;
+
+import com.unister.semweb.biodrums.herv.HERV;
+
+/**
+ * Formats serialized {@link HERV}s as tab-separated lines with all fields, in the column order of the MySQL-table
+ * <code>herv</code>: <code>chromosome, startPositionChromosome, endPositionChromosome, startPositionHERV,
+ * endPositionHERV, idHERV, strand, eValue</code>.
+ * 
+ * @author Martin Nettling
+ */
+public class HERVTsvFormatter implements RecordFormatter {
+
+    @Override
+    public int getMaxLineLength() {
+        return 4 + 1 + 11 + 1 + 11 + 1 + 5 + 1 + 5 + 1 + 5 + 1 + 4 + 1 + Ascii.MAX_DOUBLE_LENGTH + 1;
+    }
+
+    @Override
+    public void writeHeader(ByteBuffer out) {
+    }
+
+    @Override
+    public void format(ByteBuffer records, int offset, ByteBuffer out) {
+        Ascii.putLong(out, HERV.getChromosome(records, offset));
+        out.put((byte) '\t');
+        Ascii.putLong(out, HERV.getStartPositionChromosome(records, offset));
+        out.put((byte) '\t');
+        Ascii.putLong(out, HERV.getEndPositionChromosome(records, offset));
+        out.put((byte) '\t');
+        Ascii.putLong(out, HERV.getStartHERV(records, offset));
+        out.put((byte) '\t');
+        Ascii.putLong(out, HERV.getEndHERV(records, offset));
+        out.put((byte) '\t');
+        Ascii.putLong(out, HERV.getIdHERV(records, offset));
+        out.put((byte) '\t');
+        Ascii.putLong(out, HERV.getStrandOnChromosome(records, offset));
+        out.put((byte) '\t');
+        Ascii.putScientific(out, HERV.getEValue(records, offset), 17);
+        out.put((byte) '\n');
+    }
+
+    @Override
+    public String getFileExtension() {
+        return "tsv";
+    }
+}
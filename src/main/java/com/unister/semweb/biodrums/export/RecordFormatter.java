@@ -0,0 +1,37 @@
+package com.unister.semweb.biodrums.export;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Formats serialized records as lines of a text-format.
+ * 
+ * @author Martin Nettling
+ */
+public interface RecordFormatter {
+
+    /** @return the maximal number of bytes {@link #format(ByteBuffer, int, ByteBuffer)} writes for one record */
+    int getMaxLineLength();
+
+    /**
+     * Writes the header of the format, e.g. the meta-lines of a VCF file.
+     * 
+     * @param out
+     *            the buffer to write to
+     */
+    void writeHeader(ByteBuffer out);
+
+    /**
+     * Formats one record as line, including the line break.
+     * 
+     * @param records
+     *            the buffer containing the record
+     * @param offset
+     *            the absolute offset of the record
+     * @param out
+     *            the buffer to write to, has at least {@link #getMaxLineLength()} bytes remaining
+     */
+    void format(ByteBuffer records, int offset, ByteBuffer out);
+
+    /** @return the file extension of the format, without dot */
+    String getFileExtension();
+}
@@ -0,0 +1,43 @@
+package com.unister.semweb.biodrums.export;
+
+import java.nio.ByteBuffer;
+
+import com.unister.semweb.biodrums.weigel.SNP;
+
+/**
+ * Formats serialized {@link SNP}s as tab-separated lines with all fields, in the column order of the MySQL-table
+ * <code>snp</code>: <code>sequence_id, position, ecotype_id, fromBase, toBase</code>. The bases are written as
+ * characters.
+ * 
+ * @author Martin Nettling
+ */
+public class SNPTsvFormatter implements RecordFormatter {
+
+    @Override
+    public int getMaxLineLength() {
+        return 4 + 1 + 11 + 1 + 5 + 1 + 1 + 1 + 1 + 1;
+    }
+
+    @Override
+    public void writeHeader(ByteBuffer out) {
+    }
+
+    @Override
+    public void format(ByteBuffer records, int offset, ByteBuffer out) {
+        Ascii.putLong(out, SNP.getSequenceId(records, offset));
+        out.put((byte) '\t');
+        Ascii.putLong(out, SNP.getBasePosition(records, offset));
+        out.put((byte) '\t');
+        Ascii.putLong(out, SNP.getEcotypeId(records, offset));
+        out.put((byte) '\t');
+        out.put(SNP.getFrom(records, offset));
+        out.put((byte) '\t');
+        out.put(SNP.getTo(records, offset));
+        out.put((byte) '\n');
+    }
+
+    @Override
+    public String getFileExtension() {
+        return "tsv";
+    }
+}
@@ -0,0 +1,46 @@
+package com.unister.semweb.biodrums.export;
+
+import java.nio.ByteBuffer;
+
+import com.unister.semweb.biodrums.weigel.SNP;
+
+/**
+ * Formats serialized {@link SNP}s as sites-only VCF 4.1 lines. Each record becomes one line, the ecotype is written to
+ * the INFO-field <code>EC</code>. Records of several ecotypes at the same position therefore result in several lines.
+ * 
+ * @author Martin Nettling
+ */
+public class SNPVcfFormatter implements RecordFormatter {
+
+    @Override
+    public int getMaxLineLength() {
+        return 4 + 1 + 11 + 3 + 1 + 1 + 1 + 1 + 1 + 3 + 4 + 1 + 3 + 5 + 1;
+    }
+
+    @Override
+    public void writeHeader(ByteBuffer out) {
+        Ascii.putString(out, "##fileformat=VCFv4.1\n");
+        Ascii.putString(out, "##source=BioDRUMS\n");
+        Ascii.putString(out, "##INFO=<ID=EC,Number=1,Type=Integer,Description=\"Ecotype id\">\n");
+        Ascii.putString(out, "#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\n");
+    }
+
+    @Override
+    public void format(ByteBuffer records, int offset, ByteBuffer out) {
+        Ascii.putLong(out, SNP.getSequenceId(records, offset));
+        out.put((byte) '\t');
+        Ascii.putLong(out, SNP.getBasePosition(records, offset));
+        Ascii.putString(out, "\t.\t");
+        out.put(SNP.getFrom(records, offset));
+        out.put((byte) '\t');
+        out.put(SNP.getTo(records, offset));
+        Ascii.putString(out, "\t.\tPASS\tEC=");
+        Ascii.putLong(out, SNP.getEcotypeId(records, offset));
+        out.put((byte) '\n');
+    }
+
+    @Override
+    public String getFileExtension() {
+        return "vcf";
+    }
+}
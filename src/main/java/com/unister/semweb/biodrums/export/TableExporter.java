@@ -0,0 +1,213 @@
+package com.unister.semweb.biodrums.export;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.unister.semweb.biodrums.scan.BucketPartitioner;
+import com.unister.semweb.biodrums.scan.BucketScanner;
+import com.unister.semweb.biodrums.scan.RecordVisitor;
+import com.unister.semweb.drums.DRUMSParameterSet;
+import com.unister.semweb.drums.bucket.hashfunction.RangeHashFunction;
+import com.unister.semweb.drums.file.FileLockException;
+import com.unister.semweb.drums.storable.AbstractKVStorable;
+
+/**
+ * Exports the records of a DRUMS-table into a text-format, e.g. BED, VCF or TSV. The records are read by a
+ * {@link BucketScanner} and formatted by a {@link RecordFormatter} directly from their serialized form into a large
+ * direct buffer, which is written with a {@link FileChannel}. No objects are created per record.<br>
+ * <br>
+ * {@link #exportParallel(byte[], byte[], File, String, int)} splits the buckets of the range into contiguous parts,
+ * which are written in parallel into separate files. Concatenating the files in the order of their numbers results in
+ * the same output as {@link #export(byte[], byte[], File)}.
+ * 
+ * @author Martin Nettling
+ * 
+ * @param <Data>
+ *            the type of the records stored in the table
+ */
+public class TableExporter<Data extends AbstractKVStorable> {
+    private static final Logger log = LoggerFactory.getLogger(TableExporter.class);
+
+    /** the size of the output buffer of each writer */
+    private static final int OUTPUT_BUFFER_SIZE = 8 * 1024 * 1024;
+
+    private final DRUMSParameterSet<Data> gp;
+
+    private final RangeHashFunction hashFunction;
+
+    private final Data prototype;
+
+    private final RecordFormatter formatter;
+
+    /**
+     * Creates a new exporter.
+     * 
+     * @param gp
+     *            the parameters of the table
+     * @param hashFunction
+     *            the hash function of the table
+     * @param prototype
+     *            a prototype of the stored records
+     * @param formatter
+     *            the formatter for the output format
+     */
+    public TableExporter(DRUMSParameterSet<Data> gp, RangeHashFunction hashFunction, Data prototype,
+            RecordFormatter formatter) {
+        this.gp = gp;
+        this.hashFunction = hashFunction;
+        this.prototype = prototype;
+        this.formatter = formatter;
+    }
+
+    /**
+     * Exports all records between the given keys into one file.
+     * 
+     * @param lowerKey
+     *            the smallest key to export, <code>null</code> to start at the first record
+     * @param upperKey
+     *            the largest key to export, <code>null</code> to end at the last record
+     * @param output
+     *            the file to write
+     * @return the number of exported records
+     * @throws IOException
+     * @throws FileLockException
+     */
+    public long export(byte[] lowerKey, byte[] upperKey, File output) throws IOException, FileLockException {
+        BucketScanner<Data> scanner = createScanner();
+        return exportBuckets(scanner, scanner.getFirstBucket(lowerKey), scanner.getLastBucket(upperKey), lowerKey,
+                upperKey, output, true);
+    }
+
+    /**
+     * Exports all records between the given keys in parallel into several files. The files are named
+     * <code>prefix-00000.ext</code>, <code>prefix-00001.ext</code>, ..., where <code>ext</code> is the extension of
+     * the format. A header is only written to the first file.
+     * 
+     * @param lowerKey
+     *            the smallest key to export, <code>null</code> to start at the first record
+     * @param upperKey
+     *            the largest key to export, <code>null</code> to end at the last record
+     * @param directory
+     *            the directory to write the files to
+     * @param prefix
+     *            the prefix of the file names
+     * @param parts
+     *            the maximal number of files, which are written in parallel
+     * @return the written files in key order
+     * @throws IOException
+     * @throws FileLockException
+     * @throws InterruptedException
+     */
+    public List<File> exportParallel(final byte[] lowerKey, final byte[] upperKey, File directory, String prefix,
+            int parts) throws IOException, FileLockException, InterruptedException {
+        BucketScanner<Data> scanner = createScanner();
+        int[] bounds = BucketPartitioner.partition(gp, hashFunction, scanner.getFirstBucket(lowerKey),
+                scanner.getLastBucket(upperKey), parts);
+        List<File> files = new ArrayList<File>();
+        List<Future<Long>> results = new ArrayList<Future<Long>>();
+        ExecutorService executor = Executors.newFixedThreadPool(bounds.length - 1);
+        try {
+            for (int part = 0; part < bounds.length - 1; part++) {
+                final File file = new File(directory, String.format("%s-%05d.%s", prefix, part,
+                        formatter.getFileExtension()));
+                final int firstBucket = bounds[part];
+                final int lastBucket = bounds[part + 1] - 1;
+                final boolean header = part == 0;
+                files.add(file);
+                results.add(executor.submit(new Callable<Long>() {
+                    @Override
+                    public Long call() throws Exception {
+                        return exportBuckets(createScanner(), firstBucket, lastBucket, lowerKey, upperKey, file,
+                                header);
+                    }
+                }));
+            }
+            long exported = 0;
+            for (Future<Long> result : results) {
+                exported += result.get();
+            }
+            log.info("Exported {} records into {} files", exported, files.size());
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof FileLockException) {
+                throw (FileLockException) ex.getCause();
+            }
+            throw new IOException("Could not export records", ex.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return files;
+    }
+
+    private BucketScanner<Data> createScanner() {
+        return new BucketScanner<Data>(gp, hashFunction, prototype, BucketScanner.DEFAULT_BUFFER_SIZE);
+    }
+
+    private long exportBuckets(BucketScanner<Data> scanner, int firstBucket, int lastBucket, byte[] lowerKey,
+            byte[] upperKey, File output, boolean header) throws IOException, FileLockException {
+        FileOutputStream out = new FileOutputStream(output);
+        try {
+            ExportVisitor visitor = new ExportVisitor(out.getChannel());
+            if (header) {
+                formatter.writeHeader(visitor.buffer);
+            }
+            long exported = 0;
+            for (int bucketId = firstBucket; bucketId <= lastBucket; bucketId++) {
+                exported += scanner.scanBucket(bucketId, lowerKey, upperKey, visitor);
+                if (visitor.exception != null) {
+                    throw visitor.exception;
+                }
+            }
+            visitor.flush();
+            return exported;
+        } finally {
+            out.close();
+        }
+    }
+
+    /** formats each visited record into the output buffer and writes the buffer if it is nearly full */
+    private class ExportVisitor implements RecordVisitor {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(OUTPUT_BUFFER_SIZE);
+        private final int maxLineLength = formatter.getMaxLineLength();
+        private IOException exception;
+
+        ExportVisitor(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public boolean visit(ByteBuffer records, int offset) {
+            if (buffer.remaining() < maxLineLength) {
+                try {
+                    flush();
+                } catch (IOException ex) {
+                    exception = ex;
+                    return false;
+                }
+            }
+            formatter.format(records, offset, buffer);
+            return true;
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,327 @@
+package com.unister.semweb.biodrums.herv;
+
+import java.nio.ByteBuffer;
+
+import com.unister.semweb.drums.bucket.hashfunction.RangeHashFunction;
+import com.unister.semweb.drums.storable.AbstractKVStorable;
+import com.unister.semweb.drums.util.Bytes;
+
+/**
+ * The compact representation of a {@link HERV} of {@link HERVFormat#COMPACT}. An object of this class needs 17 bytes
+ * in Byte-Representation instead of 24. The first 15 bytes represent the key. <br>
+ * <br>
+ * <code>
+ * ---------------------------------------- 17 bytes -----------------------------------------<br>
+ * .... key ................................................................ | .... value ....<br>
+ * chromosome | start chromosome | end chromosome | start HERV | end HERV | id | log e-value ...<br>
+ * 1 bytes ...| 4 bytes ........ | 4 bytes ...... | 2 bytes .. | 2 bytes  | 2 .| 2 bytes .......<br>
+ * -------------------------------------------------------------------------------------------<br>
+ * </code> <br>
+ * The key is the key of the {@link HERV}, so both formats use the same bucket boundaries, range keys and key order,
+ * and mappings of any length can be stored. The strand is not stored, hits on the minus strand have an end position
+ * smaller than their start position, as in the hit files. The e-value is stored as <code>-log10</code> with a
+ * resolution of 0.01, which keeps it within 1.2% of the original value.
+ * 
+ * @author Martin Nettling
+ */
+public class CompactHERV extends AbstractKVStorable {
+    private static final long serialVersionUID = 5816029354426719850L;
+
+    /** the number of bytes of a serialized {@link CompactHERV} */
+    public static final int ELEMENT_SIZE = 17;
+
+    /** The size of the key */
+    public static final int KEY_SIZE = HERV.KEY_SIZE;
+
+    /** offset of "chromosome" value in {@link CompactHERV#key} */
+    public static final int KEY_OFFSET_CHROMOSOME = 0;
+    /** offset of "start position chromosome" value in {@link CompactHERV#key} */
+    public static final int KEY_OFFSET_START_POS_CHROMOSOME = 1;
+    /** offset of "end position chromosome" value in {@link CompactHERV#key} */
+    public static final int KEY_OFFSET_END_POS_CHROMOSOME = 5;
+    /** offset of "start position HERV" value in {@link CompactHERV#key} */
+    public static final int KEY_OFFSET_START_POS_HERV = 9;
+    /** offset of "end position HERV" value in {@link CompactHERV#key} */
+    public static final int KEY_OFFSET_END_POS_HERV = 11;
+    /** offset of "HERV id" value in {@link CompactHERV#key} */
+    public static final int KEY_OFFSET_HERV_ID = 13;
+
+    /** offset of the quantized e-value in {@link CompactHERV#value} */
+    public static final int VALUE_OFFSET_EVALUE = 0;
+
+    /** the number of quantization steps per decade of the e-value */
+    public static final int EVALUE_STEPS_PER_DECADE = 100;
+    /** the quantized e-value of 1, larger e-values up to 10^10 are smaller */
+    public static final int EVALUE_OFFSET = 1000;
+    /** the quantized e-value, which represents an e-value of 0 */
+    public static final char EVALUE_ZERO = Character.MAX_VALUE;
+
+    /**
+     * Generates a new {@link CompactHERV}-instance. Initializes empty {@link CompactHERV#key} and
+     * {@link CompactHERV#value}.
+     */
+    public CompactHERV() {
+        key = new byte[KEY_SIZE];
+        value = new byte[ELEMENT_SIZE - KEY_SIZE];
+    }
+
+    /**
+     * Generates the compact representation of the given {@link HERV}.
+     * 
+     * @param herv
+     *            the HERV
+     */
+    public CompactHERV(HERV herv) {
+        this();
+        ByteBuffer bb = ByteBuffer.allocate(ELEMENT_SIZE);
+        put(bb, herv.getChromosome(), herv.getStartPositionChromosome(), herv.getEndPositionChromosome(),
+                herv.getStartHERV(), herv.getEndHERV(), herv.getIdHERV(), herv.getEValue());
+        bb.rewind();
+        initFromByteBuffer(bb);
+    }
+
+    @Override
+    public int getSize() {
+        return ELEMENT_SIZE;
+    }
+
+    /** @return the chromosome-id */
+    public byte getChromosome() {
+        return key[KEY_OFFSET_CHROMOSOME];
+    }
+
+    /** @return the start position on the chromosome */
+    public int getStartPositionChromosome() {
+        return Bytes.toInt(key, KEY_OFFSET_START_POS_CHROMOSOME);
+    }
+
+    /** @return the end position on the chromosome, smaller than the start position on the minus strand */
+    public int getEndPositionChromosome() {
+        return Bytes.toInt(key, KEY_OFFSET_END_POS_CHROMOSOME);
+    }
+
+    /** @return the start position of mapping in the HERV */
+    public char getStartHERV() {
+        return Bytes.toChar(key, KEY_OFFSET_START_POS_HERV);
+    }
+
+    /** @return the end position of mapping in the HERV */
+    public char getEndHERV() {
+        return Bytes.toChar(key, KEY_OFFSET_END_POS_HERV);
+    }
+
+    /** @return the id of the HERV */
+    public char getIdHERV() {
+        return Bytes.toChar(key, KEY_OFFSET_HERV_ID);
+    }
+
+    /** @return the strand of the chromosome, where the HERV can be found, 1 for the plus strand */
+    public byte getStrandOnChromosome() {
+        return (byte) (getEndPositionChromosome() < getStartPositionChromosome() ? 0 : 1);
+    }
+
+    /** @return the e-value of this HERV, with the precision of the quantization */
+    public double getEValue() {
+        return dequantizeEValue(Bytes.toChar(value, VALUE_OFFSET_EVALUE));
+    }
+
+    /** @return this HERV in the format {@link HERVFormat#DEFAULT} */
+    public HERV toHERV() {
+        HERV herv = new HERV(getChromosome(), getStartPositionChromosome(), getEndPositionChromosome(),
+                getStartHERV(), getEndHERV(), getIdHERV());
+        herv.setStrandOnChromosome(getStrandOnChromosome());
+        herv.setEValue(getEValue());
+        return herv;
+    }
+
+    /**
+     * Quantizes an e-value.
+     * 
+     * @param eValue
+     *            the e-value, must not be negative
+     * @return the quantized e-value, e-values larger than 10^10 are rounded to 10^10
+     */
+    public static char quantizeEValue(double eValue) {
+        if (!(eValue >= 0)) {
+            throw new IllegalArgumentException("Invalid e-value: " + eValue);
+        }
+        if (eValue == 0) {
+            return EVALUE_ZERO;
+        }
+        long quantized = Math.round(-Math.log10(eValue) * EVALUE_STEPS_PER_DECADE) + EVALUE_OFFSET;
+        return (char) Math.max(0, Math.min(EVALUE_ZERO - 1, quantized));
+    }
+
+    /**
+     * @param quantized
+     *            a quantized e-value
+     * @return the e-value
+     */
+    public static double dequantizeEValue(char quantized) {
+        if (quantized == EVALUE_ZERO) {
+            return 0;
+        }
+        return Math.pow(10, -(double) (quantized - EVALUE_OFFSET) / EVALUE_STEPS_PER_DECADE);
+    }
+
+    /**
+     * Creates the smallest key of all {@link CompactHERV}s starting at the given position.
+     * 
+     * @param chromosome
+     *            the chromosome number
+     * @param startPositionChromosome
+     *            the start position on the chromosome
+     * @return a key of {@link #KEY_SIZE} bytes
+     */
+    public static byte[] lowerKey(byte chromosome, int startPositionChromosome) {
+        return HERV.lowerKey(chromosome, startPositionChromosome);
+    }
+
+    /**
+     * Creates the largest key of all {@link CompactHERV}s starting at the given position.
+     * 
+     * @param chromosome
+     *            the chromosome number
+     * @param startPositionChromosome
+     *            the start position on the chromosome
+     * @return a key of {@link #KEY_SIZE} bytes
+     */
+    public static byte[] upperKey(byte chromosome, int startPositionChromosome) {
+        return HERV.upperKey(chromosome, startPositionChromosome);
+    }
+
+    /* accessors for serialized compact HERVs */
+
+    /**
+     * Writes a serialized {@link CompactHERV}.
+     * 
+     * @param out
+     *            the buffer to write to, at its position
+     * @param chromosome
+     *            the chromosome number
+     * @param startPositionChromosome
+     *            the start position of the mapping in the reference DNA
+     * @param endPositionChromosome
+     *            the end position of the mapping in the reference DNA, smaller than the start position on the minus
+     *            strand
+     * @param startHERV
+     *            the start position of the mapping in the HERV
+     * @param endHERV
+     *            the end position of the mapping in the HERV
+     * @param idHERV
+     *            the id of the HERV
+     * @param eValue
+     *            the e-value
+     */
+    public static void put(ByteBuffer out, byte chromosome, int startPositionChromosome, int endPositionChromosome,
+            char startHERV, char endHERV, char idHERV, double eValue) {
+        out.put(chromosome).putInt(startPositionChromosome).putInt(endPositionChromosome);
+        out.putChar(startHERV).putChar(endHERV).putChar(idHERV).putChar(quantizeEValue(eValue));
+    }
+
+    /**
+     * Converts a serialized {@link HERV} into a serialized {@link CompactHERV}.
+     * 
+     * @param hervs
+     *            a buffer containing serialized {@link HERV}s
+     * @param offset
+     *            the absolute offset of one record in the buffer
+     * @param out
+     *            the buffer to write to, at its position
+     */
+    public static void convert(ByteBuffer hervs, int offset, ByteBuffer out) {
+        put(out, HERV.getChromosome(hervs, offset), HERV.getStartPositionChromosome(hervs, offset),
+                HERV.getEndPositionChromosome(hervs, offset), HERV.getStartHERV(hervs, offset),
+                HERV.getEndHERV(hervs, offset), HERV.getIdHERV(hervs, offset), HERV.getEValue(hervs, offset));
+    }
+
+    /**
+     * @param records
+     *            a buffer containing serialized {@link CompactHERV}s
+     * @param offset
+     *            the absolute offset of one record in the buffer
+     * @return the start position on the chromosome
+     */
+    public static int getStartPositionChromosome(ByteBuffer records, int offset) {
+        return records.getInt(offset + KEY_OFFSET_START_POS_CHROMOSOME);
+    }
+
+    /**
+     * @param records
+     *            a buffer containing serialized {@link CompactHERV}s
+     * @param offset
+     *            the absolute offset of one record in the buffer
+     * @return the end position on the chromosome
+     */
+    public static int getEndPositionChromosome(ByteBuffer records, int offset) {
+        return records.getInt(offset + KEY_OFFSET_END_POS_CHROMOSOME);
+    }
+
+    /**
+     * @param records
+     *            a buffer containing serialized {@link CompactHERV}s
+     * @param offset
+     *            the absolute offset of one record in the buffer
+     * @return the e-value
+     */
+    public static double getEValue(ByteBuffer records, int offset) {
+        return dequantizeEValue(records.getChar(offset + KEY_SIZE + VALUE_OFFSET_EVALUE));
+    }
+
+    @Override
+    public String toString() {
+        return toHERV().toString();
+    }
+
+    @Override
+    public void initFromByteBuffer(ByteBuffer bb) {
+        byte[] extractedKey = new byte[KEY_SIZE];
+        byte[] extractedVal = new byte[ELEMENT_SIZE - KEY_SIZE];
+        bb.get(extractedKey);
+        bb.get(extractedVal);
+
+        this.key = extractedKey;
+        this.value = extractedVal;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public CompactHERV fromByteBuffer(ByteBuffer bb) {
+        CompactHERV r = new CompactHERV();
+        r.initFromByteBuffer(bb);
+        return r;
+    }
+
+    @Override
+    public ByteBuffer toByteBuffer() {
+        ByteBuffer bb = ByteBuffer.allocate(ELEMENT_SIZE).put(key).put(value);
+        bb.rewind();
+        return bb;
+    }
+
+    @Override
+    public CompactHERV clone() {
+        return fromByteBuffer(toByteBuffer());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public AbstractKVStorable merge(AbstractKVStorable element) {
+        return element;
+    }
+
+    @Override
+    public void update(AbstractKVStorable element) {
+        this.value = ((CompactHERV) element).value.clone();
+    }
+
+    /**
+     * Determines the {@link RangeHashFunction} for {@link CompactHERV}-data. Both formats have the same keys, so the
+     * hash function of {@link HERV#createHashFunction()} is used unchanged.
+     * 
+     * @return a {@link RangeHashFunction} for {@link CompactHERV}-data
+     */
+    public static RangeHashFunction createHashFunction() {
+        return HERV.createHashFunction();
+    }
+}
@@ -0,0 +1,83 @@
+package com.unister.semweb.biodrums.herv;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.unister.semweb.biodrums.bulk.BulkLoader;
+import com.unister.semweb.biodrums.mapped.MappedTable;
+import com.unister.semweb.drums.api.DRUMSException;
+import com.unister.semweb.drums.file.FileLockException;
+
+/**
+ * Migrates a HERV-table of {@link HERVFormat#DEFAULT} to {@link HERVFormat#COMPACT} in one streaming pass. The
+ * buckets of the source table are read sequentially from the mapped files, converted in chunks and written by a
+ * {@link BulkLoader}. Since both formats share their keys, the records arrive in key order and the sort of the loader
+ * has little to do. The source table is not modified.
+ * 
+ * <pre>
+ * BulkLoader&lt;CompactHERV&gt; loader = new BulkLoader&lt;CompactHERV&gt;(CompactHERV.createHashFunction(),
+ *         compactParameters, new CompactHERV(), 256 * 1024 * 1024, new File(&quot;/tmp&quot;));
+ * CompactHERVConverter.convert(hervTable, loader, compactParameters.DATABASE_DIRECTORY);
+ * </pre>
+ * 
+ * @author Martin Nettling
+ */
+public class CompactHERVConverter {
+    private static final Logger log = LoggerFactory.getLogger(CompactHERVConverter.class);
+
+    /** the number of records, which are converted before they are added to the loader */
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private CompactHERVConverter() {
+    }
+
+    /**
+     * Converts all {@link HERV}s of the source table, loads them into the new table and marks it as
+     * {@link HERVFormat#COMPACT}.
+     * 
+     * @param source
+     *            the table to convert
+     * @param loader
+     *            the loader of the new table
+     * @param databaseDirectory
+     *            the database directory of the new table
+     * @return the number of converted records
+     * @throws IOException
+     *             if the source is not of the default format or the new table could not be written
+     * @throws FileLockException
+     * @throws DRUMSException
+     * @throws InterruptedException
+     */
+    public static long convert(MappedTable<HERV> source, BulkLoader<CompactHERV> loader, String databaseDirectory)
+            throws IOException, FileLockException, DRUMSException, InterruptedException {
+        if (source.getElementSize() != HERV.ELEMENT_SIZE) {
+            throw new IOException("The source table does not contain HERVs of the default format");
+        }
+        ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE * CompactHERV.ELEMENT_SIZE);
+        long converted = 0;
+        for (int chunkId = 0; chunkId < source.getNumberOfChunks(); chunkId++) {
+            ByteBuffer records = source.getChunk(chunkId);
+            int numberOfRecords = source.getNumberOfRecords(chunkId);
+            for (int i = 0; i < numberOfRecords; i++) {
+                CompactHERV.convert(records, i * HERV.ELEMENT_SIZE, chunk);
+                if (!chunk.hasRemaining()) {
+                    chunk.flip();
+                    loader.add(chunk);
+                    chunk.clear();
+                }
+            }
+            converted += numberOfRecords;
+            log.debug("Converted chunk {}, {} records so far", chunkId, converted);
+        }
+        chunk.flip();
+        loader.add(chunk);
+        long loaded = loader.load();
+        HERVFormat.COMPACT.write(new File(databaseDirectory));
+        log.info("Converted {} HERVs into {} compact records", converted, loaded);
+        return converted;
+    }
+}
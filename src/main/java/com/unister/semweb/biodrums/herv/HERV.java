@@ -211,6 +211,125 @@ public class HERV extends AbstractKVStorable {
         Bytes.putDouble(value, VALUE_OFFSET_EVALUE, eValue);
     }
 
+    /**
+     * Creates the smallest key of all {@link HERV}s starting at the given position. Together with
+     * {@link #upperKey(byte, int)} it defines ranges of start positions.
+     * 
+     * @param chromosome
+     *            the chromosome number
+     * @param startPositionChromosome
+     *            the start position on the chromosome
+     * @return a key of {@link #KEY_SIZE} bytes
+     */
+    public static byte[] lowerKey(byte chromosome, int startPositionChromosome) {
+        return ByteBuffer.allocate(KEY_SIZE).put(chromosome).putInt(startPositionChromosome).array();
+    }
+
+    /**
+     * Creates the largest key of all {@link HERV}s starting at the given position.
+     * 
+     * @param chromosome
+     *            the chromosome number
+     * @param startPositionChromosome
+     *            the start position on the chromosome
+     * @return a key of {@link #KEY_SIZE} bytes
+     */
+    public static byte[] upperKey(byte chromosome, int startPositionChromosome) {
+        byte[] key = lowerKey(chromosome, startPositionChromosome);
+        Arrays.fill(key, KEY_OFFSET_END_POS_CHROMOSOME, KEY_SIZE, (byte) 0xFF);
+        return key;
+    }
+
+    /* accessors for serialized HERVs, e.g. in a buffer read from a bucket file */
+
+    /**
+     * @param records
+     *            a buffer containing serialized {@link HERV}s
+     * @param offset
+     *            the absolute offset of one record in the buffer
+     * @return the chromosome-id of the record
+     */
+    public static byte getChromosome(ByteBuffer records, int offset) {
+        return records.get(offset + KEY_OFFSET_CHROMOSOME);
+    }
+
+    /**
+     * @param records
+     *            a buffer containing serialized {@link HERV}s
+     * @param offset
+     *            the absolute offset of one record in the buffer
+     * @return the start position on the chromosome of the record
+     */
+    public static int getStartPositionChromosome(ByteBuffer records, int offset) {
+        return records.getInt(offset + KEY_OFFSET_START_POS_CHROMOSOME);
+    }
+
+    /**
+     * @param records
+     *            a buffer containing serialized {@link HERV}s
+     * @param offset
+     *            the absolute offset of one record in the buffer
+     * @return the end position on the chromosome of the record
+     */
+    public static int getEndPositionChromosome(ByteBuffer records, int offset) {
+        return records.getInt(offset + KEY_OFFSET_END_POS_CHROMOSOME);
+    }
+
+    /**
+     * @param records
+     *            a buffer containing serialized {@link HERV}s
+     * @param offset
+     *            the absolute offset of one record in the buffer
+     * @return the start position of mapping in the HERV of the record
+     */
+    public static char getStartHERV(ByteBuffer records, int offset) {
+        return records.getChar(offset + KEY_OFFSET_START_POS_HERV);
+    }
+
+    /**
+     * @param records
+     *            a buffer containing serialized {@link HERV}s
+     * @param offset
+     *            the absolute offset of one record in the buffer
+     * @return the end position of mapping in the HERV of the record
+     */
+    public static char getEndHERV(ByteBuffer records, int offset) {
+        return records.getChar(offset + KEY_OFFSET_END_POS_HERV);
+    }
+
+    /**
+     * @param records
+     *            a buffer containing serialized {@link HERV}s
+     * @param offset
+     *            the absolute offset of one record in the buffer
+     * @return the id of the HERV of the record
+     */
+    public static char getIdHERV(ByteBuffer records, int offset) {
+        return records.getChar(offset + KEY_OFFSET_HERV_ID);
+    }
+
+    /**
+     * @param records
+     *            a buffer containing serialized {@link HERV}s
+     * @param offset
+     *            the absolute offset of one record in the buffer
+     * @return the strand of the chromosome of the record
+     */
+    public static byte getStrandOnChromosome(ByteBuffer records, int offset) {
+        return records.get(offset + KEY_SIZE + VALUE_OFFSET_STRAND_ON_CHROMOSOME);
+    }
+
+    /**
+     * @param records
+     *            a buffer containing serialized {@link HERV}s
+     * @param offset
+     *            the absolute offset of one record in the buffer
+     * @return the e-value of the record
+     */
+    public static double getEValue(ByteBuffer records, int offset) {
+        return records.getDouble(offset + KEY_SIZE + VALUE_OFFSET_EVALUE);
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
@@ -0,0 +1,93 @@
+package com.unister.semweb.biodrums.herv;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import com.unister.semweb.biodrums.ingest.IngestionCheckpoint;
+import com.unister.semweb.biodrums.ingest.MySQLDumpReader;
+import com.unister.semweb.biodrums.ingest.MySQLDumpSource;
+
+/**
+ * Parses a dump of the MySQL-table <code>herv</code> (see <code>HERVExample/create_table.mysql</code>) written by
+ * <code>SELECT * INTO OUTFILE</code> or <code>mysqldump --tab</code>. The columns are expected in the order of the
+ * table definition: chromosome, startPositionChromosome, endPositionChromosome, startPositionHERV, endPositionHERV,
+ * idHERV, strand and eValue. A <code>NULL</code> strand is derived from the positions like in {@link HitFileParser}.
+ * A row with a <code>NULL</code> e-value is counted as error line and skipped, because 0 would rank it as the best
+ * hit.
+ * 
+ * @author Martin Nettling
+ */
+public class HERVDumpParser extends MySQLDumpSource<HERV> {
+    /** the number of columns of the table */
+    public static final int COLUMNS = 8;
+
+    /**
+     * Instantiates a new parser for the given dump.
+     * 
+     * @param filename
+     *            the name of the dump
+     * @param bufferSize
+     *            the size of the buffer to use
+     * @throws IOException
+     */
+    public HERVDumpParser(String filename, int bufferSize) throws IOException {
+        super(filename, bufferSize, new HERV(), null);
+    }
+
+    /**
+     * Instantiates a new parser for the given dump, which continues at the position of the given checkpoint.
+     * 
+     * @param filename
+     *            the name of the dump
+     * @param bufferSize
+     *            the size of the buffer to use
+     * @param checkpoint
+     *            the checkpoint to resume from
+     * @throws IOException
+     */
+    public HERVDumpParser(String filename, int bufferSize, IngestionCheckpoint checkpoint) throws IOException {
+        super(filename, bufferSize, new HERV(), checkpoint);
+    }
+
+    @Override
+    protected boolean encode(MySQLDumpReader row, ByteBuffer destination) {
+        if (row.getFieldCount() != COLUMNS) {
+            return false;
+        }
+        long chromosome = row.getLong(0);
+        long startChromosome = row.getLong(1);
+        long endChromosome = row.getLong(2);
+        long startHERV = row.getLong(3);
+        long endHERV = row.getLong(4);
+        long idHERV = row.getLong(5);
+        if (chromosome < 0 || chromosome > Byte.MAX_VALUE || !isInt(startChromosome) || !isInt(endChromosome)
+                || !isChar(startHERV) || !isChar(endHERV) || !isChar(idHERV) || row.isNull(7)) {
+            return false;
+        }
+        byte strand;
+        if (row.isNull(6)) {
+            strand = (byte) (startChromosome > endChromosome ? 0 : 1);
+        } else {
+            strand = (byte) row.getLong(6);
+        }
+        double eValue = row.getDouble(7);
+
+        destination.put((byte) chromosome);
+        destination.putInt((int) startChromosome);
+        destination.putInt((int) endChromosome);
+        destination.putChar((char) startHERV);
+        destination.putChar((char) endHERV);
+        destination.putChar((char) idHERV);
+        destination.put(strand);
+        destination.putDouble(eValue);
+        return true;
+    }
+
+    private static boolean isInt(long value) {
+        return value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE;
+    }
+
+    private static boolean isChar(long value) {
+        return value >= Character.MIN_VALUE && value <= Character.MAX_VALUE;
+    }
+}
@@ -0,0 +1,134 @@
+package com.unister.semweb.biodrums.herv;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+import com.unister.semweb.biodrums.storage.BucketFiles;
+import com.unister.semweb.drums.storable.AbstractKVStorable;
+
+/**
+ * The record layouts of HERV-tables. The layout of a table is stored in the file {@link #FILE_NAME} in its database
+ * directory. Tables without this file were written before the compact layout existed and use {@link #DEFAULT}. Code,
+ * which opens a HERV-table, calls {@link #check(File, AbstractKVStorable)} to fail fast, if the records are read with
+ * the wrong layout.
+ * 
+ * @author Martin Nettling
+ */
+public enum HERVFormat {
+    /** the layout of {@link HERV}, 24 bytes per record */
+    DEFAULT(1, HERV.ELEMENT_SIZE),
+    /** the layout of {@link CompactHERV}, 17 bytes per record */
+    COMPACT(2, CompactHERV.ELEMENT_SIZE);
+
+    /** the name of the file, which contains the format of a table */
+    public static final String FILE_NAME = "HERVFormat.properties";
+
+    private final int version;
+    private final int elementSize;
+
+    private HERVFormat(int version, int elementSize) {
+        this.version = version;
+        this.elementSize = elementSize;
+    }
+
+    /** @return the version, which is written to {@link #FILE_NAME} */
+    public int getVersion() {
+        return version;
+    }
+
+    /** @return the number of bytes of one record */
+    public int getElementSize() {
+        return elementSize;
+    }
+
+    /**
+     * Writes this format to the given database directory. The file is written to a temporary file first and then
+     * renamed.
+     * 
+     * @param databaseDirectory
+     *            the database directory of the table
+     * @throws IOException
+     */
+    public void write(File databaseDirectory) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("version", Integer.toString(version));
+        properties.setProperty("elementSize", Integer.toString(elementSize));
+
+        File file = new File(databaseDirectory, FILE_NAME);
+        File tmp = new File(databaseDirectory, FILE_NAME + ".tmp");
+        FileOutputStream out = new FileOutputStream(tmp);
+        try {
+            properties.store(out, "BioDRUMS HERV format");
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        BucketFiles.replace(tmp, file);
+    }
+
+    /**
+     * Reads the format of the table in the given database directory.
+     * 
+     * @param databaseDirectory
+     *            the database directory of the table
+     * @return the format of the table, {@link #DEFAULT} if the directory contains no {@link #FILE_NAME}
+     * @throws IOException
+     *             if the file can't be read or contains an unknown version or another element size than its version
+     */
+    public static HERVFormat read(File databaseDirectory) throws IOException {
+        File file = new File(databaseDirectory, FILE_NAME);
+        if (!file.exists()) {
+            return DEFAULT;
+        }
+        Properties properties = new Properties();
+        InputStream in = new FileInputStream(file);
+        try {
+            properties.load(in);
+        } finally {
+            in.close();
+        }
+        String version = properties.getProperty("version");
+        for (HERVFormat format : values()) {
+            if (Integer.toString(format.version).equals(version)) {
+                String elementSize = properties.getProperty("elementSize");
+                if (!Integer.toString(format.elementSize).equals(elementSize)) {
+                    throw new IOException(file + " contains the element size " + elementSize + " instead of "
+                            + format.elementSize + " for version " + version);
+                }
+                return format;
+            }
+        }
+        throw new IOException(file + " contains the unknown version " + version);
+    }
+
+    /**
+     * Checks that the table in the given database directory can be read with the given prototype. Only
+     * {@link HERV}s and {@link CompactHERV}s are checked, prototypes of other tables are accepted.
+     * 
+     * @param databaseDirectory
+     *            the database directory of the table
+     * @param prototype
+     *            the prototype, with which the table is opened
+     * @throws IOException
+     *             if the format file can't be read or the table has another format than the prototype
+     */
+    public static void check(File databaseDirectory, AbstractKVStorable prototype) throws IOException {
+        HERVFormat expected;
+        if (prototype instanceof CompactHERV) {
+            expected = COMPACT;
+        } else if (prototype instanceof HERV) {
+            expected = DEFAULT;
+        } else {
+            return;
+        }
+        HERVFormat format = read(databaseDirectory);
+        if (format != expected) {
+            throw new IOException("The table in " + databaseDirectory + " is of the format " + format
+                    + ", but it is opened as " + expected);
+        }
+    }
+}
@@ -1,18 +1,23 @@
 package com.unister.semweb.biodrums.herv;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.File;
 import java.io.IOException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.unister.semweb.biodrums.ingest.IngestionCheckpoint;
+import com.unister.semweb.biodrums.ingest.OffsetLineReader;
+import com.unister.semweb.biodrums.ingest.ResumableSource;
+import com.unister.semweb.biodrums.monitoring.BioDRUMSMetrics;
+
 /**
- * This class is capable of parsing HitFiles generated by BLAST.
+ * This class is capable of parsing HitFiles generated by BLAST. The parser tracks the byte offset in the file, so an
+ * interrupted load can be resumed from an {@link IngestionCheckpoint}.
  * 
  * @author Martin Nettling
  */
-public class HitFileParser {
+public class HitFileParser implements ResumableSource<HERV> {
     private static final Logger log = LoggerFactory.getLogger(HitFileParser.class);
 
     /** Counter for all lines */
@@ -21,7 +26,10 @@ public class HitFileParser {
     /** Counter for lines which are causing an error */
     private long errorLines;
 
-    private BufferedReader bufferedReader;
+    private OffsetLineReader reader;
+
+    /** the metrics to record the parsed lines in, may be null */
+    private BioDRUMSMetrics metrics;
 
     /**
      * Instantiates a new parser for HERV-data.
@@ -33,8 +41,24 @@ public class HitFileParser {
      * @throws IOException
      */
     public HitFileParser(String filename, int bufferSize) throws IOException {
-        FileReader fileReader = new FileReader(filename);
-        bufferedReader = new BufferedReader(fileReader, bufferSize);
+        reader = new OffsetLineReader(new File(filename), 0, bufferSize);
+    }
+
+    /**
+     * Instantiates a new parser for HERV-data, which continues at the position of the given checkpoint.
+     * 
+     * @param filename
+     *            the name of the file, which contains the HERV-Data
+     * @param bufferSize
+     *            the size of the buffer to use
+     * @param checkpoint
+     *            the checkpoint to resume from
+     * @throws IOException
+     */
+    public HitFileParser(String filename, int bufferSize, IngestionCheckpoint checkpoint) throws IOException {
+        reader = new OffsetLineReader(new File(filename), checkpoint.getPosition(), bufferSize);
+        overallLines = checkpoint.getOverallLines();
+        errorLines = checkpoint.getErrorLines();
     }
 
     /**
@@ -44,18 +68,22 @@ public class HitFileParser {
      * @return the next {@link HERV}-object. NULL if no next object can be read.
      * @throws IOException
      */
+    @Override
     public HERV readNext() throws IOException {
-        String nextLine = bufferedReader.readLine();
+        String nextLine = reader.readLine();
         HERV actualObject = null;
         // read lines until a new HERV-object could be read or the end of the file is reached
         while (nextLine != null && actualObject == null) {
             actualObject = parseLine(nextLine);
             overallLines++;
+            if (metrics != null) {
+                metrics.recordParsedLine(actualObject != null);
+            }
             if (actualObject != null) {
                 break;
             }
             errorLines++;
-            nextLine = bufferedReader.readLine();
+            nextLine = reader.readLine();
         }
         return actualObject;
     }
@@ -135,12 +163,39 @@ public class HitFileParser {
         }
     }
 
+    /**
+     * Sets the metrics, in which all read lines are recorded.
+     * 
+     * @param metrics
+     *            the metrics to use, <code>null</code> to disable recording
+     */
+    public void setMetrics(BioDRUMSMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /** @return the byte offset of the line following the last returned {@link HERV} */
+    @Override
+    public long getPosition() {
+        return reader.getOffset();
+    }
+
+    /**
+     * Closes the underlying file.
+     * 
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        reader.close();
+    }
+
     /** @return the number of read lines */
+    @Override
     public long getOverallLines() {
         return overallLines;
     }
 
     /** @return the number of read lines with an error */
+    @Override
     public long getErrorLines() {
         return errorLines;
     }
@@ -2,11 +2,15 @@ package com.unister.semweb.biodrums.herv.tutorial;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
 import com.unister.semweb.biodrums.herv.HERV;
+import com.unister.semweb.biodrums.mapped.MappedTable;
+import com.unister.semweb.biodrums.scan.RecordVisitor;
+import com.unister.semweb.biodrums.stream.TableStreams;
 import com.unister.semweb.drums.DRUMSParameterSet;
 import com.unister.semweb.drums.api.DRUMS;
 import com.unister.semweb.drums.api.DRUMS.AccessMode;
@@ -108,6 +112,35 @@ public class HERVReadTutorial {
         System.out.println("Found " + filteredRange.size() + " HERVs between " + lowerKey + " and " + upperKey
                 + " , with an E-Value smaller than 1e-50");
 
+        /**
+         * ############################# Memory-mapped Example
+         * If a table is not changed anymore, you can use a {@link MappedTable}. It maps all bucket files into memory
+         * and answers selects and ranges without read-calls. With a {@link RecordVisitor} the records can be evaluated
+         * in place, without instantiating {@link HERV}-objects.
+         */
+        System.out.println("\n\n############## Filter the same range on a MappedTable ##############");
+        MappedTable<HERV> mappedTable = new MappedTable<HERV>(globalParameters, HERV.createHashFunction(), new HERV());
+        final int[] hits = new int[1];
+        mappedTable.scan(lowerKey.getKey(), upperKey.getKey(), new RecordVisitor() {
+            @Override
+            public boolean visit(ByteBuffer records, int offset) {
+                if (HERV.getEValue(records, offset) < 1e-50) {
+                    hits[0]++;
+                }
+                return true;
+            }
+        });
+        System.out.println("Found " + hits[0] + " HERVs with an E-Value smaller than 1e-50 in the mapped table");
+
+        /**
+         * The {@link TableStreams} provide parallel streams over a {@link MappedTable}. Primitive streams read single
+         * fields in place.
+         */
+        long streamHits = TableStreams.doubleStream(mappedTable, lowerKey.getKey(), upperKey.getKey(),
+                HERV::getEValue, true).filter(eValue -> eValue < 1e-50).count();
+        System.out.println("Counted " + streamHits + " HERVs with an E-Value smaller than 1e-50 in a parallel stream");
+        mappedTable.close();
+
         drums.close();
     }
 }
\ No newline at end of file
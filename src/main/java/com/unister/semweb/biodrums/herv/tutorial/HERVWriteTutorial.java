@@ -4,10 +4,15 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 
+import javax.management.JMException;
+
 import org.apache.commons.io.FileUtils;
 
+import com.unister.semweb.biodrums.config.DRUMSConfigurationAdvisor;
 import com.unister.semweb.biodrums.herv.HERV;
 import com.unister.semweb.biodrums.herv.HitFileParser;
+import com.unister.semweb.biodrums.monitoring.BioDRUMSMetrics;
+import com.unister.semweb.biodrums.monitoring.InstrumentedDRUMS;
 import com.unister.semweb.drums.DRUMSParameterSet;
 import com.unister.semweb.drums.api.DRUMS;
 import com.unister.semweb.drums.api.DRUMSException;
@@ -35,8 +40,9 @@ public class HERVWriteTutorial {
      * @throws IOException
      * @throws InterruptedException
      * @throws DRUMSException
+     * @throws JMException
      */
-    public static void main(String[] args) throws IOException, DRUMSException, InterruptedException {
+    public static void main(String[] args) throws IOException, DRUMSException, InterruptedException, JMException {
         /**
          * First the parameters for the DRUMS-table must be instantiated and loaded. You can define a property file,
          * from which all parameters are loaded. Further, the type of data must be defined. This is done by setting the
@@ -55,9 +61,12 @@ public class HERVWriteTutorial {
 
         /**
          * The {@link DRUMSInstantiator}-class provides several factory methods to instantiate a DRUMS-table. The table
-         * does not exists. It must be created before you can insert data.
+         * does not exists. It must be created before you can insert data. The {@link DRUMSConfigurationAdvisor}
+         * derives the memory parameters from the heap and the number of buckets before it creates the table. If you
+         * know the number of records to insert, pass it instead of 0.
          */
-        DRUMS<HERV> drums = DRUMSInstantiator.createTable(hashFunction, globalParameters);
+        DRUMS<HERV> drums = new DRUMSConfigurationAdvisor(HERV.ELEMENT_SIZE, 0).createTable(hashFunction,
+                globalParameters);
 
         // obtain the concrete path to the example file
         URL url = HERVWriteTutorial.class.getClassLoader().getResource("HERVExample/HitFile.txt");
@@ -66,16 +75,31 @@ public class HERVWriteTutorial {
          */
         HitFileParser parser = new HitFileParser(url.getFile(), 1024 * 64);
 
+        /**
+         * If you want to observe the load, you can record parse rate, insert latencies and inserts per bucket in a
+         * {@link BioDRUMSMetrics}-instance. After registering it, all values can be inspected with any JMX-client, e.g.
+         * jconsole.
+         */
+        BioDRUMSMetrics metrics = new BioDRUMSMetrics(hashFunction.getNumberOfBuckets());
+        metrics.register("HERVExample");
+        parser.setMetrics(metrics);
+        InstrumentedDRUMS<HERV> instrumentedDrums = new InstrumentedDRUMS<HERV>(drums, hashFunction, new HERV(),
+                metrics);
+
         /**
          * Add all {@link HERV}s to your {@link DRUMS}-instance.
          */
         HERV herv;
         while ((herv = parser.readNext()) != null) {
-            drums.insertOrMerge(herv);
+            instrumentedDrums.insertOrMerge(herv);
         }
+        System.out.println("Parsed " + metrics.getParsedLines() + " lines (" + metrics.getParseErrors()
+                + " errors) with " + (long) metrics.getParseRate() + " lines/s. Median insert latency: "
+                + metrics.getInsertLatencyMedian() + " us, hottest bucket: " + metrics.getHottestBucket());
         /**
          * Don't forget to close your {@link DRUMS}-instance.
          */
-        drums.close();
+        instrumentedDrums.close();
+        metrics.unregister();
     }
 }
@@ -0,0 +1,70 @@
+package com.unister.semweb.biodrums.ingest;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A fixed set of direct buffers, which are reused for the whole load. The buffers live outside of the heap and are
+ * allocated once, so collecting records in them puts no pressure on the garbage collector. {@link #acquire()} blocks
+ * while all buffers are in use, which throttles a parser, that is faster than the consumer of the buffers.<br>
+ * <br>
+ * An instance is thread-safe.
+ * 
+ * @author Martin Nettling
+ */
+public class DirectBufferPool {
+    private final BlockingQueue<ByteBuffer> free;
+
+    private final int bufferSize;
+
+    /**
+     * Allocates the buffers of the pool.
+     * 
+     * @param numberOfBuffers
+     *            the number of buffers, at least 2 to let a parser and a consumer work at the same time
+     * @param bufferSize
+     *            the size of each buffer in bytes
+     */
+    public DirectBufferPool(int numberOfBuffers, int bufferSize) {
+        this.bufferSize = bufferSize;
+        this.free = new ArrayBlockingQueue<ByteBuffer>(numberOfBuffers);
+        for (int i = 0; i < numberOfBuffers; i++) {
+            free.add(ByteBuffer.allocateDirect(bufferSize));
+        }
+    }
+
+    /**
+     * Takes a buffer from the pool and waits, if all buffers are in use.
+     * 
+     * @return a cleared buffer
+     * @throws InterruptedException
+     */
+    public ByteBuffer acquire() throws InterruptedException {
+        ByteBuffer buffer = free.take();
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer to the pool.
+     * 
+     * @param buffer
+     *            a buffer returned by {@link #acquire()}
+     */
+    public void release(ByteBuffer buffer) {
+        if (!buffer.isDirect() || buffer.capacity() != bufferSize || !free.offer(buffer)) {
+            throw new IllegalArgumentException("The buffer does not belong to this pool");
+        }
+    }
+
+    /** @return the number of buffers, which are not in use */
+    public int getNumberOfFreeBuffers() {
+        return free.size();
+    }
+
+    /** @return the size of each buffer in bytes */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+}
@@ -0,0 +1,132 @@
+package com.unister.semweb.biodrums.ingest;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+import com.unister.semweb.biodrums.storage.BucketFiles;
+
+/**
+ * The state of a load, after all records read so far were durably written to the table. A checkpoint contains the
+ * position in the input and the counters of the parser. It is stored as a property file, which is replaced
+ * atomically.
+ * 
+ * @author Martin Nettling
+ */
+public class IngestionCheckpoint {
+    private final String input;
+    private final long position;
+    private final long overallLines;
+    private final long errorLines;
+    private final long records;
+
+    /**
+     * @param input
+     *            the name of the input file
+     * @param position
+     *            the position in the input, from which the load is resumed
+     * @param overallLines
+     *            the number of read lines
+     * @param errorLines
+     *            the number of read lines with an error
+     * @param records
+     *            the number of records written to the table
+     */
+    public IngestionCheckpoint(String input, long position, long overallLines, long errorLines, long records) {
+        this.input = input;
+        this.position = position;
+        this.overallLines = overallLines;
+        this.errorLines = errorLines;
+        this.records = records;
+    }
+
+    /** @return the name of the input file */
+    public String getInput() {
+        return input;
+    }
+
+    /** @return the position in the input, from which the load is resumed */
+    public long getPosition() {
+        return position;
+    }
+
+    /** @return the number of read lines */
+    public long getOverallLines() {
+        return overallLines;
+    }
+
+    /** @return the number of read lines with an error */
+    public long getErrorLines() {
+        return errorLines;
+    }
+
+    /** @return the number of records written to the table */
+    public long getRecords() {
+        return records;
+    }
+
+    /**
+     * Writes this checkpoint to the given file. The file is written to a temporary file first and then renamed, so a
+     * crash never leaves a partially written checkpoint.
+     * 
+     * @param file
+     *            the file to write
+     * @throws IOException
+     */
+    public void save(File file) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("input", input);
+        properties.setProperty("position", Long.toString(position));
+        properties.setProperty("overallLines", Long.toString(overallLines));
+        properties.setProperty("errorLines", Long.toString(errorLines));
+        properties.setProperty("records", Long.toString(records));
+
+        File tmp = new File(file.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(tmp);
+        try {
+            properties.store(out, "BioDRUMS ingestion checkpoint");
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        BucketFiles.replace(tmp, file);
+    }
+
+    /**
+     * Reads a checkpoint, which was written by {@link #save(File)}.
+     * 
+     * @param file
+     *            the file to read
+     * @return the checkpoint, <code>null</code> if the file does not exist
+     * @throws IOException
+     */
+    public static IngestionCheckpoint load(File file) throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+        Properties properties = new Properties();
+        InputStream in = new FileInputStream(file);
+        try {
+            properties.load(in);
+        } finally {
+            in.close();
+        }
+        try {
+            return new IngestionCheckpoint(properties.getProperty("input"), Long.parseLong(properties
+                    .getProperty("position")), Long.parseLong(properties.getProperty("overallLines")),
+                    Long.parseLong(properties.getProperty("errorLines")), Long.parseLong(properties
+                            .getProperty("records")));
+        } catch (NumberFormatException ex) {
+            throw new IOException(file + " is no valid checkpoint: " + ex.getMessage());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return input + "@" + position + " (" + overallLines + " lines, " + errorLines + " errors, " + records
+                + " records)";
+    }
+}
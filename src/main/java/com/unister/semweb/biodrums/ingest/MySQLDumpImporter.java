@@ -0,0 +1,89 @@
+package com.unister.semweb.biodrums.ingest;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.unister.semweb.biodrums.bulk.BulkLoader;
+import com.unister.semweb.biodrums.herv.HERV;
+import com.unister.semweb.biodrums.herv.HERVDumpParser;
+import com.unister.semweb.biodrums.weigel.SNP;
+import com.unister.semweb.biodrums.weigel.SNPDumpParser;
+import com.unister.semweb.drums.DRUMSParameterSet;
+import com.unister.semweb.drums.storable.AbstractKVStorable;
+
+/**
+ * Migrates dumps of the legacy MySQL-tables <code>herv</code> and <code>snp</code> into a new DRUMS-table. The rows are
+ * parsed by a {@link MySQLDumpSource} directly into pooled direct buffers of serialized records, which are handed as a
+ * whole to the {@link BulkLoader} by an {@link OffHeapLoader}, so no object is created per row.
+ * 
+ * <pre>
+ * mysql&gt; SELECT * FROM herv INTO OUTFILE '/data/herv.txt';
+ * $ java MySQLDumpImporter herv herv.properties /tmp 2048 /data/herv.txt
+ * </pre>
+ * 
+ * @author Martin Nettling
+ */
+public class MySQLDumpImporter {
+    private static final Logger log = LoggerFactory.getLogger(MySQLDumpImporter.class);
+
+    /** the size of the read buffer of the dumps */
+    public static final int READ_BUFFER_SIZE = 8 * 1024 * 1024;
+
+    /** the size of the direct buffers, in which the serialized records are collected */
+    public static final int RECORD_BUFFER_SIZE = 4 * 1024 * 1024;
+
+    /** the number of direct buffers */
+    public static final int NUMBER_OF_BUFFERS = 4;
+
+    private static <Data extends AbstractKVStorable> long addAll(MySQLDumpSource<Data> source,
+            BulkLoader<Data> loader, DirectBufferPool pool, String filename) throws IOException, InterruptedException {
+        try {
+            long added = new OffHeapLoader<Data>(loader, pool).add(source);
+            log.info("Read {} rows from {}, {} rows could not be parsed",
+                    new Object[] { source.getOverallLines(), filename, source.getErrorLines() });
+            return added;
+        } finally {
+            source.close();
+        }
+    }
+
+    /**
+     * Loads the given dumps into a new table.
+     * 
+     * @param args
+     *            <code>herv|snp propertyFile tmpDirectory memoryMB dumpFile...</code>
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 5) {
+            System.err.println("Usage: MySQLDumpImporter herv|snp propertyFile tmpDirectory memoryMB dumpFile...");
+            return;
+        }
+        File tmpDirectory = new File(args[2]);
+        long memoryBudget = Long.parseLong(args[3]) * 1024 * 1024;
+        DirectBufferPool pool = new DirectBufferPool(NUMBER_OF_BUFFERS, RECORD_BUFFER_SIZE);
+        long start = System.currentTimeMillis();
+        long added = 0;
+        long loaded;
+        if (args[0].equalsIgnoreCase("herv")) {
+            BulkLoader<HERV> loader = new BulkLoader<HERV>(HERV.createHashFunction(), new DRUMSParameterSet<HERV>(
+                    args[1], new HERV()), new HERV(), memoryBudget, tmpDirectory);
+            for (int i = 4; i < args.length; i++) {
+                added += addAll(new HERVDumpParser(args[i], READ_BUFFER_SIZE), loader, pool, args[i]);
+            }
+            loaded = loader.load();
+        } else {
+            BulkLoader<SNP> loader = new BulkLoader<SNP>(SNP.createHashFunction(), new DRUMSParameterSet<SNP>(
+                    args[1], new SNP()), new SNP(), memoryBudget, tmpDirectory);
+            for (int i = 4; i < args.length; i++) {
+                added += addAll(new SNPDumpParser(args[i], READ_BUFFER_SIZE), loader, pool, args[i]);
+            }
+            loaded = loader.load();
+        }
+        log.info("Imported {} rows as {} records in {} ms",
+                new Object[] { added, loaded, System.currentTimeMillis() - start });
+    }
+}
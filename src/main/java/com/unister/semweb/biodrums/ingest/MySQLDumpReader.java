@@ -0,0 +1,287 @@
+package com.unister.semweb.biodrums.ingest;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Reads the rows of a table exported by <code>SELECT ... INTO OUTFILE</code> or <code>mysqldump --tab</code> with the
+ * default format of MySQL: fields are terminated by a tab, rows by <code>\n</code>, special characters are escaped by
+ * a backslash and <code>NULL</code> is written as <code>\N</code>. The rows are unescaped on the byte level and the
+ * numeric fields are parsed without creating strings, so reading a dump is limited by the disk and not by the
+ * parser. Like the {@link OffsetLineReader} the reader keeps track of the byte offset of the next row and can start at
+ * any offset returned by {@link #getOffset()}.
+ * 
+ * @author Martin Nettling
+ */
+public class MySQLDumpReader implements Closeable {
+    private static final Charset CHARSET = Charset.forName("ISO-8859-1");
+
+    private static final byte ESCAPE = '\\';
+
+    /** the powers of ten, which are exactly representable as double */
+    private static final double[] POWERS_OF_TEN = new double[23];
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = 10 * POWERS_OF_TEN[i - 1];
+        }
+    }
+
+    private final RandomAccessFile file;
+
+    private final byte[] buffer;
+    private int position;
+    private int limit;
+
+    /** the offset of the first byte, which was not consumed yet */
+    private long offset;
+
+    /** the unescaped bytes of the current row */
+    private byte[] row = new byte[256];
+
+    /** the start of each field in {@link #row}, the field i ends at <code>fieldStarts[i + 1]</code> */
+    private int[] fieldStarts = new int[16];
+
+    /** marks the fields containing <code>\N</code> */
+    private boolean[] nulls = new boolean[16];
+
+    private int fieldCount;
+
+    /**
+     * Opens the given dump and positions the reader at the given offset.
+     * 
+     * @param file
+     *            the dump to read
+     * @param offset
+     *            the offset of the first row to read
+     * @param bufferSize
+     *            the size of the read buffer
+     * @throws IOException
+     */
+    public MySQLDumpReader(File file, long offset, int bufferSize) throws IOException {
+        this.file = new RandomAccessFile(file, "r");
+        this.file.seek(offset);
+        this.buffer = new byte[bufferSize];
+        this.offset = offset;
+    }
+
+    /**
+     * Reads the next row. An escaped tab or line break belongs to the field and doesn't end it.
+     * 
+     * @return <code>false</code> if the end of the dump is reached
+     * @throws IOException
+     */
+    public boolean nextRow() throws IOException {
+        int length = 0;
+        fieldCount = 0;
+        fieldStarts[0] = 0;
+        nulls[0] = false;
+        boolean read = false;
+        boolean escaped = false;
+        // an unescaped carriage return at the end of the row belongs to a \r\n terminator
+        boolean carriageReturn = false;
+        int b;
+        while ((b = nextByte()) >= 0) {
+            read = true;
+            if (escaped) {
+                escaped = false;
+                carriageReturn = false;
+                if (b == 'N' && length == fieldStarts[fieldCount]) {
+                    nulls[fieldCount] = true;
+                    continue;
+                }
+                b = unescape(b);
+            } else if (b == ESCAPE) {
+                escaped = true;
+                continue;
+            } else if (b == '\t') {
+                newField(length);
+                carriageReturn = false;
+                continue;
+            } else if (b == '\n') {
+                if (carriageReturn) {
+                    length--;
+                }
+                break;
+            } else {
+                carriageReturn = b == '\r';
+            }
+            if (length == row.length) {
+                row = Arrays.copyOf(row, 2 * length);
+            }
+            row[length++] = (byte) b;
+        }
+        if (!read) {
+            return false;
+        }
+        newField(length);
+        return true;
+    }
+
+    private void newField(int length) {
+        fieldCount++;
+        if (fieldCount == fieldStarts.length) {
+            fieldStarts = Arrays.copyOf(fieldStarts, 2 * fieldCount);
+            nulls = Arrays.copyOf(nulls, 2 * fieldCount);
+        }
+        fieldStarts[fieldCount] = length;
+        nulls[fieldCount] = false;
+    }
+
+    private static int unescape(int b) {
+        switch (b) {
+        case '0':
+            return 0;
+        case 'b':
+            return '\b';
+        case 'n':
+            return '\n';
+        case 'r':
+            return '\r';
+        case 't':
+            return '\t';
+        case 'Z':
+            return 26;
+        default:
+            return b;
+        }
+    }
+
+    private int nextByte() throws IOException {
+        if (position == limit) {
+            limit = file.read(buffer);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        offset++;
+        return buffer[position++] & 0xFF;
+    }
+
+    /** @return the number of fields of the current row */
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * @param field
+     *            the index of the field, the first field has index 0
+     * @return <code>true</code> if the field contains <code>NULL</code>
+     */
+    public boolean isNull(int field) {
+        checkField(field);
+        return nulls[field];
+    }
+
+    /**
+     * Parses the given field as integer.
+     * 
+     * @param field
+     *            the index of the field
+     * @return the value of the field
+     * @throws NumberFormatException
+     *             if the field is <code>NULL</code> or no integer
+     */
+    public long getLong(int field) {
+        checkField(field);
+        int start = fieldStarts[field];
+        int end = fieldStarts[field + 1];
+        if (nulls[field] || start == end) {
+            throw new NumberFormatException("Field " + field + " is empty");
+        }
+        boolean negative = row[start] == '-';
+        int i = negative || row[start] == '+' ? start + 1 : start;
+        if (i == end || end - i > 18) {
+            throw new NumberFormatException("Field " + field + " is no integer: " + getString(field));
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = row[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("Field " + field + " is no integer: " + getString(field));
+            }
+            value = 10 * value + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses the given field as floating point number. Plain decimals are parsed directly, all other notations via
+     * {@link Double#parseDouble(String)}.
+     * 
+     * @param field
+     *            the index of the field
+     * @return the value of the field
+     * @throws NumberFormatException
+     *             if the field is <code>NULL</code> or no number
+     */
+    public double getDouble(int field) {
+        checkField(field);
+        int start = fieldStarts[field];
+        int end = fieldStarts[field + 1];
+        if (nulls[field] || start == end) {
+            throw new NumberFormatException("Field " + field + " is empty");
+        }
+        boolean negative = row[start] == '-';
+        int i = negative ? start + 1 : start;
+        long mantissa = 0;
+        int digits = 0;
+        int scale = -1;
+        for (; i < end; i++) {
+            int digit = row[i] - '0';
+            if (digit >= 0 && digit <= 9 && digits < 15) {
+                mantissa = 10 * mantissa + digit;
+                digits++;
+            } else if (row[i] == '.' && scale < 0) {
+                scale = digits;
+            } else {
+                // exponents, long mantissas and malformed numbers
+                return Double.parseDouble(getString(field));
+            }
+        }
+        if (scale >= 0 && digits - scale >= POWERS_OF_TEN.length) {
+            return Double.parseDouble(getString(field));
+        }
+        if (digits == 0) {
+            throw new NumberFormatException("Field " + field + " is no number: " + getString(field));
+        }
+        // exact, because the mantissa and the power of ten are exactly representable as double
+        double value = scale < 0 ? mantissa : mantissa / POWERS_OF_TEN[digits - scale];
+        return negative ? -value : value;
+    }
+
+    /**
+     * @param field
+     *            the index of the field
+     * @return the unescaped content of the field, <code>null</code> if the field contains <code>NULL</code>
+     */
+    public String getString(int field) {
+        checkField(field);
+        if (nulls[field]) {
+            return null;
+        }
+        return new String(row, fieldStarts[field], fieldStarts[field + 1] - fieldStarts[field], CHARSET);
+    }
+
+    private void checkField(int field) {
+        if (field < 0 || field >= fieldCount) {
+            throw new IndexOutOfBoundsException("The row has " + fieldCount + " fields, requested field " + field);
+        }
+    }
+
+    /** @return the byte offset of the next row */
+    public long getOffset() {
+        return offset;
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
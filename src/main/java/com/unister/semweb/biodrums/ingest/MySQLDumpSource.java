@@ -0,0 +1,186 @@
+package com.unister.semweb.biodrums.ingest;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.unister.semweb.biodrums.monitoring.BioDRUMSMetrics;
+import com.unister.semweb.drums.storable.AbstractKVStorable;
+
+/**
+ * Base class of the parsers for MySQL dumps of the legacy BioDRUMS tables. Each row of the dump is read by a
+ * {@link MySQLDumpReader} and encoded by the subclass directly into the serialized form of the record. So the records
+ * can either be handed as objects to {@link com.unister.semweb.drums.api.DRUMS#insertOrMerge(AbstractKVStorable...)}
+ * or a {@link ResumableLoader} by {@link #readNext()}, or be written without any objects into a buffer for
+ * {@link com.unister.semweb.biodrums.bulk.BulkLoader#add(ByteBuffer)} by {@link #readNext(ByteBuffer)}. Rows, which
+ * can't be encoded, are counted as error lines and skipped.
+ * 
+ * @author Martin Nettling
+ * 
+ * @param <Data>
+ *            the type of the parsed records
+ */
+public abstract class MySQLDumpSource<Data extends AbstractKVStorable> implements ResumableSource<Data>, RecordSource,
+        Closeable {
+    private static final Logger log = LoggerFactory.getLogger(MySQLDumpSource.class);
+
+    private final MySQLDumpReader reader;
+
+    private final Data prototype;
+
+    /** the buffer to encode single records for {@link #readNext()} */
+    private final ByteBuffer record;
+
+    private long overallLines;
+
+    private long errorLines;
+
+    /** the metrics to record the parsed lines in, may be null */
+    private BioDRUMSMetrics metrics;
+
+    /**
+     * Opens the given dump.
+     * 
+     * @param filename
+     *            the name of the dump
+     * @param bufferSize
+     *            the size of the read buffer
+     * @param prototype
+     *            a prototype of the parsed records
+     * @param checkpoint
+     *            the checkpoint to resume from, <code>null</code> to start at the beginning of the dump
+     * @throws IOException
+     */
+    protected MySQLDumpSource(String filename, int bufferSize, Data prototype, IngestionCheckpoint checkpoint)
+            throws IOException {
+        this.prototype = prototype;
+        this.record = ByteBuffer.allocate(prototype.getSize());
+        if (checkpoint == null) {
+            this.reader = new MySQLDumpReader(new File(filename), 0, bufferSize);
+        } else {
+            this.reader = new MySQLDumpReader(new File(filename), checkpoint.getPosition(), bufferSize);
+            this.overallLines = checkpoint.getOverallLines();
+            this.errorLines = checkpoint.getErrorLines();
+        }
+    }
+
+    /**
+     * Encodes the current row of the dump as serialized record.
+     * 
+     * @param row
+     *            the reader positioned at the row
+     * @param destination
+     *            the buffer to write the record to, at its position; it has at least room for one record
+     * @return <code>false</code> if the row can't be encoded, then the content of <code>destination</code> is undefined
+     */
+    protected abstract boolean encode(MySQLDumpReader row, ByteBuffer destination);
+
+    /**
+     * Parses the next valid row of the dump.
+     * 
+     * @return the next record, <code>null</code> if the end of the dump is reached
+     * @throws IOException
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Data readNext() throws IOException {
+        record.clear();
+        if (!readNext(record)) {
+            return null;
+        }
+        record.flip();
+        return (Data) prototype.fromByteBuffer(record);
+    }
+
+    /**
+     * Writes the next valid row of the dump as serialized record into the given buffer and advances its position.
+     * 
+     * @param destination
+     *            the buffer to write to, must have room for one record
+     * @return <code>false</code> if the end of the dump is reached
+     * @throws IOException
+     */
+    public boolean readNext(ByteBuffer destination) throws IOException {
+        int start = destination.position();
+        while (reader.nextRow()) {
+            overallLines++;
+            boolean successful;
+            try {
+                successful = encode(reader, destination);
+            } catch (RuntimeException ex) {
+                log.debug("Could not parse row {}. Error message: {}", overallLines, ex.getMessage());
+                successful = false;
+            }
+            if (metrics != null) {
+                metrics.recordParsedLine(successful);
+            }
+            if (successful) {
+                return true;
+            }
+            errorLines++;
+            destination.position(start);
+        }
+        return false;
+    }
+
+    /**
+     * Fills the given buffer with the following valid rows of the dump, until it has no room for another record or the
+     * end of the dump is reached.
+     * 
+     * @param destination
+     *            the buffer to write to
+     * @return the number of written records, 0 if the end of the dump is reached
+     * @throws IOException
+     */
+    @Override
+    public int fill(ByteBuffer destination) throws IOException {
+        int elementSize = getElementSize();
+        int read = 0;
+        while (destination.remaining() >= elementSize && readNext(destination)) {
+            read++;
+        }
+        return read;
+    }
+
+    @Override
+    public int getElementSize() {
+        return prototype.getSize();
+    }
+
+    /**
+     * Sets the metrics, in which all read rows are recorded.
+     * 
+     * @param metrics
+     *            the metrics to use, <code>null</code> to disable recording
+     */
+    public void setMetrics(BioDRUMSMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /** @return the byte offset of the row following the last returned record */
+    @Override
+    public long getPosition() {
+        return reader.getOffset();
+    }
+
+    /** @return the number of read rows */
+    @Override
+    public long getOverallLines() {
+        return overallLines;
+    }
+
+    /** @return the number of read rows with an error */
+    @Override
+    public long getErrorLines() {
+        return errorLines;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,132 @@
+package com.unister.semweb.biodrums.ingest;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.unister.semweb.biodrums.bulk.BulkLoader;
+import com.unister.semweb.drums.storable.AbstractKVStorable;
+
+/**
+ * Feeds the records of a {@link RecordSource} into a {@link BulkLoader} without creating objects per record. The
+ * source writes the serialized records into direct buffers of a {@link DirectBufferPool}. Each filled buffer is handed
+ * as a whole to a second thread, which adds it to the loader and returns it to the pool. So parsing and sorting
+ * overlap, and the heap only holds the sort buffer of the loader, no short-lived records.
+ * 
+ * <pre>
+ * DirectBufferPool pool = new DirectBufferPool(4, 8 * 1024 * 1024);
+ * OffHeapLoader&lt;HERV&gt; offHeap = new OffHeapLoader&lt;HERV&gt;(loader, pool);
+ * offHeap.add(new HERVDumpParser(dump, bufferSize));
+ * loader.load();
+ * </pre>
+ * 
+ * @author Martin Nettling
+ * 
+ * @param <Data>
+ *            the type of the records
+ */
+public class OffHeapLoader<Data extends AbstractKVStorable> {
+    private static final Logger log = LoggerFactory.getLogger(OffHeapLoader.class);
+
+    /** marks the end of the filled buffers */
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+    private final BulkLoader<Data> loader;
+
+    private final DirectBufferPool pool;
+
+    /**
+     * @param loader
+     *            the loader to add the records to
+     * @param pool
+     *            the pool providing the buffers, should have at least two buffers
+     */
+    public OffHeapLoader(BulkLoader<Data> loader, DirectBufferPool pool) {
+        this.loader = loader;
+        this.pool = pool;
+    }
+
+    /**
+     * Adds all records of the given source to the loader. The loader is not loaded.
+     * 
+     * @param source
+     *            the source to read, it is not closed
+     * @return the number of added records
+     * @throws IOException
+     *             if the source could not be read or the loader could not add a buffer. Runtime exceptions of the
+     *             loader are wrapped, errors are rethrown.
+     * @throws InterruptedException
+     */
+    public long add(RecordSource source) throws IOException, InterruptedException {
+        final BlockingQueue<ByteBuffer> filled = new LinkedBlockingQueue<ByteBuffer>();
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread consumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    ByteBuffer buffer;
+                    while ((buffer = filled.take()) != END) {
+                        try {
+                            // after a failure the buffers are only returned, so the parser is not blocked
+                            if (failure.get() == null) {
+                                loader.add(buffer);
+                            }
+                        } catch (Throwable ex) {
+                            // keep draining until END, otherwise the parser waits forever for a free buffer
+                            failure.compareAndSet(null, ex);
+                        } finally {
+                            pool.release(buffer);
+                        }
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, "biodrums-offheap-loader");
+        consumer.start();
+
+        long added = 0;
+        int elementSize = source.getElementSize();
+        try {
+            while (failure.get() == null) {
+                ByteBuffer buffer = pool.acquire();
+                buffer.limit(buffer.capacity() - buffer.capacity() % elementSize);
+                int read;
+                try {
+                    read = source.fill(buffer);
+                } catch (IOException ex) {
+                    pool.release(buffer);
+                    throw ex;
+                } catch (RuntimeException ex) {
+                    pool.release(buffer);
+                    throw ex;
+                }
+                if (read == 0) {
+                    pool.release(buffer);
+                    break;
+                }
+                buffer.flip();
+                filled.put(buffer);
+                added += read;
+            }
+        } finally {
+            filled.put(END);
+            consumer.join();
+        }
+        Throwable cause = failure.get();
+        if (cause instanceof IOException) {
+            throw (IOException) cause;
+        } else if (cause instanceof Error) {
+            throw (Error) cause;
+        } else if (cause != null) {
+            throw new IOException("Could not add a buffer to the loader: " + cause, cause);
+        }
+        log.debug("Added {} records through direct buffers", added);
+        return added;
+    }
+}
@@ -0,0 +1,97 @@
+package com.unister.semweb.biodrums.ingest;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Reads lines from a file and keeps track of the byte offset of the next line. Reading can start at any offset, which
+ * was returned by {@link #getOffset()}. Lines may be terminated by <code>\n</code> or <code>\r\n</code> and are
+ * decoded as ISO-8859-1, which is sufficient for the ASCII input files of BioDRUMS.
+ * 
+ * @author Martin Nettling
+ */
+public class OffsetLineReader implements Closeable {
+    private static final Charset CHARSET = Charset.forName("ISO-8859-1");
+
+    private final RandomAccessFile file;
+
+    private final byte[] buffer;
+    private int position;
+    private int limit;
+
+    /** the offset of the first byte, which was not returned yet */
+    private long offset;
+
+    /** collects the bytes of the current line */
+    private byte[] line = new byte[256];
+
+    /**
+     * Opens the given file and positions the reader at the given offset.
+     * 
+     * @param file
+     *            the file to read
+     * @param offset
+     *            the offset of the first line to read
+     * @param bufferSize
+     *            the size of the read buffer
+     * @throws IOException
+     */
+    public OffsetLineReader(File file, long offset, int bufferSize) throws IOException {
+        this.file = new RandomAccessFile(file, "r");
+        this.file.seek(offset);
+        this.buffer = new byte[bufferSize];
+        this.offset = offset;
+    }
+
+    /**
+     * Reads the next line without its terminator.
+     * 
+     * @return the next line, <code>null</code> if the end of the file is reached
+     * @throws IOException
+     */
+    public String readLine() throws IOException {
+        int length = 0;
+        boolean read = false;
+        while (true) {
+            if (position == limit) {
+                limit = file.read(buffer);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return read ? decode(length) : null;
+                }
+            }
+            read = true;
+            byte b = buffer[position++];
+            offset++;
+            if (b == '\n') {
+                return decode(length);
+            }
+            if (length == line.length) {
+                line = Arrays.copyOf(line, 2 * length);
+            }
+            line[length++] = b;
+        }
+    }
+
+    private String decode(int length) {
+        if (length > 0 && line[length - 1] == '\r') {
+            length--;
+        }
+        return new String(line, 0, length, CHARSET);
+    }
+
+    /** @return the byte offset of the next line */
+    public long getOffset() {
+        return offset;
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
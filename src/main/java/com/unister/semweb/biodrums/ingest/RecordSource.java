@@ -0,0 +1,27 @@
+package com.unister.semweb.biodrums.ingest;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A parser, which writes the parsed records directly in their serialized form into a buffer instead of instantiating
+ * an object per record.
+ * 
+ * @author Martin Nettling
+ */
+public interface RecordSource {
+
+    /**
+     * Writes the following records into the given buffer, until it has no room for another record or the end of the
+     * input is reached. The position of the buffer is advanced behind the last written record.
+     * 
+     * @param destination
+     *            the buffer to write to
+     * @return the number of written records, 0 if the end of the input is reached
+     * @throws IOException
+     */
+    int fill(ByteBuffer destination) throws IOException;
+
+    /** @return the size of one serialized record in bytes */
+    int getElementSize();
+}
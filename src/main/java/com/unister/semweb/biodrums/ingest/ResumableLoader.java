@@ -0,0 +1,157 @@
+package com.unister.semweb.biodrums.ingest;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.unister.semweb.biodrums.herv.HERVFormat;
+import com.unister.semweb.biodrums.snapshot.TableSnapshots;
+import com.unister.semweb.biodrums.stats.StatisticsCatalog;
+import com.unister.semweb.drums.DRUMSParameterSet;
+import com.unister.semweb.drums.api.DRUMS;
+import com.unister.semweb.drums.api.DRUMSException;
+import com.unister.semweb.drums.api.DRUMSInstantiator;
+import com.unister.semweb.drums.file.FileLockException;
+import com.unister.semweb.drums.storable.AbstractKVStorable;
+
+/**
+ * Loads all records of a {@link ResumableSource} into an existing table and writes an {@link IngestionCheckpoint}
+ * every <code>recordsPerCheckpoint</code> records. If the load is interrupted, e.g. by a crash of the JVM, it can be
+ * resumed from the last checkpoint and at most <code>recordsPerCheckpoint</code> records are inserted again.<br>
+ * <br>
+ * A checkpoint is only written after all preceding records were synchronized to the bucket files. Therefore the table
+ * is closed, which waits for all synchronizers, and opened again at each checkpoint. If {@link TableSnapshots} are
+ * set, a new snapshot is published at each checkpoint, while the table is closed, so concurrent readers see the
+ * records up to the last checkpoint. A {@link StatisticsCatalog} is refreshed at each checkpoint as well.
+ * 
+ * <pre>
+ * IngestionCheckpoint checkpoint = IngestionCheckpoint.load(checkpointFile);
+ * HitFileParser parser = checkpoint == null ? new HitFileParser(input, bufferSize) : new HitFileParser(input,
+ *         bufferSize, checkpoint);
+ * new ResumableLoader&lt;HERV&gt;(globalParameters, checkpointFile, 1000000).load(parser, input);
+ * </pre>
+ * 
+ * @author Martin Nettling
+ * 
+ * @param <Data>
+ *            the type of the records
+ */
+public class ResumableLoader<Data extends AbstractKVStorable> {
+    private static final Logger log = LoggerFactory.getLogger(ResumableLoader.class);
+
+    private final DRUMSParameterSet<Data> gp;
+    private final File checkpointFile;
+    private final long recordsPerCheckpoint;
+    private TableSnapshots<Data> snapshots;
+    private StatisticsCatalog<Data> statistics;
+
+    /**
+     * @param gp
+     *            the parameters of the table, the table must already exist
+     * @param checkpointFile
+     *            the file, in which the checkpoints are stored
+     * @param recordsPerCheckpoint
+     *            the number of records between two checkpoints
+     */
+    public ResumableLoader(DRUMSParameterSet<Data> gp, File checkpointFile, long recordsPerCheckpoint) {
+        this.gp = gp;
+        this.checkpointFile = checkpointFile;
+        this.recordsPerCheckpoint = recordsPerCheckpoint;
+    }
+
+    /**
+     * Sets the snapshots, which are published at each checkpoint.
+     * 
+     * @param snapshots
+     *            the snapshots of the table, <code>null</code> to publish no snapshots
+     */
+    public void setSnapshots(TableSnapshots<Data> snapshots) {
+        this.snapshots = snapshots;
+    }
+
+    /**
+     * Sets the statistics, which are refreshed at each checkpoint.
+     * 
+     * @param statistics
+     *            the statistics of the table, <code>null</code> to refresh no statistics
+     */
+    public void setStatistics(StatisticsCatalog<Data> statistics) {
+        this.statistics = statistics;
+    }
+
+    /**
+     * Inserts all remaining records of the given source into the table. The source must have been positioned at the
+     * last checkpoint, if there is one.
+     * 
+     * @param source
+     *            the source of the records
+     * @param input
+     *            the name of the input, which is stored in the checkpoints
+     * @return the final checkpoint
+     * @throws IOException
+     *             if the table has another {@link HERVFormat} than its records or a checkpoint could not be written
+     * @throws DRUMSException
+     * @throws InterruptedException
+     * @throws IllegalStateException
+     *             if the last checkpoint belongs to another input or the source is not positioned at it
+     */
+    public IngestionCheckpoint load(ResumableSource<Data> source, String input) throws IOException, DRUMSException,
+            InterruptedException {
+        IngestionCheckpoint last = IngestionCheckpoint.load(checkpointFile);
+        if (last != null && !last.getInput().equals(input)) {
+            throw new IllegalStateException("The checkpoint " + checkpointFile + " belongs to " + last.getInput());
+        }
+        if (last != null && source.getPosition() != last.getPosition()) {
+            throw new IllegalStateException("The source is at position " + source.getPosition()
+                    + ", but the checkpoint " + checkpointFile + " is at position " + last.getPosition());
+        }
+        long records = last == null ? 0 : last.getRecords();
+        if (last != null) {
+            log.info("Resuming load from checkpoint {}", last);
+        }
+
+        HERVFormat.check(new File(gp.DATABASE_DIRECTORY), gp.getPrototype());
+        DRUMS<Data> drums = DRUMSInstantiator.openTable(DRUMS.AccessMode.READ_WRITE, gp);
+        try {
+            long sinceCheckpoint = 0;
+            Data record;
+            while ((record = source.readNext()) != null) {
+                drums.insertOrMerge(record);
+                records++;
+                if (++sinceCheckpoint == recordsPerCheckpoint) {
+                    drums.close();
+                    drums = null;
+                    checkpoint(source, input, records);
+                    drums = DRUMSInstantiator.openTable(DRUMS.AccessMode.READ_WRITE, gp);
+                    sinceCheckpoint = 0;
+                }
+            }
+        } finally {
+            if (drums != null) {
+                drums.close();
+            }
+        }
+        return checkpoint(source, input, records);
+    }
+
+    private IngestionCheckpoint checkpoint(ResumableSource<Data> source, String input, long records)
+            throws IOException {
+        if (snapshots != null) {
+            snapshots.publish();
+        }
+        if (statistics != null) {
+            try {
+                statistics.refresh();
+            } catch (FileLockException ex) {
+                throw new IOException("Could not refresh the statistics: " + ex.getMessage(), ex);
+            }
+        }
+        IngestionCheckpoint checkpoint = new IngestionCheckpoint(input, source.getPosition(),
+                source.getOverallLines(), source.getErrorLines(), records);
+        checkpoint.save(checkpointFile);
+        log.info("Wrote checkpoint {}", checkpoint);
+        return checkpoint;
+    }
+}
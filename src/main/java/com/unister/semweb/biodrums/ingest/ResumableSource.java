@@ -0,0 +1,32 @@
+package com.unister.semweb.biodrums.ingest;
+
+import java.io.IOException;
+
+import com.unister.semweb.drums.storable.AbstractKVStorable;
+
+/**
+ * A parser, whose position in the input can be recorded in an {@link IngestionCheckpoint} and which can be restarted
+ * from this position.
+ * 
+ * @author Martin Nettling
+ * 
+ * @param <Data>
+ *            the type of the parsed records
+ */
+public interface ResumableSource<Data extends AbstractKVStorable> {
+
+    /**
+     * @return the next record, <code>null</code> if the end of the input is reached
+     * @throws IOException
+     */
+    Data readNext() throws IOException;
+
+    /** @return the position in the input directly behind the last returned record */
+    long getPosition();
+
+    /** @return the number of read lines, including the lines read before a resume */
+    long getOverallLines();
+
+    /** @return the number of read lines with an error, including the lines read before a resume */
+    long getErrorLines();
+}
@@ -0,0 +1,99 @@
+package com.unister.semweb.biodrums.join;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.unister.semweb.biodrums.ingest.OffsetLineReader;
+
+/**
+ * Reads the intervals of a BED file into a {@link PositionList}. BED intervals are 0-based and half-open, they are
+ * converted to the 1-based inclusive positions of the tables. Chromosomes are named like <code>chr1</code>,
+ * <code>Chr1</code> or <code>1</code>; <code>X</code> and <code>Y</code> are mapped to 23 and 24 as in the HERV-table.
+ * Header lines, intervals on other chromosomes and malformed intervals, i.e. with an invalid coordinate or empty, are
+ * skipped and counted in the log.
+ * 
+ * @author Martin Nettling
+ */
+public class BedReader {
+    private static final Logger log = LoggerFactory.getLogger(BedReader.class);
+
+    private BedReader() {
+    }
+
+    /**
+     * Reads all intervals of the given file and sorts them.
+     * 
+     * @param file
+     *            the BED file
+     * @return the sorted intervals
+     * @throws IOException
+     */
+    public static PositionList read(File file) throws IOException {
+        PositionList positions = new PositionList();
+        OffsetLineReader reader = new OffsetLineReader(file, 0, 1024 * 1024);
+        long skipped = 0;
+        long malformed = 0;
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#") || line.startsWith("track") || line.startsWith("browser")) {
+                    continue;
+                }
+                String[] fields = line.split("\t");
+                byte chromosome = parseChromosome(fields[0]);
+                if (chromosome < 0 || fields.length < 3) {
+                    skipped++;
+                    continue;
+                }
+                int start;
+                int end;
+                try {
+                    start = Integer.parseInt(fields[1].trim());
+                    end = Integer.parseInt(fields[2].trim());
+                } catch (NumberFormatException ex) {
+                    malformed++;
+                    continue;
+                }
+                if (start < 0 || end <= start) {
+                    malformed++;
+                    continue;
+                }
+                positions.add(chromosome, start + 1, end);
+            }
+        } finally {
+            reader.close();
+        }
+        if (skipped > 0 || malformed > 0) {
+            log.info("Skipped {} intervals of {} on unknown chromosomes and {} malformed intervals", new Object[] {
+                    skipped, file, malformed });
+        }
+        positions.sort();
+        return positions;
+    }
+
+    /**
+     * @param name
+     *            the name of the chromosome
+     * @return the number of the chromosome, -1 if it is unknown
+     */
+    static byte parseChromosome(String name) {
+        String value = name.trim().toLowerCase();
+        if (value.startsWith("chr")) {
+            value = value.substring(3);
+        }
+        if (value.equals("x")) {
+            return 23;
+        } else if (value.equals("y")) {
+            return 24;
+        }
+        try {
+            int chromosome = Integer.parseInt(value);
+            return chromosome > 0 && chromosome <= Byte.MAX_VALUE ? (byte) chromosome : -1;
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.unister.semweb.biodrums.join;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Receives the matches of a {@link MergeJoin}. The buckets are joined in parallel, so an implementation must be
+ * thread-safe. The matches of one bucket are reported by one thread in key order.
+ * 
+ * @author Martin Nettling
+ */
+public interface JoinVisitor {
+
+    /**
+     * Called for each record, which overlaps an interval.
+     * 
+     * @param interval
+     *            the index of the interval in the {@link PositionList}
+     * @param records
+     *            the buffer containing the record
+     * @param offset
+     *            the absolute offset of the record
+     */
+    void match(int interval, ByteBuffer records, int offset);
+}
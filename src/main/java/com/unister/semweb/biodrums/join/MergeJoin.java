@@ -0,0 +1,178 @@
+package com.unister.semweb.biodrums.join;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.unister.semweb.biodrums.scan.BucketFunction;
+import com.unister.semweb.biodrums.scan.BucketScanner;
+import com.unister.semweb.biodrums.scan.ParallelBucketScan;
+import com.unister.semweb.biodrums.scan.RecordVisitor;
+import com.unister.semweb.biodrums.storage.RegionLayout;
+import com.unister.semweb.drums.storable.AbstractKVStorable;
+
+/**
+ * Joins a sorted {@link PositionList} with a table by co-iterating both in key order. Each bucket touched by the
+ * intervals is scanned once, sequentially and in parallel to the other buckets, while a pointer into the intervals
+ * moves forward. No select is issued per interval.<br>
+ * <br>
+ * A record matches an interval, if the feature of the record overlaps the interval. The feature of a SNP is its
+ * position, the feature of a HERV is the interval between its start and end on the chromosome. Because the table is
+ * sorted by the start of the features, the join needs the length of the longest feature as
+ * <code>maxFeatureLength</code>; longer features may be missed. For SNPs it is 0.
+ * 
+ * <pre>
+ * PositionList sites = BedReader.read(new File(&quot;gwas.bed&quot;));
+ * long[] hits = MergeJoin.countMatches(scan, RegionLayout.HERV_LAYOUT, sites, 20000);
+ * </pre>
+ * 
+ * @author Martin Nettling
+ */
+public class MergeJoin {
+
+    private MergeJoin() {
+    }
+
+    /**
+     * Reports each pair of an interval and a record, whose feature overlaps the interval.
+     * 
+     * @param scan
+     *            the parallel scan over the table
+     * @param layout
+     *            the layout of the records on the genome
+     * @param intervals
+     *            the intervals, must be sorted
+     * @param maxFeatureLength
+     *            the length of the longest feature in the table
+     * @param visitor
+     *            receives the matches
+     * @return the number of matches
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public static <Data extends AbstractKVStorable> long join(ParallelBucketScan<Data> scan,
+            final RegionLayout layout, final PositionList intervals, final int maxFeatureLength,
+            final JoinVisitor visitor) throws IOException, InterruptedException {
+        if (!intervals.isSorted()) {
+            throw new IllegalArgumentException("The intervals must be sorted");
+        }
+        if (intervals.size() == 0) {
+            return 0;
+        }
+        int last = intervals.size() - 1;
+        byte lastChromosome = intervals.getChromosome(last);
+        long lastEnd = intervals.getEnd(last);
+        for (int i = last; i >= 0 && intervals.getChromosome(i) == lastChromosome; i--) {
+            lastEnd = Math.max(lastEnd, intervals.getEnd(i));
+        }
+        byte[] lowerKey = layout.lowerKey(intervals.getChromosome(0),
+                (int) Math.max(0, (long) intervals.getStart(0) - maxFeatureLength));
+        byte[] upperKey = layout.upperKey(lastChromosome, (int) Math.min(Integer.MAX_VALUE, lastEnd
+                + maxFeatureLength));
+
+        final long window = (long) maxFeatureLength + intervals.getMaxLength();
+        List<Long> matches = scan.map(lowerKey, upperKey, new BucketFunction<Data, Long>() {
+            @Override
+            public Long apply(BucketScanner<Data> scanner, int bucketId, byte[] lowerKey, byte[] upperKey)
+                    throws Exception {
+                BucketJoin join = new BucketJoin(layout, intervals, maxFeatureLength, window, visitor);
+                scanner.scanBucket(bucketId, lowerKey, upperKey, join);
+                return join.matches;
+            }
+        });
+        long result = 0;
+        for (Long bucketMatches : matches) {
+            result += bucketMatches;
+        }
+        return result;
+    }
+
+    /**
+     * Counts the records, whose features overlap each interval.
+     * 
+     * @param scan
+     *            the parallel scan over the table
+     * @param layout
+     *            the layout of the records on the genome
+     * @param intervals
+     *            the intervals, must be sorted
+     * @param maxFeatureLength
+     *            the length of the longest feature in the table
+     * @return the number of matching records per interval
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public static <Data extends AbstractKVStorable> long[] countMatches(ParallelBucketScan<Data> scan,
+            RegionLayout layout, PositionList intervals, int maxFeatureLength) throws IOException,
+            InterruptedException {
+        final AtomicLongArray counts = new AtomicLongArray(intervals.size());
+        join(scan, layout, intervals, maxFeatureLength, new JoinVisitor() {
+            @Override
+            public void match(int interval, ByteBuffer records, int offset) {
+                counts.incrementAndGet(interval);
+            }
+        });
+        long[] result = new long[intervals.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = counts.get(i);
+        }
+        return result;
+    }
+
+    /** joins the records of one bucket, which are visited in key order */
+    private static class BucketJoin implements RecordVisitor {
+        private final RegionLayout layout;
+        private final PositionList intervals;
+        private final int maxFeatureLength;
+        private final long window;
+        private final JoinVisitor visitor;
+
+        /** the first interval, which may overlap the current or a later record; -1 before the first record */
+        private int first = -1;
+        private byte chromosome;
+        private long matches;
+
+        BucketJoin(RegionLayout layout, PositionList intervals, int maxFeatureLength, long window,
+                JoinVisitor visitor) {
+            this.layout = layout;
+            this.intervals = intervals;
+            this.maxFeatureLength = maxFeatureLength;
+            this.window = window;
+            this.visitor = visitor;
+        }
+
+        @Override
+        public boolean visit(ByteBuffer records, int offset) {
+            byte recordChromosome = layout.getChromosome(records, offset);
+            int position = layout.getPosition(records, offset);
+            int end = layout.getEnd(records, offset);
+            int featureStart = Math.min(position, end);
+            int featureEnd = Math.max(position, end);
+
+            // an interval overlapping this record starts at least window positions before the record
+            long lowest = (long) position - window;
+            if (first < 0 || recordChromosome != chromosome) {
+                first = intervals.lowerBound(recordChromosome, lowest);
+                chromosome = recordChromosome;
+            }
+            while (first < intervals.size()
+                    && PositionList.compare(intervals.getChromosome(first), intervals.getStart(first),
+                            recordChromosome, lowest) < 0) {
+                first++;
+            }
+            long highest = (long) position + maxFeatureLength;
+            for (int i = first; i < intervals.size(); i++) {
+                if (PositionList.compare(intervals.getChromosome(i), intervals.getStart(i), recordChromosome,
+                        highest) > 0) {
+                    break;
+                }
+                if (intervals.getStart(i) <= featureEnd && intervals.getEnd(i) >= featureStart) {
+                    visitor.match(i, records, offset);
+                    matches++;
+                }
+            }
+            return true;
+        }
+    }
+}
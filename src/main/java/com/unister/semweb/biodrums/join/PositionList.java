@@ -0,0 +1,178 @@
+package com.unister.semweb.biodrums.join;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * A list of intervals on the genome, which is sorted by chromosome and start position for a {@link MergeJoin}. A single
+ * position is an interval, whose start equals its end. All positions are inclusive.
+ * 
+ * @author Martin Nettling
+ */
+public class PositionList {
+    private byte[] chromosomes;
+    private int[] starts;
+    private int[] ends;
+    private int size;
+    private boolean sorted = true;
+    private int maxLength;
+
+    /** Creates an empty list. */
+    public PositionList() {
+        this(1024);
+    }
+
+    /**
+     * Creates an empty list.
+     * 
+     * @param initialCapacity
+     *            the number of intervals, for which space is allocated
+     */
+    public PositionList(int initialCapacity) {
+        chromosomes = new byte[initialCapacity];
+        starts = new int[initialCapacity];
+        ends = new int[initialCapacity];
+    }
+
+    /**
+     * Appends a single position.
+     * 
+     * @param chromosome
+     *            the chromosome, starting with 1
+     * @param position
+     *            the position
+     */
+    public void add(byte chromosome, int position) {
+        add(chromosome, position, position);
+    }
+
+    /**
+     * Appends an interval.
+     * 
+     * @param chromosome
+     *            the chromosome, starting with 1
+     * @param start
+     *            the first position of the interval
+     * @param end
+     *            the last position of the interval
+     */
+    public void add(byte chromosome, int start, int end) {
+        if (end < start) {
+            throw new IllegalArgumentException("The interval " + start + "-" + end + " is empty");
+        }
+        if (size == starts.length) {
+            int capacity = Math.max(16, 2 * size);
+            chromosomes = Arrays.copyOf(chromosomes, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+        }
+        if (size > 0 && compare(chromosome, start, chromosomes[size - 1], starts[size - 1]) < 0) {
+            sorted = false;
+        }
+        chromosomes[size] = chromosome;
+        starts[size] = start;
+        ends[size] = end;
+        maxLength = Math.max(maxLength, end - start);
+        size++;
+    }
+
+    /** Sorts the intervals by chromosome and start position, if they were not appended in this order. */
+    public void sort() {
+        if (sorted) {
+            return;
+        }
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return PositionList.compare(chromosomes[a], starts[a], chromosomes[b], starts[b]);
+            }
+        });
+        byte[] sortedChromosomes = new byte[size];
+        int[] sortedStarts = new int[size];
+        int[] sortedEnds = new int[size];
+        for (int i = 0; i < size; i++) {
+            sortedChromosomes[i] = chromosomes[order[i]];
+            sortedStarts[i] = starts[order[i]];
+            sortedEnds[i] = ends[order[i]];
+        }
+        chromosomes = sortedChromosomes;
+        starts = sortedStarts;
+        ends = sortedEnds;
+        sorted = true;
+    }
+
+    /** @return <code>true</code> if the intervals are sorted by chromosome and start position */
+    public boolean isSorted() {
+        return sorted;
+    }
+
+    /** @return the number of intervals */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param index
+     *            the index of the interval
+     * @return the chromosome of the interval
+     */
+    public byte getChromosome(int index) {
+        return chromosomes[index];
+    }
+
+    /**
+     * @param index
+     *            the index of the interval
+     * @return the first position of the interval
+     */
+    public int getStart(int index) {
+        return starts[index];
+    }
+
+    /**
+     * @param index
+     *            the index of the interval
+     * @return the last position of the interval
+     */
+    public int getEnd(int index) {
+        return ends[index];
+    }
+
+    /** @return the largest difference between the end and the start of an interval */
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    /**
+     * Searches the first interval, which does not start before the given position. The list must be sorted.
+     * 
+     * @param chromosome
+     *            the chromosome
+     * @param position
+     *            the position
+     * @return the index of the interval, {@link #size()} if all intervals start before the position
+     */
+    public int lowerBound(byte chromosome, long position) {
+        int low = 0, high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(chromosomes[middle], starts[middle], chromosome, position) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    static int compare(byte chromosomeA, long positionA, byte chromosomeB, long positionB) {
+        if (chromosomeA != chromosomeB) {
+            return chromosomeA < chromosomeB ? -1 : 1;
+        }
+        return positionA < positionB ? -1 : (positionA == positionB ? 0 : 1);
+    }
+}
@@ -0,0 +1,509 @@
+package com.unister.semweb.biodrums.mapped;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.unister.semweb.biodrums.herv.HERVFormat;
+import com.unister.semweb.biodrums.scan.RecordVisitor;
+import com.unister.semweb.biodrums.storage.BucketFiles;
+import com.unister.semweb.biodrums.storage.RecordBuffers;
+import com.unister.semweb.drums.DRUMSParameterSet;
+import com.unister.semweb.drums.bucket.hashfunction.RangeHashFunction;
+import com.unister.semweb.drums.file.AbstractHeaderFile.AccessMode;
+import com.unister.semweb.drums.file.FileLockException;
+import com.unister.semweb.drums.file.HeaderIndexFile;
+import com.unister.semweb.drums.storable.AbstractKVStorable;
+
+/**
+ * A read-only view on a DRUMS-table, which maps the content of all bucket files into memory. Selects and range queries
+ * are answered by binary searches directly on the mapped regions, so no read-syscalls and no copies into buffers are
+ * needed. All threads share the mapped regions and with that the page cache of the operating system. An instance is
+ * thread-safe.<br>
+ * <br>
+ * A single mapped region is limited to 2 GB, so larger bucket files are mapped in several chunks. The size of each
+ * chunk is a multiple of the element size, so no record spans two chunks. The chunks are numbered in key order over
+ * all buckets; a bucket smaller than 2 GB, which is the common case, is exactly one chunk. Methods taking a chunk
+ * address records by the chunk and the absolute offset in it.<br>
+ * <br>
+ * The fixed-size records can be decoded in place with a {@link RecordVisitor} and the static accessors of
+ * {@link com.unister.semweb.biodrums.herv.HERV} and {@link com.unister.semweb.biodrums.weigel.SNP}, e.g.
+ * <code>HERV.getEValue(records, offset)</code>.<br>
+ * <br>
+ * The table must not be changed while it is mapped. Use it for tables, which are only rebuilt offline and otherwise
+ * opened with {@link com.unister.semweb.drums.api.DRUMS.AccessMode#READ_ONLY}.
+ * 
+ * @author Martin Nettling
+ * 
+ * @param <Data>
+ *            the type of the records stored in the table
+ */
+public class MappedTable<Data extends AbstractKVStorable> {
+    private static final Logger log = LoggerFactory.getLogger(MappedTable.class);
+
+    /** the default maximal size of a chunk, the largest region, which can be mapped at once */
+    public static final int MAX_CHUNK_SIZE = Integer.MAX_VALUE;
+
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    private final RangeHashFunction hashFunction;
+
+    private final Data prototype;
+
+    private final int elementSize;
+
+    /** the mapped chunks of all buckets in key order, an empty buffer for an empty bucket */
+    private final ByteBuffer[] chunks;
+
+    /** the first chunk of each bucket, followed by the number of chunks */
+    private final int[] firstChunks;
+
+    /**
+     * Maps all bucket files of the given table.
+     * 
+     * @param gp
+     *            the parameters of the table
+     * @param hashFunction
+     *            the hash function of the table
+     * @param prototype
+     *            a prototype of the stored records
+     * @throws IOException
+     *             if a bucket file could not be mapped
+     * @throws FileLockException
+     *             if a bucket file is locked by another process
+     */
+    public MappedTable(DRUMSParameterSet<Data> gp, RangeHashFunction hashFunction, Data prototype)
+            throws IOException, FileLockException {
+        this(gp, hashFunction, prototype, bucketFiles(gp, hashFunction));
+    }
+
+    /**
+     * Maps the given bucket files. The files may differ from the files in the directory of the table, e.g. if a
+     * snapshot of the table is read.
+     * 
+     * @param gp
+     *            the parameters of the table
+     * @param hashFunction
+     *            the hash function of the table
+     * @param prototype
+     *            a prototype of the stored records
+     * @param files
+     *            the file of each bucket, the index of the array is the bucket-id
+     * @throws IOException
+     *             if a bucket file could not be mapped
+     * @throws FileLockException
+     *             if a bucket file is locked by another process
+     */
+    public MappedTable(DRUMSParameterSet<Data> gp, RangeHashFunction hashFunction, Data prototype, File[] files)
+            throws IOException, FileLockException {
+        this(gp, hashFunction, prototype, files, MAX_CHUNK_SIZE);
+    }
+
+    /**
+     * Maps the given bucket files in chunks of at most <code>maxChunkSize</code> bytes.
+     * 
+     * @param gp
+     *            the parameters of the table
+     * @param hashFunction
+     *            the hash function of the table
+     * @param prototype
+     *            a prototype of the stored records
+     * @param files
+     *            the file of each bucket, the index of the array is the bucket-id
+     * @param maxChunkSize
+     *            the maximal size of a mapped region, at least the element size
+     * @throws IOException
+     *             if a bucket file could not be mapped or the table has another {@link HERVFormat} than the prototype
+     * @throws FileLockException
+     *             if a bucket file is locked by another process
+     */
+    public MappedTable(DRUMSParameterSet<Data> gp, RangeHashFunction hashFunction, Data prototype, File[] files,
+            int maxChunkSize) throws IOException, FileLockException {
+        this.hashFunction = hashFunction;
+        this.prototype = prototype;
+        this.elementSize = prototype.getSize();
+        if (maxChunkSize < elementSize) {
+            throw new IllegalArgumentException("A chunk must hold at least one record: " + maxChunkSize);
+        }
+        HERVFormat.check(new File(gp.DATABASE_DIRECTORY), prototype);
+        int chunkSize = maxChunkSize - maxChunkSize % elementSize;
+        this.firstChunks = new int[files.length + 1];
+        List<ByteBuffer> mapped = new ArrayList<ByteBuffer>(files.length);
+        long mappedBytes = 0;
+        for (int bucketId = 0; bucketId < files.length; bucketId++) {
+            firstChunks[bucketId] = mapped.size();
+            mappedBytes += map(gp, files[bucketId], chunkSize, mapped);
+        }
+        firstChunks[files.length] = mapped.size();
+        this.chunks = mapped.toArray(new ByteBuffer[mapped.size()]);
+        log.info("Mapped {} bytes of {} buckets in {} chunks", new Object[] { mappedBytes, files.length,
+                chunks.length });
+    }
+
+    private static File[] bucketFiles(DRUMSParameterSet<?> gp, RangeHashFunction hashFunction) {
+        File[] files = new File[hashFunction.getNumberOfBuckets()];
+        for (int bucketId = 0; bucketId < files.length; bucketId++) {
+            files[bucketId] = BucketFiles.getFile(gp, hashFunction, bucketId);
+        }
+        return files;
+    }
+
+    /** maps the content of the given bucket file into chunks and returns the number of mapped bytes */
+    private long map(DRUMSParameterSet<Data> gp, File file, int chunkSize, List<ByteBuffer> mapped)
+            throws IOException, FileLockException {
+        long filled = 0;
+        ByteBuffer firstRecord = ByteBuffer.allocate(elementSize);
+        if (file.exists()) {
+            HeaderIndexFile<Data> headerIndexFile = BucketFiles.open(gp, file, AccessMode.READ_ONLY);
+            try {
+                filled = headerIndexFile.getFilledUpFromContentStart();
+                filled -= filled % elementSize;
+                if (filled > 0) {
+                    BucketFiles.readFully(headerIndexFile, 0, firstRecord);
+                }
+            } finally {
+                headerIndexFile.close();
+            }
+        }
+        if (filled == 0) {
+            // every bucket has at least one chunk
+            mapped.add(EMPTY);
+            return 0;
+        }
+
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            if (channel.size() < BucketFiles.CONTENT_OFFSET + filled) {
+                throw new IOException("The bucket file " + file + " is smaller than its content");
+            }
+            int firstChunk = mapped.size();
+            for (long offset = 0; offset < filled; offset += chunkSize) {
+                long size = Math.min(chunkSize, filled - offset);
+                mapped.add(channel.map(MapMode.READ_ONLY, BucketFiles.CONTENT_OFFSET + offset, size));
+            }
+            ByteBuffer first = mapped.get(firstChunk);
+            for (int i = 0; i < elementSize; i++) {
+                if (first.get(i) != firstRecord.get(i)) {
+                    throw new IOException("Unexpected layout of the bucket file " + file
+                            + ", the content does not start at offset " + BucketFiles.CONTENT_OFFSET);
+                }
+            }
+            return filled;
+        } finally {
+            // the mapping stays valid after the channel is closed
+            raf.close();
+        }
+    }
+
+    /** @return the hash function of the table */
+    public RangeHashFunction getHashFunction() {
+        return hashFunction;
+    }
+
+    /** @return the size of one record in bytes */
+    public int getElementSize() {
+        return elementSize;
+    }
+
+    /** @return the number of buckets */
+    public int getNumberOfBuckets() {
+        return firstChunks.length - 1;
+    }
+
+    /** @return the number of chunks of all buckets */
+    public int getNumberOfChunks() {
+        return chunks.length;
+    }
+
+    /**
+     * @param bucketId
+     *            the id of a bucket
+     * @return the first chunk of the bucket
+     */
+    public int getFirstChunk(int bucketId) {
+        return firstChunks[bucketId];
+    }
+
+    /**
+     * @param bucketId
+     *            the id of a bucket
+     * @return the last chunk of the bucket
+     */
+    public int getLastChunk(int bucketId) {
+        return firstChunks[bucketId + 1] - 1;
+    }
+
+    /**
+     * Determines the chunk, in which the records not smaller than the given key start.
+     * 
+     * @param lowerKey
+     *            the smallest key of a range, <code>null</code> for the first chunk
+     * @return the chunk, in which {@link #lowerBound(int, byte[])} has to be searched
+     */
+    public int getFirstChunk(byte[] lowerKey) {
+        if (lowerKey == null) {
+            return 0;
+        }
+        int bucketId = hashFunction.getBucketId(lowerKey);
+        int chunk = getFirstChunk(bucketId);
+        int last = getLastChunk(bucketId);
+        // the first chunk, whose last record is not smaller than the key
+        while (chunk < last) {
+            int records = getNumberOfRecords(chunk);
+            if (RecordBuffers.compareKey(chunks[chunk], (records - 1) * elementSize, lowerKey) >= 0) {
+                break;
+            }
+            chunk++;
+        }
+        return chunk;
+    }
+
+    /**
+     * Determines the chunk, in which the records not greater than the given key end.
+     * 
+     * @param upperKey
+     *            the largest key of a range, <code>null</code> for the last chunk
+     * @return the chunk, in which {@link #upperBound(int, byte[])} has to be searched
+     */
+    public int getLastChunk(byte[] upperKey) {
+        if (upperKey == null) {
+            return chunks.length - 1;
+        }
+        int bucketId = hashFunction.getBucketId(upperKey);
+        int first = getFirstChunk(bucketId);
+        int chunk = getLastChunk(bucketId);
+        // the last chunk, whose first record is not greater than the key
+        while (chunk > first && RecordBuffers.compareKey(chunks[chunk], 0, upperKey) > 0) {
+            chunk--;
+        }
+        return chunk;
+    }
+
+    /**
+     * Returns the mapped records of a chunk. The n-th record starts at the absolute offset
+     * <code>n * getElementSize()</code>. The buffer is shared, only absolute get-methods must be used.
+     * 
+     * @param chunk
+     *            the number of the chunk
+     * @return the records of the chunk
+     */
+    public ByteBuffer getChunk(int chunk) {
+        return chunks[chunk];
+    }
+
+    /**
+     * @param chunk
+     *            the number of the chunk
+     * @return the number of records in the chunk
+     */
+    public int getNumberOfRecords(int chunk) {
+        return chunks[chunk].capacity() / elementSize;
+    }
+
+    /**
+     * @param bucketId
+     *            the id of the bucket
+     * @return the number of records in the bucket
+     */
+    public long getNumberOfRecordsInBucket(int bucketId) {
+        long records = 0;
+        for (int chunk = getFirstChunk(bucketId); chunk <= getLastChunk(bucketId); chunk++) {
+            records += getNumberOfRecords(chunk);
+        }
+        return records;
+    }
+
+    /**
+     * Searches the first record of a chunk, whose key is not smaller than the given key.
+     * 
+     * @param chunk
+     *            the number of the chunk
+     * @param key
+     *            the key to search for, may be a prefix of a key
+     * @return the index of the record, {@link #getNumberOfRecords(int)} if all keys are smaller
+     */
+    public int lowerBound(int chunk, byte[] key) {
+        ByteBuffer records = chunks[chunk];
+        int low = 0, high = getNumberOfRecords(chunk);
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (RecordBuffers.compareKey(records, middle * elementSize, key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Searches the first record of a chunk, whose key is greater than the given key.
+     * 
+     * @param chunk
+     *            the number of the chunk
+     * @param key
+     *            the key to search for, may be a prefix of a key
+     * @return the index of the record, {@link #getNumberOfRecords(int)} if no key is greater
+     */
+    public int upperBound(int chunk, byte[] key) {
+        ByteBuffer records = chunks[chunk];
+        int low = 0, high = getNumberOfRecords(chunk);
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (RecordBuffers.compareKey(records, middle * elementSize, key) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Selects the records with the given keys. Keys which are not found are skipped.
+     * 
+     * @param keys
+     *            the keys to search for
+     * @return the found records
+     */
+    public List<Data> select(byte[]... keys) {
+        List<Data> result = new ArrayList<Data>(keys.length);
+        for (byte[] key : keys) {
+            int chunk = getFirstChunk(key);
+            int index = lowerBound(chunk, key);
+            if (index < getNumberOfRecords(chunk)
+                    && RecordBuffers.compareKey(chunks[chunk], index * elementSize, key) == 0) {
+                result.add(decode(chunk, index * elementSize));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reads all records between the given keys.
+     * 
+     * @param lowerKey
+     *            the smallest key to read, <code>null</code> to start at the first record
+     * @param upperKey
+     *            the largest key to read, <code>null</code> to end at the last record
+     * @return the found records
+     */
+    public List<Data> getRange(byte[] lowerKey, byte[] upperKey) {
+        final List<Data> result = new ArrayList<Data>();
+        scan(lowerKey, upperKey, new RecordVisitor() {
+            @Override
+            public boolean visit(ByteBuffer records, int offset) {
+                result.add(decode(records, offset));
+                return true;
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Visits all records between the given keys in key order.
+     * 
+     * @param lowerKey
+     *            the smallest key to visit, <code>null</code> to start at the first record
+     * @param upperKey
+     *            the largest key to visit, <code>null</code> to end at the last record
+     * @param visitor
+     *            the visitor to call for each record
+     * @return the number of visited records
+     */
+    public long scan(byte[] lowerKey, byte[] upperKey, RecordVisitor visitor) {
+        return scanChunks(getFirstChunk(lowerKey), getLastChunk(upperKey), lowerKey, upperKey, visitor);
+    }
+
+    /**
+     * Visits all records of one bucket between the given keys in key order.
+     * 
+     * @param bucketId
+     *            the id of the bucket
+     * @param lowerKey
+     *            the smallest key to visit, <code>null</code> to start at the first record
+     * @param upperKey
+     *            the largest key to visit, <code>null</code> to end at the last record
+     * @param visitor
+     *            the visitor to call for each record
+     * @return the number of visited records. If the visitor stopped the scan, <code>-(visited + 1)</code> is returned.
+     */
+    public long scanBucket(int bucketId, byte[] lowerKey, byte[] upperKey, RecordVisitor visitor) {
+        long visited = 0;
+        for (int chunk = getFirstChunk(bucketId); chunk <= getLastChunk(bucketId); chunk++) {
+            long result = scanChunk(chunk, lowerKey, upperKey, visitor);
+            if (result < 0) {
+                return -(visited - result - 1) - 1;
+            }
+            visited += result;
+        }
+        return visited;
+    }
+
+    private long scanChunks(int firstChunk, int lastChunk, byte[] lowerKey, byte[] upperKey, RecordVisitor visitor) {
+        long visited = 0;
+        for (int chunk = firstChunk; chunk <= lastChunk; chunk++) {
+            long result = scanChunk(chunk, lowerKey, upperKey, visitor);
+            if (result < 0) {
+                return visited - result - 1;
+            }
+            visited += result;
+        }
+        return visited;
+    }
+
+    /** visits the records of one chunk, returns <code>-(visited + 1)</code> if the visitor stopped the scan */
+    private long scanChunk(int chunk, byte[] lowerKey, byte[] upperKey, RecordVisitor visitor) {
+        ByteBuffer records = chunks[chunk];
+        int end = records.capacity();
+        long visited = 0;
+        int start = lowerKey == null ? 0 : lowerBound(chunk, lowerKey) * elementSize;
+        for (int offset = start; offset < end; offset += elementSize) {
+            if (upperKey != null && RecordBuffers.compareKey(records, offset, upperKey) > 0) {
+                break;
+            }
+            visited++;
+            if (!visitor.visit(records, offset)) {
+                return -visited - 1;
+            }
+        }
+        return visited;
+    }
+
+    /**
+     * Instantiates the record at the given offset of a chunk.
+     * 
+     * @param chunk
+     *            the number of the chunk
+     * @param offset
+     *            the absolute offset of the record in the chunk
+     * @return the record
+     */
+    public Data decode(int chunk, int offset) {
+        return decode(chunks[chunk], offset);
+    }
+
+    private Data decode(ByteBuffer records, int offset) {
+        byte[] bytes = new byte[elementSize];
+        for (int i = 0; i < elementSize; i++) {
+            bytes[i] = records.get(offset + i);
+        }
+        return prototype.fromByteBuffer(ByteBuffer.wrap(bytes));
+    }
+
+    /** Releases the references to the mapped regions. The regions are unmapped by the garbage collector. */
+    public void close() {
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = EMPTY;
+        }
+    }
+}
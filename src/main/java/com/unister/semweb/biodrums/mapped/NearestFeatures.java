@@ -0,0 +1,196 @@
+package com.unister.semweb.biodrums.mapped;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.unister.semweb.biodrums.herv.HERV;
+import com.unister.semweb.biodrums.scan.RecordFilter;
+import com.unister.semweb.biodrums.storage.RegionLayout;
+import com.unister.semweb.biodrums.weigel.SNP;
+import com.unister.semweb.drums.storable.AbstractKVStorable;
+
+/**
+ * Finds the records of a {@link MappedTable} nearest to a position, e.g. the SNPs of an ecotype nearest to a GWAS
+ * peak. Starting at the key of the position, the table is scanned outward in both directions, across bucket
+ * boundaries if needed. The scan stops as soon as the k nearest records are found or the chromosome ends, so no
+ * window must be guessed.<br>
+ * <br>
+ * The distance of a record is the distance of its position to the queried position. For {@link HERV}s the position is
+ * the start position on the chromosome.
+ * 
+ * @author Martin Nettling
+ */
+public class NearestFeatures {
+
+    /** the direction in which records are searched */
+    public enum Direction {
+        /** only records before the position */
+        UPSTREAM,
+        /** only records at or behind the position */
+        DOWNSTREAM,
+        /** records on both sides */
+        BOTH
+    }
+
+    private NearestFeatures() {
+    }
+
+    /**
+     * Finds the <code>k</code> SNPs of the given ecotype nearest to a position.
+     * 
+     * @param table
+     *            the SNP-table
+     * @param sequenceId
+     *            the sequence
+     * @param position
+     *            the position
+     * @param ecotype
+     *            the ecotype of the SNPs
+     * @param k
+     *            the number of SNPs
+     * @return the SNPs, ordered by ascending distance
+     */
+    public static List<SNP> nearestSNPs(MappedTable<SNP> table, byte sequenceId, int position, final char ecotype,
+            int k) {
+        return nearest(table, RegionLayout.SNP_LAYOUT, sequenceId, position, k, Direction.BOTH, new RecordFilter() {
+            @Override
+            public boolean accept(ByteBuffer records, int offset) {
+                return SNP.getEcotypeId(records, offset) == ecotype;
+            }
+        });
+    }
+
+    /**
+     * Finds the <code>k</code> HERVs nearest to a position.
+     * 
+     * @param table
+     *            the HERV-table
+     * @param chromosome
+     *            the chromosome
+     * @param position
+     *            the position
+     * @param direction
+     *            the direction in which HERVs are searched
+     * @param k
+     *            the number of HERVs
+     * @return the HERVs, ordered by ascending distance
+     */
+    public static List<HERV> nearestHERVs(MappedTable<HERV> table, byte chromosome, int position,
+            Direction direction, int k) {
+        return nearest(table, RegionLayout.HERV_LAYOUT, chromosome, position, k, direction, null);
+    }
+
+    /**
+     * Finds the <code>k</code> records nearest to a position.
+     * 
+     * @param table
+     *            the table
+     * @param layout
+     *            the layout of the records on the genome
+     * @param chromosome
+     *            the chromosome
+     * @param position
+     *            the position
+     * @param k
+     *            the number of records
+     * @param direction
+     *            the direction in which records are searched
+     * @param filter
+     *            only accepted records are returned, <code>null</code> to accept all records
+     * @return the records, ordered by ascending distance. Records with the same distance are ordered downstream first.
+     */
+    public static <Data extends AbstractKVStorable> List<Data> nearest(MappedTable<Data> table,
+            RegionLayout layout, byte chromosome, int position, int k, Direction direction, RecordFilter filter) {
+        byte[] key = layout.lowerKey(chromosome, position);
+        int chunk = table.getFirstChunk(key);
+        int index = table.lowerBound(chunk, key);
+
+        Cursor downstream = new Cursor(table, layout, filter, chromosome, chunk, index, true);
+        Cursor upstream = new Cursor(table, layout, filter, chromosome, chunk, index - 1, false);
+        if (direction != Direction.UPSTREAM) {
+            downstream.seek();
+        }
+        if (direction != Direction.DOWNSTREAM) {
+            upstream.seek();
+        }
+        List<Data> result = new ArrayList<Data>(k);
+        while (result.size() < k && (downstream.valid || upstream.valid)) {
+            Cursor nearest;
+            if (!upstream.valid) {
+                nearest = downstream;
+            } else if (!downstream.valid) {
+                nearest = upstream;
+            } else {
+                long downstreamDistance = (long) downstream.getPosition() - position;
+                long upstreamDistance = (long) position - upstream.getPosition();
+                nearest = downstreamDistance <= upstreamDistance ? downstream : upstream;
+            }
+            result.add(table.decode(nearest.chunk, nearest.index * table.getElementSize()));
+            nearest.step();
+            nearest.seek();
+        }
+        return result;
+    }
+
+    /** walks over the accepted records of one chromosome in one direction */
+    private static class Cursor {
+        private final MappedTable<?> table;
+        private final RegionLayout layout;
+        private final RecordFilter filter;
+        private final byte chromosome;
+        private final boolean forward;
+
+        private int chunk;
+        private int index;
+
+        /** <code>false</code> if the cursor left the chromosome or the table */
+        private boolean valid;
+
+        Cursor(MappedTable<?> table, RegionLayout layout, RecordFilter filter, byte chromosome, int chunk,
+                int index, boolean forward) {
+            this.table = table;
+            this.layout = layout;
+            this.filter = filter;
+            this.chromosome = chromosome;
+            this.chunk = chunk;
+            this.index = index;
+            this.forward = forward;
+        }
+
+        int getPosition() {
+            return layout.getPosition(table.getChunk(chunk), index * table.getElementSize());
+        }
+
+        void step() {
+            index += forward ? 1 : -1;
+        }
+
+        /** moves to the next accepted record in the direction of the cursor, starting at the current index */
+        void seek() {
+            int elementSize = table.getElementSize();
+            while (true) {
+                if (index < 0 || index >= table.getNumberOfRecords(chunk)) {
+                    chunk += forward ? 1 : -1;
+                    if (chunk < 0 || chunk >= table.getNumberOfChunks()) {
+                        valid = false;
+                        return;
+                    }
+                    index = forward ? 0 : table.getNumberOfRecords(chunk) - 1;
+                    continue;
+                }
+                ByteBuffer records = table.getChunk(chunk);
+                int offset = index * elementSize;
+                if (layout.getChromosome(records, offset) != chromosome) {
+                    valid = false;
+                    return;
+                }
+                if (filter == null || filter.accept(records, offset)) {
+                    valid = true;
+                    return;
+                }
+                step();
+            }
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package com.unister.semweb.biodrums.monitoring;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collects the metrics of one BioDRUMS-table: parse rate, insert batch latencies, inserts and reads per bucket,
+ * range-scan volume and select latencies. An instance can be published as JMX MBean by calling
+ * {@link #register(String)}. All recording methods are thread-safe and lock-free.
+ * 
+ * @author Martin Nettling
+ */
+public class BioDRUMSMetrics implements BioDRUMSMetricsMBean {
+    private static final Logger log = LoggerFactory.getLogger(BioDRUMSMetrics.class);
+
+    /** the JMX domain all metrics are registered in */
+    public static final String JMX_DOMAIN = "com.unister.semweb.biodrums";
+
+    private final AtomicLong parsedLines = new AtomicLong();
+    private final AtomicLong parseErrors = new AtomicLong();
+    /** the time of the first parsed line, 0 if no line was parsed yet */
+    private final AtomicLong parseStartNanos = new AtomicLong();
+
+    private final AtomicLong insertedRecords = new AtomicLong();
+    private final LatencyHistogram insertLatencies = new LatencyHistogram();
+    private final AtomicLongArray bucketInserts;
+    private final AtomicLongArray bucketReads;
+
+    private final AtomicLong rangeScans = new AtomicLong();
+    private final AtomicLong rangeScanBytes = new AtomicLong();
+    private final AtomicLong rangeScanRecords = new AtomicLong();
+
+    private final LatencyHistogram selectLatencies = new LatencyHistogram();
+
+    private ObjectName objectName;
+
+    /**
+     * Creates a new metrics-instance.
+     * 
+     * @param numberOfBuckets
+     *            the number of buckets of the observed table
+     */
+    public BioDRUMSMetrics(int numberOfBuckets) {
+        this.bucketInserts = new AtomicLongArray(numberOfBuckets);
+        this.bucketReads = new AtomicLongArray(numberOfBuckets);
+    }
+
+    /**
+     * Publishes this instance at the platform MBean server. The name of the MBean is
+     * <code>com.unister.semweb.biodrums:type=BioDRUMSMetrics,table=&lt;tableName&gt;</code>.
+     * 
+     * @param tableName
+     *            the name of the observed table
+     * @throws JMException
+     *             if the MBean could not be registered, e.g. because the name is already in use
+     */
+    public synchronized void register(String tableName) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(JMX_DOMAIN + ":type=BioDRUMSMetrics,table=" + ObjectName.quote(tableName));
+        server.registerMBean(this, name);
+        objectName = name;
+        log.info("Registered metrics as {}", name);
+    }
+
+    /** Removes this instance from the platform MBean server, if it was registered. */
+    public synchronized void unregister() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException ex) {
+            log.warn("Could not unregister {}: {}", objectName, ex.getMessage());
+        }
+        objectName = null;
+    }
+
+    /**
+     * Records one line read by a parser.
+     * 
+     * @param successful
+     *            <code>false</code> if the line could not be parsed
+     */
+    public void recordParsedLine(boolean successful) {
+        if (parsedLines.getAndIncrement() == 0) {
+            parseStartNanos.compareAndSet(0, System.nanoTime());
+        }
+        if (!successful) {
+            parseErrors.incrementAndGet();
+        }
+    }
+
+    /**
+     * Records one insert batch.
+     * 
+     * @param records
+     *            the number of records in the batch
+     * @param nanos
+     *            the time the batch needed in nanoseconds
+     */
+    public void recordInsert(int records, long nanos) {
+        insertedRecords.addAndGet(records);
+        insertLatencies.record(nanos);
+    }
+
+    /**
+     * Records an insert into the given bucket.
+     * 
+     * @param bucketId
+     *            the id of the bucket the record was routed to
+     */
+    public void recordBucketInsert(int bucketId) {
+        bucketInserts.incrementAndGet(bucketId);
+    }
+
+    /**
+     * Records a read of the given bucket, e.g. a looked up key or a range scan touching the bucket.
+     * 
+     * @param bucketId
+     *            the id of the read bucket
+     */
+    public void recordBucketRead(int bucketId) {
+        bucketReads.incrementAndGet(bucketId);
+    }
+
+    /**
+     * Records one range scan.
+     * 
+     * @param bytesRead
+     *            the number of bytes read from the bucket files
+     * @param records
+     *            the number of returned records
+     */
+    public void recordRangeScan(long bytesRead, long records) {
+        rangeScans.incrementAndGet();
+        rangeScanBytes.addAndGet(bytesRead);
+        rangeScanRecords.addAndGet(records);
+    }
+
+    /**
+     * Records one select call.
+     * 
+     * @param nanos
+     *            the time the select needed in nanoseconds
+     */
+    public void recordSelect(long nanos) {
+        selectLatencies.record(nanos);
+    }
+
+    @Override
+    public long getParsedLines() {
+        return parsedLines.get();
+    }
+
+    @Override
+    public long getParseErrors() {
+        return parseErrors.get();
+    }
+
+    @Override
+    public double getParseRate() {
+        long start = parseStartNanos.get();
+        if (start == 0) {
+            return 0;
+        }
+        long elapsed = System.nanoTime() - start;
+        if (elapsed <= 0) {
+            return 0;
+        }
+        return parsedLines.get() * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+    }
+
+    @Override
+    public long getInsertedRecords() {
+        return insertedRecords.get();
+    }
+
+    @Override
+    public long getInsertBatches() {
+        return insertLatencies.getCount();
+    }
+
+    @Override
+    public long getInsertLatencyMedian() {
+        return toMicros(insertLatencies.getPercentile(50));
+    }
+
+    @Override
+    public long getInsertLatency99thPercentile() {
+        return toMicros(insertLatencies.getPercentile(99));
+    }
+
+    @Override
+    public long getInsertLatencyMax() {
+        return toMicros(insertLatencies.getMax());
+    }
+
+    @Override
+    public long[] getBucketInsertCounts() {
+        long[] counts = new long[bucketInserts.length()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = bucketInserts.get(i);
+        }
+        return counts;
+    }
+
+    @Override
+    public int getHottestBucket() {
+        return hottest(bucketInserts);
+    }
+
+    @Override
+    public long[] getBucketReadCounts() {
+        long[] counts = new long[bucketReads.length()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = bucketReads.get(i);
+        }
+        return counts;
+    }
+
+    @Override
+    public int getHottestReadBucket() {
+        return hottest(bucketReads);
+    }
+
+    private static int hottest(AtomicLongArray counts) {
+        int hottest = -1;
+        long hottestCount = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            long count = counts.get(i);
+            if (count > hottestCount) {
+                hottest = i;
+                hottestCount = count;
+            }
+        }
+        return hottest;
+    }
+
+    @Override
+    public long getRangeScanBytesRead() {
+        return rangeScanBytes.get();
+    }
+
+    @Override
+    public long getRangeScanRecordsReturned() {
+        return rangeScanRecords.get();
+    }
+
+    @Override
+    public long getRangeScans() {
+        return rangeScans.get();
+    }
+
+    @Override
+    public long getSelects() {
+        return selectLatencies.getCount();
+    }
+
+    @Override
+    public long getSelectLatencyMedian() {
+        return toMicros(selectLatencies.getPercentile(50));
+    }
+
+    @Override
+    public long getSelectLatency95thPercentile() {
+        return toMicros(selectLatencies.getPercentile(95));
+    }
+
+    @Override
+    public long getSelectLatency99thPercentile() {
+        return toMicros(selectLatencies.getPercentile(99));
+    }
+
+    @Override
+    public long getSelectLatencyMax() {
+        return toMicros(selectLatencies.getMax());
+    }
+
+    @Override
+    public void reset() {
+        parsedLines.set(0);
+        parseErrors.set(0);
+        parseStartNanos.set(0);
+        insertedRecords.set(0);
+        insertLatencies.reset();
+        for (int i = 0; i < bucketInserts.length(); i++) {
+            bucketInserts.set(i, 0);
+        }
+        for (int i = 0; i < bucketReads.length(); i++) {
+            bucketReads.set(i, 0);
+        }
+        rangeScans.set(0);
+        rangeScanBytes.set(0);
+        rangeScanRecords.set(0);
+        selectLatencies.reset();
+    }
+
+    private static long toMicros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
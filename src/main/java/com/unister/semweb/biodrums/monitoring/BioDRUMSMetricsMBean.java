@@ -0,0 +1,72 @@
+package com.unister.semweb.biodrums.monitoring;
+
+/**
+ * The management interface of {@link BioDRUMSMetrics}. All latencies are given in microseconds.
+ * 
+ * @author Martin Nettling
+ */
+public interface BioDRUMSMetricsMBean {
+
+    /** @return the number of lines read by the parsers */
+    long getParsedLines();
+
+    /** @return the number of lines which could not be parsed */
+    long getParseErrors();
+
+    /** @return the number of parsed lines per second since the first parsed line or the last reset */
+    double getParseRate();
+
+    /** @return the number of records handed to DRUMS */
+    long getInsertedRecords();
+
+    /** @return the number of insert calls (batches) handed to DRUMS */
+    long getInsertBatches();
+
+    /** @return the median latency of an insert batch */
+    long getInsertLatencyMedian();
+
+    /** @return the 99th percentile of the latency of an insert batch */
+    long getInsertLatency99thPercentile();
+
+    /** @return the maximal latency of an insert batch */
+    long getInsertLatencyMax();
+
+    /** @return the number of inserted records per bucket, the index of the array is the bucket-id */
+    long[] getBucketInsertCounts();
+
+    /** @return the id of the bucket which received the most inserts, -1 if nothing was inserted */
+    int getHottestBucket();
+
+    /** @return the number of reads per bucket, the index of the array is the bucket-id */
+    long[] getBucketReadCounts();
+
+    /** @return the id of the bucket which was read most often, -1 if nothing was read */
+    int getHottestReadBucket();
+
+    /** @return the number of bytes read by range scans */
+    long getRangeScanBytesRead();
+
+    /** @return the number of records returned by range scans */
+    long getRangeScanRecordsReturned();
+
+    /** @return the number of performed range scans */
+    long getRangeScans();
+
+    /** @return the number of performed select calls */
+    long getSelects();
+
+    /** @return the median latency of a select call */
+    long getSelectLatencyMedian();
+
+    /** @return the 95th percentile of the latency of a select call */
+    long getSelectLatency95thPercentile();
+
+    /** @return the 99th percentile of the latency of a select call */
+    long getSelectLatency99thPercentile();
+
+    /** @return the maximal latency of a select call */
+    long getSelectLatencyMax();
+
+    /** Sets all counters and histograms to zero. */
+    void reset();
+}
@@ -0,0 +1,141 @@
+package com.unister.semweb.biodrums.monitoring;
+
+import java.io.IOException;
+import java.util.List;
+
+import com.unister.semweb.drums.api.DRUMS;
+import com.unister.semweb.drums.api.DRUMSException;
+import com.unister.semweb.drums.api.DRUMSReader;
+import com.unister.semweb.drums.bucket.hashfunction.RangeHashFunction;
+import com.unister.semweb.drums.file.FileLockException;
+import com.unister.semweb.drums.storable.AbstractKVStorable;
+
+/**
+ * Wraps a {@link DRUMS}-instance and records the latencies and volumes of all inserts, selects and range scans in a
+ * {@link BioDRUMSMetrics}-instance.
+ * 
+ * @author Martin Nettling
+ * 
+ * @param <Data>
+ *            the type of the records stored in the table
+ */
+public class InstrumentedDRUMS<Data extends AbstractKVStorable> {
+
+    private final DRUMS<Data> drums;
+
+    private final RangeHashFunction hashFunction;
+
+    private final BioDRUMSMetrics metrics;
+
+    /** the size of one record in bytes */
+    private final int elementSize;
+
+    /** the reader used for range scans, opened on demand; guarded by this */
+    private DRUMSReader<Data> reader;
+
+    /**
+     * Wraps the given table.
+     * 
+     * @param drums
+     *            the table to observe
+     * @param hashFunction
+     *            the {@link RangeHashFunction} of the table, needed to count the inserts and reads per bucket
+     * @param prototype
+     *            a prototype of the stored records
+     * @param metrics
+     *            the metrics to record in
+     */
+    public InstrumentedDRUMS(DRUMS<Data> drums, RangeHashFunction hashFunction, Data prototype,
+            BioDRUMSMetrics metrics) {
+        this.drums = drums;
+        this.hashFunction = hashFunction;
+        this.metrics = metrics;
+        this.elementSize = prototype.getSize();
+    }
+
+    /**
+     * Inserts or merges the given records, see {@link DRUMS#insertOrMerge(AbstractKVStorable...)}.
+     * 
+     * @param toPersist
+     *            the records to insert
+     * @throws DRUMSException
+     * @throws InterruptedException
+     */
+    public void insertOrMerge(Data... toPersist) throws DRUMSException, InterruptedException {
+        long start = System.nanoTime();
+        drums.insertOrMerge(toPersist);
+        metrics.recordInsert(toPersist.length, System.nanoTime() - start);
+        for (Data data : toPersist) {
+            metrics.recordBucketInsert(hashFunction.getBucketId(data.getKey()));
+        }
+    }
+
+    /**
+     * Selects the records with the given keys, see {@link DRUMS#select(byte[]...)}.
+     * 
+     * @param keys
+     *            the keys to search for
+     * @return the found records
+     * @throws DRUMSException
+     */
+    public List<Data> select(byte[]... keys) throws DRUMSException {
+        long start = System.nanoTime();
+        List<Data> result = drums.select(keys);
+        metrics.recordSelect(System.nanoTime() - start);
+        for (byte[] key : keys) {
+            metrics.recordBucketRead(hashFunction.getBucketId(key));
+        }
+        return result;
+    }
+
+    /**
+     * Reads all records between the given keys, see {@link DRUMSReader#getRange(byte[], byte[])}. The number of bytes
+     * read is recorded as the number of bytes of the returned records, because DRUMS does not expose its read volume.
+     * The reader is shared, so concurrent range scans are serialized.
+     * 
+     * @param lowerKey
+     *            the smallest key to read
+     * @param upperKey
+     *            the largest key to read
+     * @return the found records
+     * @throws IOException
+     * @throws FileLockException
+     */
+    public synchronized List<Data> getRange(byte[] lowerKey, byte[] upperKey) throws IOException, FileLockException {
+        if (reader == null) {
+            reader = drums.getReader();
+        }
+        List<Data> range = reader.getRange(lowerKey, upperKey);
+        metrics.recordRangeScan((long) range.size() * elementSize, range.size());
+        int lastBucket = hashFunction.getBucketId(upperKey);
+        for (int bucketId = hashFunction.getBucketId(lowerKey); bucketId <= lastBucket; bucketId++) {
+            metrics.recordBucketRead(bucketId);
+        }
+        return range;
+    }
+
+    /** @return the metrics of this table */
+    public BioDRUMSMetrics getMetrics() {
+        return metrics;
+    }
+
+    /** @return the wrapped {@link DRUMS}-instance */
+    public DRUMS<Data> getDRUMS() {
+        return drums;
+    }
+
+    /**
+     * Closes the reader used for range scans and the wrapped table.
+     * 
+     * @throws IOException
+     * @throws DRUMSException
+     * @throws InterruptedException
+     */
+    public synchronized void close() throws IOException, DRUMSException, InterruptedException {
+        if (reader != null) {
+            reader.closeFiles();
+            reader = null;
+        }
+        drums.close();
+    }
+}
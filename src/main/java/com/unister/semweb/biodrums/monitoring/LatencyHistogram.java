@@ -0,0 +1,116 @@
+package com.unister.semweb.biodrums.monitoring;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram for latencies given in nanoseconds. Each power of two is divided into {@link #SUB_BUCKETS}
+ * linear sub-buckets, so every recorded value is off by at most 12.5 percent. Recording a value costs two atomic
+ * increments and no allocation, which makes it cheap enough to be used on every insert and select.
+ * 
+ * @author Martin Nettling
+ */
+public class LatencyHistogram {
+    /** the number of linear sub-buckets per power of two */
+    static final int SUB_BUCKETS = 8;
+
+    /** log2 of {@link #SUB_BUCKETS} */
+    private static final int SUB_BUCKET_BITS = 3;
+
+    /** one row of {@link #SUB_BUCKETS} counters for each possible highest bit of a long */
+    private static final int NUMBER_OF_CELLS = 64 * SUB_BUCKETS;
+
+    private final AtomicLongArray cells = new AtomicLongArray(NUMBER_OF_CELLS);
+
+    private final AtomicLong count = new AtomicLong();
+
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records the given latency.
+     * 
+     * @param nanos
+     *            the latency in nanoseconds, negative values are treated as 0
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        cells.incrementAndGet(cellOf(nanos));
+        count.incrementAndGet();
+        long currentMax;
+        while (nanos > (currentMax = max.get())) {
+            if (max.compareAndSet(currentMax, nanos)) {
+                break;
+            }
+        }
+    }
+
+    /** @return the number of recorded latencies */
+    public long getCount() {
+        return count.get();
+    }
+
+    /** @return the largest recorded latency in nanoseconds */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Estimates the given percentile of all recorded latencies.
+     * 
+     * @param percentile
+     *            the percentile, between 0 and 100
+     * @return the upper bound of the cell containing the percentile in nanoseconds, 0 if nothing was recorded
+     */
+    public long getPercentile(double percentile) {
+        long total = count.get();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100.0);
+        rank = Math.max(1, rank);
+        long seen = 0;
+        for (int cell = 0; cell < NUMBER_OF_CELLS; cell++) {
+            seen += cells.get(cell);
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(cell), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /** Removes all recorded latencies. */
+    public void reset() {
+        for (int cell = 0; cell < NUMBER_OF_CELLS; cell++) {
+            cells.set(cell, 0);
+        }
+        count.set(0);
+        max.set(0);
+    }
+
+    /** maps the given value to the index of its cell */
+    static int cellOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int highestBit = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (highestBit - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (highestBit - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /** @return the largest value which is mapped to the given cell */
+    static long upperBoundOf(int cell) {
+        if (cell < SUB_BUCKETS) {
+            return cell;
+        }
+        int highestBit = cell / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = cell % SUB_BUCKETS;
+        long lowerBound = (1L << highestBit) | (subBucket << (highestBit - SUB_BUCKET_BITS));
+        long width = 1L << (highestBit - SUB_BUCKET_BITS);
+        if (highestBit == 62 && subBucket == SUB_BUCKETS - 1) {
+            return Long.MAX_VALUE;
+        }
+        return lowerBound + width - 1;
+    }
+}
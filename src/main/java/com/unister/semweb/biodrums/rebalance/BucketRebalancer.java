@@ -0,0 +1,188 @@
+package com.unister.semweb.biodrums.rebalance;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.unister.semweb.biodrums.monitoring.BioDRUMSMetrics;
+import com.unister.semweb.biodrums.storage.BucketFiles;
+import com.unister.semweb.drums.DRUMSParameterSet;
+import com.unister.semweb.drums.bucket.hashfunction.RangeHashFunction;
+import com.unister.semweb.drums.file.AbstractHeaderFile.AccessMode;
+import com.unister.semweb.drums.file.FileLockException;
+import com.unister.semweb.drums.file.HeaderIndexFile;
+import com.unister.semweb.drums.storable.AbstractKVStorable;
+
+/**
+ * Splits oversized and hot buckets of a table with a {@link BucketSplitter}. A bucket is oversized, if it contains more
+ * than <code>maxRecordsPerBucket</code> records, and hot, if it received more than <code>hotFactor</code> times the
+ * mean number of reads and inserts per bucket, as counted by {@link BioDRUMSMetrics}. The bucket exceeding its limit
+ * the most is split first.
+ * 
+ * <pre>
+ * BucketSplitter&lt;SNP&gt; splitter = new BucketSplitter&lt;SNP&gt;(gp, hashFunction, hashFunctionFile, new SNP());
+ * splitter.recover();
+ * RangeHashFunction rebalanced = new BucketRebalancer&lt;SNP&gt;(gp, splitter, 50000000, 4, new SNP()).rebalance(
+ *         metrics, 8);
+ * </pre>
+ * 
+ * The counters of the metrics refer to the old bucket-ids, so new metrics must be used after a rebalance.
+ * 
+ * @author Martin Nettling
+ * 
+ * @param <Data>
+ *            the type of the records
+ */
+public class BucketRebalancer<Data extends AbstractKVStorable> {
+    private static final Logger log = LoggerFactory.getLogger(BucketRebalancer.class);
+
+    private final DRUMSParameterSet<Data> gp;
+    private final BucketSplitter<Data> splitter;
+    private final long maxRecordsPerBucket;
+    private final double hotFactor;
+    private final int elementSize;
+
+    /**
+     * @param gp
+     *            the parameters of the table
+     * @param splitter
+     *            the splitter of the table
+     * @param maxRecordsPerBucket
+     *            the number of records, above which a bucket is split
+     * @param hotFactor
+     *            the multiple of the mean accesses per bucket, above which a bucket is split
+     * @param prototype
+     *            a prototype of the stored records
+     */
+    public BucketRebalancer(DRUMSParameterSet<Data> gp, BucketSplitter<Data> splitter, long maxRecordsPerBucket,
+            double hotFactor, Data prototype) {
+        this.gp = gp;
+        this.splitter = splitter;
+        this.maxRecordsPerBucket = maxRecordsPerBucket;
+        this.hotFactor = hotFactor;
+        this.elementSize = prototype.getSize();
+    }
+
+    /**
+     * Splits at most <code>maxSplits</code> buckets, which are oversized or hot according to the given metrics.
+     * 
+     * @param metrics
+     *            the metrics of the table, recorded with the current hash function
+     * @param maxSplits
+     *            the maximal number of splits
+     * @return the resulting hash function, the current one if no bucket was split
+     * @throws IOException
+     * @throws FileLockException
+     */
+    public RangeHashFunction rebalance(BioDRUMSMetrics metrics, int maxSplits) throws IOException,
+            FileLockException {
+        long[] inserts = metrics.getBucketInsertCounts();
+        long[] reads = metrics.getBucketReadCounts();
+        long[] accesses = new long[inserts.length];
+        for (int i = 0; i < accesses.length; i++) {
+            accesses[i] = inserts[i] + reads[i];
+        }
+        return rebalance(accesses, maxSplits);
+    }
+
+    /**
+     * Splits at most <code>maxSplits</code> buckets, which are oversized or hot.
+     * 
+     * @param accesses
+     *            the number of accesses per bucket of the current hash function
+     * @param maxSplits
+     *            the maximal number of splits
+     * @return the resulting hash function, the current one if no bucket was split
+     * @throws IOException
+     * @throws FileLockException
+     */
+    public RangeHashFunction rebalance(long[] accesses, int maxSplits) throws IOException, FileLockException {
+        RangeHashFunction hashFunction = splitter.getHashFunction();
+        if (accesses.length != hashFunction.getNumberOfBuckets()) {
+            throw new IllegalArgumentException("The counters belong to a hash function with " + accesses.length
+                    + " buckets, the table has " + hashFunction.getNumberOfBuckets());
+        }
+        long[] records = new long[accesses.length];
+        for (int bucketId = 0; bucketId < records.length; bucketId++) {
+            records[bucketId] = countRecords(BucketFiles.getFile(gp, hashFunction, bucketId));
+        }
+        // buckets, which can't be split, are excluded by setting their counters to 0
+        for (int splits = 0; splits < maxSplits;) {
+            int bucketId = chooseBucket(records, accesses, maxRecordsPerBucket, hotFactor);
+            if (bucketId < 0) {
+                break;
+            }
+            if (splitter.split(bucketId) == null) {
+                records[bucketId] = 0;
+                accesses[bucketId] = 0;
+                continue;
+            }
+            // the counters of both halves are estimated as half of the split bucket
+            records = insertHalf(records, bucketId);
+            accesses = insertHalf(accesses, bucketId);
+            splits++;
+        }
+        return splitter.getHashFunction();
+    }
+
+    /**
+     * Chooses the bucket, which exceeds its limit the most.
+     * 
+     * @param records
+     *            the number of records per bucket
+     * @param accesses
+     *            the number of accesses per bucket
+     * @param maxRecordsPerBucket
+     *            the number of records, above which a bucket is oversized
+     * @param hotFactor
+     *            the multiple of the mean accesses, above which a bucket is hot
+     * @return the id of the bucket to split, -1 if no bucket is oversized or hot
+     */
+    public static int chooseBucket(long[] records, long[] accesses, long maxRecordsPerBucket, double hotFactor) {
+        long totalAccesses = 0;
+        for (long bucketAccesses : accesses) {
+            totalAccesses += bucketAccesses;
+        }
+        double hotLimit = hotFactor * totalAccesses / accesses.length;
+        int chosen = -1;
+        double chosenExcess = 1;
+        for (int bucketId = 0; bucketId < records.length; bucketId++) {
+            if (records[bucketId] < 2) {
+                continue;
+            }
+            double excess = (double) records[bucketId] / maxRecordsPerBucket;
+            if (totalAccesses > 0) {
+                excess = Math.max(excess, accesses[bucketId] / hotLimit);
+            }
+            if (excess > chosenExcess) {
+                chosen = bucketId;
+                chosenExcess = excess;
+            }
+        }
+        return chosen;
+    }
+
+    /** replaces the counter of the split bucket by two counters with half of its value */
+    private static long[] insertHalf(long[] counters, int bucketId) {
+        long[] result = new long[counters.length + 1];
+        System.arraycopy(counters, 0, result, 0, bucketId);
+        result[bucketId] = counters[bucketId] / 2;
+        result[bucketId + 1] = counters[bucketId] - counters[bucketId] / 2;
+        System.arraycopy(counters, bucketId + 1, result, bucketId + 2, counters.length - bucketId - 1);
+        return result;
+    }
+
+    private long countRecords(File file) throws IOException, FileLockException {
+        if (!file.exists()) {
+            return 0;
+        }
+        HeaderIndexFile<Data> bucket = BucketFiles.open(gp, file, AccessMode.READ_ONLY);
+        try {
+            return BucketFiles.getNumberOfRecords(bucket, elementSize);
+        } finally {
+            bucket.close();
+        }
+    }
+}
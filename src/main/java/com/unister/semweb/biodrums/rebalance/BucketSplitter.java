@@ -0,0 +1,295 @@
+package com.unister.semweb.biodrums.rebalance;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.unister.semweb.biodrums.storage.BucketFiles;
+import com.unister.semweb.drums.DRUMSParameterSet;
+import com.unister.semweb.drums.bucket.hashfunction.RangeHashFunction;
+import com.unister.semweb.drums.file.AbstractHeaderFile.AccessMode;
+import com.unister.semweb.drums.file.FileLockException;
+import com.unister.semweb.drums.file.HeaderIndexFile;
+import com.unister.semweb.drums.storable.AbstractKVStorable;
+
+/**
+ * Splits one bucket of a table into two buckets at the median key and persists the resulting
+ * {@link RangeHashFunction}, e.g. <code>HERV_RangeHashFunction.txt</code>. The records of the lower half are written to
+ * a new bucket file, the records of the upper half replace the original file.<br>
+ * <br>
+ * A split is journaled, so a crash leaves a consistent table:
+ * <ol>
+ * <li>the journal {@value #JOURNAL_FILE_NAME} is written</li>
+ * <li>the lower half is written to a new file, the upper half to <code>&lt;bucket file&gt;.split</code></li>
+ * <li>the new hash function is written to a temporary file, all new files are synced and the temporary file is renamed
+ * over the hash function file, which commits the split</li>
+ * <li>the upper half is renamed over the original bucket file and the journal is deleted</li>
+ * </ol>
+ * {@link #recover()} completes or rolls back an interrupted split. Readers of mapped bucket files, e.g.
+ * {@link com.unister.semweb.biodrums.mapped.MappedTable}s, keep reading the replaced files until they are reopened with
+ * the new hash function. DRUMS keeps the hash function and unsynchronized records of each bucket in memory, so no
+ * {@link com.unister.semweb.drums.api.DRUMS}-instance may write to the table during a split, e.g. the split is
+ * performed between two checkpoints of a load.
+ * 
+ * @author Martin Nettling
+ * 
+ * @param <Data>
+ *            the type of the records
+ */
+public class BucketSplitter<Data extends AbstractKVStorable> {
+    private static final Logger log = LoggerFactory.getLogger(BucketSplitter.class);
+
+    /** the name of the journal in the database directory */
+    public static final String JOURNAL_FILE_NAME = "BucketSplit.journal";
+
+    /** the extension of the file containing the upper half of a split bucket until the split is committed */
+    public static final String SPLIT_EXTENSION = ".split";
+
+    private final DRUMSParameterSet<Data> gp;
+    private final File hashFunctionFile;
+    private final int elementSize;
+    private RangeHashFunction hashFunction;
+
+    /**
+     * @param gp
+     *            the parameters of the table
+     * @param hashFunction
+     *            the current hash function of the table
+     * @param hashFunctionFile
+     *            the file, from which the hash function of the table is read
+     * @param prototype
+     *            a prototype of the stored records
+     */
+    public BucketSplitter(DRUMSParameterSet<Data> gp, RangeHashFunction hashFunction, File hashFunctionFile,
+            Data prototype) {
+        this.gp = gp;
+        this.hashFunction = hashFunction;
+        this.hashFunctionFile = hashFunctionFile;
+        this.elementSize = prototype.getSize();
+    }
+
+    /** @return the current hash function, which changes with each split */
+    public RangeHashFunction getHashFunction() {
+        return hashFunction;
+    }
+
+    /**
+     * Splits the given bucket at the median key. The new bucket gets the id <code>bucketId</code>, the upper half
+     * keeps its file and gets the id <code>bucketId + 1</code>. All following buckets are shifted by one.
+     * 
+     * @param bucketId
+     *            the id of the bucket to split
+     * @return the new hash function, <code>null</code> if the bucket can't be split because it contains less than
+     *         two different range prefixes
+     * @throws IOException
+     * @throws FileLockException
+     */
+    public RangeHashFunction split(int bucketId) throws IOException, FileLockException {
+        // the upper half replaces a striped bucket in its data directory
+        File original = BucketFiles.resolve(BucketFiles.getFile(gp, hashFunction, bucketId));
+        ByteBuffer records = read(original);
+        int numberOfRecords = records.capacity() / elementSize;
+        byte[][] ranges = hashFunction.getRanges();
+        int prefixLength = ranges[bucketId].length;
+        int splitIndex = findSplitIndex(records, numberOfRecords, elementSize, prefixLength);
+        if (splitIndex < 0) {
+            log.info("Bucket {} with {} records can't be split", bucketId, numberOfRecords);
+            return null;
+        }
+        byte[] boundary = new byte[prefixLength];
+        records.position((splitIndex - 1) * elementSize);
+        records.get(boundary);
+
+        String[] filenames = new String[ranges.length];
+        for (int i = 0; i < filenames.length; i++) {
+            filenames[i] = hashFunction.getFilename(i);
+        }
+        File lower = new File(gp.DATABASE_DIRECTORY, newFilename(filenames, original.getName()));
+        File upper = new File(original.getPath() + SPLIT_EXTENSION);
+
+        writeJournal(original.getName(), lower.getName());
+        records.position(0).limit(splitIndex * elementSize);
+        write(lower, records.slice());
+        records.limit(records.capacity()).position(splitIndex * elementSize);
+        write(upper, records.slice());
+
+        byte[][] newRanges = new byte[ranges.length + 1][];
+        String[] newFilenames = new String[ranges.length + 1];
+        System.arraycopy(ranges, 0, newRanges, 0, bucketId);
+        System.arraycopy(filenames, 0, newFilenames, 0, bucketId);
+        newRanges[bucketId] = boundary;
+        newFilenames[bucketId] = lower.getName();
+        System.arraycopy(ranges, bucketId, newRanges, bucketId + 1, ranges.length - bucketId);
+        System.arraycopy(filenames, bucketId, newFilenames, bucketId + 1, ranges.length - bucketId);
+        RangeHashFunction split = new RangeHashFunction(newRanges, newFilenames, hashFunctionFile.getPath());
+
+        // both halves must be on disk, before the rename of the hash function file commits the split
+        File tmp = new File(hashFunctionFile.getPath() + ".tmp");
+        new RangeHashFunction(newRanges, newFilenames, tmp.getPath()).writeToFile();
+        BucketFiles.sync(tmp);
+        BucketFiles.syncDirectory(lower.getAbsoluteFile().getParentFile());
+        BucketFiles.syncDirectory(upper.getAbsoluteFile().getParentFile());
+        BucketFiles.replace(tmp, hashFunctionFile);
+        BucketFiles.replace(upper, original);
+        new File(gp.DATABASE_DIRECTORY, JOURNAL_FILE_NAME).delete();
+
+        hashFunction = split;
+        log.info("Split bucket {} with {} records into {} and {} at {}", new Object[] { bucketId, numberOfRecords,
+                lower.getName(), original.getName(), Arrays.toString(boundary) });
+        return split;
+    }
+
+    /**
+     * Completes or rolls back a split, which was interrupted, e.g. by a crash of the JVM. Must be called before the
+     * table is opened. Whether the split was committed is decided by the persisted hash function, which is read from
+     * the hash function file and replaces the current hash function.
+     * 
+     * @return <code>true</code> if an interrupted split was found
+     * @throws IOException
+     */
+    public boolean recover() throws IOException {
+        File journalFile = new File(gp.DATABASE_DIRECTORY, JOURNAL_FILE_NAME);
+        if (!journalFile.exists()) {
+            return false;
+        }
+        Properties journal = new Properties();
+        InputStream in = new FileInputStream(journalFile);
+        try {
+            journal.load(in);
+        } finally {
+            in.close();
+        }
+        File original = BucketFiles.resolve(new File(gp.DATABASE_DIRECTORY, journal.getProperty("original")));
+        File lower = new File(gp.DATABASE_DIRECTORY, journal.getProperty("lower"));
+        File upper = new File(original.getPath() + SPLIT_EXTENSION);
+
+        // the hash function given to the constructor may predate the interrupted split
+        if (hashFunctionFile.exists()) {
+            hashFunction = new RangeHashFunction(hashFunctionFile);
+        }
+        Set<String> filenames = new HashSet<String>();
+        for (int i = 0; i < hashFunction.getNumberOfBuckets(); i++) {
+            filenames.add(hashFunction.getFilename(i));
+        }
+        if (filenames.contains(lower.getName())) {
+            // the hash function was committed
+            if (upper.exists()) {
+                BucketFiles.replace(upper, original);
+            }
+            log.info("Completed the split of {}", original);
+        } else {
+            upper.delete();
+            lower.delete();
+            new File(hashFunctionFile.getPath() + ".tmp").delete();
+            log.info("Rolled back the split of {}", original);
+        }
+        journalFile.delete();
+        return true;
+    }
+
+    /**
+     * Determines where the sorted records of a bucket are split. The split is as close as possible to the median, but
+     * all records with the same prefix of <code>prefixLength</code> bytes stay in the same bucket, because the
+     * {@link RangeHashFunction} only compares these prefixes.
+     * 
+     * @param records
+     *            the sorted records of the bucket, starting at offset 0
+     * @param numberOfRecords
+     *            the number of records
+     * @param elementSize
+     *            the size of one record in bytes
+     * @param prefixLength
+     *            the length of the ranges of the hash function
+     * @return the index of the first record of the upper half, -1 if all records have the same prefix
+     */
+    public static int findSplitIndex(ByteBuffer records, int numberOfRecords, int elementSize, int prefixLength) {
+        int median = numberOfRecords / 2;
+        for (int distance = 0; distance < numberOfRecords; distance++) {
+            int above = median + distance;
+            if (above > 0 && above < numberOfRecords && differ(records, above, elementSize, prefixLength)) {
+                return above;
+            }
+            int below = median - distance;
+            if (below > 0 && below < numberOfRecords && differ(records, below, elementSize, prefixLength)) {
+                return below;
+            }
+        }
+        return -1;
+    }
+
+    /** checks if the record at the index has another prefix than its predecessor */
+    private static boolean differ(ByteBuffer records, int index, int elementSize, int prefixLength) {
+        int offset = index * elementSize;
+        for (int i = 0; i < prefixLength; i++) {
+            if (records.get(offset + i) != records.get(offset - elementSize + i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String newFilename(String[] filenames, String original) {
+        Set<String> used = new HashSet<String>(Arrays.asList(filenames));
+        String base = original.endsWith(".db") ? original.substring(0, original.length() - 3) : original;
+        for (int i = 0;; i++) {
+            String candidate = base + "_" + i + ".db";
+            if (!used.contains(candidate)) {
+                return candidate;
+            }
+        }
+    }
+
+    private void writeJournal(String original, String lower) throws IOException {
+        Properties journal = new Properties();
+        journal.setProperty("original", original);
+        journal.setProperty("lower", lower);
+        FileOutputStream out = new FileOutputStream(new File(gp.DATABASE_DIRECTORY, JOURNAL_FILE_NAME));
+        try {
+            journal.store(out, "BioDRUMS bucket split");
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+    }
+
+    private ByteBuffer read(File file) throws IOException, FileLockException {
+        if (!file.exists()) {
+            return ByteBuffer.allocate(0);
+        }
+        HeaderIndexFile<Data> bucket = BucketFiles.open(gp, file, AccessMode.READ_ONLY);
+        try {
+            long filled = BucketFiles.getNumberOfRecords(bucket, elementSize) * elementSize;
+            if (filled > Integer.MAX_VALUE) {
+                throw new IOException("The bucket file " + file + " is too large to be split: " + filled + " bytes");
+            }
+            ByteBuffer records = ByteBuffer.allocate((int) filled);
+            BucketFiles.readFully(bucket, 0, records);
+            return records;
+        } finally {
+            bucket.close();
+        }
+    }
+
+    private void write(File file, ByteBuffer records) throws IOException, FileLockException {
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Could not delete " + file);
+        }
+        HeaderIndexFile<Data> bucket = BucketFiles.open(gp, file, AccessMode.READ_WRITE);
+        try {
+            bucket.write(0, records);
+        } finally {
+            bucket.close();
+        }
+        BucketFiles.sync(file);
+    }
+}
@@ -0,0 +1,33 @@
+package com.unister.semweb.biodrums.scan;
+
+import com.unister.semweb.drums.storable.AbstractKVStorable;
+
+/**
+ * A computation on one bucket, which is executed by a {@link ParallelBucketScan}.
+ * 
+ * @author Martin Nettling
+ * 
+ * @param <Data>
+ *            the type of the records stored in the table
+ * @param <R>
+ *            the type of the result of one bucket
+ */
+public interface BucketFunction<Data extends AbstractKVStorable, R> {
+
+    /**
+     * Computes the result of one bucket. The method is called concurrently for different buckets.
+     * 
+     * @param scanner
+     *            the scanner of the current thread
+     * @param bucketId
+     *            the id of the bucket
+     * @param lowerKey
+     *            the smallest key of the range, may be <code>null</code>
+     * @param upperKey
+     *            the largest key of the range, may be <code>null</code>
+     * @return the result of the bucket
+     * @throws Exception
+     *             if the bucket could not be processed
+     */
+    R apply(BucketScanner<Data> scanner, int bucketId, byte[] lowerKey, byte[] upperKey) throws Exception;
+}
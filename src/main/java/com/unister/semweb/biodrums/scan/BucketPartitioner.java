@@ -0,0 +1,77 @@
+package com.unister.semweb.biodrums.scan;
+
+import java.io.File;
+
+import com.unister.semweb.drums.DRUMSParameterSet;
+import com.unister.semweb.drums.bucket.hashfunction.RangeHashFunction;
+
+/**
+ * Splits a contiguous range of buckets into partitions of similar size. The size of a bucket is the length of its
+ * file, so partitions of many small buckets and partitions of few large buckets need a similar time to be scanned.
+ * 
+ * @author Martin Nettling
+ */
+public class BucketPartitioner {
+
+    private BucketPartitioner() {
+    }
+
+    /**
+     * Splits the buckets <code>[firstBucket, lastBucket]</code> into at most <code>parts</code> contiguous partitions.
+     * 
+     * @param gp
+     *            the parameters of the table
+     * @param hashFunction
+     *            the hash function of the table
+     * @param firstBucket
+     *            the first bucket of the range
+     * @param lastBucket
+     *            the last bucket of the range
+     * @param parts
+     *            the maximal number of partitions
+     * @return the first bucket of each partition, followed by <code>lastBucket + 1</code>
+     */
+    public static int[] partition(DRUMSParameterSet<?> gp, RangeHashFunction hashFunction, int firstBucket,
+            int lastBucket, int parts) {
+        long[] sizes = new long[lastBucket - firstBucket + 1];
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = new File(gp.DATABASE_DIRECTORY, hashFunction.getFilename(firstBucket + i)).length();
+        }
+        int[] bounds = partition(sizes, parts);
+        for (int i = 0; i < bounds.length; i++) {
+            bounds[i] += firstBucket;
+        }
+        return bounds;
+    }
+
+    /**
+     * Splits the given sizes into at most <code>parts</code> contiguous partitions of similar sum. Each partition
+     * contains at least one element.
+     * 
+     * @param sizes
+     *            the sizes of the elements
+     * @param parts
+     *            the maximal number of partitions
+     * @return the index of the first element of each partition, followed by <code>sizes.length</code>
+     */
+    public static int[] partition(long[] sizes, int parts) {
+        parts = Math.max(1, Math.min(parts, sizes.length));
+        long total = 0;
+        for (long size : sizes) {
+            total += size;
+        }
+        int[] bounds = new int[parts + 1];
+        int partition = 1;
+        long sum = 0;
+        for (int i = 0; i < sizes.length && partition < parts; i++) {
+            sum += sizes[i];
+            // close the partition when its share is reached, but leave one element for each remaining partition
+            boolean shareReached = sum * parts >= total * partition;
+            if ((shareReached || sizes.length - i - 1 == parts - partition) && i + 1 > bounds[partition - 1]) {
+                bounds[partition++] = i + 1;
+            }
+        }
+        bounds[parts] = sizes.length;
+        return bounds;
+    }
+}
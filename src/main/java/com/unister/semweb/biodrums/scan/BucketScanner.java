@@ -0,0 +1,215 @@
+package com.unister.semweb.biodrums.scan;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import com.unister.semweb.biodrums.monitoring.BioDRUMSMetrics;
+import com.unister.semweb.biodrums.storage.BucketFiles;
+import com.unister.semweb.biodrums.storage.RecordBuffers;
+import com.unister.semweb.drums.DRUMSParameterSet;
+import com.unister.semweb.drums.bucket.hashfunction.RangeHashFunction;
+import com.unister.semweb.drums.file.AbstractHeaderFile.AccessMode;
+import com.unister.semweb.drums.file.FileLockException;
+import com.unister.semweb.drums.file.HeaderIndexFile;
+import com.unister.semweb.drums.storable.AbstractKVStorable;
+
+/**
+ * Scans the bucket files of a DRUMS-table and hands the serialized records to a {@link RecordVisitor}. In contrast to
+ * {@link com.unister.semweb.drums.api.DRUMSReader} no objects are instantiated per record. The records are read in
+ * large blocks into one reusable direct buffer. The first record of a range is found by a binary search on the bucket
+ * file.<br>
+ * <br>
+ * Key ranges are inclusive. A bound given as <code>null</code> is unbounded. A bound may be shorter than the key, then
+ * only the prefix of each key is compared.<br>
+ * <br>
+ * An instance is not thread-safe, use one instance per thread.
+ * 
+ * @author Martin Nettling
+ * 
+ * @param <Data>
+ *            the type of the records stored in the table
+ */
+public class BucketScanner<Data extends AbstractKVStorable> {
+
+    /** the default size of the read buffer */
+    public static final int DEFAULT_BUFFER_SIZE = 4 * 1024 * 1024;
+
+    private final DRUMSParameterSet<Data> gp;
+
+    private final RangeHashFunction hashFunction;
+
+    private final int elementSize;
+
+    private final ByteBuffer buffer;
+
+    /** a buffer to read single records during the binary search */
+    private final ByteBuffer probe;
+
+    private BioDRUMSMetrics metrics;
+
+    private long bytesRead;
+
+    /**
+     * Creates a new scanner.
+     * 
+     * @param gp
+     *            the parameters of the table
+     * @param hashFunction
+     *            the hash function of the table
+     * @param prototype
+     *            a prototype of the stored records
+     * @param bufferSize
+     *            the size of the read buffer in bytes
+     */
+    public BucketScanner(DRUMSParameterSet<Data> gp, RangeHashFunction hashFunction, Data prototype, int bufferSize) {
+        this.gp = gp;
+        this.hashFunction = hashFunction;
+        this.elementSize = prototype.getSize();
+        this.buffer = ByteBuffer.allocateDirect(Math.max(elementSize, bufferSize - bufferSize % elementSize));
+        this.probe = ByteBuffer.allocate(elementSize);
+    }
+
+    /**
+     * Sets the metrics, in which each scanned range is recorded.
+     * 
+     * @param metrics
+     *            the metrics to use, <code>null</code> to disable recording
+     */
+    public void setMetrics(BioDRUMSMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /** @return the hash function of the scanned table */
+    public RangeHashFunction getHashFunction() {
+        return hashFunction;
+    }
+
+    /** @return the size of one record in bytes */
+    public int getElementSize() {
+        return elementSize;
+    }
+
+    /**
+     * @param lowerKey
+     *            the smallest key of a range, may be <code>null</code>
+     * @return the id of the first bucket, which may contain keys of the range
+     */
+    public int getFirstBucket(byte[] lowerKey) {
+        return lowerKey == null ? 0 : hashFunction.getBucketId(lowerKey);
+    }
+
+    /**
+     * @param upperKey
+     *            the largest key of a range, may be <code>null</code>
+     * @return the id of the last bucket, which may contain keys of the range
+     */
+    public int getLastBucket(byte[] upperKey) {
+        return upperKey == null ? hashFunction.getNumberOfBuckets() - 1 : hashFunction.getBucketId(upperKey);
+    }
+
+    /**
+     * Visits all records between the given keys.
+     * 
+     * @param lowerKey
+     *            the smallest key to visit, may be <code>null</code>
+     * @param upperKey
+     *            the largest key to visit, may be <code>null</code>
+     * @param visitor
+     *            the visitor to call for each record
+     * @return the number of visited records
+     * @throws IOException
+     * @throws FileLockException
+     */
+    public long scan(byte[] lowerKey, byte[] upperKey, RecordVisitor visitor) throws IOException, FileLockException {
+        long bytesBefore = bytesRead;
+        long visited = 0;
+        int lastBucket = getLastBucket(upperKey);
+        for (int bucketId = getFirstBucket(lowerKey); bucketId <= lastBucket; bucketId++) {
+            long result = scanBucket(bucketId, lowerKey, upperKey, visitor);
+            if (result < 0) {
+                visited += -result - 1;
+                break;
+            }
+            visited += result;
+        }
+        if (metrics != null) {
+            metrics.recordRangeScan(bytesRead - bytesBefore, visited);
+        }
+        return visited;
+    }
+
+    /**
+     * Visits all records of one bucket between the given keys.
+     * 
+     * @param bucketId
+     *            the id of the bucket to scan
+     * @param lowerKey
+     *            the smallest key to visit, may be <code>null</code>
+     * @param upperKey
+     *            the largest key to visit, may be <code>null</code>
+     * @param visitor
+     *            the visitor to call for each record
+     * @return the number of visited records. If the visitor stopped the scan, <code>-(visited + 1)</code> is returned.
+     * @throws IOException
+     * @throws FileLockException
+     */
+    public long scanBucket(int bucketId, byte[] lowerKey, byte[] upperKey, RecordVisitor visitor) throws IOException,
+            FileLockException {
+        if (!BucketFiles.getFile(gp, hashFunction, bucketId).exists()) {
+            return 0;
+        }
+        HeaderIndexFile<Data> file = BucketFiles.open(gp, hashFunction, bucketId, AccessMode.READ_ONLY);
+        try {
+            long filled = file.getFilledUpFromContentStart();
+            filled -= filled % elementSize;
+            long offset = lowerKey == null ? 0 : findFirst(file, filled / elementSize, lowerKey) * elementSize;
+            long visited = 0;
+            while (offset < filled) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), filled - offset));
+                readFully(file, offset, buffer);
+                int bytes = buffer.limit();
+                for (int position = 0; position < bytes; position += elementSize) {
+                    if (upperKey != null && RecordBuffers.compareKey(buffer, position, upperKey) > 0) {
+                        return visited;
+                    }
+                    visited++;
+                    if (!visitor.visit(buffer, position)) {
+                        return -visited - 1;
+                    }
+                }
+                offset += bytes;
+            }
+            return visited;
+        } finally {
+            file.close();
+        }
+    }
+
+    /** @return the number of bytes this scanner read from bucket files */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /** @return the index of the first record, whose key is not smaller than the given key */
+    private long findFirst(HeaderIndexFile<Data> file, long numberOfRecords, byte[] key) throws IOException {
+        long low = 0, high = numberOfRecords;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            probe.clear();
+            readFully(file, middle * elementSize, probe);
+            if (RecordBuffers.compareKey(probe, 0, key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /** fills the buffer between its position and its limit, afterwards the buffer is ready to be read from 0 */
+    private void readFully(HeaderIndexFile<Data> file, long offset, ByteBuffer destination) throws IOException {
+        bytesRead += destination.remaining();
+        BucketFiles.readFully(file, offset, destination);
+    }
+}
@@ -0,0 +1,354 @@
+package com.unister.semweb.biodrums.scan;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.unister.semweb.biodrums.storage.BucketFiles;
+import com.unister.semweb.biodrums.storage.BucketPlacement;
+import com.unister.semweb.drums.DRUMSParameterSet;
+import com.unister.semweb.drums.bucket.hashfunction.RangeHashFunction;
+import com.unister.semweb.drums.storable.AbstractKVStorable;
+
+/**
+ * Executes range scans on several buckets of a DRUMS-table in parallel. A key range is fanned out to all buckets it
+ * touches, each bucket is scanned by a worker of a fixed thread pool with its own {@link BucketScanner}. Large ranges,
+ * like all HERVs of a chromosome, use all disks and cores in that way.<br>
+ * <br>
+ * {@link #getRange(byte[], byte[])} streams the records back in key order. Because the {@link RangeHashFunction}
+ * assigns disjoint and ordered key ranges to the buckets, the results of the buckets are merged by concatenating them
+ * in the order of their ids. Each bucket of the range is read as a whole into memory. At most
+ * <code>2 * parallelism</code> buckets are read ahead, and only as long as their bucket files together are not larger
+ * than {@link #setMaxReadAhead(long)}; a larger single bucket is still read. So the iterator holds at most the
+ * maximal read-ahead or one bucket, plus the bucket it currently returns.<br>
+ * <br>
+ * {@link #map(byte[], byte[], BucketFunction)} runs an arbitrary computation on each bucket, e.g. an aggregation. For
+ * a table striped by a {@link BucketPlacement} the buckets are submitted alternating between the data directories.
+ * 
+ * @author Martin Nettling
+ * 
+ * @param <Data>
+ *            the type of the records stored in the table
+ */
+public class ParallelBucketScan<Data extends AbstractKVStorable> {
+
+    /** the default maximal size of the bucket files, which are read ahead by a {@link RangeIterator} */
+    public static final long DEFAULT_MAX_READ_AHEAD = 256L * 1024 * 1024;
+
+    private final DRUMSParameterSet<Data> gp;
+
+    private final RangeHashFunction hashFunction;
+
+    private final Data prototype;
+
+    private final int parallelism;
+
+    private final ExecutorService executor;
+
+    /** the placement of a striped table, may be null */
+    private BucketPlacement placement;
+
+    /** the maximal size of the bucket files, which are read ahead */
+    private volatile long maxReadAhead = DEFAULT_MAX_READ_AHEAD;
+
+    /** each worker thread keeps its scanner and with that its read buffer */
+    private final ThreadLocal<BucketScanner<Data>> scanners = new ThreadLocal<BucketScanner<Data>>() {
+        @Override
+        protected BucketScanner<Data> initialValue() {
+            return new BucketScanner<Data>(gp, hashFunction, prototype, BucketScanner.DEFAULT_BUFFER_SIZE);
+        }
+    };
+
+    /**
+     * Creates a new parallel scan with its own thread pool.
+     * 
+     * @param gp
+     *            the parameters of the table
+     * @param hashFunction
+     *            the hash function of the table
+     * @param prototype
+     *            a prototype of the stored records
+     * @param parallelism
+     *            the number of buckets, which are scanned in parallel
+     */
+    public ParallelBucketScan(DRUMSParameterSet<Data> gp, RangeHashFunction hashFunction, Data prototype,
+            int parallelism) {
+        this.gp = gp;
+        this.hashFunction = hashFunction;
+        this.prototype = prototype;
+        this.parallelism = parallelism;
+        this.executor = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+            private final AtomicInteger threadNumber = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "biodrums-scan-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Sets the placement of a striped table. {@link #map(byte[], byte[], BucketFunction)} then submits the buckets
+     * alternating between the data directories.
+     * 
+     * @param placement
+     *            the placement of the bucket files, <code>null</code> to submit the buckets in the order of their ids
+     */
+    public void setPlacement(BucketPlacement placement) {
+        this.placement = placement;
+    }
+
+    /**
+     * Sets the maximal size of the bucket files, which a {@link RangeIterator} reads ahead. The size of a bucket is
+     * estimated by the length of its file, which is an upper bound of the records read from it.
+     * 
+     * @param bytes
+     *            the maximal size in bytes, at least 1
+     */
+    public void setMaxReadAhead(long bytes) {
+        if (bytes < 1) {
+            throw new IllegalArgumentException("The read-ahead must be at least one byte: " + bytes);
+        }
+        this.maxReadAhead = bytes;
+    }
+
+    /** @return the hash function of the table */
+    public RangeHashFunction getHashFunction() {
+        return hashFunction;
+    }
+
+    /** @return the number of buckets, which are scanned in parallel */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Applies the given function to all buckets of the range in parallel.
+     * 
+     * @param lowerKey
+     *            the smallest key of the range, <code>null</code> to start at the first bucket
+     * @param upperKey
+     *            the largest key of the range, <code>null</code> to end at the last bucket
+     * @param function
+     *            the function to apply
+     * @return the results of the buckets in the order of the bucket-ids
+     * @throws IOException
+     *             if a bucket could not be processed
+     * @throws InterruptedException
+     */
+    public <R> List<R> map(byte[] lowerKey, byte[] upperKey, BucketFunction<Data, R> function) throws IOException,
+            InterruptedException {
+        int firstBucket = getFirstBucket(lowerKey);
+        int lastBucket = getLastBucket(upperKey);
+        List<Future<R>> futures = new ArrayList<Future<R>>();
+        for (int bucketId = firstBucket; bucketId <= lastBucket; bucketId++) {
+            futures.add(null);
+        }
+        // submitted in the order of the placement, so the workers read from all disks at once
+        for (int bucketId : order(firstBucket, lastBucket)) {
+            futures.set(bucketId - firstBucket, submit(function, bucketId, lowerKey, upperKey));
+        }
+        List<R> results = new ArrayList<R>(futures.size());
+        try {
+            for (Future<R> future : futures) {
+                results.add(get(future));
+            }
+        } finally {
+            for (Future<R> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Reads all records between the given keys. The buckets are read in parallel, the records are returned in key
+     * order.
+     * 
+     * @param lowerKey
+     *            the smallest key to read, <code>null</code> to start at the first record
+     * @param upperKey
+     *            the largest key to read, <code>null</code> to end at the last record
+     * @return an iterator over the records, which should be closed if it is not read to its end
+     */
+    public RangeIterator getRange(byte[] lowerKey, byte[] upperKey) {
+        return new RangeIterator(lowerKey, upperKey);
+    }
+
+    /** Stops all worker threads. */
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private int[] order(int firstBucket, int lastBucket) {
+        if (placement != null) {
+            return placement.interleave(hashFunction, firstBucket, lastBucket);
+        }
+        int[] order = new int[Math.max(0, lastBucket - firstBucket + 1)];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = firstBucket + i;
+        }
+        return order;
+    }
+
+    private int getFirstBucket(byte[] lowerKey) {
+        return lowerKey == null ? 0 : hashFunction.getBucketId(lowerKey);
+    }
+
+    private int getLastBucket(byte[] upperKey) {
+        return upperKey == null ? hashFunction.getNumberOfBuckets() - 1 : hashFunction.getBucketId(upperKey);
+    }
+
+    private <R> Future<R> submit(final BucketFunction<Data, R> function, final int bucketId, final byte[] lowerKey,
+            final byte[] upperKey) {
+        return executor.submit(new Callable<R>() {
+            @Override
+            public R call() throws Exception {
+                return function.apply(scanners.get(), bucketId, lowerKey, upperKey);
+            }
+        });
+    }
+
+    private static <R> R get(Future<R> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            throw new IOException("Could not scan bucket", ex.getCause());
+        }
+    }
+
+    /** collects the records of one bucket */
+    private final BucketFunction<Data, RecordBlock> collect = new BucketFunction<Data, RecordBlock>() {
+        @Override
+        public RecordBlock apply(BucketScanner<Data> scanner, int bucketId, byte[] lowerKey, byte[] upperKey)
+                throws Exception {
+            RecordBlock block = new RecordBlock(scanner.getElementSize(), 1024);
+            scanner.scanBucket(bucketId, lowerKey, upperKey, block);
+            block.trim();
+            return block;
+        }
+    };
+
+    /**
+     * Iterates over the records of a range. The buckets are read ahead in parallel, the records are decoded when they
+     * are requested.
+     */
+    public class RangeIterator implements Iterator<Data> {
+        private final byte[] lowerKey;
+        private final byte[] upperKey;
+        private final int lastBucket;
+        private int nextBucket;
+
+        private final ArrayDeque<Future<RecordBlock>> pending = new ArrayDeque<Future<RecordBlock>>();
+        /** the file sizes of the pending buckets and their sum */
+        private final ArrayDeque<Long> pendingBytes = new ArrayDeque<Long>();
+        private long readAhead;
+
+        private ByteBuffer current;
+        private int elementSize;
+
+        RangeIterator(byte[] lowerKey, byte[] upperKey) {
+            this.lowerKey = lowerKey;
+            this.upperKey = upperKey;
+            this.nextBucket = getFirstBucket(lowerKey);
+            this.lastBucket = getLastBucket(upperKey);
+            fill();
+        }
+
+        /** keeps up to 2 * parallelism buckets in flight, as long as they fit into the read-ahead */
+        private void fill() {
+            while (pending.size() < 2 * parallelism && nextBucket <= lastBucket) {
+                long bytes = BucketFiles.getFile(gp, hashFunction, nextBucket).length();
+                if (!pending.isEmpty() && readAhead + bytes > maxReadAhead) {
+                    return;
+                }
+                pending.add(submit(collect, nextBucket++, lowerKey, upperKey));
+                pendingBytes.add(bytes);
+                readAhead += bytes;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (current == null || !current.hasRemaining()) {
+                if (pending.isEmpty()) {
+                    return false;
+                }
+                RecordBlock block;
+                readAhead -= pendingBytes.poll();
+                try {
+                    block = get(pending.poll());
+                } catch (IOException ex) {
+                    close();
+                    throw new IllegalStateException(ex);
+                } catch (InterruptedException ex) {
+                    close();
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(ex);
+                }
+                fill();
+                current = block.asBuffer();
+                elementSize = block.getElementSize();
+            }
+            return true;
+        }
+
+        @Override
+        public Data next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            byte[] record = new byte[elementSize];
+            current.get(record);
+            return prototype.fromByteBuffer(ByteBuffer.wrap(record));
+        }
+
+        /**
+         * Returns the next records in serialized form, without instantiating objects.
+         * 
+         * @return a buffer containing the records of the next non-empty bucket between its position and limit, or
+         *         <code>null</code> if there are no further records
+         */
+        public ByteBuffer nextBlock() {
+            if (!hasNext()) {
+                return null;
+            }
+            ByteBuffer block = current;
+            current = null;
+            return block;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        /** Cancels all buckets, which are read ahead. */
+        public void close() {
+            for (Future<RecordBlock> future : pending) {
+                future.cancel(true);
+            }
+            pending.clear();
+            pendingBytes.clear();
+            readAhead = 0;
+            nextBucket = lastBucket + 1;
+            current = null;
+        }
+    }
+}
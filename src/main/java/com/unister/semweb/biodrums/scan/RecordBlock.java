@@ -0,0 +1,77 @@
+package com.unister.semweb.biodrums.scan;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A growing block of serialized records. As {@link RecordVisitor} it copies all visited records, so the records of a
+ * scan can be kept in compact form without instantiating objects.
+ * 
+ * @author Martin Nettling
+ */
+public class RecordBlock implements RecordVisitor {
+
+    private final int elementSize;
+
+    private byte[] data;
+
+    private int size;
+
+    /**
+     * Creates an empty block.
+     * 
+     * @param elementSize
+     *            the size of one record in bytes
+     * @param initialCapacity
+     *            the number of records the block can hold before it grows
+     */
+    public RecordBlock(int elementSize, int initialCapacity) {
+        this.elementSize = elementSize;
+        this.data = new byte[Math.max(1, initialCapacity) * elementSize];
+    }
+
+    @Override
+    public boolean visit(ByteBuffer records, int offset) {
+        if (size == data.length) {
+            int capacity = (int) Math.min(Integer.MAX_VALUE - 8, 2L * data.length);
+            data = Arrays.copyOf(data, capacity - capacity % elementSize);
+        }
+        for (int i = 0; i < elementSize; i++) {
+            data[size + i] = records.get(offset + i);
+        }
+        size += elementSize;
+        return true;
+    }
+
+    /** @return the number of records in this block */
+    public int getNumberOfRecords() {
+        return size / elementSize;
+    }
+
+    /** @return the size of one record in bytes */
+    public int getElementSize() {
+        return elementSize;
+    }
+
+    /** @return the number of bytes used by the records */
+    public int getSizeInBytes() {
+        return size;
+    }
+
+    /**
+     * Returns the records as buffer. The n-th record starts at the absolute offset <code>n * getElementSize()</code>.
+     * The buffer shares the content of this block.
+     * 
+     * @return a buffer containing all records
+     */
+    public ByteBuffer asBuffer() {
+        return ByteBuffer.wrap(data, 0, size).slice();
+    }
+
+    /** Shrinks the internal array to the number of used bytes. */
+    public void trim() {
+        if (data.length != size) {
+            data = Arrays.copyOf(data, size);
+        }
+    }
+}
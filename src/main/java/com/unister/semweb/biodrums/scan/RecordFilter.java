@@ -0,0 +1,20 @@
+package com.unister.semweb.biodrums.scan;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Decides on a serialized record, whether it is part of a result.
+ * 
+ * @author Martin Nettling
+ */
+public interface RecordFilter {
+
+    /**
+     * @param records
+     *            the buffer containing the record
+     * @param offset
+     *            the absolute offset of the record
+     * @return <code>true</code> if the record is accepted
+     */
+    boolean accept(ByteBuffer records, int offset);
+}
@@ -0,0 +1,23 @@
+package com.unister.semweb.biodrums.scan;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A callback for scans over serialized records. The record is not copied, it must be read from the given buffer
+ * before the method returns.
+ * 
+ * @author Martin Nettling
+ */
+public interface RecordVisitor {
+
+    /**
+     * Is called for each record of a scan, in key order.
+     * 
+     * @param records
+     *            the buffer containing the record, its position must not be changed
+     * @param offset
+     *            the absolute offset of the record in the buffer
+     * @return <code>false</code> to stop the scan
+     */
+    boolean visit(ByteBuffer records, int offset);
+}
@@ -0,0 +1,480 @@
+package com.unister.semweb.biodrums.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.unister.semweb.biodrums.export.HERVTsvFormatter;
+import com.unister.semweb.biodrums.export.RecordFormatter;
+import com.unister.semweb.biodrums.export.SNPTsvFormatter;
+import com.unister.semweb.biodrums.herv.HERV;
+import com.unister.semweb.biodrums.herv.HERVFormat;
+import com.unister.semweb.biodrums.mapped.MappedTable;
+import com.unister.semweb.biodrums.scan.RecordVisitor;
+import com.unister.semweb.biodrums.snapshot.Snapshot;
+import com.unister.semweb.biodrums.snapshot.TableSnapshots;
+import com.unister.semweb.biodrums.storage.RegionLayout;
+import com.unister.semweb.biodrums.weigel.SNP;
+import com.unister.semweb.drums.DRUMSParameterSet;
+import com.unister.semweb.drums.api.DRUMS;
+import com.unister.semweb.drums.api.DRUMSException;
+import com.unister.semweb.drums.api.DRUMSInstantiator;
+import com.unister.semweb.drums.bucket.hashfunction.RangeHashFunction;
+import com.unister.semweb.drums.file.FileLockException;
+import com.unister.semweb.drums.storable.AbstractKVStorable;
+
+/**
+ * A small HTTP server on localhost, which answers queries on a table opened with
+ * {@link DRUMS.AccessMode#READ_ONLY}. Several analysis services can share one server and with that one warm cache
+ * instead of opening the table themselves. All responses are tab-separated text. The server provides three endpoints:
+ * <ul>
+ * <li><code>/select?key=HEX&amp;key=HEX...</code> returns the records with the given hex-encoded keys. Concurrent
+ * lookups on the live table are coalesced by a {@link SelectCoalescer}.</li>
+ * <li><code>/range?from=HEX&amp;to=HEX[&amp;limit=N]</code> returns all records between the given keys.</li>
+ * <li><code>/region?chr=C&amp;start=S&amp;end=E&amp;window=W</code> returns one line per window of the region with
+ * the first position of the window, the number of records and the minimal score. At most
+ * {@link #setMaxWindows(int) maxWindows} windows are returned.</li>
+ * </ul>
+ * Keys must have the full key size of the table, otherwise the request is rejected with status 400.
+ * Ranges and regions are read from a {@link MappedTable}. If the table is written concurrently, all queries are read
+ * from a pinned {@link Snapshot} instead, so each response is consistent.
+ * 
+ * @author Martin Nettling
+ * 
+ * @param <Data>
+ *            the type of the records
+ */
+public class LookupServer<Data extends AbstractKVStorable> {
+    private static final Logger log = LoggerFactory.getLogger(LookupServer.class);
+
+    /** the default port of the server */
+    public static final int DEFAULT_PORT = 8642;
+
+    /** the default maximal number of windows of a region */
+    public static final int DEFAULT_MAX_WINDOWS = 100000;
+
+    /** the size of the buffer, in which the lines of a response are collected */
+    private static final int RESPONSE_BUFFER_SIZE = 64 * 1024;
+
+    private final DRUMS<Data> drums;
+    private final MappedTable<Data> table;
+    private final RecordFormatter formatter;
+    private final RegionLayout layout;
+    private final int keySize;
+    private final SelectCoalescer<Data> coalescer;
+    private final TableSnapshots<Data> snapshots;
+
+    private volatile int maxWindows = DEFAULT_MAX_WINDOWS;
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * Opens the table read-only and maps its bucket files.
+     * 
+     * @param gp
+     *            the parameters of the table
+     * @param hashFunction
+     *            the hash function of the table
+     * @param prototype
+     *            a prototype of the stored records
+     * @param formatter
+     *            the formatter of the returned records
+     * @param layout
+     *            the layout of the records on the genome
+     * @throws IOException
+     * @throws FileLockException
+     *             if a bucket file is locked by another process
+     */
+    public LookupServer(DRUMSParameterSet<Data> gp, RangeHashFunction hashFunction, Data prototype,
+            RecordFormatter formatter, RegionLayout layout) throws IOException, FileLockException {
+        this(gp, hashFunction, prototype, formatter, layout, null);
+    }
+
+    /**
+     * Opens the table read-only. Selects, ranges and regions are read from the current snapshot of the table, which
+     * is pinned for the duration of each request.
+     * 
+     * @param gp
+     *            the parameters of the table
+     * @param hashFunction
+     *            the hash function of the table
+     * @param prototype
+     *            a prototype of the stored records
+     * @param formatter
+     *            the formatter of the returned records
+     * @param layout
+     *            the layout of the records on the genome
+     * @param snapshots
+     *            the snapshots of the table, <code>null</code> to map the bucket files of the table
+     * @throws IOException
+     * @throws FileLockException
+     *             if a bucket file is locked by another process
+     */
+    public LookupServer(DRUMSParameterSet<Data> gp, RangeHashFunction hashFunction, Data prototype,
+            RecordFormatter formatter, RegionLayout layout, TableSnapshots<Data> snapshots) throws IOException,
+            FileLockException {
+        HERVFormat.check(new File(gp.DATABASE_DIRECTORY), prototype);
+        this.drums = DRUMSInstantiator.openTable(DRUMS.AccessMode.READ_ONLY, gp);
+        this.snapshots = snapshots;
+        this.table = snapshots == null ? new MappedTable<Data>(gp, hashFunction, prototype) : null;
+        this.formatter = formatter;
+        this.layout = layout;
+        this.keySize = prototype.getKey().length;
+        this.coalescer = snapshots == null ? new SelectCoalescer<Data>(drums, hashFunction, 1024) : null;
+    }
+
+    /**
+     * Sets the maximal number of windows of a region. Larger regions are rejected, because the counters of all windows
+     * are held in memory while the region is scanned.
+     * 
+     * @param maxWindows
+     *            the maximal number of windows, {@link #DEFAULT_MAX_WINDOWS} by default
+     */
+    public void setMaxWindows(int maxWindows) {
+        if (maxWindows <= 0) {
+            throw new IllegalArgumentException("The maximal number of windows must be positive: " + maxWindows);
+        }
+        this.maxWindows = maxWindows;
+    }
+
+    /**
+     * Starts a server for the HERV- or SNP-table described by the given property file.
+     * 
+     * @param args
+     *            <code>herv|snp propertyFile [port [threads]]</code>
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: LookupServer herv|snp propertyFile [port [threads]]");
+            return;
+        }
+        int port = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_PORT;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : 4 * Runtime.getRuntime().availableProcessors();
+        if (args[0].equalsIgnoreCase("herv")) {
+            new LookupServer<HERV>(new DRUMSParameterSet<HERV>(args[1], new HERV()), HERV.createHashFunction(),
+                    new HERV(), new HERVTsvFormatter(), RegionLayout.HERV_LAYOUT).start(port, threads);
+        } else {
+            new LookupServer<SNP>(new DRUMSParameterSet<SNP>(args[1], new SNP()), SNP.createHashFunction(),
+                    new SNP(), new SNPTsvFormatter(), RegionLayout.SNP_LAYOUT).start(port, threads);
+        }
+        // the handler threads are daemons, so the main thread keeps the server alive
+        Thread.currentThread().join();
+    }
+
+    /**
+     * Starts the server on the loopback interface.
+     * 
+     * @param port
+     *            the port to listen on
+     * @param threads
+     *            the number of threads handling requests
+     * @throws IOException
+     */
+    public synchronized void start(int port, int threads) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getByName(null), port), 0);
+        final AtomicInteger threadNumber = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "biodrums-lookup-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        server.setExecutor(executor);
+        server.createContext("/select", new QueryHandler() {
+            @Override
+            void handle(Map<String, List<String>> parameters, ResponseWriter out) throws Exception {
+                select(parameters, out);
+            }
+        });
+        server.createContext("/range", new QueryHandler() {
+            @Override
+            void handle(Map<String, List<String>> parameters, ResponseWriter out) throws Exception {
+                range(parameters, out);
+            }
+        });
+        server.createContext("/region", new QueryHandler() {
+            @Override
+            void handle(Map<String, List<String>> parameters, ResponseWriter out) throws Exception {
+                region(parameters, out);
+            }
+        });
+        server.start();
+        log.info("Lookup server listening on {}", server.getAddress());
+    }
+
+    /**
+     * Stops the server and closes the table.
+     * 
+     * @throws InterruptedException
+     * @throws DRUMSException
+     */
+    public synchronized void stop() throws InterruptedException, DRUMSException {
+        if (server != null) {
+            server.stop(1);
+            executor.shutdownNow();
+            server = null;
+        }
+        if (coalescer != null) {
+            coalescer.close();
+        }
+        if (table != null) {
+            table.close();
+        }
+        drums.close();
+    }
+
+    private void select(Map<String, List<String>> parameters, ResponseWriter out) throws Exception {
+        List<String> keys = parameters.get("key");
+        if (keys == null) {
+            throw new IllegalArgumentException("Missing parameter key");
+        }
+        byte[][] parsed = new byte[keys.size()][];
+        for (int i = 0; i < parsed.length; i++) {
+            parsed[i] = parseHex(keys.get(i), keySize);
+        }
+        List<Data> records;
+        if (snapshots == null) {
+            // all keys are queued at once, so they are served in the same batch
+            records = coalescer.selectAll(parsed);
+        } else {
+            Snapshot<Data> snapshot = snapshots.acquire();
+            try {
+                records = snapshot.getTable().select(parsed);
+            } finally {
+                snapshot.close();
+            }
+        }
+        for (Data record : records) {
+            if (record != null) {
+                ByteBuffer serialized = record.toByteBuffer();
+                out.ensureRemaining(formatter.getMaxLineLength());
+                formatter.format(serialized, 0, out.buffer);
+            }
+        }
+    }
+
+    private void range(Map<String, List<String>> parameters, final ResponseWriter out) throws Exception {
+        byte[] lowerKey = parseHex(getParameter(parameters, "from"), keySize);
+        byte[] upperKey = parseHex(getParameter(parameters, "to"), keySize);
+        final long limit = parameters.containsKey("limit") ? Long.parseLong(getParameter(parameters, "limit"))
+                : Long.MAX_VALUE;
+        scan(lowerKey, upperKey, new RecordVisitor() {
+            long visited;
+
+            @Override
+            public boolean visit(ByteBuffer records, int offset) {
+                if (visited++ == limit || !out.ensureRemaining(formatter.getMaxLineLength())) {
+                    return false;
+                }
+                formatter.format(records, offset, out.buffer);
+                return true;
+            }
+        });
+        out.rethrow();
+    }
+
+    private void region(Map<String, List<String>> parameters, ResponseWriter out) throws Exception {
+        byte chromosome = Byte.parseByte(getParameter(parameters, "chr"));
+        final int start = Integer.parseInt(getParameter(parameters, "start"));
+        int end = Integer.parseInt(getParameter(parameters, "end"));
+        final int window = Integer.parseInt(getParameter(parameters, "window"));
+        if (chromosome < 1 || chromosome > layout.getNumberOfChromosomes()) {
+            throw new IllegalArgumentException("Unknown chromosome " + chromosome);
+        }
+        if (start < 0 || end < start || window <= 0) {
+            throw new IllegalArgumentException("Invalid region " + start + "-" + end + " or window " + window);
+        }
+        long windows = ((long) end - start) / window + 1;
+        if (windows > maxWindows) {
+            throw new IllegalArgumentException("The region " + start + "-" + end + " has " + windows
+                    + " windows, at most " + maxWindows + " are allowed");
+        }
+        int numberOfWindows = (int) windows;
+        final long[] counts = new long[numberOfWindows];
+        final double[] minScores = new double[numberOfWindows];
+        Arrays.fill(minScores, Double.POSITIVE_INFINITY);
+        scan(layout.lowerKey(chromosome, start), layout.upperKey(chromosome, end), new RecordVisitor() {
+            @Override
+            public boolean visit(ByteBuffer records, int offset) {
+                int w = (layout.getPosition(records, offset) - start) / window;
+                counts[w]++;
+                minScores[w] = Math.min(minScores[w], layout.getScore(records, offset));
+                return true;
+            }
+        });
+        for (int w = 0; w < numberOfWindows; w++) {
+            out.ensureRemaining(128);
+            out.buffer.put((((long) start + (long) w * window) + "\t" + counts[w] + "\t" + minScores[w] + "\n")
+                    .getBytes("US-ASCII"));
+        }
+    }
+
+    /** scans the mapped table or the current snapshot */
+    private void scan(byte[] lowerKey, byte[] upperKey, RecordVisitor visitor) throws IOException, FileLockException {
+        if (snapshots == null) {
+            table.scan(lowerKey, upperKey, visitor);
+            return;
+        }
+        Snapshot<Data> snapshot = snapshots.acquire();
+        try {
+            snapshot.getTable().scan(lowerKey, upperKey, visitor);
+        } finally {
+            snapshot.close();
+        }
+    }
+
+    private static String getParameter(Map<String, List<String>> parameters, String name) {
+        List<String> values = parameters.get(name);
+        if (values == null) {
+            throw new IllegalArgumentException("Missing parameter " + name);
+        }
+        return values.get(0);
+    }
+
+    private static Map<String, List<String>> parseQuery(String query) throws UnsupportedEncodingException {
+        Map<String, List<String>> parameters = new HashMap<String, List<String>>();
+        if (query == null) {
+            return parameters;
+        }
+        for (String pair : query.split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator < 0) {
+                continue;
+            }
+            String name = URLDecoder.decode(pair.substring(0, separator), "UTF-8");
+            List<String> values = parameters.get(name);
+            if (values == null) {
+                values = new ArrayList<String>();
+                parameters.put(name, values);
+            }
+            values.add(URLDecoder.decode(pair.substring(separator + 1), "UTF-8"));
+        }
+        return parameters;
+    }
+
+    /**
+     * Decodes a hex-encoded key.
+     * 
+     * @param hex
+     *            the key with two hex digits per byte
+     * @param keySize
+     *            the size of the keys of the table in bytes
+     * @return the key
+     * @throws IllegalArgumentException
+     *             if the string is no valid hex-encoding or the key has not the size of the keys of the table
+     */
+    static byte[] parseHex(String hex, int keySize) {
+        if (hex.length() != 2 * keySize) {
+            throw new IllegalArgumentException("Invalid key " + hex + ", expected " + keySize + " bytes");
+        }
+        byte[] key = new byte[hex.length() / 2];
+        for (int i = 0; i < key.length; i++) {
+            int high = Character.digit(hex.charAt(2 * i), 16);
+            int low = Character.digit(hex.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0) {
+                throw new IllegalArgumentException("Invalid key " + hex);
+            }
+            key[i] = (byte) (high << 4 | low);
+        }
+        return key;
+    }
+
+    /**
+     * Collects the lines of a response and streams them to the client, whenever the buffer is nearly full. The
+     * response headers are sent with the first flush.
+     */
+    private static class ResponseWriter {
+        private final HttpExchange exchange;
+        private final ByteBuffer buffer = ByteBuffer.allocate(RESPONSE_BUFFER_SIZE);
+        private boolean headersSent;
+        private IOException exception;
+
+        ResponseWriter(HttpExchange exchange) {
+            this.exchange = exchange;
+        }
+
+        /** @return <code>false</code> if the buffer could not be flushed, the exception is thrown by rethrow() */
+        boolean ensureRemaining(int bytes) {
+            if (buffer.remaining() < bytes) {
+                try {
+                    flush();
+                } catch (IOException ex) {
+                    exception = ex;
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void flush() throws IOException {
+            if (!headersSent) {
+                exchange.getResponseHeaders().set("Content-Type", "text/tab-separated-values");
+                exchange.sendResponseHeaders(200, 0);
+                headersSent = true;
+            }
+            exchange.getResponseBody().write(buffer.array(), 0, buffer.position());
+            buffer.clear();
+        }
+
+        void rethrow() throws IOException {
+            if (exception != null) {
+                throw exception;
+            }
+        }
+    }
+
+    /** parses the query and maps exceptions to error responses */
+    private abstract static class QueryHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            ResponseWriter out = new ResponseWriter(exchange);
+            try {
+                handle(parseQuery(exchange.getRequestURI().getRawQuery()), out);
+                out.flush();
+            } catch (IllegalArgumentException ex) {
+                sendError(exchange, out, 400, ex.getMessage());
+            } catch (Exception ex) {
+                log.error("Could not answer " + exchange.getRequestURI(), ex);
+                sendError(exchange, out, 500, ex.toString());
+            } finally {
+                exchange.close();
+            }
+        }
+
+        abstract void handle(Map<String, List<String>> parameters, ResponseWriter out) throws Exception;
+
+        /** sends an error, if no part of the response was sent yet; otherwise the response is truncated */
+        private static void sendError(HttpExchange exchange, ResponseWriter out, int status, String message)
+                throws IOException {
+            if (out.headersSent) {
+                return;
+            }
+            byte[] body = (message + "\n").getBytes("UTF-8");
+            exchange.sendResponseHeaders(status, body.length);
+            exchange.getResponseBody().write(body);
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package com.unister.semweb.biodrums.server;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.unister.semweb.drums.api.DRUMS;
+import com.unister.semweb.drums.api.DRUMSException;
+import com.unister.semweb.drums.bucket.hashfunction.RangeHashFunction;
+import com.unister.semweb.drums.storable.AbstractKVStorable;
+
+/**
+ * Coalesces concurrent point lookups into batches. All lookups are queued and served by one dispatcher thread. While
+ * a batch is served, new lookups accumulate in the queue and are served together in the next batch, grouped by
+ * bucket, with one {@link DRUMS#select(byte[]...)} per bucket. A single lookup therefore never waits for other
+ * lookups, but under concurrency each bucket is read once per batch instead of once per lookup.<br>
+ * <br>
+ * A failing bucket fails only the lookups of this bucket, the dispatcher keeps serving. A lookup, which is not served
+ * within the {@link #setTimeout(long, TimeUnit) timeout}, fails.
+ * 
+ * @author Martin Nettling
+ * 
+ * @param <Data>
+ *            the type of the records
+ */
+public class SelectCoalescer<Data extends AbstractKVStorable> {
+    private static final Logger log = LoggerFactory.getLogger(SelectCoalescer.class);
+
+    /** the default time in milliseconds, after which a lookup fails */
+    public static final long DEFAULT_TIMEOUT = 30000;
+
+    private final DRUMS<Data> drums;
+    private final RangeHashFunction hashFunction;
+    private final int maxBatchSize;
+
+    private final BlockingQueue<PendingSelect<Data>> queue = new LinkedBlockingQueue<PendingSelect<Data>>();
+    private final Thread dispatcher;
+    private volatile boolean closed;
+    private volatile long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_TIMEOUT);
+
+    /** the number of served lookups and batches, for logging the coalescing factor */
+    private long lookups, batches;
+
+    /**
+     * Starts the dispatcher thread.
+     * 
+     * @param drums
+     *            the table, should be opened with {@link DRUMS.AccessMode#READ_ONLY}
+     * @param hashFunction
+     *            the hash function of the table
+     * @param maxBatchSize
+     *            the maximal number of lookups served in one batch
+     */
+    public SelectCoalescer(DRUMS<Data> drums, RangeHashFunction hashFunction, int maxBatchSize) {
+        this.drums = drums;
+        this.hashFunction = hashFunction;
+        this.maxBatchSize = maxBatchSize;
+        this.dispatcher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                dispatch();
+            }
+        }, "biodrums-select-coalescer");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    /**
+     * Sets the time, after which a lookup fails, if it was not served.
+     * 
+     * @param timeout
+     *            the timeout, {@link #DEFAULT_TIMEOUT} milliseconds by default
+     * @param unit
+     *            the unit of the timeout
+     */
+    public void setTimeout(long timeout, TimeUnit unit) {
+        if (timeout <= 0) {
+            throw new IllegalArgumentException("The timeout must be positive: " + timeout);
+        }
+        this.timeoutNanos = unit.toNanos(timeout);
+    }
+
+    /**
+     * Selects the record with the given key. The calling thread blocks until the batch containing the lookup was
+     * served.
+     * 
+     * @param key
+     *            the key to search for
+     * @return the record, <code>null</code> if the key was not found
+     * @throws DRUMSException
+     *             if the bucket could not be read, the lookup timed out or the coalescer was closed
+     * @throws InterruptedException
+     */
+    public Data select(byte[] key) throws DRUMSException, InterruptedException {
+        if (closed) {
+            throw new DRUMSException("The coalescer was closed");
+        }
+        PendingSelect<Data> pending = new PendingSelect<Data>(key);
+        queue.put(pending);
+        if (closed && queue.remove(pending)) {
+            throw new DRUMSException("The coalescer was closed");
+        }
+        return get(pending, System.nanoTime() + timeoutNanos);
+    }
+
+    /**
+     * Selects the records with the given keys. All lookups are queued before the calling thread waits, so they are
+     * served in the same batch, if it is not full.
+     * 
+     * @param keys
+     *            the keys to search for
+     * @return the record of each key in the order of the keys, <code>null</code> if a key was not found
+     * @throws DRUMSException
+     *             if a bucket could not be read, a lookup timed out or the coalescer was closed
+     * @throws InterruptedException
+     */
+    public List<Data> selectAll(byte[]... keys) throws DRUMSException, InterruptedException {
+        if (closed) {
+            throw new DRUMSException("The coalescer was closed");
+        }
+        List<PendingSelect<Data>> pendings = new ArrayList<PendingSelect<Data>>(keys.length);
+        for (byte[] key : keys) {
+            pendings.add(new PendingSelect<Data>(key));
+        }
+        queue.addAll(pendings);
+        if (closed && queue.removeAll(pendings)) {
+            throw new DRUMSException("The coalescer was closed");
+        }
+        long deadline = System.nanoTime() + timeoutNanos;
+        List<Data> result = new ArrayList<Data>(keys.length);
+        try {
+            for (PendingSelect<Data> pending : pendings) {
+                result.add(get(pending, deadline));
+            }
+        } finally {
+            if (result.size() < keys.length) {
+                // after a failure the remaining lookups are not needed anymore
+                queue.removeAll(pendings);
+            }
+        }
+        return result;
+    }
+
+    /** waits for the result of the lookup until the deadline, a lookup which timed out is removed from the queue */
+    private Data get(PendingSelect<Data> pending, long deadline) throws DRUMSException, InterruptedException {
+        if (!pending.await(deadline - System.nanoTime())) {
+            queue.remove(pending);
+            throw new DRUMSException("The lookup was not served within "
+                    + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + " ms");
+        }
+        return pending.get();
+    }
+
+    private void dispatch() {
+        List<PendingSelect<Data>> batch = new ArrayList<PendingSelect<Data>>(maxBatchSize);
+        while (!closed) {
+            try {
+                PendingSelect<Data> first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatchSize - 1);
+                serve(batch);
+            } catch (InterruptedException ex) {
+                break;
+            } catch (RuntimeException ex) {
+                // the dispatcher must survive, otherwise all further lookups time out
+                log.error("Could not serve a batch of lookups", ex);
+                DRUMSException failure = new DRUMSException("Could not serve the lookup: " + ex, ex);
+                for (PendingSelect<Data> pending : batch) {
+                    pending.complete(null, failure);
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+        DRUMSException closedException = new DRUMSException("The coalescer was closed");
+        PendingSelect<Data> pending;
+        while ((pending = queue.poll()) != null) {
+            pending.complete(null, closedException);
+        }
+        log.info("Served {} lookups in {} batches", lookups, batches);
+    }
+
+    /** serves one batch, grouped by bucket */
+    private void serve(List<PendingSelect<Data>> batch) {
+        Map<Integer, List<PendingSelect<Data>>> buckets = new TreeMap<Integer, List<PendingSelect<Data>>>();
+        for (PendingSelect<Data> pending : batch) {
+            Integer bucketId = hashFunction.getBucketId(pending.key);
+            List<PendingSelect<Data>> bucket = buckets.get(bucketId);
+            if (bucket == null) {
+                bucket = new ArrayList<PendingSelect<Data>>();
+                buckets.put(bucketId, bucket);
+            }
+            bucket.add(pending);
+        }
+        for (Map.Entry<Integer, List<PendingSelect<Data>>> entry : buckets.entrySet()) {
+            List<PendingSelect<Data>> bucket = entry.getValue();
+            // ByteBuffer compares its content, so it is used as key of the map
+            Map<ByteBuffer, Data> found = new HashMap<ByteBuffer, Data>();
+            for (PendingSelect<Data> pending : bucket) {
+                found.put(ByteBuffer.wrap(pending.key), null);
+            }
+            byte[][] keys = new byte[found.size()][];
+            int i = 0;
+            for (ByteBuffer key : found.keySet()) {
+                keys[i++] = key.array();
+            }
+            try {
+                for (Data record : read(keys)) {
+                    found.put(ByteBuffer.wrap(record.getKey()), record);
+                }
+                for (PendingSelect<Data> pending : bucket) {
+                    pending.complete(found.get(ByteBuffer.wrap(pending.key)), null);
+                }
+            } catch (DRUMSException ex) {
+                for (PendingSelect<Data> pending : bucket) {
+                    pending.complete(null, ex);
+                }
+            } catch (RuntimeException ex) {
+                log.error("Could not read bucket " + entry.getKey(), ex);
+                DRUMSException failure = new DRUMSException("Could not read bucket " + entry.getKey() + ": " + ex,
+                        ex);
+                for (PendingSelect<Data> pending : bucket) {
+                    pending.complete(null, failure);
+                }
+            }
+        }
+        lookups += batch.size();
+        batches++;
+    }
+
+    /**
+     * Reads the records of one bucket, see {@link DRUMS#select(byte[]...)}. Called by the dispatcher thread only.
+     * 
+     * @param keys
+     *            the distinct keys of the lookups of one batch in one bucket
+     * @return the found records
+     * @throws DRUMSException
+     */
+    protected List<Data> read(byte[]... keys) throws DRUMSException {
+        return drums.select(keys);
+    }
+
+    /**
+     * Stops the dispatcher thread. Lookups, which were not served yet, fail.
+     * 
+     * @throws InterruptedException
+     */
+    public void close() throws InterruptedException {
+        closed = true;
+        dispatcher.interrupt();
+        dispatcher.join();
+    }
+
+    /** a queued lookup, on which the requesting thread waits */
+    private static class PendingSelect<Data> {
+        private final byte[] key;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private Data result;
+        private DRUMSException exception;
+
+        PendingSelect(byte[] key) {
+            this.key = key;
+        }
+
+        /** completes the lookup, if it was not completed before */
+        synchronized void complete(Data result, DRUMSException exception) {
+            if (done.getCount() == 0) {
+                return;
+            }
+            this.result = result;
+            this.exception = exception;
+            done.countDown();
+        }
+
+        boolean await(long timeoutNanos) throws InterruptedException {
+            return done.await(timeoutNanos, TimeUnit.NANOSECONDS);
+        }
+
+        /** must only be called after the lookup was completed */
+        synchronized Data get() throws DRUMSException {
+            if (exception != null) {
+                throw exception;
+            }
+            return result;
+        }
+    }
+}
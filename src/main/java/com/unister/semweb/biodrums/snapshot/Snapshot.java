@@ -0,0 +1,102 @@
+package com.unister.semweb.biodrums.snapshot;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+import com.unister.semweb.biodrums.mapped.MappedTable;
+import com.unister.semweb.drums.file.FileLockException;
+import com.unister.semweb.drums.storable.AbstractKVStorable;
+
+/**
+ * A consistent version of all bucket files of a table, published by {@link TableSnapshots#publish()}. A snapshot is
+ * pinned by {@link TableSnapshots#acquire()} and must be released with {@link #close()} after the query. Its files are
+ * never modified, so all reads of one query see the same version of each bucket, while new records are synchronized to
+ * the table. The files are deleted, when a newer snapshot was published and the last reader released this one.
+ * 
+ * <pre>
+ * Snapshot&lt;SNP&gt; snapshot = snapshots.acquire();
+ * try {
+ *     snapshot.getTable().scan(lowerKey, upperKey, visitor);
+ * } finally {
+ *     snapshot.close();
+ * }
+ * </pre>
+ * 
+ * @author Martin Nettling
+ * 
+ * @param <Data>
+ *            the type of the records
+ */
+public class Snapshot<Data extends AbstractKVStorable> implements Closeable {
+    private final TableSnapshots<Data> owner;
+    private final long version;
+    private final File[] files;
+
+    /** the number of readers, plus one while this is the current snapshot; guarded by the owner */
+    int references = 1;
+
+    private MappedTable<Data> table;
+    private boolean released;
+
+    Snapshot(TableSnapshots<Data> owner, long version, File[] files) {
+        this.owner = owner;
+        this.version = version;
+        this.files = files;
+    }
+
+    /** @return the version of this snapshot, versions increase with each publication */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @param bucketId
+     *            the id of a bucket
+     * @return the file of the bucket in this snapshot, which may not exist if the bucket was empty
+     */
+    public File getFile(int bucketId) {
+        return files[bucketId];
+    }
+
+    File[] getFiles() {
+        return files;
+    }
+
+    /**
+     * Maps the files of this snapshot on the first call. The table is shared by all readers of this snapshot.
+     * 
+     * @return the records of this snapshot
+     * @throws IOException
+     * @throws FileLockException
+     */
+    public synchronized MappedTable<Data> getTable() throws IOException, FileLockException {
+        if (released) {
+            throw new IllegalStateException("Snapshot " + version + " was already released");
+        }
+        if (table == null) {
+            table = owner.map(files);
+        }
+        return table;
+    }
+
+    /** unmaps the files, called by the owner when the last reference was released */
+    synchronized void unmap() {
+        released = true;
+        if (table != null) {
+            table.close();
+            table = null;
+        }
+    }
+
+    /** Releases this snapshot. Each call of {@link TableSnapshots#acquire()} needs exactly one call of this method. */
+    @Override
+    public void close() {
+        owner.release(this);
+    }
+
+    @Override
+    public String toString() {
+        return "Snapshot " + version + " (" + references + " references)";
+    }
+}
@@ -0,0 +1,336 @@
+package com.unister.semweb.biodrums.snapshot;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.unister.semweb.biodrums.ingest.ResumableLoader;
+import com.unister.semweb.biodrums.mapped.MappedTable;
+import com.unister.semweb.biodrums.storage.BucketFiles;
+import com.unister.semweb.drums.DRUMSParameterSet;
+import com.unister.semweb.drums.bucket.hashfunction.RangeHashFunction;
+import com.unister.semweb.drums.file.FileLockException;
+import com.unister.semweb.drums.storable.AbstractKVStorable;
+
+/**
+ * Manages the {@link Snapshot}s of a table, which allow consistent reads while new records are synchronized to the
+ * table. DRUMS rewrites bucket files in place, so a reader of the live files may see a bucket half-merged. Instead,
+ * {@link #publish()} copies each bucket file, which changed since the last snapshot, to the directory
+ * {@value #DIRECTORY_NAME} of the table and writes a manifest, which lists the file of each bucket. Unchanged buckets
+ * share their file with the previous snapshot, so a publication only copies what was written since.<br>
+ * <br>
+ * {@link #publish()} must be called while no synchronizer writes to the table, e.g. after the table was closed at a
+ * checkpoint of the {@link ResumableLoader}. Readers are never blocked: they pin the current snapshot with
+ * {@link #acquire()} and release it with {@link Snapshot#close()}. A file is deleted, as soon as no pinned or current
+ * snapshot refers to it.
+ * 
+ * @author Martin Nettling
+ * 
+ * @param <Data>
+ *            the type of the records
+ */
+public class TableSnapshots<Data extends AbstractKVStorable> {
+    private static final Logger log = LoggerFactory.getLogger(TableSnapshots.class);
+
+    /** the name of the directory in the database directory, which contains the snapshots */
+    public static final String DIRECTORY_NAME = "snapshots";
+
+    /** the extension of the manifest of a snapshot */
+    public static final String MANIFEST_EXTENSION = ".manifest";
+
+    private final DRUMSParameterSet<Data> gp;
+    private final RangeHashFunction hashFunction;
+    private final Data prototype;
+    private final File directory;
+
+    /** serializes publications, which copy files without holding the lock of this object */
+    private final Object publishLock = new Object();
+
+    /** the number of snapshots referring to each file; guarded by this */
+    private final Map<File, Integer> fileReferences = new HashMap<File, Integer>();
+
+    /** the current snapshot; guarded by this */
+    private Snapshot<Data> current;
+
+    /** set by {@link #close()}, afterwards no files are deleted; guarded by this */
+    private boolean closed;
+
+    /** the stamp of each live bucket file at the last publication, only used by the publisher */
+    private String[] stamps;
+
+    /**
+     * Opens the snapshots of the given table. The newest published snapshot becomes the current one, files of older
+     * snapshots are deleted.
+     * 
+     * @param gp
+     *            the parameters of the table
+     * @param hashFunction
+     *            the hash function of the table
+     * @param prototype
+     *            a prototype of the stored records
+     * @throws IOException
+     */
+    public TableSnapshots(DRUMSParameterSet<Data> gp, RangeHashFunction hashFunction, Data prototype)
+            throws IOException {
+        this.gp = gp;
+        this.hashFunction = hashFunction;
+        this.prototype = prototype;
+        this.directory = new File(gp.DATABASE_DIRECTORY, DIRECTORY_NAME);
+        this.stamps = new String[hashFunction.getNumberOfBuckets()];
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        recover();
+    }
+
+    /** reads the newest manifest and deletes everything it doesn't refer to */
+    private void recover() throws IOException {
+        long newest = -1;
+        File[] manifests = directory.listFiles();
+        for (File file : manifests) {
+            String name = file.getName();
+            if (name.endsWith(MANIFEST_EXTENSION)) {
+                try {
+                    newest = Math.max(newest, Long.parseLong(name.substring(0, name.length()
+                            - MANIFEST_EXTENSION.length())));
+                } catch (NumberFormatException ex) {
+                    log.warn("Ignoring unexpected file {}", file);
+                }
+            }
+        }
+        Set<File> keep = new HashSet<File>();
+        if (newest >= 0) {
+            File manifest = new File(directory, newest + MANIFEST_EXTENSION);
+            current = readManifest(newest, manifest);
+            for (File file : current.getFiles()) {
+                retain(file);
+            }
+            keep.addAll(fileReferences.keySet());
+            keep.add(manifest);
+            log.info("Recovered snapshot {} of {}", newest, gp.DATABASE_DIRECTORY);
+        }
+        deleteUnreferenced(directory, keep);
+    }
+
+    private void deleteUnreferenced(File file, Set<File> keep) {
+        if (file.isDirectory()) {
+            for (File child : file.listFiles()) {
+                deleteUnreferenced(child, keep);
+            }
+            if (!file.equals(directory)) {
+                // only succeeds if the directory is empty
+                file.delete();
+            }
+        } else if (!keep.contains(file)) {
+            if (!file.delete()) {
+                log.warn("Could not delete {}", file);
+            }
+        }
+    }
+
+    private Snapshot<Data> readManifest(long version, File manifest) throws IOException {
+        Properties properties = new Properties();
+        InputStream in = new FileInputStream(manifest);
+        try {
+            properties.load(in);
+        } finally {
+            in.close();
+        }
+        File[] files = new File[stamps.length];
+        for (int bucketId = 0; bucketId < files.length; bucketId++) {
+            String path = properties.getProperty("bucket." + bucketId);
+            if (path == null) {
+                throw new IOException(manifest + " does not match the hash function, bucket " + bucketId
+                        + " is missing");
+            }
+            files[bucketId] = new File(directory, path);
+            stamps[bucketId] = properties.getProperty("stamp." + bucketId);
+        }
+        return new Snapshot<Data>(this, version, files);
+    }
+
+    /**
+     * Publishes the current state of the bucket files as new snapshot. Only the bucket files, which changed since the
+     * last publication, are copied. No synchronizer may write to the table during this call.
+     * 
+     * @return the version of the new snapshot
+     * @throws IOException
+     */
+    public long publish() throws IOException {
+        synchronized (publishLock) {
+            Snapshot<Data> previous;
+            synchronized (this) {
+                if (closed) {
+                    throw new IllegalStateException("The snapshots of " + gp.DATABASE_DIRECTORY + " were closed");
+                }
+                previous = current;
+            }
+            long version = previous == null ? 0 : previous.getVersion() + 1;
+            File versionDirectory = new File(directory, Long.toString(version));
+            File[] files = new File[stamps.length];
+            String[] newStamps = new String[stamps.length];
+            int copied = 0;
+            long copiedBytes = 0;
+            for (int bucketId = 0; bucketId < files.length; bucketId++) {
+                File live = BucketFiles.getFile(gp, hashFunction, bucketId);
+                newStamps[bucketId] = Long.toHexString(BucketFiles.getStamp(live));
+                if (previous != null && newStamps[bucketId].equals(stamps[bucketId])) {
+                    files[bucketId] = previous.getFile(bucketId);
+                    continue;
+                }
+                files[bucketId] = new File(versionDirectory, live.getName());
+                if (live.exists()) {
+                    if (!versionDirectory.isDirectory() && !versionDirectory.mkdirs()) {
+                        throw new IOException("Could not create " + versionDirectory);
+                    }
+                    copy(live, files[bucketId]);
+                    copiedBytes += live.length();
+                }
+                copied++;
+            }
+            writeManifest(version, files, newStamps);
+            stamps = newStamps;
+
+            Snapshot<Data> published = new Snapshot<Data>(this, version, files);
+            synchronized (this) {
+                for (File file : files) {
+                    retain(file);
+                }
+                current = published;
+            }
+            if (previous != null) {
+                // the reference held as current snapshot
+                release(previous);
+            }
+            log.info("Published snapshot {}, copied {} buckets with {} bytes", new Object[] { version, copied,
+                    copiedBytes });
+            return version;
+        }
+    }
+
+    private static void copy(File source, File target) throws IOException {
+        Files.copy(source.toPath(), target.toPath());
+        FileChannel channel = FileChannel.open(target.toPath(), StandardOpenOption.WRITE);
+        try {
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void writeManifest(long version, File[] files, String[] fileStamps) throws IOException {
+        Properties properties = new Properties();
+        String prefix = directory.getPath() + File.separator;
+        for (int bucketId = 0; bucketId < files.length; bucketId++) {
+            properties.setProperty("bucket." + bucketId, files[bucketId].getPath().substring(prefix.length()));
+            properties.setProperty("stamp." + bucketId, fileStamps[bucketId]);
+        }
+        File manifest = new File(directory, version + MANIFEST_EXTENSION);
+        File tmp = new File(directory, version + MANIFEST_EXTENSION + ".tmp");
+        FileOutputStream out = new FileOutputStream(tmp);
+        try {
+            properties.store(out, "BioDRUMS snapshot " + version);
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(manifest)) {
+            throw new IOException("Could not rename " + tmp + " to " + manifest);
+        }
+    }
+
+    /**
+     * Pins the current snapshot. The snapshot must be released with {@link Snapshot#close()}.
+     * 
+     * @return the current snapshot
+     * @throws IllegalStateException
+     *             if no snapshot was published yet
+     */
+    public synchronized Snapshot<Data> acquire() {
+        if (closed) {
+            throw new IllegalStateException("The snapshots of " + gp.DATABASE_DIRECTORY + " were closed");
+        }
+        if (current == null) {
+            throw new IllegalStateException("No snapshot of " + gp.DATABASE_DIRECTORY + " was published yet");
+        }
+        current.references++;
+        return current;
+    }
+
+    /** @return the version of the current snapshot, -1 if no snapshot was published yet */
+    public synchronized long getCurrentVersion() {
+        return current == null ? -1 : current.getVersion();
+    }
+
+    /** releases one reference of the given snapshot and deletes its files, if it was the last one */
+    void release(Snapshot<Data> snapshot) {
+        synchronized (this) {
+            if (snapshot.references <= 0) {
+                throw new IllegalStateException(snapshot + " was released too often");
+            }
+            if (--snapshot.references > 0) {
+                return;
+            }
+            for (int i = 0; !closed && i < snapshot.getFiles().length; i++) {
+                File file = snapshot.getFiles()[i];
+                int references = fileReferences.get(file) - 1;
+                if (references > 0) {
+                    fileReferences.put(file, references);
+                    continue;
+                }
+                fileReferences.remove(file);
+                if (file.exists() && !file.delete()) {
+                    log.warn("Could not delete {}", file);
+                }
+                // removes the directory of the version, when its last file was deleted
+                file.getParentFile().delete();
+            }
+            if (!closed) {
+                new File(directory, snapshot.getVersion() + MANIFEST_EXTENSION).delete();
+            }
+        }
+        snapshot.unmap();
+        log.debug("Reclaimed snapshot {}", snapshot.getVersion());
+    }
+
+    private void retain(File file) {
+        Integer references = fileReferences.get(file);
+        fileReferences.put(file, references == null ? 1 : references + 1);
+    }
+
+    MappedTable<Data> map(File[] files) throws IOException, FileLockException {
+        return new MappedTable<Data>(gp, hashFunction, prototype, files);
+    }
+
+    /**
+     * Releases the current snapshot. Pinned snapshots stay readable until they are released. No files are deleted
+     * afterwards, the last snapshot is recovered and older files are deleted by the next instance.
+     */
+    public void close() {
+        Snapshot<Data> last;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            last = current;
+            current = null;
+        }
+        if (last != null) {
+            release(last);
+        }
+    }
+}
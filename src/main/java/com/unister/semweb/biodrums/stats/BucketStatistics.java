@@ -0,0 +1,292 @@
+package com.unister.semweb.biodrums.stats;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import com.unister.semweb.biodrums.scan.RecordVisitor;
+import com.unister.semweb.biodrums.storage.RecordBuffers;
+import com.unister.semweb.biodrums.stream.RecordIntFunction;
+
+/**
+ * The statistics of one bucket: number of records, smallest and largest key, a histogram of the genomic coordinates
+ * and the number of records per category, e.g. per ecotype of {@link com.unister.semweb.biodrums.weigel.SNP}s or per
+ * HERV-id of {@link com.unister.semweb.biodrums.herv.HERV}s.<br>
+ * <br>
+ * The coordinate of a key consists of its first 5 bytes, the chromosome and the position, as in all keys of BioDRUMS.
+ * The histogram divides the coordinate range of the bucket into {@link #HISTOGRAM_BINS} bins of equal width.
+ * Instances are created by a {@link Collector}, which visits all records of the bucket.
+ * 
+ * @author Martin Nettling
+ */
+public class BucketStatistics {
+    /** the number of bins of the histogram */
+    public static final int HISTOGRAM_BINS = 64;
+
+    private final String stamp;
+    private final long count;
+    private final byte[] minKey;
+    private final byte[] maxKey;
+    private final long histogramLow;
+    private final long histogramHigh;
+    private final long[] histogram;
+    private final char[] categories;
+    private final long[] categoryCounts;
+
+    private BucketStatistics(String stamp, long count, byte[] minKey, byte[] maxKey, long histogramLow,
+            long histogramHigh, long[] histogram, char[] categories, long[] categoryCounts) {
+        this.stamp = stamp;
+        this.count = count;
+        this.minKey = minKey;
+        this.maxKey = maxKey;
+        this.histogramLow = histogramLow;
+        this.histogramHigh = histogramHigh;
+        this.histogram = histogram;
+        this.categories = categories;
+        this.categoryCounts = categoryCounts;
+    }
+
+    /**
+     * @return the stamp of the bucket file, from which these statistics were computed, see
+     *         {@link com.unister.semweb.biodrums.storage.BucketFiles#getStamp(java.io.File)}
+     */
+    public String getStamp() {
+        return stamp;
+    }
+
+    /** @return the number of records */
+    public long getCount() {
+        return count;
+    }
+
+    /** @return the smallest key, <code>null</code> if the bucket is empty */
+    public byte[] getMinKey() {
+        return minKey;
+    }
+
+    /** @return the largest key, <code>null</code> if the bucket is empty */
+    public byte[] getMaxKey() {
+        return maxKey;
+    }
+
+    /**
+     * @param category
+     *            a category, e.g. an ecotype
+     * @return the number of records of the category
+     */
+    public long getCategoryCount(char category) {
+        int index = Arrays.binarySearch(categories, category);
+        return index < 0 ? 0 : categoryCounts[index];
+    }
+
+    /** @return the number of different categories */
+    public int getNumberOfCategories() {
+        return categories.length;
+    }
+
+    /**
+     * Estimates the number of records between the given keys. The result is exact, if the range contains all or none
+     * of the records.
+     * 
+     * @param lowerKey
+     *            the smallest key of the range, <code>null</code> for no lower bound
+     * @param upperKey
+     *            the largest key of the range, <code>null</code> for no upper bound
+     * @return the estimated number of records
+     */
+    public double estimate(byte[] lowerKey, byte[] upperKey) {
+        if (count == 0) {
+            return 0;
+        }
+        boolean fromStart = lowerKey == null || compare(lowerKey, minKey) <= 0;
+        boolean toEnd = upperKey == null || compare(upperKey, maxKey) >= 0;
+        if (fromStart && toEnd) {
+            return count;
+        }
+        if ((lowerKey != null && compare(lowerKey, maxKey) > 0) || (upperKey != null && compare(upperKey, minKey) < 0)
+                || (lowerKey != null && upperKey != null && compare(lowerKey, upperKey) > 0)) {
+            return 0;
+        }
+        long from = fromStart ? histogramLow : coordinate(lowerKey);
+        long to = toEnd ? histogramHigh : coordinate(upperKey);
+        return estimateCoordinates(from, to);
+    }
+
+    /** sums the bins overlapping the inclusive coordinate range, partially overlapping bins proportionally */
+    private double estimateCoordinates(long from, long to) {
+        from = Math.max(from, histogramLow);
+        to = Math.min(to, histogramHigh);
+        double estimate = 0;
+        for (int bin = 0; bin < HISTOGRAM_BINS && from <= to; bin++) {
+            long binLow = binStart(bin);
+            long binHigh = binStart(bin + 1) - 1;
+            long overlap = Math.min(to, binHigh) - Math.max(from, binLow) + 1;
+            if (overlap > 0) {
+                estimate += (double) histogram[bin] * overlap / (binHigh - binLow + 1);
+            }
+        }
+        return Math.min(estimate, count);
+    }
+
+    private long binStart(int bin) {
+        long width = histogramHigh - histogramLow + 1;
+        return histogramLow + (long) Math.ceil((double) width * bin / HISTOGRAM_BINS);
+    }
+
+    private static int compare(byte[] a, byte[] b) {
+        int result = RecordBuffers.compareKeys(a, 0, b, 0, Math.min(a.length, b.length));
+        return result != 0 ? result : a.length - b.length;
+    }
+
+    /**
+     * @param key
+     *            a key, missing bytes are treated as 0
+     * @return the chromosome and the position of the key as one number
+     */
+    public static long coordinate(byte[] key) {
+        long coordinate = 0;
+        for (int i = 0; i < 5; i++) {
+            coordinate = (coordinate << 8) | (i < key.length ? key[i] & 0xFF : 0);
+        }
+        return coordinate;
+    }
+
+    /**
+     * @param records
+     *            a buffer containing serialized records
+     * @param offset
+     *            the absolute offset of one record in the buffer
+     * @return the chromosome and the position of the record as one number
+     */
+    public static long coordinate(ByteBuffer records, int offset) {
+        return ((long) (records.get(offset) & 0xFF) << 32) | (records.getInt(offset + 1) & 0xFFFFFFFFL);
+    }
+
+    void write(DataOutputStream out) throws IOException {
+        out.writeUTF(stamp);
+        out.writeLong(count);
+        if (count > 0) {
+            out.writeInt(minKey.length);
+            out.write(minKey);
+            out.write(maxKey);
+        }
+        out.writeLong(histogramLow);
+        out.writeLong(histogramHigh);
+        for (long bin : histogram) {
+            out.writeLong(bin);
+        }
+        out.writeInt(categories.length);
+        for (int i = 0; i < categories.length; i++) {
+            out.writeChar(categories[i]);
+            out.writeLong(categoryCounts[i]);
+        }
+    }
+
+    static BucketStatistics read(DataInputStream in) throws IOException {
+        String stamp = in.readUTF();
+        long count = in.readLong();
+        byte[] minKey = null;
+        byte[] maxKey = null;
+        if (count > 0) {
+            minKey = new byte[in.readInt()];
+            maxKey = new byte[minKey.length];
+            in.readFully(minKey);
+            in.readFully(maxKey);
+        }
+        long histogramLow = in.readLong();
+        long histogramHigh = in.readLong();
+        long[] histogram = new long[HISTOGRAM_BINS];
+        for (int bin = 0; bin < HISTOGRAM_BINS; bin++) {
+            histogram[bin] = in.readLong();
+        }
+        char[] categories = new char[in.readInt()];
+        long[] categoryCounts = new long[categories.length];
+        for (int i = 0; i < categories.length; i++) {
+            categories[i] = in.readChar();
+            categoryCounts[i] = in.readLong();
+        }
+        return new BucketStatistics(stamp, count, minKey, maxKey, histogramLow, histogramHigh, histogram,
+                categories, categoryCounts);
+    }
+
+    /**
+     * Computes the statistics of one bucket, while it visits the sorted records of the bucket.
+     * 
+     * @author Martin Nettling
+     */
+    public static class Collector implements RecordVisitor {
+        private final int keySize;
+        private final RecordIntFunction category;
+        private final long histogramLow;
+        private final long histogramHigh;
+        private final long[] histogram = new long[HISTOGRAM_BINS];
+        /** the count of each category, indexed by the category */
+        private final long[] categoryCounts;
+        private long count;
+        private byte[] minKey;
+        private final byte[] maxKey;
+
+        /**
+         * @param keySize
+         *            the size of the keys
+         * @param category
+         *            the category of a record, must be in the range of a <code>char</code>. <code>null</code> if no
+         *            categories are counted
+         * @param lowerBound
+         *            the smallest key the bucket may contain
+         * @param upperBound
+         *            the largest key the bucket may contain
+         */
+        public Collector(int keySize, RecordIntFunction category, byte[] lowerBound, byte[] upperBound) {
+            this.keySize = keySize;
+            this.category = category;
+            this.histogramLow = coordinate(lowerBound);
+            this.histogramHigh = Math.max(histogramLow, coordinate(upperBound));
+            this.categoryCounts = category == null ? new long[0] : new long[Character.MAX_VALUE + 1];
+            this.maxKey = new byte[keySize];
+        }
+
+        @Override
+        public boolean visit(ByteBuffer records, int offset) {
+            if (count++ == 0) {
+                minKey = RecordBuffers.getKey(records, offset, keySize);
+            }
+            for (int i = 0; i < keySize; i++) {
+                maxKey[i] = records.get(offset + i);
+            }
+            long coordinate = Math.max(histogramLow, Math.min(histogramHigh, coordinate(records, offset)));
+            long width = histogramHigh - histogramLow + 1;
+            histogram[(int) ((double) (coordinate - histogramLow) * HISTOGRAM_BINS / width)]++;
+            if (category != null) {
+                categoryCounts[category.applyAsInt(records, offset) & 0xFFFF]++;
+            }
+            return true;
+        }
+
+        /**
+         * @param stamp
+         *            the stamp of the bucket file
+         * @return the statistics of all visited records
+         */
+        public BucketStatistics build(String stamp) {
+            int numberOfCategories = 0;
+            for (long categoryCount : categoryCounts) {
+                if (categoryCount > 0) {
+                    numberOfCategories++;
+                }
+            }
+            char[] categories = new char[numberOfCategories];
+            long[] counts = new long[numberOfCategories];
+            for (int c = 0, i = 0; c < categoryCounts.length; c++) {
+                if (categoryCounts[c] > 0) {
+                    categories[i] = (char) c;
+                    counts[i++] = categoryCounts[c];
+                }
+            }
+            return new BucketStatistics(stamp, count, minKey, count == 0 ? null : maxKey.clone(), histogramLow,
+                    histogramHigh, histogram, categories, counts);
+        }
+    }
+}
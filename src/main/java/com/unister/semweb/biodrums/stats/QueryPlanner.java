@@ -0,0 +1,92 @@
+package com.unister.semweb.biodrums.stats;
+
+import com.unister.semweb.drums.storable.AbstractKVStorable;
+
+/**
+ * Chooses how a key range is read, based on the estimates of a {@link StatisticsCatalog}:
+ * <ul>
+ * <li>{@link Plan#INDEX}: few records, which are found by binary search in a
+ * {@link com.unister.semweb.biodrums.mapped.MappedTable} or by a select.</li>
+ * <li>{@link Plan#SEQUENTIAL}: a scan in one thread with a {@link com.unister.semweb.biodrums.scan.BucketScanner}.
+ * </li>
+ * <li>{@link Plan#PARALLEL}: a scan of several buckets with a
+ * {@link com.unister.semweb.biodrums.scan.ParallelBucketScan}.</li>
+ * </ul>
+ * 
+ * @author Martin Nettling
+ */
+public class QueryPlanner {
+    /** the ways to read a key range */
+    public enum Plan {
+        /** binary search for few records */
+        INDEX,
+        /** scan in the calling thread */
+        SEQUENTIAL,
+        /** scan of the buckets in parallel */
+        PARALLEL
+    }
+
+    /** the default number of records, up to which a range is read by binary search */
+    public static final long DEFAULT_INDEX_LIMIT = 1000;
+
+    /** the default number of records, above which a range of several buckets is scanned in parallel */
+    public static final long DEFAULT_PARALLEL_THRESHOLD = 1000000;
+
+    private final StatisticsCatalog<? extends AbstractKVStorable> catalog;
+    private final long indexLimit;
+    private final long parallelThreshold;
+
+    /**
+     * Creates a planner with {@link #DEFAULT_INDEX_LIMIT} and {@link #DEFAULT_PARALLEL_THRESHOLD}.
+     * 
+     * @param catalog
+     *            the statistics of the table
+     */
+    public QueryPlanner(StatisticsCatalog<? extends AbstractKVStorable> catalog) {
+        this(catalog, DEFAULT_INDEX_LIMIT, DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * @param catalog
+     *            the statistics of the table
+     * @param indexLimit
+     *            the number of records, up to which a range is read by binary search
+     * @param parallelThreshold
+     *            the number of records, above which a range of several buckets is scanned in parallel
+     */
+    public QueryPlanner(StatisticsCatalog<? extends AbstractKVStorable> catalog, long indexLimit,
+            long parallelThreshold) {
+        this.catalog = catalog;
+        this.indexLimit = indexLimit;
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    /**
+     * @param lowerKey
+     *            the smallest key of the range, <code>null</code> for no lower bound
+     * @param upperKey
+     *            the largest key of the range, <code>null</code> for no upper bound
+     * @return the plan for reading the range
+     */
+    public Plan plan(byte[] lowerKey, byte[] upperKey) {
+        double estimate = catalog.estimate(lowerKey, upperKey);
+        return plan(estimate, catalog.getLastBucket(upperKey) - catalog.getFirstBucket(lowerKey) + 1);
+    }
+
+    /**
+     * @param estimatedRecords
+     *            the estimated number of records of the range
+     * @param buckets
+     *            the number of buckets, which may contain records of the range
+     * @return the plan for reading the range
+     */
+    public Plan plan(double estimatedRecords, int buckets) {
+        if (estimatedRecords <= indexLimit) {
+            return Plan.INDEX;
+        }
+        if (buckets > 1 && estimatedRecords > parallelThreshold) {
+            return Plan.PARALLEL;
+        }
+        return Plan.SEQUENTIAL;
+    }
+}
@@ -0,0 +1,266 @@
+package com.unister.semweb.biodrums.stats;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.unister.semweb.biodrums.scan.BucketScanner;
+import com.unister.semweb.biodrums.storage.BucketFiles;
+import com.unister.semweb.biodrums.stream.RecordIntFunction;
+import com.unister.semweb.drums.DRUMSParameterSet;
+import com.unister.semweb.drums.bucket.hashfunction.RangeHashFunction;
+import com.unister.semweb.drums.file.FileLockException;
+import com.unister.semweb.drums.storable.AbstractKVStorable;
+
+/**
+ * A persisted catalog of {@link BucketStatistics} for all buckets of a table. It answers counts and cardinality
+ * estimates of key ranges without reading the bucket files. The catalog is stored in the file {@link #FILE_NAME} in
+ * the directory of the table and brought up to date by {@link #refresh()}, which only rescans buckets, whose files
+ * changed since their statistics were computed. A refresh belongs after each synchronization, e.g. at the checkpoints
+ * of a {@link com.unister.semweb.biodrums.ingest.ResumableLoader}.
+ * 
+ * <pre>
+ * StatisticsCatalog&lt;SNP&gt; catalog = new StatisticsCatalog&lt;SNP&gt;(gp, SNP.createHashFunction(), new SNP(),
+ *         SNP::getEcotypeId);
+ * catalog.refresh();
+ * double snpsOnChromosome2 = catalog.estimate(SNP.lowerKey((byte) 2, 0), SNP.upperKey((byte) 2, Integer.MAX_VALUE));
+ * </pre>
+ * 
+ * All reading methods are thread-safe and don't block each other.
+ * 
+ * @author Martin Nettling
+ * 
+ * @param <Data>
+ *            the type of the records
+ */
+public class StatisticsCatalog<Data extends AbstractKVStorable> {
+    private static final Logger log = LoggerFactory.getLogger(StatisticsCatalog.class);
+
+    /** the name of the file, in which the catalog is stored next to the table */
+    public static final String FILE_NAME = "Statistics.bin";
+
+    private static final int MAGIC = 0x42445354;
+
+    private final DRUMSParameterSet<Data> gp;
+    private final RangeHashFunction hashFunction;
+    private final Data prototype;
+    private final RecordIntFunction category;
+    private final File file;
+
+    /** replaced as a whole by {@link #refresh()} */
+    private volatile BucketStatistics[] buckets;
+
+    /**
+     * Opens the catalog of the given table. A persisted catalog is loaded, if it belongs to the hash function.
+     * 
+     * @param gp
+     *            the parameters of the table
+     * @param hashFunction
+     *            the hash function of the table
+     * @param prototype
+     *            a prototype of the stored records
+     * @param category
+     *            the category of a record, e.g. <code>SNP::getEcotypeId</code> or <code>HERV::getIdHERV</code>,
+     *            <code>null</code> if no categories are counted
+     * @throws IOException
+     */
+    public StatisticsCatalog(DRUMSParameterSet<Data> gp, RangeHashFunction hashFunction, Data prototype,
+            RecordIntFunction category) throws IOException {
+        this.gp = gp;
+        this.hashFunction = hashFunction;
+        this.prototype = prototype;
+        this.category = category;
+        this.file = new File(gp.DATABASE_DIRECTORY, FILE_NAME);
+        this.buckets = load();
+    }
+
+    private BucketStatistics[] load() throws IOException {
+        BucketStatistics[] loaded = new BucketStatistics[hashFunction.getNumberOfBuckets()];
+        if (!file.exists()) {
+            return loaded;
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " contains no statistics");
+            }
+            int numberOfBuckets = in.readInt();
+            if (numberOfBuckets != loaded.length) {
+                log.info("Ignoring {}, it was computed for {} buckets", file, numberOfBuckets);
+                return loaded;
+            }
+            for (int bucketId = 0; bucketId < loaded.length; bucketId++) {
+                loaded[bucketId] = BucketStatistics.read(in);
+            }
+            return loaded;
+        } finally {
+            in.close();
+        }
+    }
+
+    private void save(BucketStatistics[] statistics) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(statistics.length);
+            for (BucketStatistics bucket : statistics) {
+                bucket.write(out);
+            }
+        } finally {
+            out.close();
+        }
+        BucketFiles.replace(tmp, file);
+    }
+
+    /**
+     * Rescans all buckets, whose files changed since their statistics were computed, and stores the catalog. No
+     * synchronizer should write to the table during this call, otherwise the statistics of a bucket may be computed
+     * from a half-written file and are only corrected by the next refresh.
+     * 
+     * @return the number of rescanned buckets
+     * @throws IOException
+     * @throws FileLockException
+     */
+    public synchronized int refresh() throws IOException, FileLockException {
+        BucketStatistics[] refreshed = buckets.clone();
+        BucketScanner<Data> scanner = null;
+        byte[][] ranges = hashFunction.getRanges();
+        int rescanned = 0;
+        for (int bucketId = 0; bucketId < refreshed.length; bucketId++) {
+            File bucketFile = BucketFiles.getFile(gp, hashFunction, bucketId);
+            String stamp = Long.toHexString(BucketFiles.getStamp(bucketFile));
+            if (refreshed[bucketId] != null && refreshed[bucketId].getStamp().equals(stamp)) {
+                continue;
+            }
+            if (scanner == null) {
+                scanner = new BucketScanner<Data>(gp, hashFunction, prototype, BucketScanner.DEFAULT_BUFFER_SIZE);
+            }
+            byte[] lowerBound = bucketId == 0 ? new byte[ranges[0].length] : ranges[bucketId - 1];
+            BucketStatistics.Collector collector = new BucketStatistics.Collector(prototype.getKey().length,
+                    category, lowerBound, ranges[bucketId]);
+            scanner.scanBucket(bucketId, null, null, collector);
+            refreshed[bucketId] = collector.build(stamp);
+            rescanned++;
+        }
+        if (rescanned > 0) {
+            save(refreshed);
+            buckets = refreshed;
+            log.info("Refreshed the statistics of {} buckets", rescanned);
+        }
+        return rescanned;
+    }
+
+    /**
+     * @param bucketId
+     *            the id of a bucket
+     * @return the statistics of the bucket, <code>null</code> if the catalog was not refreshed yet
+     */
+    public BucketStatistics getBucketStatistics(int bucketId) {
+        return buckets[bucketId];
+    }
+
+    /** @return the number of records in the table */
+    public long count() {
+        long count = 0;
+        for (BucketStatistics bucket : checkedBuckets()) {
+            count += bucket.getCount();
+        }
+        return count;
+    }
+
+    /**
+     * @param category
+     *            a category, e.g. an ecotype
+     * @return the number of records of the category in the table
+     */
+    public long count(char category) {
+        long count = 0;
+        for (BucketStatistics bucket : checkedBuckets()) {
+            count += bucket.getCategoryCount(category);
+        }
+        return count;
+    }
+
+    /**
+     * Estimates the number of records between the given keys. Buckets, which are completely covered by the range,
+     * contribute their exact count, the first and the last bucket are estimated with their histograms.
+     * 
+     * @param lowerKey
+     *            the smallest key of the range, <code>null</code> for no lower bound
+     * @param upperKey
+     *            the largest key of the range, <code>null</code> for no upper bound
+     * @return the estimated number of records
+     */
+    public double estimate(byte[] lowerKey, byte[] upperKey) {
+        BucketStatistics[] statistics = checkedBuckets();
+        double estimate = 0;
+        int lastBucket = getLastBucket(upperKey);
+        for (int bucketId = getFirstBucket(lowerKey); bucketId <= lastBucket; bucketId++) {
+            estimate += statistics[bucketId].estimate(lowerKey, upperKey);
+        }
+        return estimate;
+    }
+
+    /**
+     * Estimates the number of records of one category between the given keys. The records of a category are assumed
+     * to be distributed like all records of a bucket.
+     * 
+     * @param lowerKey
+     *            the smallest key of the range, <code>null</code> for no lower bound
+     * @param upperKey
+     *            the largest key of the range, <code>null</code> for no upper bound
+     * @param category
+     *            a category, e.g. an ecotype
+     * @return the estimated number of records
+     */
+    public double estimate(byte[] lowerKey, byte[] upperKey, char category) {
+        BucketStatistics[] statistics = checkedBuckets();
+        double estimate = 0;
+        int lastBucket = getLastBucket(upperKey);
+        for (int bucketId = getFirstBucket(lowerKey); bucketId <= lastBucket; bucketId++) {
+            BucketStatistics bucket = statistics[bucketId];
+            if (bucket.getCount() > 0) {
+                estimate += bucket.estimate(lowerKey, upperKey) * bucket.getCategoryCount(category)
+                        / bucket.getCount();
+            }
+        }
+        return estimate;
+    }
+
+    /**
+     * @param lowerKey
+     *            the smallest key of a range, may be <code>null</code>
+     * @return the id of the first bucket, which may contain keys of the range
+     */
+    public int getFirstBucket(byte[] lowerKey) {
+        return lowerKey == null ? 0 : hashFunction.getBucketId(lowerKey);
+    }
+
+    /**
+     * @param upperKey
+     *            the largest key of a range, may be <code>null</code>
+     * @return the id of the last bucket, which may contain keys of the range
+     */
+    public int getLastBucket(byte[] upperKey) {
+        return upperKey == null ? hashFunction.getNumberOfBuckets() - 1 : hashFunction.getBucketId(upperKey);
+    }
+
+    private BucketStatistics[] checkedBuckets() {
+        BucketStatistics[] statistics = buckets;
+        for (int bucketId = 0; bucketId < statistics.length; bucketId++) {
+            if (statistics[bucketId] == null) {
+                throw new IllegalStateException("No statistics for bucket " + bucketId + ", call refresh() first");
+            }
+        }
+        return statistics;
+    }
+}
@@ -0,0 +1,255 @@
+package com.unister.semweb.biodrums.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import com.unister.semweb.drums.DRUMSParameterSet;
+import com.unister.semweb.drums.bucket.hashfunction.RangeHashFunction;
+import com.unister.semweb.drums.file.AbstractHeaderFile.AccessMode;
+import com.unister.semweb.drums.file.FileLockException;
+import com.unister.semweb.drums.file.HeaderIndexFile;
+import com.unister.semweb.drums.storable.AbstractKVStorable;
+
+/**
+ * Helper methods to access the bucket files of a DRUMS-table directly. A bucket file is a {@link HeaderIndexFile},
+ * which stores the records of one bucket sorted by key and without gaps. Offsets given to
+ * {@link HeaderIndexFile#read(long, java.nio.ByteBuffer)} and {@link HeaderIndexFile#write(long, java.nio.ByteBuffer)}
+ * are relative to the start of the content, so the n-th record can be found at offset <code>n * elementSize</code>.
+ * 
+ * @author Martin Nettling
+ */
+public class BucketFiles {
+
+    /** the size of the header of a {@link HeaderIndexFile} in bytes */
+    public static final int HEADER_SIZE = 1024;
+
+    /** the size of the index of a {@link HeaderIndexFile} in bytes */
+    public static final int INDEX_SIZE = 512 * 1024;
+
+    /** the absolute offset of the first record in a bucket file, needed if the file is accessed without DRUMS */
+    public static final long CONTENT_OFFSET = HEADER_SIZE + INDEX_SIZE;
+
+    private BucketFiles() {
+    }
+
+    /**
+     * Determines the file of the given bucket.
+     * 
+     * @param gp
+     *            the parameters of the table
+     * @param hashFunction
+     *            the hash function of the table
+     * @param bucketId
+     *            the id of the bucket
+     * @return the file of the bucket, which may not exist yet
+     */
+    public static File getFile(DRUMSParameterSet<?> gp, RangeHashFunction hashFunction, int bucketId) {
+        return new File(gp.DATABASE_DIRECTORY, hashFunction.getFilename(bucketId));
+    }
+
+    /**
+     * Resolves a bucket file, which is a symbolic link into a data directory of a {@link BucketPlacement}. A file,
+     * which is replaced by a rename, must be resolved first, otherwise the rename replaces the link and the bucket
+     * moves back into the database directory.
+     * 
+     * @param file
+     *            a bucket file
+     * @return the target of the link, the file itself if it is no link
+     * @throws IOException
+     */
+    public static File resolve(File file) throws IOException {
+        Path path = file.toPath();
+        if (!Files.isSymbolicLink(path)) {
+            return file;
+        }
+        return path.resolveSibling(Files.readSymbolicLink(path)).toFile();
+    }
+
+    /**
+     * Atomically replaces a file by a completely written temporary file in the same directory, so readers see either
+     * the old or the new content. The directory is synced after the rename, the temporary file must be synced before,
+     * see {@link #sync(File)}, if the replacement has to survive a crash.
+     * 
+     * @param tmp
+     *            the temporary file containing the new content
+     * @param file
+     *            the file to replace, which may not exist yet
+     * @throws IOException
+     *             if the file could not be replaced
+     */
+    public static void replace(File tmp, File file) throws IOException {
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        syncDirectory(file.getAbsoluteFile().getParentFile());
+    }
+
+    /**
+     * Writes the content of the given file through to the disk.
+     * 
+     * @param file
+     *            the file to sync
+     * @throws IOException
+     */
+    public static void sync(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.getFD().sync();
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Writes the entries of the given directory through to the disk, so a created or renamed file survives a crash.
+     * Platforms, which can't open a directory, are ignored.
+     * 
+     * @param directory
+     *            the directory to sync
+     * @throws IOException
+     *             if the directory could be opened but not synced
+     */
+    public static void syncDirectory(File directory) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ);
+        } catch (IOException ex) {
+            return;
+        }
+        try {
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Opens the file of the given bucket. In {@link AccessMode#READ_WRITE} the file is created if it does not exist.
+     * 
+     * @param gp
+     *            the parameters of the table
+     * @param hashFunction
+     *            the hash function of the table
+     * @param bucketId
+     *            the id of the bucket
+     * @param mode
+     *            the mode to open the file with
+     * @return the opened file
+     * @throws FileLockException
+     *             if the file is locked by another process
+     * @throws IOException
+     */
+    public static <Data extends AbstractKVStorable> HeaderIndexFile<Data> open(DRUMSParameterSet<Data> gp,
+            RangeHashFunction hashFunction, int bucketId, AccessMode mode) throws FileLockException, IOException {
+        return open(gp, getFile(gp, hashFunction, bucketId), mode);
+    }
+
+    /**
+     * Opens the given bucket file. In {@link AccessMode#READ_WRITE} the file is created if it does not exist.
+     * 
+     * @param gp
+     *            the parameters of the table
+     * @param file
+     *            the bucket file
+     * @param mode
+     *            the mode to open the file with
+     * @return the opened file
+     * @throws FileLockException
+     *             if the file is locked by another process
+     * @throws IOException
+     */
+    public static <Data extends AbstractKVStorable> HeaderIndexFile<Data> open(DRUMSParameterSet<Data> gp, File file,
+            AccessMode mode) throws FileLockException, IOException {
+        return new HeaderIndexFile<Data>(file.getAbsolutePath(), mode, gp.HEADER_FILE_LOCK_RETRY, gp);
+    }
+
+    /**
+     * Reads bytes of a bucket file until the buffer is full. A single {@link HeaderIndexFile#read(long, ByteBuffer)}
+     * may return less bytes than requested. Afterwards the buffer is ready to be read from 0.
+     * 
+     * @param file
+     *            the opened bucket file
+     * @param offset
+     *            the offset relative to the start of the content
+     * @param destination
+     *            the buffer to fill between its position and its limit
+     * @throws IOException
+     *             if the file ends before the buffer is full
+     */
+    public static void readFully(HeaderIndexFile<?> file, long offset, ByteBuffer destination) throws IOException {
+        int start = destination.position();
+        int toRead = destination.remaining();
+        while (destination.hasRemaining()) {
+            int position = destination.position();
+            int read = file.read(offset + position - start, destination);
+            if (read <= 0) {
+                throw new IOException("Could not read " + toRead + " bytes at offset " + offset
+                        + ", the file ended after " + (position - start) + " bytes");
+            }
+            // not every implementation advances the position of the buffer
+            if (destination.position() == position) {
+                destination.position(position + read);
+            }
+        }
+        destination.clear();
+        destination.limit(start + toRead);
+    }
+
+    /**
+     * Computes a stamp, which changes whenever DRUMS writes to the given bucket file. The stamp is a checksum of the
+     * header, which contains the filled-up size, and of the index, which contains the largest key of each indexed
+     * chunk, mixed with the length and the modification time of the file. Unlike the length and the modification time
+     * alone it detects rewrites within the resolution of the file system clock and files copied with their original
+     * time. The records themselves are not read, so the stamp stays cheap for large buckets.
+     * 
+     * @param file
+     *            a bucket file
+     * @return the stamp, 0 if the file does not exist
+     * @throws IOException
+     */
+    public static long getStamp(File file) throws IOException {
+        if (!file.exists()) {
+            return 0;
+        }
+        CRC32 checksum = new CRC32();
+        byte[] buffer = new byte[8192];
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            long length = raf.length();
+            long toRead = Math.min(length, CONTENT_OFFSET);
+            while (toRead > 0) {
+                int read = raf.read(buffer, 0, (int) Math.min(buffer.length, toRead));
+                if (read < 0) {
+                    break;
+                }
+                checksum.update(buffer, 0, read);
+                toRead -= read;
+            }
+            ByteBuffer metadata = ByteBuffer.wrap(buffer, 0, 16);
+            metadata.putLong(length).putLong(file.lastModified());
+            checksum.update(buffer, 0, 16);
+            return length << 32 ^ checksum.getValue();
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Determines the number of records stored in the given bucket file.
+     * 
+     * @param file
+     *            the opened bucket file
+     * @param elementSize
+     *            the size of one record in bytes
+     * @return the number of records in the file
+     */
+    public static long getNumberOfRecords(HeaderIndexFile<?> file, int elementSize) {
+        return file.getFilledUpFromContentStart() / elementSize;
+    }
+}
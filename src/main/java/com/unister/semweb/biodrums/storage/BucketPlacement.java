@@ -0,0 +1,338 @@
+package com.unister.semweb.biodrums.storage;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.unister.semweb.drums.DRUMSParameterSet;
+import com.unister.semweb.drums.bucket.hashfunction.RangeHashFunction;
+
+/**
+ * Stripes the bucket files of a table across several data directories, e.g. one per disk. Each bucket file is moved
+ * into its data directory and replaced in {@link DRUMSParameterSet#DATABASE_DIRECTORY} by a symbolic link with the same
+ * name. DRUMS and all classes of BioDRUMS open the bucket files through the links, so a striped table is used like any
+ * other table, while the synchronizers and the parallel scans of different buckets read and write different disks.<br>
+ * <br>
+ * The placement is recorded by the name of the bucket file in {@link #FILE_NAME} in the database directory. A bucket,
+ * which is not recorded, e.g. the new bucket of a split, stays in the database directory until the placement is
+ * created and applied again. {@link #apply(DRUMSParameterSet, RangeHashFunction)} moves the files and must only be
+ * called while the table is closed. It can be repeated after a crash. {@link #configure(DRUMSParameterSet)} provides
+ * one synchronizer thread per data directory.
+ * 
+ * <pre>
+ * BucketPlacement placement = BucketPlacement.create(gp, hashFunction, new File[] { new File(&quot;/disk1/herv&quot;),
+ *         new File(&quot;/disk2/herv&quot;) }, BucketPlacement.Strategy.BY_SIZE);
+ * placement.write(gp);
+ * placement.apply(gp, hashFunction);
+ * </pre>
+ * 
+ * @author Martin Nettling
+ */
+public class BucketPlacement {
+    private static final Logger log = LoggerFactory.getLogger(BucketPlacement.class);
+
+    /** the name of the file, in which the placement is stored */
+    public static final String FILE_NAME = "BucketPlacement.properties";
+
+    /** the extension of a bucket file, which is copied into its data directory */
+    private static final String MOVE_EXTENSION = ".move";
+
+    /** the strategies to assign buckets to data directories */
+    public enum Strategy {
+        /** bucket i is assigned to data directory <code>i % numberOfDirectories</code> */
+        ROUND_ROBIN,
+        /** the largest buckets are assigned first, each to the data directory with the fewest bytes so far */
+        BY_SIZE
+    }
+
+    private final File[] directories;
+
+    /** maps the name of a bucket file to the index of its data directory */
+    private final Map<String, Integer> assignment;
+
+    private BucketPlacement(File[] directories, Map<String, Integer> assignment) {
+        this.directories = directories;
+        this.assignment = assignment;
+    }
+
+    /**
+     * Assigns all buckets of a table to the given data directories.
+     * 
+     * @param gp
+     *            the parameters of the table
+     * @param hashFunction
+     *            the hash function of the table
+     * @param directories
+     *            the data directories, the database directory may be one of them
+     * @param strategy
+     *            the strategy to assign the buckets; {@link Strategy#BY_SIZE} uses the current lengths of the files
+     * @return the new placement
+     */
+    public static BucketPlacement create(DRUMSParameterSet<?> gp, RangeHashFunction hashFunction, File[] directories,
+            Strategy strategy) {
+        int numberOfBuckets = hashFunction.getNumberOfBuckets();
+        final long[] sizes = new long[numberOfBuckets];
+        List<Integer> order = new ArrayList<Integer>(numberOfBuckets);
+        for (int bucketId = 0; bucketId < numberOfBuckets; bucketId++) {
+            sizes[bucketId] = BucketFiles.getFile(gp, hashFunction, bucketId).length();
+            order.add(bucketId);
+        }
+        if (strategy == Strategy.BY_SIZE) {
+            // stable, so buckets of equal size keep their order and are distributed round robin
+            Collections.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    return Long.compare(sizes[b], sizes[a]);
+                }
+            });
+        }
+        long[] bytes = new long[directories.length];
+        int[] counts = new int[directories.length];
+        Map<String, Integer> assignment = new HashMap<String, Integer>();
+        for (int i = 0; i < order.size(); i++) {
+            int bucketId = order.get(i);
+            int directory = strategy == Strategy.ROUND_ROBIN ? i % directories.length : smallest(bytes, counts);
+            bytes[directory] += sizes[bucketId];
+            counts[directory]++;
+            assignment.put(hashFunction.getFilename(bucketId), directory);
+        }
+        return new BucketPlacement(directories.clone(), assignment);
+    }
+
+    /** @return the directory with the fewest bytes, on ties the one with the fewest buckets */
+    private static int smallest(long[] bytes, int[] counts) {
+        int smallest = 0;
+        for (int i = 1; i < bytes.length; i++) {
+            if (bytes[i] < bytes[smallest] || bytes[i] == bytes[smallest] && counts[i] < counts[smallest]) {
+                smallest = i;
+            }
+        }
+        return smallest;
+    }
+
+    /**
+     * Reads the placement of a table.
+     * 
+     * @param gp
+     *            the parameters of the table
+     * @return the placement, <code>null</code> if the table is not striped
+     * @throws IOException
+     */
+    public static BucketPlacement read(DRUMSParameterSet<?> gp) throws IOException {
+        File file = new File(gp.DATABASE_DIRECTORY, FILE_NAME);
+        if (!file.exists()) {
+            return null;
+        }
+        Properties properties = new Properties();
+        InputStream in = new FileInputStream(file);
+        try {
+            properties.load(in);
+        } finally {
+            in.close();
+        }
+        File[] directories = new File[Integer.parseInt(properties.getProperty("directories"))];
+        for (int i = 0; i < directories.length; i++) {
+            directories[i] = new File(properties.getProperty("directory." + i));
+        }
+        Map<String, Integer> assignment = new HashMap<String, Integer>();
+        for (String name : properties.stringPropertyNames()) {
+            if (name.startsWith("bucket.")) {
+                int directory = Integer.parseInt(properties.getProperty(name));
+                if (directory < 0 || directory >= directories.length) {
+                    throw new IOException("Unknown data directory " + directory + " in " + file);
+                }
+                assignment.put(name.substring("bucket.".length()), directory);
+            }
+        }
+        return new BucketPlacement(directories, assignment);
+    }
+
+    /**
+     * Stores the placement in the database directory of the table.
+     * 
+     * @param gp
+     *            the parameters of the table
+     * @throws IOException
+     */
+    public void write(DRUMSParameterSet<?> gp) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("directories", Integer.toString(directories.length));
+        for (int i = 0; i < directories.length; i++) {
+            properties.setProperty("directory." + i, directories[i].getAbsolutePath());
+        }
+        for (Map.Entry<String, Integer> entry : assignment.entrySet()) {
+            properties.setProperty("bucket." + entry.getKey(), entry.getValue().toString());
+        }
+
+        File file = new File(gp.DATABASE_DIRECTORY, FILE_NAME);
+        File tmp = new File(gp.DATABASE_DIRECTORY, FILE_NAME + ".tmp");
+        FileOutputStream out = new FileOutputStream(tmp);
+        try {
+            properties.store(out, "BioDRUMS bucket placement");
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        BucketFiles.replace(tmp, file);
+    }
+
+    /**
+     * Moves all recorded bucket files into their data directories and links them from the database directory. Files,
+     * which are already in place, are not touched. A bucket, which has no file yet, gets a link to a not yet existing
+     * file, which is created on the first write. The table must be closed.
+     * 
+     * @param gp
+     *            the parameters of the table
+     * @param hashFunction
+     *            the hash function of the table
+     * @return the number of moved bucket files
+     * @throws IOException
+     */
+    public int apply(DRUMSParameterSet<?> gp, RangeHashFunction hashFunction) throws IOException {
+        Path databaseDirectory = new File(gp.DATABASE_DIRECTORY).getAbsoluteFile().toPath().normalize();
+        int moved = 0;
+        for (int bucketId = 0; bucketId < hashFunction.getNumberOfBuckets(); bucketId++) {
+            String filename = hashFunction.getFilename(bucketId);
+            Integer directory = assignment.get(filename);
+            if (directory == null) {
+                continue;
+            }
+            Path dataDirectory = directories[directory].getAbsoluteFile().toPath().normalize();
+            if (place(databaseDirectory.resolve(filename), dataDirectory, databaseDirectory)) {
+                moved++;
+            }
+        }
+        log.info("Placed the buckets of {} on {} data directories, moved {} files", new Object[] {
+                gp.DATABASE_DIRECTORY, directories.length, moved });
+        return moved;
+    }
+
+    /** moves one bucket file into the given data directory and returns true, if data was moved */
+    private static boolean place(Path link, Path dataDirectory, Path databaseDirectory) throws IOException {
+        boolean isLink = Files.isSymbolicLink(link);
+        Path current = isLink ? link.resolveSibling(Files.readSymbolicLink(link)).normalize() : link;
+        Path target = dataDirectory.equals(databaseDirectory) ? link : dataDirectory.resolve(link.getFileName());
+        if (current.equals(target)) {
+            return false;
+        }
+        boolean exists = Files.exists(current);
+        if (exists) {
+            Files.createDirectories(dataDirectory);
+            Path copy = target.resolveSibling(target.getFileName() + MOVE_EXTENSION);
+            Files.copy(current, copy, StandardCopyOption.REPLACE_EXISTING);
+            sync(copy.toFile());
+            Files.move(copy, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+        if (!target.equals(link)) {
+            Files.createDirectories(dataDirectory);
+            Path newLink = link.resolveSibling(link.getFileName() + MOVE_EXTENSION);
+            Files.deleteIfExists(newLink);
+            Files.createSymbolicLink(newLink, target);
+            Files.move(newLink, link, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+        // the file was copied, so the former location can be removed after the link points to the new one
+        if (exists && !current.equals(link)) {
+            Files.deleteIfExists(current);
+        }
+        return exists;
+    }
+
+    private static void sync(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.getFD().sync();
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * @param filename
+     *            the name of a bucket file
+     * @return the index of the data directory of the bucket, -1 if the bucket is not recorded
+     */
+    public int getDirectoryIndex(String filename) {
+        Integer directory = assignment.get(filename);
+        return directory == null ? -1 : directory;
+    }
+
+    /** @return the data directories */
+    public File[] getDirectories() {
+        return directories.clone();
+    }
+
+    /**
+     * Raises {@link DRUMSParameterSet#NUMBER_OF_SYNCHRONIZER_THREADS} to the number of data directories, so the
+     * synchronizers can write to all disks at the same time. Must be called before the table is opened.
+     * 
+     * @param gp
+     *            the parameters of the table
+     */
+    public void configure(DRUMSParameterSet<?> gp) {
+        if (gp.NUMBER_OF_SYNCHRONIZER_THREADS < directories.length) {
+            log.info("Raising NUMBER_OF_SYNCHRONIZER_THREADS from {} to {}", gp.NUMBER_OF_SYNCHRONIZER_THREADS,
+                    directories.length);
+            gp.NUMBER_OF_SYNCHRONIZER_THREADS = directories.length;
+        }
+    }
+
+    /**
+     * Orders the given buckets, so that consecutive buckets lie in different data directories, if possible. Within each
+     * data directory the buckets keep their order. Unrecorded buckets are treated as one further directory.
+     * 
+     * @param hashFunction
+     *            the hash function of the table
+     * @param firstBucket
+     *            the first bucket
+     * @param lastBucket
+     *            the last bucket
+     * @return the ids of all buckets between <code>firstBucket</code> and <code>lastBucket</code>
+     */
+    public int[] interleave(RangeHashFunction hashFunction, int firstBucket, int lastBucket) {
+        List<List<Integer>> queues = new ArrayList<List<Integer>>();
+        for (int i = 0; i <= directories.length; i++) {
+            queues.add(new ArrayList<Integer>());
+        }
+        for (int bucketId = firstBucket; bucketId <= lastBucket; bucketId++) {
+            int directory = getDirectoryIndex(hashFunction.getFilename(bucketId));
+            queues.get(directory < 0 ? directories.length : directory).add(bucketId);
+        }
+        int[] order = new int[Math.max(0, lastBucket - firstBucket + 1)];
+        int[] next = new int[queues.size()];
+        int i = 0;
+        while (i < order.length) {
+            for (int q = 0; q < queues.size(); q++) {
+                if (next[q] < queues.get(q).size()) {
+                    order[i++] = queues.get(q).get(next[q]++);
+                }
+            }
+        }
+        return order;
+    }
+
+    @Override
+    public String toString() {
+        int[] counts = new int[directories.length];
+        for (int directory : assignment.values()) {
+            counts[directory]++;
+        }
+        return "BucketPlacement " + Arrays.toString(directories) + " buckets per directory " + Arrays.toString(counts);
+    }
+}
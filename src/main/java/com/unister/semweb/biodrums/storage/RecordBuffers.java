@@ -0,0 +1,113 @@
+package com.unister.semweb.biodrums.storage;
+
+import java.nio.ByteBuffer;
+
+import com.unister.semweb.drums.bucket.hashfunction.RangeHashFunction;
+import com.unister.semweb.drums.storable.AbstractKVStorable;
+
+/**
+ * Helper methods to work on serialized fixed-size records without instantiating {@link AbstractKVStorable}s. Keys are
+ * compared byte by byte, every byte is interpreted as unsigned value. This is the same order the
+ * {@link RangeHashFunction} uses to route keys to buckets.
+ * 
+ * @author Martin Nettling
+ */
+public class RecordBuffers {
+
+    private RecordBuffers() {
+    }
+
+    /**
+     * Compares two keys, which are stored in byte-arrays.
+     * 
+     * @param a
+     *            the array containing the first key
+     * @param aOffset
+     *            the offset of the first key in <code>a</code>
+     * @param b
+     *            the array containing the second key
+     * @param bOffset
+     *            the offset of the second key in <code>b</code>
+     * @param length
+     *            the number of bytes to compare
+     * @return a negative number, zero or a positive number, if the first key is smaller, equal or larger than the
+     *         second key
+     */
+    public static int compareKeys(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            int diff = (a[aOffset + i] & 0xFF) - (b[bOffset + i] & 0xFF);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Compares the key of the record at the given absolute offset of the buffer with the given key. Only the first
+     * <code>key.length</code> bytes of the record are compared. The position of the buffer is not changed.
+     * 
+     * @param buffer
+     *            the buffer containing the record
+     * @param offset
+     *            the absolute offset of the record in the buffer
+     * @param key
+     *            the key to compare with
+     * @return a negative number, zero or a positive number, if the key of the record is smaller, equal or larger than
+     *         the given key
+     */
+    public static int compareKey(ByteBuffer buffer, int offset, byte[] key) {
+        for (int i = 0; i < key.length; i++) {
+            int diff = (buffer.get(offset + i) & 0xFF) - (key[i] & 0xFF);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Compares the keys of two records, which are stored in the same buffer. The position of the buffer is not
+     * changed.
+     * 
+     * @param buffer
+     *            the buffer containing both records
+     * @param aOffset
+     *            the absolute offset of the first record
+     * @param bOffset
+     *            the absolute offset of the second record
+     * @param keySize
+     *            the size of the keys in bytes
+     * @return a negative number, zero or a positive number, if the first key is smaller, equal or larger than the
+     *         second key
+     */
+    public static int compareKeys(ByteBuffer buffer, int aOffset, int bOffset, int keySize) {
+        for (int i = 0; i < keySize; i++) {
+            int diff = (buffer.get(aOffset + i) & 0xFF) - (buffer.get(bOffset + i) & 0xFF);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Copies the key of the record at the given absolute offset into a new array. The position of the buffer is not
+     * changed.
+     * 
+     * @param buffer
+     *            the buffer containing the record
+     * @param offset
+     *            the absolute offset of the record
+     * @param keySize
+     *            the size of the key in bytes
+     * @return the key of the record
+     */
+    public static byte[] getKey(ByteBuffer buffer, int offset, int keySize) {
+        byte[] key = new byte[keySize];
+        for (int i = 0; i < keySize; i++) {
+            key[i] = buffer.get(offset + i);
+        }
+        return key;
+    }
+}
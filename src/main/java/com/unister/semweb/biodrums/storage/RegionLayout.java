@@ -0,0 +1,149 @@
+package com.unister.semweb.biodrums.storage;
+
+import java.nio.ByteBuffer;
+
+import com.unister.semweb.biodrums.herv.HERV;
+import com.unister.semweb.biodrums.weigel.SNP;
+
+/**
+ * Describes how the records of a table are located on the genome, so that regions can be translated into key ranges
+ * and serialized records can be assigned to windows.
+ * 
+ * @author Martin Nettling
+ */
+public interface RegionLayout {
+
+    /** the layout of {@link HERV}s, the score is the e-value */
+    RegionLayout HERV_LAYOUT = new RegionLayout() {
+        @Override
+        public byte[] lowerKey(byte chromosome, int position) {
+            return HERV.lowerKey(chromosome, position);
+        }
+
+        @Override
+        public byte[] upperKey(byte chromosome, int position) {
+            return HERV.upperKey(chromosome, position);
+        }
+
+        @Override
+        public byte getChromosome(ByteBuffer records, int offset) {
+            return HERV.getChromosome(records, offset);
+        }
+
+        @Override
+        public int getPosition(ByteBuffer records, int offset) {
+            return HERV.getStartPositionChromosome(records, offset);
+        }
+
+        @Override
+        public int getEnd(ByteBuffer records, int offset) {
+            return HERV.getEndPositionChromosome(records, offset);
+        }
+
+        @Override
+        public double getScore(ByteBuffer records, int offset) {
+            return HERV.getEValue(records, offset);
+        }
+
+        @Override
+        public int getNumberOfChromosomes() {
+            return HERV.HUMAN_CHROMOSOME_LENGTHS.length;
+        }
+    };
+
+    /** the layout of {@link SNP}s, which have no score */
+    RegionLayout SNP_LAYOUT = new RegionLayout() {
+        @Override
+        public byte[] lowerKey(byte chromosome, int position) {
+            return SNP.lowerKey(chromosome, position);
+        }
+
+        @Override
+        public byte[] upperKey(byte chromosome, int position) {
+            return SNP.upperKey(chromosome, position);
+        }
+
+        @Override
+        public byte getChromosome(ByteBuffer records, int offset) {
+            return SNP.getSequenceId(records, offset);
+        }
+
+        @Override
+        public int getPosition(ByteBuffer records, int offset) {
+            return SNP.getBasePosition(records, offset);
+        }
+
+        @Override
+        public int getEnd(ByteBuffer records, int offset) {
+            return SNP.getBasePosition(records, offset);
+        }
+
+        @Override
+        public double getScore(ByteBuffer records, int offset) {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        @Override
+        public int getNumberOfChromosomes() {
+            return SNP.ARAB_CHROMOSOME_LENGTHS.length;
+        }
+    };
+
+    /**
+     * @param chromosome
+     *            the chromosome, starting with 1
+     * @param position
+     *            the position on the chromosome
+     * @return the smallest key of all records at the given position
+     */
+    byte[] lowerKey(byte chromosome, int position);
+
+    /**
+     * @param chromosome
+     *            the chromosome, starting with 1
+     * @param position
+     *            the position on the chromosome
+     * @return the largest key of all records at the given position
+     */
+    byte[] upperKey(byte chromosome, int position);
+
+    /**
+     * @param records
+     *            the buffer containing the record
+     * @param offset
+     *            the absolute offset of the record
+     * @return the chromosome of the record, starting with 1
+     */
+    byte getChromosome(ByteBuffer records, int offset);
+
+    /**
+     * @param records
+     *            the buffer containing the record
+     * @param offset
+     *            the absolute offset of the record
+     * @return the position of the record
+     */
+    int getPosition(ByteBuffer records, int offset);
+
+    /**
+     * @param records
+     *            the buffer containing the record
+     * @param offset
+     *            the absolute offset of the record
+     * @return the other end of the feature, equal to the position for single positions. For HERVs on the minus strand
+     *         the end is smaller than the position.
+     */
+    int getEnd(ByteBuffer records, int offset);
+
+    /**
+     * @param records
+     *            the buffer containing the record
+     * @param offset
+     *            the absolute offset of the record
+     * @return the score of the record, of which the minimum per window is reported
+     */
+    double getScore(ByteBuffer records, int offset);
+
+    /** @return the number of chromosomes, which are numbered from 1 */
+    int getNumberOfChromosomes();
+}
@@ -0,0 +1,70 @@
+package com.unister.semweb.biodrums.stream;
+
+import java.util.Spliterator;
+import java.util.function.DoubleConsumer;
+
+import com.unister.semweb.biodrums.mapped.MappedTable;
+
+/**
+ * A {@link Spliterator.OfDouble} over one double-field of the records of a {@link MappedTable}, which splits at bucket
+ * boundaries. The field is read in place, no record is decoded.
+ * 
+ * @author Martin Nettling
+ */
+public class DoubleFieldSpliterator implements Spliterator.OfDouble {
+    private final RecordRange range;
+    private final RecordDoubleFunction field;
+
+    /**
+     * @param table
+     *            the table
+     * @param lowerKey
+     *            the smallest key, <code>null</code> to start at the first record
+     * @param upperKey
+     *            the largest key, <code>null</code> to end at the last record
+     * @param field
+     *            reads the field from a serialized record
+     */
+    public DoubleFieldSpliterator(MappedTable<?> table, byte[] lowerKey, byte[] upperKey, RecordDoubleFunction field) {
+        this(RecordRange.between(table, lowerKey, upperKey), field);
+    }
+
+    private DoubleFieldSpliterator(RecordRange range, RecordDoubleFunction field) {
+        this.range = range;
+        this.field = field;
+    }
+
+    @Override
+    public boolean tryAdvance(DoubleConsumer action) {
+        int offset = range.next();
+        if (offset < 0) {
+            return false;
+        }
+        action.accept(field.applyAsDouble(range.getRecords(), offset));
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(DoubleConsumer action) {
+        int offset;
+        while ((offset = range.next()) >= 0) {
+            action.accept(field.applyAsDouble(range.getRecords(), offset));
+        }
+    }
+
+    @Override
+    public Spliterator.OfDouble trySplit() {
+        RecordRange prefix = range.split();
+        return prefix == null ? null : new DoubleFieldSpliterator(prefix, field);
+    }
+
+    @Override
+    public long estimateSize() {
+        return range.size();
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | IMMUTABLE | SIZED | SUBSIZED;
+    }
+}
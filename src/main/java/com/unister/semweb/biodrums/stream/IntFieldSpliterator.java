@@ -0,0 +1,70 @@
+package com.unister.semweb.biodrums.stream;
+
+import java.util.Spliterator;
+import java.util.function.IntConsumer;
+
+import com.unister.semweb.biodrums.mapped.MappedTable;
+
+/**
+ * A {@link Spliterator.OfInt} over one int-field of the records of a {@link MappedTable}, which splits at bucket
+ * boundaries. The field is read in place, no record is decoded.
+ * 
+ * @author Martin Nettling
+ */
+public class IntFieldSpliterator implements Spliterator.OfInt {
+    private final RecordRange range;
+    private final RecordIntFunction field;
+
+    /**
+     * @param table
+     *            the table
+     * @param lowerKey
+     *            the smallest key, <code>null</code> to start at the first record
+     * @param upperKey
+     *            the largest key, <code>null</code> to end at the last record
+     * @param field
+     *            reads the field from a serialized record
+     */
+    public IntFieldSpliterator(MappedTable<?> table, byte[] lowerKey, byte[] upperKey, RecordIntFunction field) {
+        this(RecordRange.between(table, lowerKey, upperKey), field);
+    }
+
+    private IntFieldSpliterator(RecordRange range, RecordIntFunction field) {
+        this.range = range;
+        this.field = field;
+    }
+
+    @Override
+    public boolean tryAdvance(IntConsumer action) {
+        int offset = range.next();
+        if (offset < 0) {
+            return false;
+        }
+        action.accept(field.applyAsInt(range.getRecords(), offset));
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(IntConsumer action) {
+        int offset;
+        while ((offset = range.next()) >= 0) {
+            action.accept(field.applyAsInt(range.getRecords(), offset));
+        }
+    }
+
+    @Override
+    public Spliterator.OfInt trySplit() {
+        RecordRange prefix = range.split();
+        return prefix == null ? null : new IntFieldSpliterator(prefix, field);
+    }
+
+    @Override
+    public long estimateSize() {
+        return range.size();
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | IMMUTABLE | SIZED | SUBSIZED;
+    }
+}
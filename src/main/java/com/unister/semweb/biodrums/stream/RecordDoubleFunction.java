@@ -0,0 +1,21 @@
+package com.unister.semweb.biodrums.stream;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reads a double-field of a serialized record, e.g. <code>HERV::getEValue</code>.
+ * 
+ * @author Martin Nettling
+ */
+@FunctionalInterface
+public interface RecordDoubleFunction {
+
+    /**
+     * @param records
+     *            the buffer containing the record
+     * @param offset
+     *            the absolute offset of the record
+     * @return the value of the field
+     */
+    double applyAsDouble(ByteBuffer records, int offset);
+}
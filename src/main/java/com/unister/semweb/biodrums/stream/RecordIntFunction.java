@@ -0,0 +1,21 @@
+package com.unister.semweb.biodrums.stream;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reads an int-field of a serialized record, e.g. <code>HERV::getStartPositionChromosome</code>.
+ * 
+ * @author Martin Nettling
+ */
+@FunctionalInterface
+public interface RecordIntFunction {
+
+    /**
+     * @param records
+     *            the buffer containing the record
+     * @param offset
+     *            the absolute offset of the record
+     * @return the value of the field
+     */
+    int applyAsInt(ByteBuffer records, int offset);
+}
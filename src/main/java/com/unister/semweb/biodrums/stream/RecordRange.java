@@ -0,0 +1,122 @@
+package com.unister.semweb.biodrums.stream;
+
+import java.nio.ByteBuffer;
+
+import com.unister.semweb.biodrums.mapped.MappedTable;
+
+/**
+ * The records of a {@link MappedTable} from a start position to an end position, where a position is a mapped chunk and
+ * the index of a record in this chunk. A range is consumed from its start and can be split at a chunk boundary, which
+ * is a bucket boundary for buckets smaller than 2 GB. A range within one chunk is split in the middle.
+ * 
+ * @author Martin Nettling
+ */
+class RecordRange {
+    /** ranges with less records are not split */
+    private static final int MIN_SPLIT_SIZE = 1024;
+
+    private final MappedTable<?> table;
+    private final int elementSize;
+
+    private int chunk;
+    private int index;
+
+    /** the last chunk of the range */
+    private final int lastChunk;
+
+    /** the index behind the last record in the last chunk */
+    private final int lastEnd;
+
+    RecordRange(MappedTable<?> table, int chunk, int index, int lastChunk, int lastEnd) {
+        this.table = table;
+        this.elementSize = table.getElementSize();
+        this.chunk = chunk;
+        this.index = index;
+        this.lastChunk = lastChunk;
+        this.lastEnd = lastEnd;
+    }
+
+    /**
+     * Creates the range of all records between the given keys.
+     * 
+     * @param table
+     *            the table
+     * @param lowerKey
+     *            the smallest key, <code>null</code> to start at the first record
+     * @param upperKey
+     *            the largest key, <code>null</code> to end at the last record
+     * @return the range
+     */
+    static RecordRange between(MappedTable<?> table, byte[] lowerKey, byte[] upperKey) {
+        int firstChunk = table.getFirstChunk(lowerKey);
+        int lastChunk = table.getLastChunk(upperKey);
+        int firstIndex = lowerKey == null ? 0 : table.lowerBound(firstChunk, lowerKey);
+        int lastEnd = upperKey == null ? table.getNumberOfRecords(lastChunk) : table.upperBound(lastChunk, upperKey);
+        return new RecordRange(table, firstChunk, firstIndex, lastChunk, lastEnd);
+    }
+
+    private int end(int chunk) {
+        return chunk == lastChunk ? lastEnd : table.getNumberOfRecords(chunk);
+    }
+
+    /**
+     * Moves to the next record.
+     * 
+     * @return the absolute offset of the record in {@link #getRecords()}, -1 if the range is consumed
+     */
+    int next() {
+        while (chunk <= lastChunk) {
+            if (index < end(chunk)) {
+                return elementSize * index++;
+            }
+            chunk++;
+            index = 0;
+        }
+        return -1;
+    }
+
+    /** @return the current chunk */
+    int getChunk() {
+        return chunk;
+    }
+
+    /** @return the records of the current chunk */
+    ByteBuffer getRecords() {
+        return table.getChunk(chunk);
+    }
+
+    /**
+     * Splits off the first part of this range.
+     * 
+     * @return the first part, this range continues behind it. <code>null</code> if the range is too small.
+     */
+    RecordRange split() {
+        if (chunk < lastChunk) {
+            int middle = (chunk + lastChunk + 1) >>> 1;
+            RecordRange prefix = new RecordRange(table, chunk, index, middle - 1, table.getNumberOfRecords(middle - 1));
+            chunk = middle;
+            index = 0;
+            return prefix;
+        }
+        int end = end(chunk);
+        if (end - index < 2 * MIN_SPLIT_SIZE) {
+            return null;
+        }
+        int middle = (index + end) >>> 1;
+        RecordRange prefix = new RecordRange(table, chunk, index, chunk, middle);
+        index = middle;
+        return prefix;
+    }
+
+    /** @return the exact number of remaining records */
+    long size() {
+        if (chunk > lastChunk) {
+            return 0;
+        }
+        long size = -index;
+        for (int i = chunk; i <= lastChunk; i++) {
+            size += end(i);
+        }
+        return Math.max(0, size);
+    }
+}
@@ -0,0 +1,64 @@
+package com.unister.semweb.biodrums.stream;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import com.unister.semweb.biodrums.mapped.MappedTable;
+import com.unister.semweb.drums.storable.AbstractKVStorable;
+
+/**
+ * A {@link Spliterator} over the records of a {@link MappedTable}, which splits at bucket boundaries, see
+ * {@link RecordRange}. Each record is decoded into a new object.
+ * 
+ * @author Martin Nettling
+ * 
+ * @param <Data>
+ *            the type of the records
+ */
+public class TableSpliterator<Data extends AbstractKVStorable> implements Spliterator<Data> {
+    private final MappedTable<Data> table;
+    private final RecordRange range;
+
+    /**
+     * @param table
+     *            the table
+     * @param lowerKey
+     *            the smallest key, <code>null</code> to start at the first record
+     * @param upperKey
+     *            the largest key, <code>null</code> to end at the last record
+     */
+    public TableSpliterator(MappedTable<Data> table, byte[] lowerKey, byte[] upperKey) {
+        this(table, RecordRange.between(table, lowerKey, upperKey));
+    }
+
+    private TableSpliterator(MappedTable<Data> table, RecordRange range) {
+        this.table = table;
+        this.range = range;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Data> action) {
+        int offset = range.next();
+        if (offset < 0) {
+            return false;
+        }
+        action.accept(table.decode(range.getChunk(), offset));
+        return true;
+    }
+
+    @Override
+    public Spliterator<Data> trySplit() {
+        RecordRange prefix = range.split();
+        return prefix == null ? null : new TableSpliterator<Data>(table, prefix);
+    }
+
+    @Override
+    public long estimateSize() {
+        return range.size();
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL | IMMUTABLE | SIZED | SUBSIZED;
+    }
+}
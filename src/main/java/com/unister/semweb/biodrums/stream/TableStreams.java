@@ -0,0 +1,79 @@
+package com.unister.semweb.biodrums.stream;
+
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.unister.semweb.biodrums.mapped.MappedTable;
+import com.unister.semweb.drums.storable.AbstractKVStorable;
+
+/**
+ * Creates {@link Stream}s over the records of a {@link MappedTable}. Parallel streams split the range at the bucket
+ * boundaries given by the {@link com.unister.semweb.drums.bucket.hashfunction.RangeHashFunction}, so each thread reads
+ * whole buckets. Primitive streams read one field in place without decoding the records, e.g.
+ * 
+ * <pre>
+ * IntStream positions = TableStreams.intStream(table, HERV.lowerKey(chr, 0), HERV.upperKey(chr, Integer.MAX_VALUE),
+ *         HERV::getStartPositionChromosome, true);
+ * </pre>
+ * 
+ * @author Martin Nettling
+ */
+public class TableStreams {
+
+    private TableStreams() {
+    }
+
+    /**
+     * @param table
+     *            the table
+     * @param lowerKey
+     *            the smallest key, <code>null</code> to start at the first record
+     * @param upperKey
+     *            the largest key, <code>null</code> to end at the last record
+     * @param parallel
+     *            <code>true</code> for a parallel stream
+     * @return a stream of all records between the given keys in key order
+     */
+    public static <Data extends AbstractKVStorable> Stream<Data> stream(MappedTable<Data> table, byte[] lowerKey,
+            byte[] upperKey, boolean parallel) {
+        return StreamSupport.stream(new TableSpliterator<Data>(table, lowerKey, upperKey), parallel);
+    }
+
+    /**
+     * @param table
+     *            the table
+     * @param lowerKey
+     *            the smallest key, <code>null</code> to start at the first record
+     * @param upperKey
+     *            the largest key, <code>null</code> to end at the last record
+     * @param field
+     *            reads the field from a serialized record
+     * @param parallel
+     *            <code>true</code> for a parallel stream
+     * @return a stream of the field of all records between the given keys in key order
+     */
+    public static IntStream intStream(MappedTable<?> table, byte[] lowerKey, byte[] upperKey,
+            RecordIntFunction field, boolean parallel) {
+        return StreamSupport.intStream(new IntFieldSpliterator(table, lowerKey, upperKey, field), parallel);
+    }
+
+    /**
+     * @param table
+     *            the table
+     * @param lowerKey
+     *            the smallest key, <code>null</code> to start at the first record
+     * @param upperKey
+     *            the largest key, <code>null</code> to end at the last record
+     * @param field
+     *            reads the field from a serialized record
+     * @param parallel
+     *            <code>true</code> for a parallel stream
+     * @return a stream of the field of all records between the given keys in key order
+     */
+    public static DoubleStream doubleStream(MappedTable<?> table, byte[] lowerKey, byte[] upperKey,
+            RecordDoubleFunction field, boolean parallel) {
+        return StreamSupport.doubleStream(new DoubleFieldSpliterator(table, lowerKey, upperKey, field), parallel);
+    }
+}
@@ -0,0 +1,324 @@
+package com.unister.semweb.biodrums.tiles;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.unister.semweb.biodrums.aggregate.HERVWindowStatistics;
+import com.unister.semweb.biodrums.aggregate.SNPWindowStatistics;
+import com.unister.semweb.biodrums.aggregate.WindowAggregator;
+import com.unister.semweb.biodrums.herv.HERV;
+import com.unister.semweb.biodrums.scan.ParallelBucketScan;
+import com.unister.semweb.biodrums.storage.BucketFiles;
+import com.unister.semweb.biodrums.weigel.SNP;
+
+/**
+ * A pyramid of precomputed summary tiles for genome browsers. For several zoom levels each chromosome is divided into
+ * tiles of a fixed number of positions. Each tile stores the number of records and the minimal score of its records,
+ * e.g. the e-value of {@link HERV}s. Zoomed-out views are answered from the tiles instead of the buckets.<br>
+ * <br>
+ * The pyramid is built once with {@link #buildHERV(ParallelBucketScan, int[])} or
+ * {@link #buildSNP(ParallelBucketScan, int[])} and then updated with each insert, see {@link TiledDRUMS}. It is
+ * stored in the file {@link #FILE_NAME} in the directory of the table. An instance is thread-safe.
+ * 
+ * @author Martin Nettling
+ */
+public class SummaryTilePyramid {
+    private static final Logger log = LoggerFactory.getLogger(SummaryTilePyramid.class);
+
+    /** the name of the file, in which the pyramid is stored next to the table */
+    public static final String FILE_NAME = "SummaryTiles.bin";
+
+    /** the default sizes of the tiles: 10 kb, 100 kb, 1 Mb and 10 Mb */
+    public static final int[] DEFAULT_BIN_SIZES = { 10000, 100000, 1000000, 10000000 };
+
+    /** identifies the file format */
+    private static final int MAGIC = 0x42545031;
+
+    private final int[] binSizes;
+
+    private final int[] chromosomeLengths;
+
+    /** the number of records per tile, indexed by level, chromosome - 1 and tile */
+    private final long[][][] counts;
+
+    /** the minimal score per tile, indexed by level, chromosome - 1 and tile */
+    private final double[][][] minScores;
+
+    /**
+     * Creates an empty pyramid.
+     * 
+     * @param chromosomeLengths
+     *            the length of each chromosome, the first entry belongs to chromosome 1
+     * @param binSizes
+     *            the sizes of the tiles of each level in ascending order. Each size must be a multiple of the previous
+     *            one.
+     */
+    public SummaryTilePyramid(int[] chromosomeLengths, int[] binSizes) {
+        for (int level = 1; level < binSizes.length; level++) {
+            if (binSizes[level] % binSizes[level - 1] != 0) {
+                throw new IllegalArgumentException("The bin size " + binSizes[level] + " is no multiple of "
+                        + binSizes[level - 1]);
+            }
+        }
+        this.binSizes = binSizes.clone();
+        this.chromosomeLengths = chromosomeLengths.clone();
+        this.counts = new long[binSizes.length][chromosomeLengths.length][];
+        this.minScores = new double[binSizes.length][chromosomeLengths.length][];
+        for (int level = 0; level < binSizes.length; level++) {
+            for (int chromosome = 0; chromosome < chromosomeLengths.length; chromosome++) {
+                int tiles = chromosomeLengths[chromosome] / binSizes[level] + 1;
+                counts[level][chromosome] = new long[tiles];
+                minScores[level][chromosome] = new double[tiles];
+                Arrays.fill(minScores[level][chromosome], Double.POSITIVE_INFINITY);
+            }
+        }
+    }
+
+    /**
+     * Adds one record to all levels. Records on unknown chromosomes or outside of the length of their chromosome are
+     * ignored, like in {@link #buildHERV(ParallelBucketScan, int[])}.
+     * 
+     * @param chromosome
+     *            the chromosome of the record, starting with 1
+     * @param position
+     *            the position of the record, between 0 and the length of the chromosome
+     * @param score
+     *            the score of the record
+     */
+    public synchronized void add(byte chromosome, int position, double score) {
+        add(chromosome, position, 1, score);
+    }
+
+    private void add(byte chromosome, int position, long count, double score) {
+        int index = chromosome - 1;
+        if (index < 0 || index >= chromosomeLengths.length) {
+            log.debug("Ignoring record on unknown chromosome {}", chromosome);
+            return;
+        }
+        if (position < 0 || position > chromosomeLengths[index]) {
+            log.debug("Ignoring record at {} outside of chromosome {}", position, chromosome);
+            return;
+        }
+        for (int level = 0; level < binSizes.length; level++) {
+            long[] levelCounts = counts[level][index];
+            int tile = position / binSizes[level];
+            levelCounts[tile] += count;
+            if (score < minScores[level][index][tile]) {
+                minScores[level][index][tile] = score;
+            }
+        }
+    }
+
+    /** @return the sizes of the tiles of each level */
+    public int[] getBinSizes() {
+        return binSizes.clone();
+    }
+
+    /**
+     * Returns the tiles covering <code>[start, end]</code> from the finest level, which needs at most
+     * <code>maxTiles</code> tiles. If no level is coarse enough, the coarsest level is used.
+     * 
+     * @param chromosome
+     *            the chromosome, starting with 1
+     * @param start
+     *            the first position of the range
+     * @param end
+     *            the last position of the range
+     * @param maxTiles
+     *            the maximal number of tiles, e.g. the width of the view in pixels
+     * @return the tiles of the range
+     */
+    public TileRange query(byte chromosome, int start, int end, int maxTiles) {
+        int level = 0;
+        while (level < binSizes.length - 1 && end / binSizes[level] - start / binSizes[level] + 1 > maxTiles) {
+            level++;
+        }
+        return queryLevel(chromosome, start, end, level);
+    }
+
+    /**
+     * Returns the tiles of the given level covering <code>[start, end]</code>.
+     * 
+     * @param chromosome
+     *            the chromosome, starting with 1
+     * @param start
+     *            the first position of the range
+     * @param end
+     *            the last position of the range
+     * @param level
+     *            the level, 0 is the finest level
+     * @return the tiles of the range, an empty range for an unknown chromosome
+     */
+    public synchronized TileRange queryLevel(byte chromosome, int start, int end, int level) {
+        if (level < 0 || level >= binSizes.length) {
+            throw new IllegalArgumentException("The pyramid has no level " + level + ", only " + binSizes.length
+                    + " levels");
+        }
+        int index = chromosome - 1;
+        if (index < 0 || index >= chromosomeLengths.length) {
+            return new TileRange(binSizes[level], 0, new long[0], new double[0]);
+        }
+        long[] levelCounts = counts[level][index];
+        int firstTile = Math.max(0, start / binSizes[level]);
+        int lastTile = Math.min(levelCounts.length - 1, end / binSizes[level]);
+        if (lastTile < firstTile) {
+            return new TileRange(binSizes[level], firstTile * binSizes[level], new long[0], new double[0]);
+        }
+        return new TileRange(binSizes[level], firstTile * binSizes[level], Arrays.copyOfRange(levelCounts,
+                firstTile, lastTile + 1), Arrays.copyOfRange(minScores[level][index], firstTile, lastTile + 1));
+    }
+
+    /**
+     * Builds the pyramid of a HERV-table. The finest level is aggregated by the {@link WindowAggregator}, the other
+     * levels are derived from it. Only HERVs starting within {@link HERV#HUMAN_CHROMOSOME_LENGTHS} are counted.
+     * 
+     * @param scan
+     *            the parallel scan over the HERV-table
+     * @param binSizes
+     *            the sizes of the tiles of each level
+     * @return the pyramid
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public static SummaryTilePyramid buildHERV(ParallelBucketScan<HERV> scan, int[] binSizes) throws IOException,
+            InterruptedException {
+        SummaryTilePyramid pyramid = new SummaryTilePyramid(HERV.HUMAN_CHROMOSOME_LENGTHS, binSizes);
+        for (int i = 0; i < HERV.HUMAN_CHROMOSOME_LENGTHS.length; i++) {
+            byte chromosome = (byte) (i + 1);
+            HERVWindowStatistics statistics = WindowAggregator.aggregateHERVs(scan, chromosome, 0,
+                    HERV.HUMAN_CHROMOSOME_LENGTHS[i], binSizes[0]);
+            pyramid.addFinestLevel(chromosome, statistics.getCounts(), statistics.getMinEValues());
+        }
+        return pyramid;
+    }
+
+    /**
+     * Builds the pyramid of a SNP-table. The finest level is aggregated by the {@link WindowAggregator}, the other
+     * levels are derived from it.
+     * 
+     * @param scan
+     *            the parallel scan over the SNP-table
+     * @param binSizes
+     *            the sizes of the tiles of each level
+     * @return the pyramid
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public static SummaryTilePyramid buildSNP(ParallelBucketScan<SNP> scan, int[] binSizes) throws IOException,
+            InterruptedException {
+        SummaryTilePyramid pyramid = new SummaryTilePyramid(SNP.ARAB_CHROMOSOME_LENGTHS, binSizes);
+        for (int i = 0; i < SNP.ARAB_CHROMOSOME_LENGTHS.length; i++) {
+            byte sequenceId = (byte) (i + 1);
+            SNPWindowStatistics statistics = WindowAggregator.aggregateSNPs(scan, sequenceId, 0,
+                    SNP.ARAB_CHROMOSOME_LENGTHS[i], binSizes[0]);
+            pyramid.addFinestLevel(sequenceId, statistics.getCounts(), null);
+        }
+        return pyramid;
+    }
+
+    /** adds the windows of the finest level */
+    private synchronized void addFinestLevel(byte chromosome, long[] windowCounts, double[] windowMinScores) {
+        for (int window = 0; window < windowCounts.length; window++) {
+            if (windowCounts[window] > 0) {
+                double score = windowMinScores == null ? Double.POSITIVE_INFINITY : windowMinScores[window];
+                add(chromosome, (int) Math.min(Integer.MAX_VALUE, (long) window * binSizes[0]), windowCounts[window],
+                        score);
+            }
+        }
+    }
+
+    /**
+     * Writes the pyramid to the given file. The file is synced and replaced atomically, so readers never see a
+     * partially written pyramid.
+     * 
+     * @param file
+     *            the file to write
+     * @throws IOException
+     */
+    public synchronized void save(File file) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        FileOutputStream fileOut = new FileOutputStream(tmp);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut));
+        try {
+            out.writeInt(MAGIC);
+            writeInts(out, binSizes);
+            writeInts(out, chromosomeLengths);
+            for (int level = 0; level < binSizes.length; level++) {
+                for (int chromosome = 0; chromosome < chromosomeLengths.length; chromosome++) {
+                    for (long count : counts[level][chromosome]) {
+                        out.writeLong(count);
+                    }
+                    for (double score : minScores[level][chromosome]) {
+                        out.writeDouble(score);
+                    }
+                }
+            }
+            out.flush();
+            fileOut.getFD().sync();
+        } finally {
+            out.close();
+        }
+        BucketFiles.replace(tmp, file);
+    }
+
+    /**
+     * Reads a pyramid, which was written by {@link #save(File)}.
+     * 
+     * @param file
+     *            the file to read
+     * @return the pyramid
+     * @throws IOException
+     *             if the file could not be read or has an unknown format
+     */
+    public static SummaryTilePyramid load(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " contains no summary tiles");
+            }
+            int[] binSizes = readInts(in);
+            int[] chromosomeLengths = readInts(in);
+            SummaryTilePyramid pyramid = new SummaryTilePyramid(chromosomeLengths, binSizes);
+            for (int level = 0; level < pyramid.binSizes.length; level++) {
+                for (int chromosome = 0; chromosome < pyramid.chromosomeLengths.length; chromosome++) {
+                    long[] levelCounts = pyramid.counts[level][chromosome];
+                    for (int tile = 0; tile < levelCounts.length; tile++) {
+                        levelCounts[tile] = in.readLong();
+                    }
+                    double[] levelScores = pyramid.minScores[level][chromosome];
+                    for (int tile = 0; tile < levelScores.length; tile++) {
+                        levelScores[tile] = in.readDouble();
+                    }
+                }
+            }
+            return pyramid;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    private static int[] readInts(DataInputStream in) throws IOException {
+        int[] values = new int[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+}
@@ -0,0 +1,40 @@
+package com.unister.semweb.biodrums.tiles;
+
+/**
+ * The tiles of one zoom level, which cover a queried range of a chromosome.
+ * 
+ * @author Martin Nettling
+ */
+public class TileRange {
+    private final int binSize;
+    private final int start;
+    private final long[] counts;
+    private final double[] minScores;
+
+    TileRange(int binSize, int start, long[] counts, double[] minScores) {
+        this.binSize = binSize;
+        this.start = start;
+        this.counts = counts;
+        this.minScores = minScores;
+    }
+
+    /** @return the number of positions per tile */
+    public int getBinSize() {
+        return binSize;
+    }
+
+    /** @return the first position of the first tile */
+    public int getStart() {
+        return start;
+    }
+
+    /** @return the number of records per tile */
+    public long[] getCounts() {
+        return counts;
+    }
+
+    /** @return the minimal score per tile, e.g. the e-value of HERVs; {@link Double#POSITIVE_INFINITY} if empty */
+    public double[] getMinScores() {
+        return minScores;
+    }
+}
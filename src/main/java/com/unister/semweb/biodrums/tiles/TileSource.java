@@ -0,0 +1,73 @@
+package com.unister.semweb.biodrums.tiles;
+
+import com.unister.semweb.biodrums.herv.HERV;
+import com.unister.semweb.biodrums.weigel.SNP;
+import com.unister.semweb.drums.storable.AbstractKVStorable;
+
+/**
+ * Extracts the values a {@link SummaryTilePyramid} needs from a record.
+ * 
+ * @author Martin Nettling
+ * 
+ * @param <Data>
+ *            the type of the records
+ */
+public interface TileSource<Data extends AbstractKVStorable> {
+
+    /** the source for {@link HERV}s, the score is the e-value */
+    TileSource<HERV> HERV_SOURCE = new TileSource<HERV>() {
+        @Override
+        public byte getChromosome(HERV herv) {
+            return herv.getChromosome();
+        }
+
+        @Override
+        public int getPosition(HERV herv) {
+            return herv.getStartPositionChromosome();
+        }
+
+        @Override
+        public double getScore(HERV herv) {
+            return herv.getEValue();
+        }
+    };
+
+    /** the source for {@link SNP}s, which have no score */
+    TileSource<SNP> SNP_SOURCE = new TileSource<SNP>() {
+        @Override
+        public byte getChromosome(SNP snp) {
+            return snp.getSequenceId();
+        }
+
+        @Override
+        public int getPosition(SNP snp) {
+            return snp.getBasePosition();
+        }
+
+        @Override
+        public double getScore(SNP snp) {
+            return Double.POSITIVE_INFINITY;
+        }
+    };
+
+    /**
+     * @param data
+     *            the record
+     * @return the chromosome of the record, starting with 1
+     */
+    byte getChromosome(Data data);
+
+    /**
+     * @param data
+     *            the record
+     * @return the position of the record on its chromosome
+     */
+    int getPosition(Data data);
+
+    /**
+     * @param data
+     *            the record
+     * @return the score of the record, of which the minimum per tile is stored
+     */
+    double getScore(Data data);
+}
@@ -0,0 +1,97 @@
+package com.unister.semweb.biodrums.tiles;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.unister.semweb.drums.DRUMSParameterSet;
+import com.unister.semweb.drums.api.DRUMS;
+import com.unister.semweb.drums.api.DRUMSException;
+import com.unister.semweb.drums.storable.AbstractKVStorable;
+
+/**
+ * Wraps a {@link DRUMS}-table and keeps its {@link SummaryTilePyramid} up to date. Each inserted record is added to
+ * the pyramid, the pyramid is written to {@link SummaryTilePyramid#FILE_NAME} in the table directory on
+ * {@link #save()} and {@link #close()}.<br>
+ * <br>
+ * The counts of the tiles are insert events, not distinct keys: the pyramid does not know whether a key already
+ * exists in the table, so a record, which is inserted or merged again, is counted again, and the minimal score of a
+ * tile keeps the score of a replaced record. Looking up each key before the insert would cost a random read per
+ * record. If records are re-inserted, the pyramid should be rebuilt afterwards, e.g. with
+ * {@link SummaryTilePyramid#buildHERV(com.unister.semweb.biodrums.scan.ParallelBucketScan, int[])}.
+ * 
+ * @author Martin Nettling
+ * 
+ * @param <Data>
+ *            the type of the records
+ */
+public class TiledDRUMS<Data extends AbstractKVStorable> {
+    private final DRUMS<Data> drums;
+    private final SummaryTilePyramid pyramid;
+    private final TileSource<Data> source;
+    private final File file;
+
+    /**
+     * @param drums
+     *            the table to wrap
+     * @param gp
+     *            the parameters of the table, the pyramid is stored in its database directory
+     * @param pyramid
+     *            the pyramid of the table
+     * @param source
+     *            extracts chromosome, position and score from the records
+     */
+    public TiledDRUMS(DRUMS<Data> drums, DRUMSParameterSet<Data> gp, SummaryTilePyramid pyramid,
+            TileSource<Data> source) {
+        this.drums = drums;
+        this.pyramid = pyramid;
+        this.source = source;
+        this.file = new File(gp.DATABASE_DIRECTORY, SummaryTilePyramid.FILE_NAME);
+    }
+
+    /**
+     * Inserts or merges the given records into the table and adds them to the pyramid, also if their keys already
+     * exist.
+     * 
+     * @param records
+     *            the records to insert
+     * @throws DRUMSException
+     * @throws InterruptedException
+     */
+    public void insertOrMerge(Data... records) throws DRUMSException, InterruptedException {
+        drums.insertOrMerge(records);
+        for (Data record : records) {
+            pyramid.add(source.getChromosome(record), source.getPosition(record), source.getScore(record));
+        }
+    }
+
+    /**
+     * Writes the pyramid to the table directory.
+     * 
+     * @throws IOException
+     */
+    public void save() throws IOException {
+        pyramid.save(file);
+    }
+
+    /** @return the pyramid of the table */
+    public SummaryTilePyramid getPyramid() {
+        return pyramid;
+    }
+
+    /** @return the wrapped table */
+    public DRUMS<Data> getDRUMS() {
+        return drums;
+    }
+
+    /**
+     * Closes the table and writes the pyramid.
+     * 
+     * @throws IOException
+     * @throws DRUMSException
+     * @throws InterruptedException
+     */
+    public void close() throws IOException, DRUMSException, InterruptedException {
+        drums.close();
+        save();
+    }
+}
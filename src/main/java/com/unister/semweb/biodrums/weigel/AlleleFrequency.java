@@ -0,0 +1,265 @@
+package com.unister.semweb.biodrums.weigel;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import com.unister.semweb.drums.bucket.hashfunction.RangeHashFunction;
+import com.unister.semweb.drums.storable.AbstractKVStorable;
+import com.unister.semweb.drums.util.Bytes;
+
+/**
+ * The number of ecotypes carrying each base at one SNP position, derived from a {@link SNP}-table. An object of this
+ * class needs 16 bytes in Byte-Representation. The first 5 bytes represent the key. <br>
+ * <br>
+ * <code>
+ * ------------------------- 16 bytes -------------------------<br>
+ * .... key ......... | .... value ............................<br>
+ * seq id .| position | from-base | A ..... | C | G | T | other<br>
+ * 1 bytes | 4 bytes .| 1 bytes ..| 2 bytes | 2 | 2 | 2 | 2 ..<br>
+ * ------------------------------------------------------------<br>
+ * </code>
+ * 
+ * @author Martin Nettling
+ */
+public class AlleleFrequency extends AbstractKVStorable {
+    private static final long serialVersionUID = -2920348315873045717L;
+
+    /** the number of bytes of a serialized {@link AlleleFrequency} */
+    public static final int ELEMENT_SIZE = 16;
+
+    /** The size of the key */
+    public static final int KEY_SIZE = 5;
+
+    /** offset of "sequence id" value in {@link AlleleFrequency#key} */
+    public static final int KEY_OFFSET_SEQUENCEID = 0;
+    /** offset of "position" value in {@link AlleleFrequency#key} */
+    public static final int KEY_OFFSET_POSITION = 1;
+
+    /** offset of the "from-base" in {@link AlleleFrequency#value} */
+    public static final int VALUE_OFFSET_FROM = 0;
+    /** offset of the first count in {@link AlleleFrequency#value}, the counts are ordered A, C, G, T, other */
+    public static final int VALUE_OFFSET_COUNTS = 1;
+
+    /** the number of counted bases: A, C, G, T and other */
+    public static final int NUMBER_OF_BASES = 5;
+
+    /** the bases in the order of the counts, other bases are counted as 'N' */
+    public static final byte[] BASES = { 'A', 'C', 'G', 'T', 'N' };
+
+    /**
+     * Generates a new {@link AlleleFrequency}-instance. Initializes empty {@link AlleleFrequency#key} and
+     * {@link AlleleFrequency#value}.
+     */
+    public AlleleFrequency() {
+        key = new byte[KEY_SIZE];
+        value = new byte[ELEMENT_SIZE - KEY_SIZE];
+    }
+
+    /**
+     * Generates a new {@link AlleleFrequency}-instance for the given position.
+     * 
+     * @param seqId
+     *            the id of the sequence
+     * @param position
+     *            the position on the sequence
+     */
+    public AlleleFrequency(byte seqId, int position) {
+        this();
+        key[KEY_OFFSET_SEQUENCEID] = seqId;
+        Bytes.putInt(key, KEY_OFFSET_POSITION, position);
+    }
+
+    @Override
+    public int getSize() {
+        return ELEMENT_SIZE;
+    }
+
+    /** @return the sequence id */
+    public byte getSequenceId() {
+        return key[KEY_OFFSET_SEQUENCEID];
+    }
+
+    /** @return the position on the sequence */
+    public int getBasePosition() {
+        return Bytes.toInt(key, KEY_OFFSET_POSITION);
+    }
+
+    /** @return the base in the reference genome */
+    public byte getFrom() {
+        return value[VALUE_OFFSET_FROM];
+    }
+
+    /**
+     * Sets the base in the reference genome.
+     * 
+     * @param from
+     *            the base
+     */
+    public void setFrom(byte from) {
+        value[VALUE_OFFSET_FROM] = from;
+    }
+
+    /**
+     * @param base
+     *            the base, e.g. <code>'A'</code>
+     * @return the number of ecotypes carrying the base
+     */
+    public int getCount(byte base) {
+        return Bytes.toChar(value, VALUE_OFFSET_COUNTS + 2 * baseIndex(base));
+    }
+
+    /**
+     * Sets the number of ecotypes carrying a base.
+     * 
+     * @param base
+     *            the base, e.g. <code>'A'</code>
+     * @param count
+     *            the number of ecotypes, at most {@link Character#MAX_VALUE}
+     */
+    public void setCount(byte base, int count) {
+        Bytes.putChar(value, VALUE_OFFSET_COUNTS + 2 * baseIndex(base), (char) Math.min(count, Character.MAX_VALUE));
+    }
+
+    /** @return the number of ecotypes with a SNP at this position */
+    public int getNumberOfEcotypes() {
+        int sum = 0;
+        for (byte base : BASES) {
+            sum += getCount(base);
+        }
+        return sum;
+    }
+
+    /**
+     * @param base
+     *            a base
+     * @return the index of the count of the base, bases other than A, C, G and T have the index 4
+     */
+    public static int baseIndex(byte base) {
+        switch (base) {
+        case 'A':
+        case 'a':
+            return 0;
+        case 'C':
+        case 'c':
+            return 1;
+        case 'G':
+        case 'g':
+            return 2;
+        case 'T':
+        case 't':
+            return 3;
+        default:
+            return 4;
+        }
+    }
+
+    /* accessors for serialized allele frequencies */
+
+    /**
+     * @param records
+     *            a buffer containing serialized {@link AlleleFrequency}s
+     * @param offset
+     *            the absolute offset of one record in the buffer
+     * @param base
+     *            the base, e.g. <code>'A'</code>
+     * @return the number of ecotypes carrying the base
+     */
+    public static int getCount(ByteBuffer records, int offset, byte base) {
+        return records.getChar(offset + KEY_SIZE + VALUE_OFFSET_COUNTS + 2 * baseIndex(base));
+    }
+
+    /**
+     * Writes a serialized {@link AlleleFrequency}.
+     * 
+     * @param out
+     *            the buffer to write to, at its position
+     * @param seqId
+     *            the id of the sequence
+     * @param position
+     *            the position on the sequence
+     * @param from
+     *            the base in the reference genome
+     * @param counts
+     *            the number of ecotypes per base in the order A, C, G, T, other
+     */
+    public static void put(ByteBuffer out, byte seqId, int position, byte from, int[] counts) {
+        out.put(seqId).putInt(position).put(from);
+        for (int i = 0; i < NUMBER_OF_BASES; i++) {
+            out.putChar((char) Math.min(counts[i], Character.MAX_VALUE));
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(getSequenceId()).append(" ");
+        sb.append(getBasePosition()).append(" ");
+        sb.append((char) getFrom()).append(":");
+        for (byte base : BASES) {
+            sb.append(" ").append((char) base).append("=").append(getCount(base));
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public void initFromByteBuffer(ByteBuffer bb) {
+        byte[] extractedKey = new byte[KEY_SIZE];
+        byte[] extractedVal = new byte[ELEMENT_SIZE - KEY_SIZE];
+        bb.get(extractedKey);
+        bb.get(extractedVal);
+
+        this.key = extractedKey;
+        this.value = extractedVal;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public AlleleFrequency fromByteBuffer(ByteBuffer bb) {
+        AlleleFrequency r = new AlleleFrequency();
+        r.initFromByteBuffer(bb);
+        return r;
+    }
+
+    @Override
+    public ByteBuffer toByteBuffer() {
+        ByteBuffer bb = ByteBuffer.allocate(ELEMENT_SIZE).put(key).put(value);
+        bb.rewind();
+        return bb;
+    }
+
+    @Override
+    public AlleleFrequency clone() {
+        return fromByteBuffer(toByteBuffer());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public AbstractKVStorable merge(AbstractKVStorable element) {
+        return element;
+    }
+
+    @Override
+    public void update(AbstractKVStorable element) {
+        this.value = ((AlleleFrequency) element).value.clone();
+    }
+
+    /**
+     * This method determines a {@link RangeHashFunction} for {@link SNP#ARAB_CHROMOSOME_LENGTHS}, which has the same
+     * bucket boundaries as {@link SNP#createHashFunction()}.
+     * 
+     * @return a {@link RangeHashFunction} for {@link AlleleFrequency}-data
+     */
+    public static RangeHashFunction createHashFunction() {
+        RangeHashFunction snpHashFunction = SNP.createHashFunction();
+        byte[][] snpRanges = snpHashFunction.getRanges();
+        byte[][] ranges = new byte[snpRanges.length][];
+        ArrayList<String> bucketNames = new ArrayList<String>();
+        for (int i = 0; i < snpRanges.length; i++) {
+            ranges[i] = Arrays.copyOf(snpRanges[i], KEY_SIZE);
+            bucketNames.add(snpHashFunction.getFilename(i));
+        }
+        return new RangeHashFunction(ranges, bucketNames.toArray(new String[0]),
+                "AlleleFrequency_RangeHashFunction.txt");
+    }
+}
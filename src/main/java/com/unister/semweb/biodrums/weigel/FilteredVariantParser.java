@@ -6,24 +6,39 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.util.ArrayList;
 import java.util.zip.GZIPInputStream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.unister.semweb.biodrums.ingest.IngestionCheckpoint;
+import com.unister.semweb.biodrums.ingest.ResumableSource;
+import com.unister.semweb.biodrums.monitoring.BioDRUMSMetrics;
+
 /**
+ * Parses filtered variant files, which may be gzipped. The file is streamed line by line. The position of the parser
+ * is the index of the next line, so an interrupted load can be resumed from an {@link IngestionCheckpoint}; a resumed
+ * parser reads and drops the lines before the checkpoint, since a gzipped file can't be positioned.<br>
+ * <br>
+ * Lines, which can't be parsed or belong to another sequence than the chromosomes 1 to 5, are skipped and counted in
+ * {@link #getErrorLines()}.
  * 
  * @author Martin Nettling
  */
-public class FilteredVariantParser {
+public class FilteredVariantParser implements ResumableSource<SNP> {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(FilteredVariantParser.class);
 
-    String[] lines;
-    int curLine;
+    BufferedReader reader;
+    long curLine;
     int ecotype_id;
 
+    /** Counter for lines which could not be parsed */
+    private long errorLines;
+
+    /** the metrics to record the parsed lines in, may be null */
+    private BioDRUMSMetrics metrics;
+
     /**
      * 
      * @param filename
@@ -33,56 +48,92 @@ public class FilteredVariantParser {
     public FilteredVariantParser(String filename, int ecotype_id) throws IOException {
         File f = new File(filename);
         curLine = 0;
+        InputStream is = new FileInputStream(f);
         if (f.getAbsolutePath().endsWith(".gz")) {
-            readFileToLinesZipped(f);
-        } else {
-            readFileToLinesUnzipped(f);
+            is = new GZIPInputStream(is);
         }
+        this.reader = new BufferedReader(new InputStreamReader(is));
         this.ecotype_id = ecotype_id;
-        LOGGER.info("Read {} lines from {}", lines.length, filename);
+        LOGGER.info("Reading {}", filename);
     }
 
-    private void readFileToLinesZipped(File f) throws IOException {
-        FileInputStream fis = new FileInputStream(f);
-        GZIPInputStream gis = new GZIPInputStream(fis);
-        this.readStream(gis);
-        gis.close();
-        fis.close();
+    /**
+     * Instantiates a new parser, which continues at the line of the given checkpoint.
+     * 
+     * @param filename
+     * @param ecotype_id
+     * @param checkpoint
+     *            the checkpoint to resume from
+     * @throws IOException
+     */
+    public FilteredVariantParser(String filename, int ecotype_id, IngestionCheckpoint checkpoint) throws IOException {
+        this(filename, ecotype_id);
+        while (curLine < checkpoint.getPosition() && reader.readLine() != null) {
+            curLine++;
+        }
+        errorLines = checkpoint.getErrorLines();
     }
 
-    private void readFileToLinesUnzipped(File f) throws IOException {
-        FileInputStream fis = new FileInputStream(f);
-        this.readStream(fis);
-        fis.close();
+    /**
+     * This method to read the next correct line from the underlying file. It parses this line and instantiates a new
+     * {@link SNP} object. Lines, which can't be parsed, are skipped and counted as error lines.
+     * 
+     * @return the next {@link SNP}-object. NULL if no next object can be read.
+     * @throws IOException
+     */
+    @Override
+    public SNP readNext() throws IOException {
+        // skip lines until a new SNP-object could be read or the end of the file is reached
+        String line;
+        while ((line = reader.readLine()) != null) {
+            curLine++;
+            SNP snp = parseLine(line);
+            if (metrics != null) {
+                metrics.recordParsedLine(snp != null);
+            }
+            if (snp != null) {
+                return snp;
+            }
+            errorLines++;
+        }
+        return null;
     }
 
-    private void readStream(InputStream is) throws IOException {
-        BufferedReader br = new BufferedReader(new InputStreamReader(is));
-        this.readLines(br);
-        br.close();
+    /** @return the index of the line following the last returned {@link SNP} */
+    @Override
+    public long getPosition() {
+        return curLine;
     }
 
-    private void readLines(BufferedReader reader) throws IOException {
-        ArrayList<String> lines = new ArrayList<String>();
-        String line;
-        while ((line = reader.readLine()) != null) {
-            lines.add(line);
-        }
-        reader.close();
-        this.lines = lines.toArray(new String[lines.size()]);
+    /** @return the number of read lines */
+    @Override
+    public long getOverallLines() {
+        return curLine;
+    }
+
+    /** @return the number of read lines, which could not be parsed */
+    @Override
+    public long getErrorLines() {
+        return errorLines;
     }
 
     /**
-     * This method to read the next correct line from the underlying file. It parses this line and instantiates a new
-     * {@link SNP} object.
+     * Sets the metrics, in which all read lines are recorded.
      * 
-     * @return the next {@link SNP}-object. NULL if no next object can be read.
+     * @param metrics
+     *            the metrics to use, <code>null</code> to disable recording
      */
-    public SNP readNext() {
-        if (curLine < lines.length) {
-            return parseLine(lines[curLine++]);
-        }
-        return null;
+    public void setMetrics(BioDRUMSMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Closes the underlying file.
+     * 
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        reader.close();
     }
 
     /**
@@ -90,10 +141,13 @@ public class FilteredVariantParser {
      * 
      * @param line
      *            the line to parse.
-     * @return the {@link SNP}-object presented by the given line.
+     * @return the {@link SNP}-object presented by the given line, null if the line can't be parsed.
      */
     private SNP parseLine(String line) {
         String[] Aline = line.split("\t");
+        if (Aline.length < 5 || Aline[3].isEmpty() || Aline[4].isEmpty()) {
+            return null;
+        }
         String ecotype = Aline[0]; // TODO: read ecotype_id from a mapping
         Aline[1] = Aline[1].replace("chr", "");
         if (!Aline[1].equals("1") && !Aline[1].equals("2") && !Aline[1].equals("3") && !Aline[1].equals("4")
@@ -101,7 +155,12 @@ public class FilteredVariantParser {
             return null;
         }
         byte seqId = Byte.parseByte(Aline[1].replace("chr", ""));
-        int pos = Integer.parseInt(Aline[2]);
+        int pos;
+        try {
+            pos = Integer.parseInt(Aline[2]);
+        } catch (NumberFormatException ex) {
+            return null;
+        }
         byte from = (byte) Aline[3].charAt(0);
         byte to = (byte) Aline[4].charAt(0);
 
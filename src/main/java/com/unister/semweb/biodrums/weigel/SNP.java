@@ -59,6 +59,11 @@ public class SNP extends AbstractKVStorable {
     /** offset of "ecotype_id" value in {@link SNP#key} */
     public static final int KEY_OFFSET_ECOTYPE = 5;
 
+    /** offset of the "from-base" in a serialized {@link SNP} */
+    public static final int OFFSET_FROM = KEY_SIZE;
+    /** offset of the "to-base" in a serialized {@link SNP} */
+    public static final int OFFSET_TO = KEY_SIZE + 1;
+
     // ####### Data
     /** The unmutated base in the reference genome */
     private byte from = -1;
@@ -167,6 +172,90 @@ public class SNP extends AbstractKVStorable {
         return ByteBuffer.wrap(key).getInt(KEY_OFFEST_POSITION);
     }
 
+    /**
+     * Creates the smallest key of all {@link SNP}s at the given position. Together with {@link #upperKey(byte, int)}
+     * it defines ranges of positions.
+     * 
+     * @param seqId
+     *            the id of the sequence
+     * @param position
+     *            the position on the sequence
+     * @return a key of {@link #KEY_SIZE} bytes
+     */
+    public static byte[] lowerKey(byte seqId, int position) {
+        return new SNP(seqId, position, (char) 0).getKey();
+    }
+
+    /**
+     * Creates the largest key of all {@link SNP}s at the given position.
+     * 
+     * @param seqId
+     *            the id of the sequence
+     * @param position
+     *            the position on the sequence
+     * @return a key of {@link #KEY_SIZE} bytes
+     */
+    public static byte[] upperKey(byte seqId, int position) {
+        return new SNP(seqId, position, Character.MAX_VALUE).getKey();
+    }
+
+    /* accessors for serialized SNPs, e.g. in a buffer read from a bucket file */
+
+    /**
+     * @param records
+     *            a buffer containing serialized {@link SNP}s
+     * @param offset
+     *            the absolute offset of one record in the buffer
+     * @return the sequence id of the record
+     */
+    public static byte getSequenceId(ByteBuffer records, int offset) {
+        return records.get(offset + KEY_OFFEST_SEQUENCEID);
+    }
+
+    /**
+     * @param records
+     *            a buffer containing serialized {@link SNP}s
+     * @param offset
+     *            the absolute offset of one record in the buffer
+     * @return the position of the record
+     */
+    public static int getBasePosition(ByteBuffer records, int offset) {
+        return records.getInt(offset + KEY_OFFEST_POSITION);
+    }
+
+    /**
+     * @param records
+     *            a buffer containing serialized {@link SNP}s
+     * @param offset
+     *            the absolute offset of one record in the buffer
+     * @return the id of the ecotype of the record
+     */
+    public static char getEcotypeId(ByteBuffer records, int offset) {
+        return records.getChar(offset + KEY_OFFSET_ECOTYPE);
+    }
+
+    /**
+     * @param records
+     *            a buffer containing serialized {@link SNP}s
+     * @param offset
+     *            the absolute offset of one record in the buffer
+     * @return the DNA-base from which was mutated
+     */
+    public static byte getFrom(ByteBuffer records, int offset) {
+        return records.get(offset + OFFSET_FROM);
+    }
+
+    /**
+     * @param records
+     *            a buffer containing serialized {@link SNP}s
+     * @param offset
+     *            the absolute offset of one record in the buffer
+     * @return the DNA-base to which was mutated
+     */
+    public static byte getTo(ByteBuffer records, int offset) {
+        return records.get(offset + OFFSET_TO);
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
@@ -0,0 +1,72 @@
+package com.unister.semweb.biodrums.weigel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import com.unister.semweb.biodrums.ingest.IngestionCheckpoint;
+import com.unister.semweb.biodrums.ingest.MySQLDumpReader;
+import com.unister.semweb.biodrums.ingest.MySQLDumpSource;
+
+/**
+ * Parses a dump of the MySQL-table <code>snp</code> (see <code>SNPExample/create_table.mysql</code>) written by
+ * <code>SELECT * INTO OUTFILE</code> or <code>mysqldump --tab</code>. The columns are expected in the order of the
+ * table definition: sequence_id, position, ecotype_id, fromBase and toBase. A <code>NULL</code> base is stored as -1
+ * like in a new {@link SNP}. Rows with an ecotype id, which doesn't fit into the two bytes of the key, are skipped.
+ * 
+ * @author Martin Nettling
+ */
+public class SNPDumpParser extends MySQLDumpSource<SNP> {
+    /** the number of columns of the table */
+    public static final int COLUMNS = 5;
+
+    /**
+     * Instantiates a new parser for the given dump.
+     * 
+     * @param filename
+     *            the name of the dump
+     * @param bufferSize
+     *            the size of the buffer to use
+     * @throws IOException
+     */
+    public SNPDumpParser(String filename, int bufferSize) throws IOException {
+        super(filename, bufferSize, new SNP(), null);
+    }
+
+    /**
+     * Instantiates a new parser for the given dump, which continues at the position of the given checkpoint.
+     * 
+     * @param filename
+     *            the name of the dump
+     * @param bufferSize
+     *            the size of the buffer to use
+     * @param checkpoint
+     *            the checkpoint to resume from
+     * @throws IOException
+     */
+    public SNPDumpParser(String filename, int bufferSize, IngestionCheckpoint checkpoint) throws IOException {
+        super(filename, bufferSize, new SNP(), checkpoint);
+    }
+
+    @Override
+    protected boolean encode(MySQLDumpReader row, ByteBuffer destination) {
+        if (row.getFieldCount() != COLUMNS) {
+            return false;
+        }
+        long sequenceId = row.getLong(0);
+        long position = row.getLong(1);
+        long ecotype = row.getLong(2);
+        if (sequenceId < Byte.MIN_VALUE || sequenceId > Byte.MAX_VALUE || position < Integer.MIN_VALUE
+                || position > Integer.MAX_VALUE || ecotype < Character.MIN_VALUE || ecotype > Character.MAX_VALUE) {
+            return false;
+        }
+        byte from = row.isNull(3) ? -1 : (byte) row.getLong(3);
+        byte to = row.isNull(4) ? -1 : (byte) row.getLong(4);
+
+        destination.put((byte) sequenceId);
+        destination.putInt((int) position);
+        destination.putChar((char) ecotype);
+        destination.put(from);
+        destination.put(to);
+        return true;
+    }
+}
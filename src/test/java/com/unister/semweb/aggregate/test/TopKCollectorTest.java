@@ -0,0 +1,40 @@
+package com.unister.semweb.aggregate.test;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.unister.semweb.biodrums.aggregate.TopKCollector;
+
+/**
+ * Tests the {@link TopKCollector}.
+ * 
+ * @author Martin Nettling
+ * 
+ */
+public class TopKCollectorTest {
+    /**
+     * Tests that the records with the lowest scores are kept and merged, ordered by ascending score.
+     */
+    @Test
+    public void bestRecordsTest() {
+        TopKCollector first = new TopKCollector(3, 4);
+        TopKCollector second = new TopKCollector(3, 4);
+        ByteBuffer record = ByteBuffer.allocate(4);
+        int[] values = { 50, 10, 70, 30, 90, 20, 60, 40, 80 };
+        for (int i = 0; i < values.length; i++) {
+            record.putInt(0, values[i]);
+            (i % 2 == 0 ? first : second).offer(values[i], record, 0);
+        }
+        Assert.assertEquals(3, first.size());
+        Assert.assertEquals(70, first.getThreshold(), 0);
+
+        first.merge(second);
+        ByteBuffer sorted = first.getSortedRecords();
+        Assert.assertEquals(12, sorted.remaining());
+        Assert.assertEquals(10, sorted.getInt(0));
+        Assert.assertEquals(20, sorted.getInt(4));
+        Assert.assertEquals(30, sorted.getInt(8));
+    }
+}
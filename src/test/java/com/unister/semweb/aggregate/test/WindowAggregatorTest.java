@@ -0,0 +1,121 @@
+package com.unister.semweb.aggregate.test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.unister.semweb.biodrums.aggregate.HERVWindowStatistics;
+import com.unister.semweb.biodrums.aggregate.WindowAggregator;
+import com.unister.semweb.biodrums.herv.HERV;
+import com.unister.semweb.biodrums.scan.ParallelBucketScan;
+import com.unister.semweb.drums.DRUMSParameterSet;
+import com.unister.semweb.storage.test.TestBuckets;
+
+/**
+ * Tests the {@link WindowAggregator}.
+ * 
+ * @author Martin Nettling
+ * 
+ */
+public class WindowAggregatorTest {
+    /** the number of records of each chromosome, one per position */
+    private static final int RECORDS = 100;
+
+    /**
+     * Tests the statistics of windows, which span two buckets of chromosome 1, and of a last window, which is cut off
+     * by the end of the range.
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void windowTest() throws Exception {
+        File directory = Files.createTempDirectory("WindowAggregator").toFile();
+        ParallelBucketScan<HERV> scan = null;
+        try {
+            scan = createScan(directory);
+            HERVWindowStatistics statistics = WindowAggregator.aggregateHERVs(scan, (byte) 1, 35, 70, 10);
+            Assert.assertEquals(4, statistics.getNumberOfWindows());
+            Assert.assertEquals(35, statistics.getStart());
+            // the window [45, 54] is merged from both buckets
+            Assert.assertArrayEquals(new long[] { 10, 10, 10, 6 }, statistics.getCounts());
+            Assert.assertArrayEquals(new double[] { 35, 45, 55, 65 }, statistics.getMinEValues(), 0);
+            Assert.assertArrayEquals(new long[] { 5, 5, 5, 3 }, statistics.getPlusStrandCounts());
+            Assert.assertEquals(0.5, statistics.getStrandBalance(0), 0);
+
+            // windows behind the last record are empty, chromosome 2 is not counted
+            statistics = WindowAggregator.aggregateHERVs(scan, (byte) 1, 90, 119, 10);
+            Assert.assertArrayEquals(new long[] { 10, 0, 0 }, statistics.getCounts());
+            Assert.assertEquals(Double.POSITIVE_INFINITY, statistics.getMinEValues()[1], 0);
+            Assert.assertTrue(Double.isNaN(statistics.getStrandBalance(2)));
+
+            // a window of one position at the start and the end of the range
+            statistics = WindowAggregator.aggregateHERVs(scan, (byte) 2, 0, 99, 1);
+            Assert.assertEquals(RECORDS, statistics.getNumberOfWindows());
+            Assert.assertEquals(1, statistics.getCounts()[0]);
+            Assert.assertEquals(1, statistics.getCounts()[RECORDS - 1]);
+        } finally {
+            if (scan != null) {
+                scan.close();
+            }
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    /**
+     * Tests that an empty range and windows without positions are rejected.
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void invalidWindowTest() throws Exception {
+        File directory = Files.createTempDirectory("WindowAggregator").toFile();
+        ParallelBucketScan<HERV> scan = null;
+        try {
+            scan = createScan(directory);
+            try {
+                WindowAggregator.aggregateHERVs(scan, (byte) 1, 10, 9, 10);
+                Assert.fail("A range ending before its start was accepted");
+            } catch (IllegalArgumentException expected) {
+                // expected
+            }
+            try {
+                WindowAggregator.aggregateHERVs(scan, (byte) 1, 0, 99, 0);
+                Assert.fail("A window size of 0 was accepted");
+            } catch (IllegalArgumentException expected) {
+                // expected
+            }
+        } finally {
+            if (scan != null) {
+                scan.close();
+            }
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    /**
+     * Creates a table with the positions 0 to 49 of chromosome 1 in the first bucket, the positions 50 to 99 in the
+     * second bucket and chromosome 2 in the third bucket. The e-value of a record is its position, records at odd
+     * positions are on the plus strand.
+     */
+    private static ParallelBucketScan<HERV> createScan(File directory) throws Exception {
+        DRUMSParameterSet<HERV> gp = TestBuckets.createParameters(directory);
+        File[] files = TestBuckets.getFiles(directory, 4);
+        TestBuckets.write(gp, files[0], scored(TestBuckets.hervs(1, 0, 50, 1)));
+        TestBuckets.write(gp, files[1], scored(TestBuckets.hervs(1, 50, RECORDS, 1)));
+        TestBuckets.write(gp, files[2], scored(TestBuckets.hervs(2, 0, RECORDS, 1)));
+        return new ParallelBucketScan<HERV>(gp, TestBuckets.createHashFunction(new byte[] { 1, 0, 0, 0, 49 },
+                new byte[] { 1 }, new byte[] { 2 }, new byte[] { (byte) 0xFF }), new HERV(), 2);
+    }
+
+    private static List<HERV> scored(List<HERV> hervs) {
+        for (HERV herv : hervs) {
+            herv.setEValue(herv.getStartPositionChromosome());
+            herv.setStrandOnChromosome((byte) (herv.getStartPositionChromosome() % 2));
+        }
+        return hervs;
+    }
+}
@@ -0,0 +1,51 @@
+package com.unister.semweb.batch.test;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.unister.semweb.biodrums.batch.HERVBatch;
+import com.unister.semweb.biodrums.herv.HERV;
+
+/**
+ * Tests the {@link HERVBatch}.
+ * 
+ * @author Martin Nettling
+ * 
+ */
+public class HERVBatchTest {
+    /**
+     * Tests that visited records and added HERVs end up in the columns and that the batch grows.
+     */
+    @Test
+    public void fillTest() {
+        HERVBatch batch = new HERVBatch(1);
+        ByteBuffer records = ByteBuffer.allocate(2 * HERV.ELEMENT_SIZE);
+        for (int i = 0; i < 2; i++) {
+            HERV herv = new HERV((byte) (i + 1), 100 * i, 100 * i + 50, (char) 3, (char) 40, (char) (7 + i));
+            herv.setStrandOnChromosome((byte) i);
+            herv.setEValue(1e-10 * (i + 1));
+            records.put(herv.toByteBuffer().array());
+        }
+        batch.visit(records, 0);
+        batch.visit(records, HERV.ELEMENT_SIZE);
+        HERV third = new HERV((byte) 5, 1000, 1020, (char) 1, (char) 21, (char) 9);
+        batch.add(third);
+
+        Assert.assertEquals(3, batch.size());
+        Assert.assertEquals(2, batch.getChromosomes()[1]);
+        Assert.assertEquals(100, batch.getStarts()[1]);
+        Assert.assertEquals(150, batch.getEnds()[1]);
+        Assert.assertEquals(8, batch.getIds()[1]);
+        Assert.assertEquals(1, batch.getStrands()[1]);
+        Assert.assertEquals(2e-10, batch.getEValues()[1], 0);
+        Assert.assertEquals(1020, batch.getEnds()[2]);
+        Assert.assertArrayEquals(third.toByteBuffer().array(), batch.get(2).toByteBuffer().array());
+
+        batch.trim();
+        Assert.assertEquals(3, batch.getStarts().length);
+        batch.clear();
+        Assert.assertEquals(0, batch.size());
+    }
+}
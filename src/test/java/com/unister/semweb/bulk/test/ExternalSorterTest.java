@@ -0,0 +1,73 @@
+package com.unister.semweb.bulk.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.unister.semweb.biodrums.bulk.ExternalSorter;
+import com.unister.semweb.biodrums.bulk.SortedRecordIterator;
+
+/**
+ * Tests the {@link ExternalSorter}.
+ * 
+ * @author Martin Nettling
+ * 
+ */
+public class ExternalSorterTest {
+    /**
+     * Sorts records in memory and with several runs. Each record consists of an int key and an int value. Every key is
+     * added twice, only the second value must be returned.
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void sortTest() throws IOException {
+        sort(1 << 20);
+        sort(200);
+    }
+
+    private void sort(long memoryBudget) throws IOException {
+        int numberOfKeys = 1000;
+        int[] keys = new int[numberOfKeys];
+        for (int i = 0; i < numberOfKeys; i++) {
+            keys[i] = i * 3;
+        }
+        Random random = new Random(42);
+        for (int i = numberOfKeys - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = keys[i];
+            keys[i] = keys[j];
+            keys[j] = tmp;
+        }
+
+        ExternalSorter sorter = new ExternalSorter(8, 4, memoryBudget, new File(System.getProperty("java.io.tmpdir")));
+        ByteBuffer records = ByteBuffer.allocate(numberOfKeys * 8);
+        for (int key : keys) {
+            records.putInt(key).putInt(-1);
+        }
+        records.flip();
+        sorter.add(records);
+        for (int key : keys) {
+            byte[] record = ByteBuffer.allocate(8).putInt(key).putInt(key + 1).array();
+            sorter.add(record, 0);
+        }
+        Assert.assertEquals(2 * numberOfKeys, sorter.getNumberOfRecords());
+
+        SortedRecordIterator iterator = sorter.sort();
+        byte[] record = new byte[8];
+        int expectedKey = 0;
+        while (iterator.next(record)) {
+            ByteBuffer bb = ByteBuffer.wrap(record);
+            Assert.assertEquals(expectedKey, bb.getInt());
+            Assert.assertEquals(expectedKey + 1, bb.getInt());
+            expectedKey += 3;
+        }
+        Assert.assertEquals(numberOfKeys * 3, expectedKey);
+        iterator.close();
+        sorter.close();
+    }
+}
@@ -0,0 +1,78 @@
+package com.unister.semweb.cache.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.unister.semweb.biodrums.cache.CachedTable;
+import com.unister.semweb.biodrums.cache.RangeQueryCache;
+import com.unister.semweb.biodrums.herv.HERV;
+import com.unister.semweb.drums.DRUMSParameterSet;
+import com.unister.semweb.drums.file.FileLockException;
+import com.unister.semweb.storage.test.TestBuckets;
+
+/**
+ * Tests the {@link CachedTable}.
+ * 
+ * @author Martin Nettling
+ * 
+ */
+public class CachedTableTest {
+    /**
+     * Tests that a changed length of a bucket file is detected on every lookup, while a rewrite of the same length
+     * and modification time is only detected, when the stamp is computed again after the verify interval.
+     * 
+     * @throws IOException
+     * @throws FileLockException
+     */
+    @Test
+    public void verifyTest() throws IOException, FileLockException {
+        File directory = Files.createTempDirectory("CachedTable").toFile();
+        try {
+            DRUMSParameterSet<HERV> gp = TestBuckets.createParameters(directory);
+            File file = TestBuckets.getFiles(directory, 2)[0];
+            TestBuckets.write(gp, file, hervs(10, 10));
+            CachedTable<HERV> table = new CachedTable<HERV>("herv", gp, null, TestBuckets.createHashFunction(
+                    new byte[] { 1 }, new byte[] { (byte) 0xFF }), new HERV(), new RangeQueryCache(1 << 20));
+            Assert.assertEquals(10, table.select(null, null).get(0).getEndPositionChromosome());
+
+            // the same length and modification time, but a changed header
+            long modified = file.lastModified();
+            TestBuckets.write(gp, file, hervs(10, 20));
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                raf.seek(8);
+                raf.write(1);
+            } finally {
+                raf.close();
+            }
+            file.setLastModified(modified);
+            Assert.assertEquals(10, table.select(null, null).get(0).getEndPositionChromosome());
+            table.setVerifyInterval(0);
+            Assert.assertEquals(20, table.select(null, null).get(0).getEndPositionChromosome());
+
+            // a changed length is detected within the interval
+            table.setVerifyInterval(CachedTable.DEFAULT_VERIFY_INTERVAL);
+            TestBuckets.write(gp, file, hervs(20, 20));
+            Assert.assertEquals(20, table.select(null, null).size());
+        } finally {
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    /** creates HERVs on chromosome 1 at the positions 0, 1, ..., each with the given length */
+    private static List<HERV> hervs(int number, int length) {
+        List<HERV> hervs = new ArrayList<HERV>();
+        for (int position = 0; position < number; position++) {
+            hervs.add(new HERV((byte) 1, position, position + length, (char) 0, (char) 10, (char) 1));
+        }
+        return hervs;
+    }
+}
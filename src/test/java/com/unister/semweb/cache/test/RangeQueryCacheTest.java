@@ -0,0 +1,118 @@
+package com.unister.semweb.cache.test;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.unister.semweb.biodrums.cache.RangeQueryCache;
+import com.unister.semweb.biodrums.scan.RecordBlock;
+
+/**
+ * Tests the {@link RangeQueryCache}.
+ * 
+ * @author Martin Nettling
+ * 
+ */
+public class RangeQueryCacheTest {
+    /**
+     * Tests that the least recently used entries are evicted, when the memory budget is exceeded.
+     */
+    @Test
+    public void evictionTest() {
+        RangeQueryCache cache = new RangeQueryCache(3 * 1000);
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue(cache.put("snp", key(i), key(i + 1), i, i, null, block(800), 0));
+        }
+        // touch the first range, so the second one is the eldest
+        Assert.assertNotNull(cache.get("snp", key(0), key(1)));
+        Assert.assertTrue(cache.put("snp", key(3), key(4), 3, 3, null, block(800), 0));
+
+        Assert.assertNull(cache.get("snp", key(1), key(2)));
+        Assert.assertNotNull(cache.get("snp", key(0), key(1)));
+        Assert.assertNotNull(cache.get("snp", key(3), key(4)));
+        Assert.assertTrue(cache.getSizeInBytes() <= 3 * 1000);
+        Assert.assertEquals(1, cache.getMisses());
+
+        // an entry larger than the budget is not cached at all
+        Assert.assertFalse(cache.put("snp", key(5), key(6), 5, 5, null, block(4000), 0));
+        Assert.assertEquals(3, cache.getNumberOfEntries());
+    }
+
+    /**
+     * Tests that replacing the entry of a range releases the size of the replaced entry.
+     */
+    @Test
+    public void replaceTest() {
+        RangeQueryCache cache = new RangeQueryCache(3 * 1000);
+        for (int i = 0; i < 10; i++) {
+            Assert.assertTrue(cache.put("snp", key(0), key(1), 0, 0, null, block(800), 0));
+        }
+        Assert.assertEquals(1, cache.getNumberOfEntries());
+        long entrySize = cache.getSizeInBytes();
+        Assert.assertTrue(entrySize >= 800);
+
+        // the replaced entries do not take the place of other entries
+        Assert.assertTrue(cache.put("snp", key(1), key(2), 1, 1, null, block(800), 0));
+        Assert.assertTrue(cache.put("snp", key(2), key(3), 2, 2, null, block(800), 0));
+        Assert.assertEquals(3, cache.getNumberOfEntries());
+        Assert.assertEquals(3 * entrySize, cache.getSizeInBytes());
+        Assert.assertEquals(3, cache.invalidate("snp"));
+        Assert.assertEquals(0, cache.getSizeInBytes());
+    }
+
+    /**
+     * Tests that an insert into a bucket only invalidates the entries overlapping the bucket and that a result computed
+     * before an invalidation is not cached.
+     */
+    @Test
+    public void invalidationTest() {
+        RangeQueryCache cache = new RangeQueryCache(1 << 20);
+        cache.put("snp", key(0), key(1), 0, 1, null, block(10), 0);
+        cache.put("snp", key(2), key(5), 2, 5, null, block(10), 0);
+        cache.put("herv", key(2), key(5), 2, 5, null, block(10), 0);
+
+        long generation = cache.getGeneration("snp");
+        Assert.assertEquals(1, cache.invalidateBucket("snp", 3));
+        Assert.assertNotNull(cache.get("snp", key(0), key(1)));
+        Assert.assertNull(cache.get("snp", key(2), key(5)));
+        Assert.assertNotNull(cache.get("herv", key(2), key(5)));
+
+        Assert.assertFalse(cache.put("snp", key(2), key(5), 2, 5, null, block(10), generation));
+        Assert.assertTrue(cache.put("snp", key(2), key(5), 2, 5, null, block(10), cache.getGeneration("snp")));
+        Assert.assertEquals(2, cache.invalidate("snp"));
+        Assert.assertEquals(1, cache.getNumberOfEntries());
+    }
+
+    /**
+     * Tests that the cached records are returned unchanged and read-only.
+     */
+    @Test
+    public void recordsTest() {
+        RangeQueryCache cache = new RangeQueryCache(1 << 20);
+        RecordBlock block = block(3);
+        cache.put("snp", null, key(1), 0, 0, new long[] { 7, 8 }, block, 0);
+        RangeQueryCache.Entry entry = cache.get("snp", null, key(1));
+        ByteBuffer records = entry.getRecords();
+        Assert.assertTrue(records.isReadOnly());
+        Assert.assertEquals(3, entry.getNumberOfRecords());
+        Assert.assertEquals(2, records.get(2));
+        Assert.assertTrue(entry.isCurrent(new long[] { 7, 8 }));
+        Assert.assertFalse(entry.isCurrent(new long[] { 7, 9 }));
+    }
+
+    private static byte[] key(int position) {
+        return ByteBuffer.allocate(5).put((byte) 1).putInt(position).array();
+    }
+
+    /** @return a block of records of one byte each, the n-th record is n */
+    private static RecordBlock block(int records) {
+        RecordBlock block = new RecordBlock(1, records);
+        ByteBuffer buffer = ByteBuffer.allocate(records);
+        for (int i = 0; i < records; i++) {
+            buffer.put(i, (byte) i);
+            block.visit(buffer, i);
+        }
+        return block;
+    }
+}
@@ -0,0 +1,48 @@
+package com.unister.semweb.compaction.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.unister.semweb.biodrums.compaction.CompactionReport;
+import com.unister.semweb.biodrums.compaction.IORateLimiter;
+
+/**
+ * Tests the {@link IORateLimiter} and the {@link CompactionReport}.
+ * 
+ * @author Martin Nettling
+ * 
+ */
+public class IORateLimiterTest {
+    /**
+     * Tests that five transfers of 1 MB at 10 MB/s take at least 400 ms and that no limit never waits.
+     * 
+     * @throws InterruptedException
+     */
+    @Test
+    public void limitTest() throws InterruptedException {
+        IORateLimiter limiter = new IORateLimiter(10 * 1024 * 1024);
+        long start = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            limiter.acquire(1024 * 1024);
+        }
+        Assert.assertTrue(System.nanoTime() - start >= 390000000L);
+
+        IORateLimiter unlimited = new IORateLimiter(0);
+        Assert.assertEquals(0, unlimited.acquire(Long.MAX_VALUE));
+    }
+
+    /**
+     * Tests that the results of buckets and reports are summed up.
+     */
+    @Test
+    public void reportTest() {
+        CompactionReport bucket = new CompactionReport();
+        bucket.add(100, 8000, 3000);
+        CompactionReport overall = new CompactionReport();
+        overall.add(bucket);
+        overall.add(10, 2000, 1000);
+        Assert.assertEquals(2, overall.getBuckets());
+        Assert.assertEquals(110, overall.getRecords());
+        Assert.assertEquals(6000, overall.getReclaimedBytes());
+    }
+}
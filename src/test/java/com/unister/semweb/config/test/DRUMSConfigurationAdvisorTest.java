@@ -0,0 +1,52 @@
+package com.unister.semweb.config.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.unister.semweb.biodrums.config.DRUMSConfigurationAdvisor;
+import com.unister.semweb.biodrums.herv.HERV;
+import com.unister.semweb.drums.DRUMSParameterSet;
+
+/**
+ * Tests the {@link DRUMSConfigurationAdvisor}.
+ * 
+ * @author Martin Nettling
+ * 
+ */
+public class DRUMSConfigurationAdvisorTest {
+    private static final long MB = 1024 * 1024;
+
+    /**
+     * Tests that a large input gets half of the heap and each bucket may use four times its share.
+     */
+    @Test
+    public void largeInputTest() {
+        DRUMSParameterSet<HERV> gp = new DRUMSParameterSet<HERV>("HERVExample/drums.properties", new HERV());
+        gp.MEMORY_CHUNK = 100 * 1024;
+        DRUMSConfigurationAdvisor advisor = new DRUMSConfigurationAdvisor(HERV.ELEMENT_SIZE, 1000000000L).setHeap(
+                2048 * MB, 0.5);
+        advisor.apply(256, gp);
+
+        Assert.assertTrue(gp.BUCKET_MEMORY >= 1024 * MB && gp.BUCKET_MEMORY < 1024 * MB + gp.MEMORY_CHUNK);
+        Assert.assertEquals(0, gp.MAX_MEMORY_PER_BUCKET % gp.MEMORY_CHUNK);
+        Assert.assertTrue(gp.MAX_MEMORY_PER_BUCKET >= 16 * MB && gp.MAX_MEMORY_PER_BUCKET < 17 * MB);
+        // half of the 4 MB share
+        Assert.assertEquals(2 * MB / HERV.ELEMENT_SIZE, gp.MIN_ELEMENT_IN_BUCKET_BEFORE_SYNC, 10);
+    }
+
+    /**
+     * Tests that a small input doesn't reserve more memory than it needs and still synchronizes.
+     */
+    @Test
+    public void smallInputTest() {
+        DRUMSParameterSet<HERV> gp = new DRUMSParameterSet<HERV>("HERVExample/drums.properties", new HERV());
+        gp.MEMORY_CHUNK = 100 * 1024;
+        DRUMSConfigurationAdvisor advisor = new DRUMSConfigurationAdvisor(HERV.ELEMENT_SIZE, 100000).setHeap(
+                2048 * MB, 0.5);
+        advisor.apply(128, gp);
+
+        Assert.assertEquals(128 * gp.MEMORY_CHUNK, gp.BUCKET_MEMORY);
+        Assert.assertEquals(4 * gp.MEMORY_CHUNK, gp.MAX_MEMORY_PER_BUCKET);
+        Assert.assertEquals(100000 / 128 / 4, gp.MIN_ELEMENT_IN_BUCKET_BEFORE_SYNC);
+    }
+}
@@ -0,0 +1,74 @@
+package com.unister.semweb.export.test;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.unister.semweb.biodrums.export.Ascii;
+import com.unister.semweb.biodrums.export.HERVBedFormatter;
+import com.unister.semweb.biodrums.herv.HERV;
+
+/**
+ * Tests the number formatting of {@link Ascii} and the {@link HERVBedFormatter}.
+ * 
+ * @author Martin Nettling
+ * 
+ */
+public class AsciiTest {
+    /**
+     * Tests the method <code>putLong</code>.
+     */
+    @Test
+    public void putLongTest() {
+        Assert.assertEquals("0", putLong(0));
+        Assert.assertEquals("7", putLong(7));
+        Assert.assertEquals("-42", putLong(-42));
+        Assert.assertEquals("245203898", putLong(245203898));
+        Assert.assertEquals(String.valueOf(Long.MAX_VALUE), putLong(Long.MAX_VALUE));
+        Assert.assertEquals(String.valueOf(Long.MIN_VALUE), putLong(Long.MIN_VALUE));
+    }
+
+    /**
+     * Tests the method <code>putScientific</code>.
+     */
+    @Test
+    public void putScientificTest() {
+        Assert.assertEquals("0", putScientific(0, 6));
+        Assert.assertEquals("1e-50", putScientific(1e-50, 6));
+        Assert.assertEquals("2.5e-7", putScientific(2.5e-7, 6));
+        Assert.assertEquals("1.23457e3", putScientific(1234.5678, 6));
+        Assert.assertEquals("-1", putScientific(-1, 3));
+        Assert.assertEquals("1e1", putScientific(9.9999999, 3));
+        Assert.assertEquals("4.9e-324", putScientific(Double.MIN_VALUE, 2));
+        Assert.assertEquals("NaN", putScientific(Double.NaN, 3));
+        double eValue = 1346.84838238;
+        Assert.assertEquals(eValue, Double.parseDouble(putScientific(eValue, 17)), 0.0);
+    }
+
+    /**
+     * Tests the {@link HERVBedFormatter} on a HERV on the reverse strand.
+     */
+    @Test
+    public void bedTest() {
+        HERV herv = new HERV((byte) 23, 2000, 1001, (char) 5, (char) 10, (char) 815);
+        herv.setStrandOnChromosome((byte) 0);
+        herv.setEValue(1e-50);
+        ByteBuffer record = herv.toByteBuffer();
+        ByteBuffer out = ByteBuffer.allocate(100);
+        new HERVBedFormatter().format(record, 0, out);
+        Assert.assertEquals("chrX\t1000\t2000\t815\t50\t-\n", new String(out.array(), 0, out.position()));
+    }
+
+    private static String putLong(long value) {
+        ByteBuffer out = ByteBuffer.allocate(Ascii.MAX_LONG_LENGTH);
+        Ascii.putLong(out, value);
+        return new String(out.array(), 0, out.position());
+    }
+
+    private static String putScientific(double value, int digits) {
+        ByteBuffer out = ByteBuffer.allocate(Ascii.MAX_DOUBLE_LENGTH);
+        Ascii.putScientific(out, value, digits);
+        return new String(out.array(), 0, out.position());
+    }
+}
@@ -0,0 +1,97 @@
+package com.unister.semweb.herv.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.unister.semweb.biodrums.herv.CompactHERV;
+import com.unister.semweb.biodrums.herv.HERV;
+import com.unister.semweb.biodrums.herv.HERVFormat;
+
+/**
+ * Tests the {@link CompactHERV} and the {@link HERVFormat}.
+ * 
+ * @author Martin Nettling
+ * 
+ */
+public class CompactHERVTest {
+    /**
+     * Tests that the positions and the strand of HERVs on both strands survive the conversion.
+     */
+    @Test
+    public void conversionTest() {
+        HERV plus = new HERV((byte) 3, 1374823, 1379823, (char) 12, (char) 5012, (char) 26372);
+        plus.setStrandOnChromosome((byte) 1);
+        plus.setEValue(3.2e-57);
+        HERV minus = new HERV((byte) 3, 1374823, 1374001, (char) 40, (char) 862, (char) 7);
+        minus.setStrandOnChromosome((byte) 0);
+        minus.setEValue(0);
+
+        for (HERV herv : new HERV[] { plus, minus }) {
+            CompactHERV compact = new CompactHERV(herv);
+            Assert.assertEquals(CompactHERV.ELEMENT_SIZE, compact.toByteBuffer().remaining());
+            HERV converted = compact.toHERV();
+            Assert.assertArrayEquals(herv.getKey(), converted.getKey());
+            Assert.assertEquals(herv.getStrandOnChromosome(), converted.getStrandOnChromosome());
+            Assert.assertEquals(herv.getEValue(), converted.getEValue(), herv.getEValue() * 0.012);
+        }
+
+        ByteBuffer hervs = plus.toByteBuffer();
+        ByteBuffer out = ByteBuffer.allocate(CompactHERV.ELEMENT_SIZE);
+        CompactHERV.convert(hervs, 0, out);
+        Assert.assertArrayEquals(new CompactHERV(plus).toByteBuffer().array(), out.array());
+        Assert.assertEquals(1379823, CompactHERV.getEndPositionChromosome(out, 0));
+    }
+
+    /**
+     * Tests the bounds of the quantized e-value and that mappings of any length are converted.
+     */
+    @Test
+    public void boundsTest() {
+        Assert.assertEquals(CompactHERV.EVALUE_OFFSET, CompactHERV.quantizeEValue(1));
+        Assert.assertEquals(0, CompactHERV.quantizeEValue(1e20));
+        Assert.assertEquals(Double.MIN_VALUE, CompactHERV.dequantizeEValue(CompactHERV.quantizeEValue(
+                Double.MIN_VALUE)), Double.MIN_VALUE * 0.012);
+        Assert.assertEquals(0, CompactHERV.dequantizeEValue(CompactHERV.quantizeEValue(0)), 0);
+        HERV plus = new HERV((byte) 1, 0, 100000, (char) 0, (char) 0, (char) 0);
+        HERV minus = new HERV((byte) 1, 245203898, 100, (char) 0, (char) 0, (char) 0);
+        for (HERV herv : new HERV[] { plus, minus }) {
+            CompactHERV compact = new CompactHERV(herv);
+            Assert.assertArrayEquals(herv.getKey(), compact.getKey());
+            Assert.assertEquals(herv.getEndPositionChromosome(), compact.getEndPositionChromosome());
+        }
+        Assert.assertEquals(0, new CompactHERV(minus).getStrandOnChromosome());
+    }
+
+    /**
+     * Tests that the format is written, read and checked, and that directories without format file are of the default
+     * format.
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void formatTest() throws IOException {
+        File directory = File.createTempFile("HERVFormat", "");
+        directory.delete();
+        directory.mkdir();
+        try {
+            Assert.assertEquals(HERVFormat.DEFAULT, HERVFormat.read(directory));
+            HERVFormat.check(directory, new HERV());
+            HERVFormat.COMPACT.write(directory);
+            Assert.assertEquals(HERVFormat.COMPACT, HERVFormat.read(directory));
+            HERVFormat.check(directory, new CompactHERV());
+            try {
+                HERVFormat.check(directory, new HERV());
+                Assert.fail("a compact table must not be opened with HERVs");
+            } catch (IOException expected) {
+                // expected
+            }
+        } finally {
+            new File(directory, HERVFormat.FILE_NAME).delete();
+            directory.delete();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.unister.semweb.ingest.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.unister.semweb.biodrums.herv.HERV;
+import com.unister.semweb.biodrums.herv.HERVDumpParser;
+import com.unister.semweb.biodrums.ingest.MySQLDumpReader;
+
+/**
+ * Tests the {@link MySQLDumpReader} and the {@link HERVDumpParser}.
+ * 
+ * @author Martin Nettling
+ * 
+ */
+public class MySQLDumpReaderTest {
+    /**
+     * Tests the unescaping of fields, <code>NULL</code> and the parsing of numbers.
+     */
+    @Test
+    public void fieldsTest() throws IOException {
+        File file = File.createTempFile("dump", ".txt");
+        file.deleteOnExit();
+        FileUtils.writeStringToFile(file, "a\\tb\\\\\t\\N\t-42\t0.125\r\nx\\\ny\t\t1.5e-10\t-3.", "ISO-8859-1");
+
+        MySQLDumpReader reader = new MySQLDumpReader(file, 0, 3);
+        Assert.assertTrue(reader.nextRow());
+        Assert.assertEquals(4, reader.getFieldCount());
+        Assert.assertEquals("a\tb\\", reader.getString(0));
+        Assert.assertTrue(reader.isNull(1));
+        Assert.assertNull(reader.getString(1));
+        Assert.assertEquals(-42, reader.getLong(2));
+        Assert.assertEquals(0.125, reader.getDouble(3), 0);
+        long offset = reader.getOffset();
+
+        Assert.assertTrue(reader.nextRow());
+        Assert.assertEquals(4, reader.getFieldCount());
+        Assert.assertEquals("x\ny", reader.getString(0));
+        Assert.assertEquals("", reader.getString(1));
+        Assert.assertFalse(reader.isNull(1));
+        Assert.assertEquals(1.5e-10, reader.getDouble(2), 0);
+        Assert.assertEquals(-3, reader.getDouble(3), 0);
+        Assert.assertFalse(reader.nextRow());
+        reader.close();
+
+        reader = new MySQLDumpReader(file, offset, 1024);
+        Assert.assertTrue(reader.nextRow());
+        Assert.assertEquals("x\ny", reader.getString(0));
+        reader.close();
+    }
+
+    /**
+     * Tests that the rows of a <code>herv</code> dump are encoded like {@link HERV}s and that invalid rows are skipped.
+     */
+    @Test
+    public void hervTest() throws IOException {
+        File file = File.createTempFile("herv", ".txt");
+        file.deleteOnExit();
+        FileUtils.writeStringToFile(file, "3\t1000\t900\t12\t400\t7\t0\t2.5e-20\n" + "3\tabc\t900\t12\t400\t7\t0\t1\n"
+                + "4\t50\t80\t1\t31\t8\t\\N\t1e-5\n" + "4\t60\t90\t1\t31\t8\t1\t\\N\n", "ISO-8859-1");
+
+        HERVDumpParser parser = new HERVDumpParser(file.getPath(), 16);
+        HERV first = parser.readNext();
+        HERV expected = new HERV((byte) 3, 1000, 900, (char) 12, (char) 400, (char) 7);
+        expected.setStrandOnChromosome((byte) 0);
+        expected.setEValue(2.5e-20);
+        Assert.assertArrayEquals(expected.toByteBuffer().array(), first.toByteBuffer().array());
+
+        ByteBuffer records = ByteBuffer.allocate(2 * HERV.ELEMENT_SIZE);
+        Assert.assertEquals(1, parser.fill(records));
+        Assert.assertEquals(31, HERV.getEndHERV(records, 0));
+        Assert.assertEquals(1, HERV.getStrandOnChromosome(records, 0));
+        Assert.assertEquals(1e-5, HERV.getEValue(records, 0), 0);
+        Assert.assertEquals(0, parser.fill(records));
+        Assert.assertEquals(4, parser.getOverallLines());
+        Assert.assertEquals(2, parser.getErrorLines());
+        Assert.assertEquals(file.length(), parser.getPosition());
+        parser.close();
+    }
+}
@@ -0,0 +1,117 @@
+package com.unister.semweb.ingest.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.unister.semweb.biodrums.bulk.BulkLoader;
+import com.unister.semweb.biodrums.ingest.DirectBufferPool;
+import com.unister.semweb.biodrums.ingest.OffHeapLoader;
+import com.unister.semweb.biodrums.ingest.RecordSource;
+import com.unister.semweb.biodrums.weigel.SNP;
+import com.unister.semweb.drums.DRUMSParameterSet;
+import com.unister.semweb.drums.bucket.hashfunction.RangeHashFunction;
+
+/**
+ * Tests the {@link OffHeapLoader} and the {@link DirectBufferPool}.
+ * 
+ * @author Martin Nettling
+ * 
+ */
+public class OffHeapLoaderTest {
+    /**
+     * Tests that all records pass through the pooled buffers and that all buffers are returned to the pool.
+     */
+    @Test
+    public void addTest() throws Exception {
+        DirectBufferPool pool = new DirectBufferPool(3, 100);
+        OffHeapLoader<SNP> offHeap = new OffHeapLoader<SNP>(createLoader(), pool);
+
+        Assert.assertEquals(1000, offHeap.add(new CountingSource(1000, false)));
+        Assert.assertEquals(3, pool.getNumberOfFreeBuffers());
+    }
+
+    /**
+     * Tests that an error of the source is passed on and that the buffers are still returned.
+     */
+    @Test
+    public void failureTest() throws Exception {
+        DirectBufferPool pool = new DirectBufferPool(2, 100);
+        OffHeapLoader<SNP> offHeap = new OffHeapLoader<SNP>(createLoader(), pool);
+        try {
+            offHeap.add(new CountingSource(1000, true));
+            Assert.fail("The error of the source was not passed on");
+        } catch (IOException ex) {
+            Assert.assertEquals("broken input", ex.getMessage());
+        }
+        Assert.assertEquals(2, pool.getNumberOfFreeBuffers());
+    }
+
+    /**
+     * Tests that a runtime exception of the loader is passed on and that the parser is not blocked by the buffers
+     * queued after the failure.
+     */
+    @Test
+    public void loaderFailureTest() throws Exception {
+        DirectBufferPool pool = new DirectBufferPool(2, 100);
+        DRUMSParameterSet<SNP> gp = new DRUMSParameterSet<SNP>("SNPExample/drums.properties", new SNP());
+        RangeHashFunction hashFunction = new RangeHashFunction(new byte[][] { { (byte) 0xFF } },
+                new String[] { "data0.db" }, "RangeHashFunction.txt");
+        BulkLoader<SNP> loader = new BulkLoader<SNP>(hashFunction, gp, new SNP(), 1024 * 1024, new File(
+                System.getProperty("java.io.tmpdir"))) {
+            @Override
+            public void add(ByteBuffer records) throws IOException {
+                throw new IllegalStateException("broken loader");
+            }
+        };
+        OffHeapLoader<SNP> offHeap = new OffHeapLoader<SNP>(loader, pool);
+        try {
+            offHeap.add(new CountingSource(1000, false));
+            Assert.fail("The error of the loader was not passed on");
+        } catch (IOException ex) {
+            Assert.assertEquals("broken loader", ex.getCause().getMessage());
+        }
+        Assert.assertEquals(2, pool.getNumberOfFreeBuffers());
+    }
+
+    private static BulkLoader<SNP> createLoader() {
+        DRUMSParameterSet<SNP> gp = new DRUMSParameterSet<SNP>("SNPExample/drums.properties", new SNP());
+        RangeHashFunction hashFunction = new RangeHashFunction(new byte[][] { { (byte) 0xFF } },
+                new String[] { "data0.db" }, "RangeHashFunction.txt");
+        return new BulkLoader<SNP>(hashFunction, gp, new SNP(), 1024 * 1024,
+                new File(System.getProperty("java.io.tmpdir")));
+    }
+
+    /** writes the given number of SNPs with ascending positions, optionally fails in the middle */
+    private static class CountingSource implements RecordSource {
+        private final int records;
+        private final boolean fail;
+        private int written;
+
+        CountingSource(int records, boolean fail) {
+            this.records = records;
+            this.fail = fail;
+        }
+
+        @Override
+        public int fill(ByteBuffer destination) throws IOException {
+            if (fail && written >= records / 2) {
+                throw new IOException("broken input");
+            }
+            int read = 0;
+            while (written < records && destination.remaining() >= SNP.ELEMENT_SIZE) {
+                destination.put((byte) 1).putInt(written++).putChar((char) 7).put((byte) 0).put((byte) 2);
+                read++;
+            }
+            return read;
+        }
+
+        @Override
+        public int getElementSize() {
+            return SNP.ELEMENT_SIZE;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.unister.semweb.ingest.test;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.unister.semweb.biodrums.ingest.OffsetLineReader;
+
+/**
+ * Tests the {@link OffsetLineReader}.
+ * 
+ * @author Martin Nettling
+ * 
+ */
+public class OffsetLineReaderTest {
+    /**
+     * Tests that reading can be resumed at the offset returned after a line.
+     */
+    @Test
+    public void resumeTest() throws IOException {
+        File file = File.createTempFile("lines", ".txt");
+        file.deleteOnExit();
+        FileUtils.writeStringToFile(file, "first\r\nsecond\n\nlast", "ISO-8859-1");
+
+        OffsetLineReader reader = new OffsetLineReader(file, 0, 4);
+        Assert.assertEquals("first", reader.readLine());
+        long offset = reader.getOffset();
+        Assert.assertEquals(7, offset);
+        Assert.assertEquals("second", reader.readLine());
+        reader.close();
+
+        reader = new OffsetLineReader(file, offset, 4);
+        Assert.assertEquals("second", reader.readLine());
+        Assert.assertEquals("", reader.readLine());
+        Assert.assertEquals("last", reader.readLine());
+        Assert.assertNull(reader.readLine());
+        Assert.assertEquals(file.length(), reader.getOffset());
+        reader.close();
+    }
+}
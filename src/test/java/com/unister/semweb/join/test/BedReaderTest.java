@@ -0,0 +1,46 @@
+package com.unister.semweb.join.test;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.unister.semweb.biodrums.join.BedReader;
+import com.unister.semweb.biodrums.join.PositionList;
+
+/**
+ * Tests the {@link BedReader} and the sorting of a {@link PositionList}.
+ * 
+ * @author Martin Nettling
+ * 
+ */
+public class BedReaderTest {
+    /**
+     * Tests that intervals are converted to 1-based positions and sorted numerically by chromosome, and that malformed
+     * intervals are skipped.
+     */
+    @Test
+    public void readTest() throws IOException {
+        File file = File.createTempFile("sites", ".bed");
+        file.deleteOnExit();
+        FileUtils.writeStringToFile(file, "track name=sites\nchr10\t99\t100\nchr2\t199\t300\nchrX\t0\t1\n"
+                + "chrUn\t5\t6\nchr2\t49\t50\nchr3\t70\t70\nchr3\tx\t80\nchr4\t90\t2147483648\n", "US-ASCII");
+
+        PositionList positions = BedReader.read(file);
+        Assert.assertTrue(positions.isSorted());
+        Assert.assertEquals(4, positions.size());
+        Assert.assertEquals(2, positions.getChromosome(0));
+        Assert.assertEquals(50, positions.getStart(0));
+        Assert.assertEquals(50, positions.getEnd(0));
+        Assert.assertEquals(200, positions.getStart(1));
+        Assert.assertEquals(300, positions.getEnd(1));
+        Assert.assertEquals(10, positions.getChromosome(2));
+        Assert.assertEquals(23, positions.getChromosome(3));
+        Assert.assertEquals(100, positions.getMaxLength());
+
+        Assert.assertEquals(1, positions.lowerBound((byte) 2, 51));
+        Assert.assertEquals(2, positions.lowerBound((byte) 3, 0));
+    }
+}
@@ -0,0 +1,125 @@
+package com.unister.semweb.mapped.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.unister.semweb.biodrums.herv.HERV;
+import com.unister.semweb.biodrums.mapped.MappedTable;
+import com.unister.semweb.biodrums.scan.RecordVisitor;
+import com.unister.semweb.drums.DRUMSParameterSet;
+import com.unister.semweb.drums.bucket.hashfunction.RangeHashFunction;
+import com.unister.semweb.drums.file.FileLockException;
+import com.unister.semweb.storage.test.TestBuckets;
+
+/**
+ * Tests the {@link MappedTable}.
+ * 
+ * @author Martin Nettling
+ * 
+ */
+public class MappedTableTest {
+    /** the number of records in each bucket */
+    private static final int RECORDS = 100;
+
+    /**
+     * Tests that buckets mapped in several chunks are read like buckets mapped at once.
+     * 
+     * @throws IOException
+     * @throws FileLockException
+     */
+    @Test
+    public void chunkTest() throws IOException, FileLockException {
+        File directory = Files.createTempDirectory("MappedTable").toFile();
+        try {
+            DRUMSParameterSet<HERV> gp = createTable(directory);
+            RangeHashFunction hashFunction = createHashFunction();
+            File[] files = TestBuckets.getFiles(directory, 3);
+
+            MappedTable<HERV> whole = new MappedTable<HERV>(gp, hashFunction, new HERV(), files);
+            // 10 records per chunk, the remainder of the chunk size is cut off
+            MappedTable<HERV> chunked = new MappedTable<HERV>(gp, hashFunction, new HERV(), files,
+                    10 * HERV.ELEMENT_SIZE + 5);
+
+            Assert.assertEquals(3, whole.getNumberOfChunks());
+            Assert.assertEquals(21, chunked.getNumberOfChunks());
+            Assert.assertEquals(0, chunked.getFirstChunk(0));
+            Assert.assertEquals(9, chunked.getLastChunk(0));
+            Assert.assertEquals(20, chunked.getFirstChunk(2));
+            Assert.assertEquals(20, chunked.getLastChunk(2));
+            Assert.assertEquals(RECORDS, chunked.getNumberOfRecordsInBucket(1));
+            Assert.assertEquals(0, chunked.getNumberOfRecordsInBucket(2));
+
+            for (MappedTable<HERV> table : new MappedTable[] { whole, chunked }) {
+                // the keys at the start and the end of a chunk
+                List<HERV> found = table.select(TestBuckets.herv(1, 9).getKey(), TestBuckets.herv(1, 10).getKey(),
+                        TestBuckets.herv(2, 99).getKey(), TestBuckets.herv(3, 0).getKey());
+                Assert.assertEquals(3, found.size());
+                Assert.assertEquals(9, found.get(0).getStartPositionChromosome());
+                Assert.assertEquals(10, found.get(1).getStartPositionChromosome());
+                Assert.assertEquals(99, found.get(2).getStartPositionChromosome());
+
+                List<HERV> range = table.getRange(HERV.lowerKey((byte) 1, 95), HERV.upperKey((byte) 2, 14));
+                Assert.assertEquals(20, range.size());
+                Assert.assertEquals(95, range.get(0).getStartPositionChromosome());
+                Assert.assertEquals(14, range.get(19).getStartPositionChromosome());
+
+                Assert.assertEquals(2 * RECORDS, table.scan(null, null, count(Integer.MAX_VALUE)));
+                Assert.assertEquals(25, table.scan(HERV.lowerKey((byte) 1, 5), null, count(25)));
+                Assert.assertEquals(-26, table.scanBucket(0, HERV.lowerKey((byte) 1, 5), null, count(25)));
+            }
+            whole.close();
+            chunked.close();
+        } finally {
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    /**
+     * Tests that a chunk must hold at least one record.
+     * 
+     * @throws IOException
+     * @throws FileLockException
+     */
+    @Test
+    public void chunkSizeTest() throws IOException, FileLockException {
+        DRUMSParameterSet<HERV> gp = new DRUMSParameterSet<HERV>("HERVExample/drums.properties", new HERV());
+        try {
+            new MappedTable<HERV>(gp, createHashFunction(), new HERV(), new File[0], HERV.ELEMENT_SIZE - 1);
+            Assert.fail("A chunk smaller than a record was accepted");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+    }
+
+    /** creates a table with chromosome 1 in the first, chromosome 2 in the second and an empty third bucket */
+    private static DRUMSParameterSet<HERV> createTable(File directory) throws IOException, FileLockException {
+        DRUMSParameterSet<HERV> gp = TestBuckets.createParameters(directory);
+        File[] files = TestBuckets.getFiles(directory, 3);
+        TestBuckets.write(gp, files[0], TestBuckets.hervs(1, 0, RECORDS, 1));
+        TestBuckets.write(gp, files[1], TestBuckets.hervs(2, 0, RECORDS, 1));
+        return gp;
+    }
+
+    private static RangeHashFunction createHashFunction() {
+        return TestBuckets.createHashFunction(new byte[] { 1 }, new byte[] { 2 }, new byte[] { (byte) 0xFF });
+    }
+
+    /** counts the visited records and stops after the given number */
+    private static RecordVisitor count(final int limit) {
+        return new RecordVisitor() {
+            private int visited;
+
+            @Override
+            public boolean visit(ByteBuffer records, int offset) {
+                return ++visited < limit;
+            }
+        };
+    }
+}
@@ -0,0 +1,151 @@
+package com.unister.semweb.mapped.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.unister.semweb.biodrums.herv.HERV;
+import com.unister.semweb.biodrums.mapped.MappedTable;
+import com.unister.semweb.biodrums.mapped.NearestFeatures;
+import com.unister.semweb.biodrums.mapped.NearestFeatures.Direction;
+import com.unister.semweb.biodrums.scan.RecordFilter;
+import com.unister.semweb.biodrums.storage.RegionLayout;
+import com.unister.semweb.drums.DRUMSParameterSet;
+import com.unister.semweb.drums.file.FileLockException;
+import com.unister.semweb.storage.test.TestBuckets;
+
+/**
+ * Tests the {@link NearestFeatures}.
+ * 
+ * @author Martin Nettling
+ * 
+ */
+public class NearestFeaturesTest {
+    /** the number of records of each chromosome, one every 10 positions */
+    private static final int RECORDS = 100;
+
+    /**
+     * Tests the order of the found HERVs, ties and the directions.
+     * 
+     * @throws IOException
+     * @throws FileLockException
+     */
+    @Test
+    public void nearestTest() throws IOException, FileLockException {
+        File directory = Files.createTempDirectory("NearestFeatures").toFile();
+        MappedTable<HERV> table = null;
+        try {
+            table = createTable(directory, MappedTable.MAX_CHUNK_SIZE);
+            // records with the same distance are ordered downstream first
+            assertPositions(new int[] { 30, 20 }, NearestFeatures.nearestHERVs(table, (byte) 1, 25, Direction.BOTH, 2));
+            assertPositions(new int[] { 20, 30, 10 },
+                    NearestFeatures.nearestHERVs(table, (byte) 1, 20, Direction.BOTH, 3));
+            // the two nearest records are in different buckets
+            assertPositions(new int[] { 100, 90 },
+                    NearestFeatures.nearestHERVs(table, (byte) 1, 95, Direction.BOTH, 2));
+            assertPositions(new int[] { 20, 10 },
+                    NearestFeatures.nearestHERVs(table, (byte) 1, 25, Direction.UPSTREAM, 2));
+            assertPositions(new int[] { 30, 40 },
+                    NearestFeatures.nearestHERVs(table, (byte) 1, 25, Direction.DOWNSTREAM, 2));
+
+            List<HERV> filtered = NearestFeatures.nearest(table, RegionLayout.HERV_LAYOUT, (byte) 1, 250, 2,
+                    Direction.BOTH, new RecordFilter() {
+                        @Override
+                        public boolean accept(ByteBuffer records, int offset) {
+                            return HERV.getStartPositionChromosome(records, offset) % 100 == 0;
+                        }
+                    });
+            assertPositions(new int[] { 300, 200 }, filtered);
+        } finally {
+            if (table != null) {
+                table.close();
+            }
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    /**
+     * Tests that the search crosses the chunks of a bucket mapped in several chunks.
+     * 
+     * @throws IOException
+     * @throws FileLockException
+     */
+    @Test
+    public void chunkTest() throws IOException, FileLockException {
+        File directory = Files.createTempDirectory("NearestFeatures").toFile();
+        MappedTable<HERV> table = null;
+        try {
+            // chunks of 10 records, the second bucket starts a chunk at 100, 200 and so on
+            table = createTable(directory, 10 * HERV.ELEMENT_SIZE);
+            assertPositions(new int[] { 200, 190, 210, 180 },
+                    NearestFeatures.nearestHERVs(table, (byte) 1, 195, Direction.BOTH, 4));
+            assertPositions(new int[] { 990, 980 },
+                    NearestFeatures.nearestHERVs(table, (byte) 1, 995, Direction.UPSTREAM, 2));
+        } finally {
+            if (table != null) {
+                table.close();
+            }
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    /**
+     * Tests that the search stops at the ends of the chromosome and of the table, and that nothing is found on a
+     * chromosome without records.
+     * 
+     * @throws IOException
+     * @throws FileLockException
+     */
+    @Test
+    public void chromosomeEndTest() throws IOException, FileLockException {
+        File directory = Files.createTempDirectory("NearestFeatures").toFile();
+        MappedTable<HERV> table = null;
+        try {
+            table = createTable(directory, MappedTable.MAX_CHUNK_SIZE);
+            // chromosome 2 follows in the next bucket, but is not returned
+            assertPositions(new int[] { 990, 980, 970 },
+                    NearestFeatures.nearestHERVs(table, (byte) 1, 2000, Direction.BOTH, 3));
+            Assert.assertEquals(RECORDS,
+                    NearestFeatures.nearestHERVs(table, (byte) 1, 0, Direction.DOWNSTREAM, 2 * RECORDS).size());
+            // chromosome 1 precedes in the previous bucket, but is not returned
+            Assert.assertTrue(NearestFeatures.nearestHERVs(table, (byte) 2, 0, Direction.UPSTREAM, 5).isEmpty());
+            // the search crosses the empty last bucket and reaches the end of the table
+            Assert.assertTrue(NearestFeatures.nearestHERVs(table, (byte) 2, 5000, Direction.DOWNSTREAM, 5).isEmpty());
+            Assert.assertTrue(NearestFeatures.nearestHERVs(table, (byte) 3, 0, Direction.BOTH, 5).isEmpty());
+        } finally {
+            if (table != null) {
+                table.close();
+            }
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    private static void assertPositions(int[] expected, List<HERV> hervs) {
+        Assert.assertEquals(expected.length, hervs.size());
+        for (int i = 0; i < expected.length; i++) {
+            Assert.assertEquals(expected[i], hervs.get(i).getStartPositionChromosome());
+        }
+    }
+
+    /**
+     * Creates a table with a record every 10 positions of chromosome 1 and 2. Chromosome 1 is split into the positions
+     * up to 95 in the first and the remaining positions in the second bucket, chromosome 2 is in the third bucket and
+     * the fourth bucket is empty.
+     */
+    private static MappedTable<HERV> createTable(File directory, int maxChunkSize) throws IOException,
+            FileLockException {
+        DRUMSParameterSet<HERV> gp = TestBuckets.createParameters(directory);
+        File[] files = TestBuckets.getFiles(directory, 4);
+        TestBuckets.write(gp, files[0], TestBuckets.hervs(1, 0, 100, 10));
+        TestBuckets.write(gp, files[1], TestBuckets.hervs(1, 100, 10 * RECORDS, 10));
+        TestBuckets.write(gp, files[2], TestBuckets.hervs(2, 0, 10 * RECORDS, 10));
+        return new MappedTable<HERV>(gp, TestBuckets.createHashFunction(new byte[] { 1, 0, 0, 0, 95 },
+                new byte[] { 1 }, new byte[] { 2 }, new byte[] { (byte) 0xFF }), new HERV(), files, maxChunkSize);
+    }
+}
@@ -0,0 +1,54 @@
+package com.unister.semweb.monitoring.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.unister.semweb.biodrums.monitoring.LatencyHistogram;
+
+/**
+ * Tests the {@link LatencyHistogram}.
+ * 
+ * @author Martin Nettling
+ * 
+ */
+public class LatencyHistogramTest {
+    /**
+     * Tests that the estimated percentiles differ at most 12.5 percent from the exact percentiles.
+     */
+    @Test
+    public void percentileTest() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 10000; i++) {
+            histogram.record(i * 1000);
+        }
+        Assert.assertEquals(10000, histogram.getCount());
+        Assert.assertEquals(10000000, histogram.getMax());
+
+        long median = histogram.getPercentile(50);
+        Assert.assertTrue(median >= 5000000 && median <= 5000000 * 1.125);
+        long p99 = histogram.getPercentile(99);
+        Assert.assertTrue(p99 >= 9900000 && p99 <= 10000000);
+        Assert.assertEquals(10000000, histogram.getPercentile(100));
+    }
+
+    /**
+     * Tests small and extreme values.
+     */
+    @Test
+    public void boundaryTest() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Assert.assertEquals(0, histogram.getPercentile(50));
+
+        histogram.record(-5);
+        histogram.record(3);
+        Assert.assertEquals(0, histogram.getPercentile(50));
+        Assert.assertEquals(3, histogram.getPercentile(100));
+
+        histogram.record(Long.MAX_VALUE);
+        Assert.assertEquals(Long.MAX_VALUE, histogram.getPercentile(100));
+
+        histogram.reset();
+        Assert.assertEquals(0, histogram.getCount());
+        Assert.assertEquals(0, histogram.getMax());
+    }
+}
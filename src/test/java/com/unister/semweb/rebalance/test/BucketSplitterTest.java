@@ -0,0 +1,55 @@
+package com.unister.semweb.rebalance.test;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.unister.semweb.biodrums.rebalance.BucketRebalancer;
+import com.unister.semweb.biodrums.rebalance.BucketSplitter;
+
+/**
+ * Tests the choice of the split point of {@link BucketSplitter} and of the bucket of {@link BucketRebalancer}.
+ * 
+ * @author Martin Nettling
+ * 
+ */
+public class BucketSplitterTest {
+    /**
+     * Tests that records with the same range prefix are never separated.
+     */
+    @Test
+    public void splitIndexTest() {
+        // records of 3 bytes, the range prefix is the first 2 bytes, the boundary nearest to the median is 1|2
+        int[] prefixes = { 1, 2, 2, 2, 2, 2, 3 };
+        ByteBuffer records = ByteBuffer.allocate(prefixes.length * 3);
+        for (int i = 0; i < prefixes.length; i++) {
+            records.putShort((short) prefixes[i]).put((byte) i);
+        }
+        Assert.assertEquals(1, BucketSplitter.findSplitIndex(records, prefixes.length, 3, 2));
+        Assert.assertEquals(3, BucketSplitter.findSplitIndex(records, prefixes.length, 3, 3));
+        Assert.assertEquals(-1, BucketSplitter.findSplitIndex(records, 1, 3, 2));
+
+        ByteBuffer same = ByteBuffer.allocate(4 * 3);
+        for (int i = 0; i < 4; i++) {
+            same.putShort((short) 7).put((byte) i);
+        }
+        Assert.assertEquals(-1, BucketSplitter.findSplitIndex(same, 4, 3, 2));
+    }
+
+    /**
+     * Tests that the bucket exceeding its size or access limit the most is chosen.
+     */
+    @Test
+    public void chooseBucketTest() {
+        long[] records = { 100, 900, 200, 100 };
+        long[] accesses = { 10, 10, 10, 10 };
+        Assert.assertEquals(-1, BucketRebalancer.chooseBucket(records, accesses, 1000, 2));
+        Assert.assertEquals(1, BucketRebalancer.chooseBucket(records, accesses, 500, 2));
+
+        accesses = new long[] { 10, 10, 500, 10 };
+        Assert.assertEquals(2, BucketRebalancer.chooseBucket(records, accesses, 500, 2));
+        records[2] = 1;
+        Assert.assertEquals(1, BucketRebalancer.chooseBucket(records, accesses, 500, 2));
+    }
+}
@@ -0,0 +1,146 @@
+package com.unister.semweb.scan.test;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.unister.semweb.biodrums.herv.HERV;
+import com.unister.semweb.biodrums.scan.BucketFunction;
+import com.unister.semweb.biodrums.scan.BucketScanner;
+import com.unister.semweb.biodrums.scan.ParallelBucketScan;
+import com.unister.semweb.biodrums.scan.RecordBlock;
+import com.unister.semweb.drums.DRUMSParameterSet;
+import com.unister.semweb.storage.test.TestBuckets;
+
+/**
+ * Tests the {@link ParallelBucketScan} and the {@link RecordBlock}.
+ * 
+ * @author Martin Nettling
+ * 
+ */
+public class ParallelBucketScanTest {
+    /** the number of records in each filled bucket */
+    private static final int RECORDS = 100;
+
+    /**
+     * Tests that a range over several buckets is returned in key order, as objects and as blocks, also with a limited
+     * read-ahead.
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void rangeTest() throws Exception {
+        File directory = Files.createTempDirectory("ParallelBucketScan").toFile();
+        ParallelBucketScan<HERV> scan = null;
+        try {
+            scan = createScan(directory, 2);
+
+            ParallelBucketScan<HERV>.RangeIterator range = scan.getRange(TestBuckets.herv(1, 90).getKey(),
+                    TestBuckets.herv(3, 9).getKey());
+            int[] chromosomes = new int[4];
+            HERV previous = null;
+            while (range.hasNext()) {
+                HERV herv = range.next();
+                if (previous != null && previous.getChromosome() == herv.getChromosome()) {
+                    Assert.assertEquals(previous.getStartPositionChromosome() + 1, herv.getStartPositionChromosome());
+                }
+                chromosomes[herv.getChromosome()]++;
+                previous = herv;
+            }
+            Assert.assertEquals(10, chromosomes[1]);
+            Assert.assertEquals(RECORDS, chromosomes[2]);
+            Assert.assertEquals(10, chromosomes[3]);
+
+            // the empty second bucket is skipped
+            range = scan.getRange(null, null);
+            int records = 0;
+            ByteBuffer block;
+            while ((block = range.nextBlock()) != null) {
+                Assert.assertEquals(RECORDS * HERV.ELEMENT_SIZE, block.remaining());
+                records += block.remaining() / HERV.ELEMENT_SIZE;
+            }
+            Assert.assertEquals(3 * RECORDS, records);
+
+            // with the smallest read-ahead the buckets are read one after another
+            scan.setMaxReadAhead(1);
+            range = scan.getRange(null, null);
+            records = 0;
+            while (range.hasNext()) {
+                range.next();
+                records++;
+            }
+            Assert.assertEquals(3 * RECORDS, records);
+        } finally {
+            if (scan != null) {
+                scan.close();
+            }
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    /**
+     * Tests that the results of a mapped function are returned in the order of the buckets.
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void mapTest() throws Exception {
+        File directory = Files.createTempDirectory("ParallelBucketScan").toFile();
+        ParallelBucketScan<HERV> scan = null;
+        try {
+            scan = createScan(directory, 3);
+            List<RecordBlock> blocks = scan.map(TestBuckets.herv(1, 50).getKey(), null,
+                    new BucketFunction<HERV, RecordBlock>() {
+                        @Override
+                        public RecordBlock apply(BucketScanner<HERV> scanner, int bucketId, byte[] lowerKey,
+                                byte[] upperKey) throws Exception {
+                            // starts with a capacity of one record, so the block has to grow
+                            RecordBlock block = new RecordBlock(scanner.getElementSize(), 1);
+                            scanner.scanBucket(bucketId, lowerKey, upperKey, block);
+                            return block;
+                        }
+                    });
+            Assert.assertEquals(4, blocks.size());
+            Assert.assertEquals(50, blocks.get(0).getNumberOfRecords());
+            Assert.assertEquals(0, blocks.get(1).getNumberOfRecords());
+            Assert.assertEquals(RECORDS, blocks.get(2).getNumberOfRecords());
+            Assert.assertEquals(RECORDS, blocks.get(3).getNumberOfRecords());
+
+            RecordBlock block = blocks.get(3);
+            block.trim();
+            Assert.assertEquals(RECORDS * HERV.ELEMENT_SIZE, block.getSizeInBytes());
+            ByteBuffer buffer = block.asBuffer();
+            for (int position = 0; position < RECORDS; position++) {
+                byte[] record = new byte[HERV.ELEMENT_SIZE];
+                buffer.get(record);
+                HERV herv = new HERV().fromByteBuffer(ByteBuffer.wrap(record));
+                Assert.assertEquals(3, herv.getChromosome());
+                Assert.assertEquals(position, herv.getStartPositionChromosome());
+            }
+        } finally {
+            if (scan != null) {
+                scan.close();
+            }
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    /**
+     * Creates a table with chromosome 1 in the first, an empty second bucket, chromosome 2 in the third and chromosome
+     * 3 in the fourth bucket.
+     */
+    private static ParallelBucketScan<HERV> createScan(File directory, int parallelism) throws Exception {
+        DRUMSParameterSet<HERV> gp = TestBuckets.createParameters(directory);
+        File[] files = TestBuckets.getFiles(directory, 4);
+        TestBuckets.write(gp, files[0], TestBuckets.hervs(1, 0, RECORDS, 1));
+        TestBuckets.write(gp, files[2], TestBuckets.hervs(2, 0, RECORDS, 1));
+        TestBuckets.write(gp, files[3], TestBuckets.hervs(3, 0, RECORDS, 1));
+        return new ParallelBucketScan<HERV>(gp, TestBuckets.createHashFunction(new byte[] { 1 }, new byte[] { 1,
+                (byte) 0xFF }, new byte[] { 2 }, new byte[] { (byte) 0xFF }), new HERV(), parallelism);
+    }
+}
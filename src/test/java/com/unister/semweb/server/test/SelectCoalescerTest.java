@@ -0,0 +1,205 @@
+package com.unister.semweb.server.test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.unister.semweb.biodrums.herv.HERV;
+import com.unister.semweb.biodrums.server.SelectCoalescer;
+import com.unister.semweb.drums.api.DRUMSException;
+import com.unister.semweb.drums.bucket.hashfunction.RangeHashFunction;
+
+/**
+ * Tests the {@link SelectCoalescer}.
+ * 
+ * @author Martin Nettling
+ * 
+ */
+public class SelectCoalescerTest {
+    /**
+     * Tests that the keys of one request, which are queued while the dispatcher is busy, are served in one batch with
+     * one read per bucket, and that the results keep the order of the keys.
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void batchTest() throws Exception {
+        final Map<ByteBuffer, HERV> table = new HashMap<ByteBuffer, HERV>();
+        for (int position = 0; position < 10; position += 2) {
+            HERV herv = herv(1, position);
+            table.put(ByteBuffer.wrap(herv.getKey()), herv);
+            herv = herv(2, position);
+            table.put(ByteBuffer.wrap(herv.getKey()), herv);
+        }
+        final byte[] blockingKey = herv(3, 0).getKey();
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Integer> reads = Collections.synchronizedList(new ArrayList<Integer>());
+        RangeHashFunction hashFunction = new RangeHashFunction(new byte[][] { { 1 }, { (byte) 0xFF } },
+                new String[] { "data0.db", "data1.db" }, "RangeHashFunction.txt");
+
+        final SelectCoalescer<HERV> coalescer = new SelectCoalescer<HERV>(null, hashFunction, 1024) {
+            @Override
+            protected List<HERV> read(byte[]... keys) throws DRUMSException {
+                if (keys.length == 1 && ByteBuffer.wrap(keys[0]).equals(ByteBuffer.wrap(blockingKey))) {
+                    // keeps the dispatcher busy, until the lookups of the request are queued
+                    entered.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException ex) {
+                        throw new DRUMSException("interrupted");
+                    }
+                    return new ArrayList<HERV>();
+                }
+                reads.add(keys.length);
+                List<HERV> found = new ArrayList<HERV>();
+                for (byte[] key : keys) {
+                    HERV herv = table.get(ByteBuffer.wrap(key));
+                    if (herv != null) {
+                        found.add(herv);
+                    }
+                }
+                return found;
+            }
+        };
+        try {
+            Thread blocker = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        coalescer.select(blockingKey);
+                    } catch (Exception ex) {
+                        throw new RuntimeException(ex);
+                    }
+                }
+            });
+            blocker.start();
+            entered.await();
+
+            final byte[][] keys = { herv(1, 0).getKey(), herv(2, 4).getKey(), herv(1, 1).getKey(),
+                    herv(1, 2).getKey(), herv(2, 4).getKey() };
+            final AtomicReference<List<HERV>> result = new AtomicReference<List<HERV>>();
+            Thread request = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        result.set(coalescer.selectAll(keys));
+                    } catch (Exception ex) {
+                        throw new RuntimeException(ex);
+                    }
+                }
+            });
+            request.start();
+            // the request waits for its results, after all keys were queued
+            while (request.getState() != Thread.State.TIMED_WAITING) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+            request.join();
+            blocker.join();
+
+            // one read per bucket, the duplicate key is read once
+            Assert.assertEquals(2, reads.size());
+            Assert.assertEquals(4, reads.get(0) + reads.get(1));
+            List<HERV> records = result.get();
+            Assert.assertEquals(5, records.size());
+            Assert.assertEquals(0, records.get(0).getStartPositionChromosome());
+            Assert.assertEquals(4, records.get(1).getStartPositionChromosome());
+            Assert.assertNull(records.get(2));
+            Assert.assertEquals(2, records.get(3).getStartPositionChromosome());
+            Assert.assertEquals(2, records.get(4).getChromosome());
+        } finally {
+            coalescer.close();
+        }
+    }
+
+    /**
+     * Tests that a lookup, whose bucket fails with a runtime exception, fails, and that later lookups are still served.
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void failureTest() throws Exception {
+        final HERV stored = herv(1, 0);
+        RangeHashFunction hashFunction = new RangeHashFunction(new byte[][] { { (byte) 0xFF } },
+                new String[] { "data0.db" }, "RangeHashFunction.txt");
+        SelectCoalescer<HERV> coalescer = new SelectCoalescer<HERV>(null, hashFunction, 1024) {
+            @Override
+            protected List<HERV> read(byte[]... keys) throws DRUMSException {
+                List<HERV> found = new ArrayList<HERV>();
+                for (byte[] key : keys) {
+                    if (key.length != HERV.KEY_SIZE) {
+                        throw new IllegalArgumentException("Invalid key size " + key.length);
+                    }
+                    if (ByteBuffer.wrap(key).equals(ByteBuffer.wrap(stored.getKey()))) {
+                        found.add(stored);
+                    }
+                }
+                return found;
+            }
+        };
+        coalescer.setTimeout(10, TimeUnit.SECONDS);
+        try {
+            try {
+                coalescer.select(new byte[] { 1, 2, 3 });
+                Assert.fail("A lookup of a failing bucket succeeded");
+            } catch (DRUMSException expected) {
+                // expected
+            }
+            Assert.assertEquals(0, coalescer.select(stored.getKey()).getStartPositionChromosome());
+            Assert.assertNull(coalescer.select(herv(1, 1).getKey()));
+        } finally {
+            coalescer.close();
+        }
+    }
+
+    /**
+     * Tests that a lookup, which is not served within the timeout, fails.
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void timeoutTest() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        RangeHashFunction hashFunction = new RangeHashFunction(new byte[][] { { (byte) 0xFF } },
+                new String[] { "data0.db" }, "RangeHashFunction.txt");
+        SelectCoalescer<HERV> coalescer = new SelectCoalescer<HERV>(null, hashFunction, 1024) {
+            @Override
+            protected List<HERV> read(byte[]... keys) throws DRUMSException {
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    throw new DRUMSException("interrupted");
+                }
+                return new ArrayList<HERV>();
+            }
+        };
+        coalescer.setTimeout(50, TimeUnit.MILLISECONDS);
+        try {
+            long start = System.nanoTime();
+            try {
+                coalescer.selectAll(herv(1, 0).getKey(), herv(1, 1).getKey());
+                Assert.fail("A blocked lookup succeeded");
+            } catch (DRUMSException expected) {
+                // expected
+            }
+            Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        } finally {
+            release.countDown();
+            coalescer.close();
+        }
+    }
+
+    private static HERV herv(int chromosome, int position) {
+        return new HERV((byte) chromosome, position, position + 10, (char) 0, (char) 10, (char) 1);
+    }
+}
@@ -0,0 +1,87 @@
+package com.unister.semweb.snapshot.test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.unister.semweb.biodrums.herv.HERV;
+import com.unister.semweb.biodrums.snapshot.Snapshot;
+import com.unister.semweb.biodrums.snapshot.TableSnapshots;
+import com.unister.semweb.drums.DRUMSParameterSet;
+import com.unister.semweb.drums.bucket.hashfunction.RangeHashFunction;
+
+/**
+ * Tests the {@link TableSnapshots}.
+ * 
+ * @author Martin Nettling
+ * 
+ */
+public class TableSnapshotsTest {
+    /**
+     * Tests that only changed buckets are copied, that pinned files survive a publication and that they are deleted
+     * after the last release.
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void publishAndReclaimTest() throws IOException {
+        File directory = File.createTempFile("TableSnapshots", "");
+        directory.delete();
+        directory.mkdir();
+        DRUMSParameterSet<HERV> gp = new DRUMSParameterSet<HERV>("HERVExample/drums.properties", new HERV());
+        gp.DATABASE_DIRECTORY = directory.getPath();
+        RangeHashFunction hashFunction = new RangeHashFunction(new byte[][] { { 0x7F }, { (byte) 0xFF } },
+                new String[] { "data0.db", "data1.db" }, "RangeHashFunction.txt");
+        try {
+            write(new File(directory, "data0.db"), 10);
+            write(new File(directory, "data1.db"), 20);
+            TableSnapshots<HERV> snapshots = new TableSnapshots<HERV>(gp, hashFunction, new HERV());
+            Assert.assertEquals(0, snapshots.publish());
+
+            Snapshot<HERV> first = snapshots.acquire();
+            write(new File(directory, "data0.db"), 30);
+            Assert.assertEquals(1, snapshots.publish());
+            Snapshot<HERV> second = snapshots.acquire();
+
+            Assert.assertEquals(10, first.getFile(0).length());
+            Assert.assertEquals(30, second.getFile(0).length());
+            Assert.assertEquals(first.getFile(1), second.getFile(1));
+
+            first.close();
+            Assert.assertFalse(first.getFile(0).exists());
+            Assert.assertTrue(second.getFile(1).exists());
+            second.close();
+            snapshots.close();
+
+            TableSnapshots<HERV> recovered = new TableSnapshots<HERV>(gp, hashFunction, new HERV());
+            Assert.assertEquals(1, recovered.getCurrentVersion());
+            Snapshot<HERV> third = recovered.acquire();
+            Assert.assertEquals(30, third.getFile(0).length());
+            third.close();
+            recovered.close();
+        } finally {
+            delete(directory);
+        }
+    }
+
+    private static void write(File file, int length) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(new byte[length]);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void delete(File file) {
+        if (file.isDirectory()) {
+            for (File child : file.listFiles()) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,63 @@
+package com.unister.semweb.stats.test;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.unister.semweb.biodrums.stats.BucketStatistics;
+import com.unister.semweb.biodrums.stats.QueryPlanner;
+import com.unister.semweb.biodrums.stream.RecordIntFunction;
+import com.unister.semweb.biodrums.weigel.SNP;
+
+/**
+ * Tests the {@link BucketStatistics} and the plans of the {@link QueryPlanner}.
+ * 
+ * @author Martin Nettling
+ * 
+ */
+public class BucketStatisticsTest {
+    /**
+     * Tests exact counts, range estimates and category counts of 1000 SNPs on positions 0 to 9990.
+     */
+    @Test
+    public void estimateTest() {
+        ByteBuffer records = ByteBuffer.allocate(1000 * SNP.ELEMENT_SIZE);
+        for (int i = 0; i < 1000; i++) {
+            SNP snp = new SNP((byte) 1, i * 10, (char) (i % 4));
+            records.put(snp.toByteBuffer().array());
+        }
+        BucketStatistics.Collector collector = new BucketStatistics.Collector(SNP.KEY_SIZE, new RecordIntFunction() {
+            @Override
+            public int applyAsInt(ByteBuffer records, int offset) {
+                return SNP.getEcotypeId(records, offset);
+            }
+        }, SNP.lowerKey((byte) 1, 0), SNP.upperKey((byte) 1, 9999));
+        for (int i = 0; i < 1000; i++) {
+            collector.visit(records, i * SNP.ELEMENT_SIZE);
+        }
+        BucketStatistics statistics = collector.build("stamp");
+
+        Assert.assertEquals(1000, statistics.getCount());
+        Assert.assertEquals(250, statistics.getCategoryCount((char) 3));
+        Assert.assertEquals(0, statistics.getCategoryCount((char) 4));
+        Assert.assertEquals(4, statistics.getNumberOfCategories());
+        Assert.assertEquals(1000, statistics.estimate(null, null), 0);
+        Assert.assertEquals(1000, statistics.estimate(SNP.lowerKey((byte) 1, 0), SNP.upperKey((byte) 2, 0)), 0);
+        Assert.assertEquals(0, statistics.estimate(SNP.lowerKey((byte) 2, 0), null), 0);
+        Assert.assertEquals(500, statistics.estimate(SNP.lowerKey((byte) 1, 0), SNP.upperKey((byte) 1, 4999)), 20);
+        Assert.assertEquals(100, statistics.estimate(SNP.lowerKey((byte) 1, 2000), SNP.upperKey((byte) 1, 2999)), 20);
+    }
+
+    /**
+     * Tests the plans for small, medium and large ranges.
+     */
+    @Test
+    public void planTest() {
+        QueryPlanner planner = new QueryPlanner(null, 100, 10000);
+        Assert.assertEquals(QueryPlanner.Plan.INDEX, planner.plan(50, 3));
+        Assert.assertEquals(QueryPlanner.Plan.SEQUENTIAL, planner.plan(5000, 3));
+        Assert.assertEquals(QueryPlanner.Plan.SEQUENTIAL, planner.plan(50000, 1));
+        Assert.assertEquals(QueryPlanner.Plan.PARALLEL, planner.plan(50000, 3));
+    }
+}
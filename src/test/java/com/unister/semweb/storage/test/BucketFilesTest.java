@@ -0,0 +1,69 @@
+package com.unister.semweb.storage.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.unister.semweb.biodrums.storage.BucketFiles;
+
+/**
+ * Tests the {@link BucketFiles}.
+ * 
+ * @author Martin Nettling
+ * 
+ */
+public class BucketFilesTest {
+    /**
+     * Tests that the stamp detects a changed header of the same length and with the same modification time.
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void stampTest() throws IOException {
+        File directory = Files.createTempDirectory("BucketFiles").toFile();
+        try {
+            File file = new File(directory, "data0.db");
+            Assert.assertEquals(0, BucketFiles.getStamp(file));
+
+            byte[] content = new byte[2048];
+            FileUtils.writeByteArrayToFile(file, content);
+            long modified = file.lastModified();
+            long stamp = BucketFiles.getStamp(file);
+            Assert.assertEquals(stamp, BucketFiles.getStamp(file));
+
+            content[8] = 1;
+            FileUtils.writeByteArrayToFile(file, content);
+            file.setLastModified(modified);
+            Assert.assertEquals(modified, file.lastModified());
+            Assert.assertTrue(stamp != BucketFiles.getStamp(file));
+        } finally {
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    /**
+     * Tests that a file is replaced by its temporary file.
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void replaceTest() throws IOException {
+        File directory = Files.createTempDirectory("BucketFiles").toFile();
+        try {
+            File file = new File(directory, "catalog");
+            File tmp = new File(directory, "catalog.tmp");
+            FileUtils.writeStringToFile(tmp, "first", "UTF-8");
+            BucketFiles.replace(tmp, file);
+            FileUtils.writeStringToFile(tmp, "second", "UTF-8");
+            BucketFiles.replace(tmp, file);
+            Assert.assertFalse(tmp.exists());
+            Assert.assertEquals("second", FileUtils.readFileToString(file, "UTF-8"));
+        } finally {
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.unister.semweb.storage.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.unister.semweb.biodrums.herv.HERV;
+import com.unister.semweb.biodrums.storage.BucketFiles;
+import com.unister.semweb.biodrums.storage.BucketPlacement;
+import com.unister.semweb.drums.DRUMSParameterSet;
+import com.unister.semweb.drums.bucket.hashfunction.RangeHashFunction;
+
+/**
+ * Tests the {@link BucketPlacement}.
+ * 
+ * @author Martin Nettling
+ * 
+ */
+public class BucketPlacementTest {
+    /**
+     * Tests that the buckets are distributed by size, moved into their data directories, linked and moved back.
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void placeBySizeTest() throws IOException {
+        File root = Files.createTempDirectory("BucketPlacement").toFile();
+        File database = new File(root, "db");
+        File[] disks = { new File(root, "disk0"), new File(root, "disk1") };
+        database.mkdir();
+        DRUMSParameterSet<HERV> gp = new DRUMSParameterSet<HERV>("HERVExample/drums.properties", new HERV());
+        gp.DATABASE_DIRECTORY = database.getPath();
+        RangeHashFunction hashFunction = new RangeHashFunction(new byte[][] { { 0x3F }, { 0x7F }, { (byte) 0xBF },
+                { (byte) 0xFF } }, new String[] { "data0.db", "data1.db", "data2.db", "data3.db" },
+                "RangeHashFunction.txt");
+        try {
+            int[] sizes = { 400, 100, 300, 200 };
+            for (int i = 0; i < sizes.length; i++) {
+                FileUtils.writeByteArrayToFile(new File(database, "data" + i + ".db"), new byte[sizes[i]]);
+            }
+            BucketPlacement placement = BucketPlacement.create(gp, hashFunction, disks,
+                    BucketPlacement.Strategy.BY_SIZE);
+            placement.write(gp);
+            placement = BucketPlacement.read(gp);
+            Assert.assertEquals(0, placement.getDirectoryIndex("data0.db"));
+            Assert.assertEquals(0, placement.getDirectoryIndex("data1.db"));
+            Assert.assertEquals(1, placement.getDirectoryIndex("data2.db"));
+            Assert.assertEquals(1, placement.getDirectoryIndex("data3.db"));
+            Assert.assertArrayEquals(new int[] { 0, 2, 1, 3 }, placement.interleave(hashFunction, 0, 3));
+
+            Assert.assertEquals(4, placement.apply(gp, hashFunction));
+            Assert.assertEquals(0, placement.apply(gp, hashFunction));
+            for (int i = 0; i < sizes.length; i++) {
+                File link = BucketFiles.getFile(gp, hashFunction, i);
+                Assert.assertTrue(Files.isSymbolicLink(link.toPath()));
+                Assert.assertEquals(sizes[i], link.length());
+                File target = new File(disks[placement.getDirectoryIndex(link.getName())], link.getName());
+                Assert.assertEquals(target.getAbsoluteFile(), BucketFiles.resolve(link).getAbsoluteFile());
+            }
+
+            // moving all buckets back into the database directory removes the links
+            placement = BucketPlacement.create(gp, hashFunction, new File[] { database },
+                    BucketPlacement.Strategy.ROUND_ROBIN);
+            Assert.assertEquals(4, placement.apply(gp, hashFunction));
+            for (int i = 0; i < sizes.length; i++) {
+                File file = BucketFiles.getFile(gp, hashFunction, i);
+                Assert.assertFalse(Files.isSymbolicLink(file.toPath()));
+                Assert.assertEquals(sizes[i], file.length());
+            }
+            Assert.assertEquals(0, disks[0].list().length + disks[1].list().length);
+        } finally {
+            FileUtils.deleteDirectory(root);
+        }
+    }
+
+    /**
+     * Tests that round robin alternates the data directories.
+     */
+    @Test
+    public void roundRobinTest() {
+        DRUMSParameterSet<HERV> gp = new DRUMSParameterSet<HERV>("HERVExample/drums.properties", new HERV());
+        gp.DATABASE_DIRECTORY = "does-not-exist";
+        RangeHashFunction hashFunction = new RangeHashFunction(new byte[][] { { 0x3F }, { 0x7F }, { (byte) 0xFF } },
+                new String[] { "data0.db", "data1.db", "data2.db" }, "RangeHashFunction.txt");
+        BucketPlacement placement = BucketPlacement.create(gp, hashFunction, new File[] { new File("a"),
+                new File("b") }, BucketPlacement.Strategy.ROUND_ROBIN);
+        Assert.assertEquals(0, placement.getDirectoryIndex("data0.db"));
+        Assert.assertEquals(1, placement.getDirectoryIndex("data1.db"));
+        Assert.assertEquals(0, placement.getDirectoryIndex("data2.db"));
+        Assert.assertEquals(-1, placement.getDirectoryIndex("data3.db"));
+    }
+}
@@ -0,0 +1,131 @@
+package com.unister.semweb.storage.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.unister.semweb.biodrums.herv.HERV;
+import com.unister.semweb.biodrums.storage.BucketFiles;
+import com.unister.semweb.drums.DRUMSParameterSet;
+import com.unister.semweb.drums.bucket.hashfunction.RangeHashFunction;
+import com.unister.semweb.drums.file.AbstractHeaderFile.AccessMode;
+import com.unister.semweb.drums.file.FileLockException;
+import com.unister.semweb.drums.file.HeaderIndexFile;
+
+/**
+ * Creates small HERV-tables in a temporary directory, whose bucket files are written directly. The buckets are named
+ * <code>data0.db</code>, <code>data1.db</code> and so on.
+ * 
+ * @author Martin Nettling
+ * 
+ */
+public class TestBuckets {
+
+    private TestBuckets() {
+    }
+
+    /**
+     * @param directory
+     *            the directory of the table
+     * @return the parameters of a HERV-table in the given directory
+     */
+    public static DRUMSParameterSet<HERV> createParameters(File directory) {
+        DRUMSParameterSet<HERV> gp = new DRUMSParameterSet<HERV>("HERVExample/drums.properties", new HERV());
+        gp.DATABASE_DIRECTORY = directory.getPath();
+        return gp;
+    }
+
+    /**
+     * Creates a hash function, whose buckets end at the given keys. A key belongs to the first bucket, whose range is a
+     * prefix of the key or larger.
+     * 
+     * @param ranges
+     *            the largest key of each bucket
+     * @return the hash function
+     */
+    public static RangeHashFunction createHashFunction(byte[]... ranges) {
+        String[] filenames = new String[ranges.length];
+        for (int i = 0; i < ranges.length; i++) {
+            filenames[i] = "data" + i + ".db";
+        }
+        return new RangeHashFunction(ranges, filenames, "RangeHashFunction.txt");
+    }
+
+    /**
+     * @param directory
+     *            the directory of the table
+     * @param numberOfBuckets
+     *            the number of buckets
+     * @return the bucket files of the table
+     */
+    public static File[] getFiles(File directory, int numberOfBuckets) {
+        File[] files = new File[numberOfBuckets];
+        for (int i = 0; i < numberOfBuckets; i++) {
+            files[i] = new File(directory, "data" + i + ".db");
+        }
+        return files;
+    }
+
+    /**
+     * Creates a HERV of 10 positions at the given position.
+     * 
+     * @param chromosome
+     *            the chromosome
+     * @param position
+     *            the start position on the chromosome
+     * @return the HERV
+     */
+    public static HERV herv(int chromosome, int position) {
+        return new HERV((byte) chromosome, position, position + 10, (char) 0, (char) 10, (char) 1);
+    }
+
+    /**
+     * Creates a HERV every <code>step</code> positions in <code>[from, to)</code>.
+     * 
+     * @param chromosome
+     *            the chromosome
+     * @param from
+     *            the position of the first HERV
+     * @param to
+     *            the position behind the last HERV
+     * @param step
+     *            the distance between two HERVs
+     * @return the HERVs in key order
+     */
+    public static List<HERV> hervs(int chromosome, int from, int to, int step) {
+        List<HERV> hervs = new ArrayList<HERV>();
+        for (int position = from; position < to; position += step) {
+            hervs.add(herv(chromosome, position));
+        }
+        return hervs;
+    }
+
+    /**
+     * Writes the given records into a bucket file.
+     * 
+     * @param gp
+     *            the parameters of the table
+     * @param file
+     *            the bucket file
+     * @param records
+     *            the records in key order
+     * @throws IOException
+     * @throws FileLockException
+     */
+    public static void write(DRUMSParameterSet<HERV> gp, File file, List<HERV> records) throws IOException,
+            FileLockException {
+        ByteBuffer buffer = ByteBuffer.allocate(records.size() * HERV.ELEMENT_SIZE);
+        for (HERV herv : records) {
+            buffer.put(herv.toByteBuffer().array());
+        }
+        buffer.flip();
+        HeaderIndexFile<HERV> bucket = BucketFiles.open(gp, file, AccessMode.READ_WRITE);
+        try {
+            bucket.write(0, buffer);
+        } finally {
+            bucket.close();
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.unister.semweb.stream.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.unister.semweb.biodrums.herv.HERV;
+import com.unister.semweb.biodrums.mapped.MappedTable;
+import com.unister.semweb.biodrums.stream.TableSpliterator;
+import com.unister.semweb.biodrums.stream.TableStreams;
+import com.unister.semweb.drums.DRUMSParameterSet;
+import com.unister.semweb.drums.file.FileLockException;
+import com.unister.semweb.storage.test.TestBuckets;
+
+/**
+ * Tests the {@link TableSpliterator} and the {@link TableStreams}.
+ * 
+ * @author Martin Nettling
+ * 
+ */
+public class TableSpliteratorTest {
+    /** the number of records of each chromosome */
+    private static final int RECORDS = 100;
+
+    /**
+     * Tests that a range is split at bucket boundaries, that the parts are exactly sized and that the parts keep the
+     * key order.
+     * 
+     * @throws IOException
+     * @throws FileLockException
+     */
+    @Test
+    public void splitTest() throws IOException, FileLockException {
+        File directory = Files.createTempDirectory("TableSpliterator").toFile();
+        MappedTable<HERV> table = null;
+        try {
+            table = createTable(directory, MappedTable.MAX_CHUNK_SIZE);
+
+            // all records, split down to single buckets
+            List<HERV> records = new ArrayList<HERV>();
+            Assert.assertEquals(6, collect(new TableSpliterator<HERV>(table, null, null), records));
+            assertOrdered(records);
+
+            // a range over the bucket boundary, which starts and ends within a bucket
+            Spliterator<HERV> suffix = new TableSpliterator<HERV>(table, HERV.lowerKey((byte) 1, 95),
+                    HERV.upperKey((byte) 2, 14));
+            Assert.assertEquals(20, suffix.estimateSize());
+            Spliterator<HERV> prefix = suffix.trySplit();
+            Assert.assertEquals(5, prefix.estimateSize());
+            Assert.assertEquals(15, suffix.estimateSize());
+            records.clear();
+            collect(prefix, records);
+            Assert.assertEquals(5, records.size());
+            Assert.assertEquals(95, records.get(0).getStartPositionChromosome());
+            records.clear();
+            collect(suffix, records);
+            Assert.assertEquals(15, records.size());
+            Assert.assertEquals(2, records.get(0).getChromosome());
+            Assert.assertEquals(0, records.get(0).getStartPositionChromosome());
+            Assert.assertEquals(14, records.get(14).getStartPositionChromosome());
+
+            // a small range within one bucket is not split
+            Spliterator<HERV> small = new TableSpliterator<HERV>(table, HERV.lowerKey((byte) 1, 0),
+                    HERV.upperKey((byte) 1, 9));
+            Assert.assertNull(small.trySplit());
+            Assert.assertEquals(10, small.estimateSize());
+        } finally {
+            if (table != null) {
+                table.close();
+            }
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    /**
+     * Tests that buckets mapped in several chunks are split at the chunk boundaries.
+     * 
+     * @throws IOException
+     * @throws FileLockException
+     */
+    @Test
+    public void chunkSplitTest() throws IOException, FileLockException {
+        File directory = Files.createTempDirectory("TableSpliterator").toFile();
+        MappedTable<HERV> table = null;
+        try {
+            // chunks of 10 records: 3 per bucket of chromosome 1, 10 for chromosome 2 and 1 for the empty bucket
+            table = createTable(directory, 10 * HERV.ELEMENT_SIZE);
+            List<HERV> records = new ArrayList<HERV>();
+            Assert.assertEquals(23, collect(new TableSpliterator<HERV>(table, null, null), records));
+            assertOrdered(records);
+
+            Spliterator<HERV> suffix = new TableSpliterator<HERV>(table, HERV.lowerKey((byte) 2, 5),
+                    HERV.upperKey((byte) 2, 24));
+            Spliterator<HERV> prefix = suffix.trySplit();
+            Assert.assertEquals(5, prefix.estimateSize());
+            Assert.assertEquals(15, suffix.estimateSize());
+        } finally {
+            if (table != null) {
+                table.close();
+            }
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    /**
+     * Tests that parallel streams return the same records in the same order as sequential streams.
+     * 
+     * @throws IOException
+     * @throws FileLockException
+     */
+    @Test
+    public void parallelTest() throws IOException, FileLockException {
+        File directory = Files.createTempDirectory("TableSpliterator").toFile();
+        MappedTable<HERV> table = null;
+        try {
+            table = createTable(directory, MappedTable.MAX_CHUNK_SIZE);
+            byte[] lowerKey = HERV.lowerKey((byte) 1, 50);
+            byte[] upperKey = HERV.upperKey((byte) 2, 49);
+
+            List<Integer> sequential = TableStreams.stream(table, lowerKey, upperKey, false)
+                    .map(HERV::getStartPositionChromosome).collect(Collectors.toList());
+            List<Integer> parallel = TableStreams.stream(table, lowerKey, upperKey, true)
+                    .map(HERV::getStartPositionChromosome).collect(Collectors.toList());
+            Assert.assertEquals(RECORDS, sequential.size());
+            Assert.assertEquals(sequential, parallel);
+
+            int[] positions = TableStreams.intStream(table, lowerKey, upperKey, HERV::getStartPositionChromosome, true)
+                    .toArray();
+            Assert.assertEquals(RECORDS, positions.length);
+            for (int i = 0; i < positions.length; i++) {
+                Assert.assertEquals(sequential.get(i).intValue(), positions[i]);
+            }
+        } finally {
+            if (table != null) {
+                table.close();
+            }
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    /** splits the spliterator recursively and collects the records in order, returns the number of parts */
+    private static int collect(Spliterator<HERV> spliterator, final List<HERV> records) {
+        Spliterator<HERV> prefix = spliterator.trySplit();
+        if (prefix != null) {
+            return collect(prefix, records) + collect(spliterator, records);
+        }
+        spliterator.forEachRemaining(new Consumer<HERV>() {
+            @Override
+            public void accept(HERV herv) {
+                records.add(herv);
+            }
+        });
+        return 1;
+    }
+
+    private static void assertOrdered(List<HERV> records) {
+        Assert.assertEquals(2 * RECORDS, records.size());
+        for (int i = 0; i < records.size(); i++) {
+            Assert.assertEquals(i / RECORDS + 1, records.get(i).getChromosome());
+            Assert.assertEquals(i % RECORDS, records.get(i).getStartPositionChromosome());
+        }
+    }
+
+    /**
+     * Creates a table with chromosome 1 in the first four buckets of 25 records, chromosome 2 in the fifth and an
+     * empty sixth bucket.
+     */
+    private static MappedTable<HERV> createTable(File directory, int maxChunkSize) throws IOException,
+            FileLockException {
+        DRUMSParameterSet<HERV> gp = TestBuckets.createParameters(directory);
+        File[] files = TestBuckets.getFiles(directory, 6);
+        for (int i = 0; i < 4; i++) {
+            TestBuckets.write(gp, files[i], TestBuckets.hervs(1, 25 * i, 25 * i + 25, 1));
+        }
+        TestBuckets.write(gp, files[4], TestBuckets.hervs(2, 0, RECORDS, 1));
+        return new MappedTable<HERV>(gp, TestBuckets.createHashFunction(new byte[] { 1, 0, 0, 0, 24 }, new byte[] {
+                1, 0, 0, 0, 49 }, new byte[] { 1, 0, 0, 0, 74 }, new byte[] { 1 }, new byte[] { 2 },
+                new byte[] { (byte) 0xFF }), new HERV(), files, maxChunkSize);
+    }
+}
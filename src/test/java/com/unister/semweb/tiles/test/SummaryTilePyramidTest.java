@@ -0,0 +1,76 @@
+package com.unister.semweb.tiles.test;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.unister.semweb.biodrums.tiles.SummaryTilePyramid;
+import com.unister.semweb.biodrums.tiles.TileRange;
+
+/**
+ * Tests the {@link SummaryTilePyramid}.
+ * 
+ * @author Martin Nettling
+ * 
+ */
+public class SummaryTilePyramidTest {
+    /**
+     * Tests that a query chooses the finest level with at most the requested number of tiles.
+     */
+    @Test
+    public void queryTest() {
+        SummaryTilePyramid pyramid = new SummaryTilePyramid(new int[] { 10000 }, new int[] { 10, 100, 1000 });
+        pyramid.add((byte) 1, 5, 0.5);
+        pyramid.add((byte) 1, 15, 0.1);
+        pyramid.add((byte) 1, 150, 0.01);
+        pyramid.add((byte) 1, 20000, 1);
+
+        TileRange fine = pyramid.query((byte) 1, 0, 199, 20);
+        Assert.assertEquals(10, fine.getBinSize());
+        Assert.assertEquals(20, fine.getCounts().length);
+        Assert.assertEquals(1, fine.getCounts()[0]);
+        Assert.assertEquals(1, fine.getCounts()[1]);
+        Assert.assertEquals(1, fine.getCounts()[15]);
+        Assert.assertEquals(Double.POSITIVE_INFINITY, fine.getMinScores()[2], 0);
+
+        TileRange coarse = pyramid.query((byte) 1, 0, 199, 5);
+        Assert.assertEquals(100, coarse.getBinSize());
+        Assert.assertEquals(2, coarse.getCounts()[0]);
+        Assert.assertEquals(0.1, coarse.getMinScores()[0], 0);
+
+        TileRange whole = pyramid.query((byte) 1, 0, 10999, 1);
+        Assert.assertEquals(1000, whole.getBinSize());
+        Assert.assertEquals(3, whole.getCounts()[0]);
+        // the record behind the end of the chromosome is ignored
+        Assert.assertEquals(0, whole.getCounts()[whole.getCounts().length - 1]);
+
+        Assert.assertEquals(0, pyramid.query((byte) 0, 0, 199, 20).getCounts().length);
+        Assert.assertEquals(0, pyramid.query((byte) 2, 0, 199, 20).getCounts().length);
+        try {
+            pyramid.queryLevel((byte) 1, 0, 199, 3);
+            Assert.fail("A missing level was queried");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+    }
+
+    /**
+     * Tests that a saved pyramid is read unchanged.
+     */
+    @Test
+    public void saveLoadTest() throws IOException {
+        SummaryTilePyramid pyramid = new SummaryTilePyramid(new int[] { 1000, 500 }, new int[] { 10, 100 });
+        pyramid.add((byte) 2, 42, 0.25);
+        File file = File.createTempFile("tiles", ".bin");
+        file.deleteOnExit();
+        pyramid.save(file);
+
+        SummaryTilePyramid loaded = SummaryTilePyramid.load(file);
+        TileRange range = loaded.queryLevel((byte) 2, 0, 99, 0);
+        Assert.assertEquals(1, range.getCounts()[4]);
+        Assert.assertEquals(0.25, range.getMinScores()[4], 0);
+        Assert.assertEquals(0, loaded.queryLevel((byte) 1, 0, 999, 1).getCounts()[0]);
+    }
+}
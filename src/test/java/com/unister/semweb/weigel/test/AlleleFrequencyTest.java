@@ -0,0 +1,38 @@
+package com.unister.semweb.weigel.test;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.unister.semweb.biodrums.weigel.AlleleFrequency;
+
+/**
+ * Tests the {@link AlleleFrequency}.
+ * 
+ * @author Martin Nettling
+ * 
+ */
+public class AlleleFrequencyTest {
+    /**
+     * Tests that a record written by {@link AlleleFrequency#put(ByteBuffer, byte, int, byte, int[])} is read back.
+     */
+    @Test
+    public void putTest() {
+        ByteBuffer buffer = ByteBuffer.allocate(2 * AlleleFrequency.ELEMENT_SIZE);
+        buffer.position(AlleleFrequency.ELEMENT_SIZE);
+        AlleleFrequency.put(buffer, (byte) 3, 123456, (byte) 'C', new int[] { 4, 0, 2, 7, 1 });
+        Assert.assertFalse(buffer.hasRemaining());
+
+        Assert.assertEquals(7, AlleleFrequency.getCount(buffer, AlleleFrequency.ELEMENT_SIZE, (byte) 'T'));
+        buffer.position(AlleleFrequency.ELEMENT_SIZE);
+        AlleleFrequency frequency = new AlleleFrequency().fromByteBuffer(buffer.slice());
+        Assert.assertEquals(3, frequency.getSequenceId());
+        Assert.assertEquals(123456, frequency.getBasePosition());
+        Assert.assertEquals('C', frequency.getFrom());
+        Assert.assertEquals(4, frequency.getCount((byte) 'a'));
+        Assert.assertEquals(2, frequency.getCount((byte) 'G'));
+        Assert.assertEquals(1, frequency.getCount((byte) '-'));
+        Assert.assertEquals(14, frequency.getNumberOfEcotypes());
+    }
+}